@@ -3,29 +3,87 @@ package org.innopolis.kuzymvas;
 import org.innopolis.kuzymvas.cellular.*;
 import org.innopolis.kuzymvas.cellular.cells.CellFactory;
 import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.innopolis.kuzymvas.cellular.cells.Life3DRule;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+import org.innopolis.kuzymvas.renderers.BackpressurePolicy;
 import org.innopolis.kuzymvas.renderers.EndStepRenderer;
+import org.innopolis.kuzymvas.renderers.HistoryReader;
+import org.innopolis.kuzymvas.renderers.HistoryWriter;
+import org.innopolis.kuzymvas.renderers.ImageSnapshotWriter;
+import org.innopolis.kuzymvas.renderers.PbmSnapshotWriter;
+import org.innopolis.kuzymvas.renderers.PngSnapshotWriter;
 import org.innopolis.kuzymvas.renderers.RealTimeStepRenderer;
+import org.innopolis.kuzymvas.renderers.ResultCache;
+import org.innopolis.kuzymvas.renderers.SharedStatePublisher;
+import org.innopolis.kuzymvas.renderers.SnapshotPipeline;
+import org.innopolis.kuzymvas.renderers.SnapshotWriter;
+import org.innopolis.kuzymvas.renderers.TextSnapshotWriter;
+import org.innopolis.kuzymvas.renderers.TrajectoryWriter;
+import org.innopolis.kuzymvas.server.SimulationServer;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 public class Main {
 
     private static final int RENDER_DELAY = 1000;
+    private static final int DEFAULT_TERMINAL_WIDTH = 80;
+    private static final int DEFAULT_TERMINAL_HEIGHT = 24;
+    private static final int DEFAULT_EMIT_BUFFERS = 4;
+    private static final int DEFAULT_KEYFRAME_INTERVAL = 256;
+    private static final int DEFAULT_CACHE_SIZE = 256;
+    private static final int DEFAULT_CACHE_INTERVAL = 1024;
+    private static final long BYTES_PER_MEGABYTE = 1 << 20;
+    private static final int DEFAULT_SOUP_SIZE = 64;
+    private static final int DEFAULT_SOUPS = 1000;
+    private static final String DEFAULT_SOUP_DENSITIES = "0.2,0.35,0.5";
+    private static final String DEFAULT_CALIBRATION_CACHE =
+            System.getProperty("user.home") + File.separator + ".lifegame" + File.separator + "calibration.properties";
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("-server")) {
+            runServer(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("-seek")) {
+            seekHistory(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("-experiment")) {
+            runExperiment(args);
+            return;
+        }
         ParsedArgs parsedArgs = parseArgs(args);
         if (!parsedArgs.valid) {
             return;
         }
+        if (parsedArgs.streamDirectory != null) {
+            runStreaming(parsedArgs);
+            return;
+        }
+        if (parsedArgs.rule3D != null) {
+            run3D(parsedArgs);
+            return;
+        }
         InitialState initialState = readInitialState(parsedArgs.inputFile);
         if (initialState == null || initialState.width == 0 || initialState.height == 0) {
             return;
         }
         CellularAutomata automata;
         CellFactory factory = new ConwayCellFactory();
-        if (parsedArgs.singleThread) {
+        if (parsedArgs.auto) {
+            AutomataCalibrator calibrator = new AutomataCalibrator(
+                    new File(parsedArgs.calibrationCache), factory, LifeRule.CONWAY, NeighborhoodType.MOORE);
+            EngineChoice choice = calibrator.choose(initialState.width, initialState.height, initialState.states);
+            if (!parsedArgs.realTime) {
+                System.out.println("Auto-selected " + choice);
+            }
+            automata = choice.create(initialState.width, initialState.height, factory, LifeRule.CONWAY,
+                                     NeighborhoodType.MOORE);
+        } else if (parsedArgs.singleThread) {
             automata = new SingleThreadRWAutomata(initialState.width, initialState.height, factory,
                                                   NeighborhoodType.MOORE);
         } else if (parsedArgs.forkJoin) {
@@ -36,23 +94,441 @@ public class Main {
             automata = new MultiThreadRWAutomata(initialState.width, initialState.height, factory,
                                                  NeighborhoodType.MOORE, threadsToMake);
         }
-        if (parsedArgs.realTime) {
-            automata.initAutomata(initialState.states);
-            RealTimeStepRenderer renderer = new RealTimeStepRenderer(automata, System.out,
-                                                                     RENDER_DELAY, parsedArgs.stepNumber);
-            renderer.run();
-        } else {
-            try (OutputStream out = new FileOutputStream(parsedArgs.outputFile)) {
-                EndStepRenderer renderer = new EndStepRenderer(automata);
-                renderer.render(out, parsedArgs.stepNumber, initialState.states);
-            } catch (FileNotFoundException e) {
-                System.out.println("Error. Output file not found. Aborting");
-            } catch (IOException e) {
-                System.out.println("Error. IO exception, while writing output file: " + e.getLocalizedMessage());
+        try {
+            if (parsedArgs.realTime) {
+                automata.initAutomata(initialState.states);
+                RealTimeStepRenderer renderer = new RealTimeStepRenderer(
+                        automata, System.out, System.in, RENDER_DELAY, parsedArgs.stepNumber,
+                        terminalSize("COLUMNS", DEFAULT_TERMINAL_WIDTH),
+                        terminalSize("LINES", DEFAULT_TERMINAL_HEIGHT) - 2);
+                renderer.run();
+            } else if (parsedArgs.cacheDirectory != null) {
+                runCached(parsedArgs, automata, initialState);
+            } else {
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(parsedArgs.outputFile));
+                     ImageSnapshotWriter image = imageWriter(parsedArgs);
+                     SnapshotPipeline emitter = parsedArgs.emitEvery > 0 ? new SnapshotPipeline(
+                             automata, parsedArgs.emitBuffers, parsedArgs.backpressure,
+                             new TextSnapshotWriter(parsedArgs.outputFile), parsedArgs.emitEvery, 1) : null;
+                     SnapshotPipeline recorder = parsedArgs.recordFile != null || parsedArgs.historyFile != null
+                             ? new SnapshotPipeline(automata, parsedArgs.emitBuffers, BackpressurePolicy.BLOCK,
+                                                    recordWriter(parsedArgs)) : null;
+                     SnapshotPipeline sharer = parsedArgs.shareFile != null ? new SnapshotPipeline(
+                             automata, parsedArgs.emitBuffers, BackpressurePolicy.DROP_OLDEST,
+                             new SharedStatePublisher(new File(parsedArgs.shareFile), initialState.width,
+                                                      initialState.height), parsedArgs.shareEvery, 0) : null) {
+                    List<SnapshotPipeline> pipelines = new ArrayList<>();
+                    for (SnapshotPipeline pipeline : new SnapshotPipeline[]{emitter, recorder, sharer}) {
+                        if (pipeline != null) {
+                            pipelines.add(pipeline);
+                        }
+                    }
+                    EndStepRenderer renderer = new EndStepRenderer(automata, image);
+                    renderer.render(out, parsedArgs.stepNumber, initialState.states, pipelines);
+                    if (emitter != null && emitter.getDropped() > 0) {
+                        System.out.println("Warning. " + emitter.getDropped()
+                                                   + " snapshots were dropped by backpressure policy");
+                    }
+                } catch (FileNotFoundException e) {
+                    System.out.println("Error. Output file not found. Aborting");
+                } catch (IOException | UncheckedIOException e) {
+                    System.out.println("Error. IO exception, while writing output file: " + e.getLocalizedMessage());
+                }
+            }
+        } finally {
+            automata.close();
+        }
+    }
+
+    /**
+     * Вычисляет трехмерное поле. Входной и выходной файлы содержат слои поля по Z один за другим,
+     * слои разделяются пустой строкой
+     *
+     * @param parsedArgs - структура распознанных аргументов
+     */
+    private static void run3D(ParsedArgs parsedArgs) {
+        Life3DRule rule;
+        try {
+            rule = Life3DRule.parse(parsedArgs.rule3D);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error. " + e.getLocalizedMessage() + ". Aborting");
+            return;
+        }
+        int width = -1;
+        int height = -1;
+        int depth = 0;
+        int rows = 0;
+        List<Boolean> states = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(parsedArgs.inputFile)))) {
+            for (String line = br.readLine(); line != null; line = br.readLine()) {
+                if (line.isEmpty()) {
+                    if (rows > 0 && !endSlice(rows, height)) {
+                        return;
+                    }
+                    height = rows > 0 ? rows : height;
+                    depth += rows > 0 ? 1 : 0;
+                    rows = 0;
+                    continue;
+                }
+                if (width == -1) {
+                    width = line.length();
+                }
+                if (width != line.length()) {
+                    System.out.println("Error. Initial file is malformed. Board should be rectangular. Aborting");
+                    return;
+                }
+                for (char c : line.toCharArray()) {
+                    states.add(!(c == ' ' || c == '_'));
+                }
+                rows++;
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Error. Input file not found. Aborting");
+            return;
+        } catch (IOException e) {
+            System.out.println("Error. IO exception, while reading input file: " + e.getLocalizedMessage());
+            return;
+        }
+        if (rows > 0) {
+            if (!endSlice(rows, height)) {
+                return;
+            }
+            height = rows;
+            depth++;
+        }
+        if (depth == 0) {
+            return;
+        }
+        NeighborhoodType neighborhood = parsedArgs.vonNeumann3D ? NeighborhoodType.VON_NEUMANN : NeighborhoodType.MOORE;
+        int threads = parsedArgs.singleThread ? 1 : Math.max(Runtime.getRuntime().availableProcessors(), 1);
+        try (BitPacked3DRWAutomata automata = new BitPacked3DRWAutomata(
+                width, height, depth, rule, neighborhood, threads);
+             PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(parsedArgs.outputFile)))) {
+            automata.initAutomata(states);
+            automata.updateAutomata(parsedArgs.stepNumber);
+            boolean[] slice = new boolean[width * height];
+            StringBuilder text = new StringBuilder();
+            for (int z = 0; z < depth; z++) {
+                automata.copyStates(z * slice.length, (z + 1) * slice.length, slice, 0);
+                text.setLength(0);
+                if (z > 0) {
+                    text.append(System.lineSeparator());
+                }
+                for (int i = 0; i < slice.length; i++) {
+                    text.append(slice[i] ? 'O' : '_');
+                    if (i % width == width - 1) {
+                        text.append(System.lineSeparator());
+                    }
+                }
+                out.print(text);
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Error. Output file not found. Aborting");
+        }
+    }
+
+    /**
+     * Проверяет, что очередной слой трехмерного поля той же высоты, что и предыдущие
+     *
+     * @param rows   - число строк слоя
+     * @param height - высота предыдущих слоев или -1 для первого слоя
+     * @return - true, если слой подходит
+     */
+    private static boolean endSlice(int rows, int height) {
+        if (height != -1 && rows != height) {
+            System.out.println("Error. Initial file is malformed. All slices should have the same height. Aborting");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Вычисляет поле, не загружая его в память: поле переводится в упакованный файл в каталоге '-stream'
+     * и обновляется проходами по этому файлу, а результат выводится построчно
+     *
+     * @param parsedArgs - структура распознанных аргументов
+     */
+    private static void runStreaming(ParsedArgs parsedArgs) {
+        try (StreamingRWAutomata automata = StreamingRWAutomata.open(
+                new File(parsedArgs.inputFile), LifeRule.CONWAY, BoundaryMode.WRAPAROUND,
+                new File(parsedArgs.streamDirectory), parsedArgs.streamDepth);
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(parsedArgs.outputFile));
+             ImageSnapshotWriter image = imageWriter(parsedArgs)) {
+            List<Integer> dims = automata.getDimensions();
+            if (dims.get(0) == 0 || dims.get(1) == 0) {
+                return;
+            }
+            new EndStepRenderer(automata, image).renderFromCurrentState(out, parsedArgs.stepNumber);
+        } catch (FileNotFoundException e) {
+            System.out.println("Error. Input or output file not found. Aborting");
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error. IO exception, while streaming the board: " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Вычисляет поле через кэш результатов '-cache': продолжает с самого дальнего сохраненного поколения
+     * этой задачи, по пути сохраняя контрольные точки, и сохраняет итоговое поколение
+     *
+     * @param parsedArgs   - структура распознанных аргументов
+     * @param automata     - клеточный автомат
+     * @param initialState - исходное состояние автомата
+     */
+    private static void runCached(ParsedArgs parsedArgs, CellularAutomata automata, InitialState initialState) {
+        int width = initialState.width;
+        int height = initialState.height;
+        try {
+            ResultCache cache = new ResultCache(new File(parsedArgs.cacheDirectory),
+                                                parsedArgs.cacheSize * BYTES_PER_MEGABYTE);
+            String key = ResultCache.key(width, height, initialState.states, LifeRule.CONWAY,
+                                         NeighborhoodType.MOORE, BoundaryMode.WRAPAROUND);
+            ResultCache.Checkpoint checkpoint = cache.find(key, parsedArgs.stepNumber);
+            long start = checkpoint == null ? 0 : checkpoint.getGeneration();
+            List<Boolean> states = checkpoint == null ? initialState.states : checkpoint.getStates();
+            if (start > 0) {
+                System.out.println("Resuming from cached generation " + start);
+            }
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(parsedArgs.outputFile));
+                 ImageSnapshotWriter image = imageWriter(parsedArgs);
+                 SnapshotPipeline checkpointer = new SnapshotPipeline(
+                         automata, parsedArgs.emitBuffers, BackpressurePolicy.BLOCK,
+                         cache.checkpointWriter(key, start), parsedArgs.cacheEvery, 1)) {
+                new EndStepRenderer(automata, image).render(out, (int) (parsedArgs.stepNumber - start), states,
+                                                            Collections.singletonList(checkpointer));
+            }
+            if (start < parsedArgs.stepNumber) {
+                cache.store(key, parsedArgs.stepNumber, width, height, automata.getStates(0, width * height));
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Error. Output file not found. Aborting");
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error. IO exception, while using result cache: " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Создает способ записи итогового изображения по расширению выходного файла: ".pbm" или ".png"
+     *
+     * @param parsedArgs - структура распознанных аргументов
+     * @return - способ записи изображения или null, если вывод текстовый
+     */
+    private static ImageSnapshotWriter imageWriter(ParsedArgs parsedArgs) {
+        String name = parsedArgs.outputFile.toLowerCase(Locale.ROOT);
+        int threads = Math.max(Runtime.getRuntime().availableProcessors(), 1);
+        if (name.endsWith(".pbm")) {
+            return new PbmSnapshotWriter(parsedArgs.outputFile, parsedArgs.imageScale, threads);
+        }
+        if (name.endsWith(".png")) {
+            return new PngSnapshotWriter(parsedArgs.outputFile, parsedArgs.imageScale, threads);
+        }
+        return null;
+    }
+
+    /**
+     * Создает способ записи всех поколений: историю с ключевыми кадрами, если она задана, иначе траекторию
+     *
+     * @param parsedArgs - структура распознанных аргументов
+     * @return - способ записи
+     * @throws IOException - если файл записи не удалось создать
+     */
+    private static SnapshotWriter recordWriter(ParsedArgs parsedArgs) throws IOException {
+        if (parsedArgs.historyFile != null) {
+            return new HistoryWriter(new File(parsedArgs.historyFile), parsedArgs.keyframeInterval);
+        }
+        return new TrajectoryWriter(new File(parsedArgs.recordFile));
+    }
+
+    /**
+     * Выводит в консоль заданное поколение из файла истории. Аргументы: "-seek FILE GENERATION"
+     *
+     * @param args - массив аргументов командной строки
+     */
+    private static void seekHistory(String[] args) {
+        if (args.length != 3) {
+            System.out.println("Error. '-seek' requires a history file and a generation number. Aborting");
+            return;
+        }
+        long generation;
+        try {
+            generation = Long.parseLong(args[2]);
+        } catch (NumberFormatException e) {
+            System.out.println("Error. Parsing generation number failed. Exception: " + e.getLocalizedMessage());
+            return;
+        }
+        try (HistoryReader reader = new HistoryReader(new File(args[1]))) {
+            boolean[] states = reader.seek(generation);
+            StringBuilder board = new StringBuilder((reader.getWidth() + 1) * reader.getHeight());
+            for (int i = 0; i < states.length; i++) {
+                board.append(states[i] ? 'O' : '_');
+                if (i % reader.getWidth() == reader.getWidth() - 1) {
+                    board.append(System.lineSeparator());
+                }
+            }
+            System.out.print(board);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error. " + e.getLocalizedMessage());
+        } catch (IOException e) {
+            System.out.println("Error. IO exception, while reading history file: " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Проводит эксперимент над случайными супами и пишет сводку в CSV. Аргументы: "-experiment FILE",
+     * за которым могут следовать "-rules", "-densities", "-soups", "-width", "-height", "-generations",
+     * "-max-period", "-seed" и "-workers"
+     *
+     * @param args - массив аргументов командной строки
+     */
+    private static void runExperiment(String[] args) {
+        ParsedArgs parsed = new ParsedArgs();
+        String outputFile = flagValue(parsed, args, 0);
+        String rules = LifeRule.CONWAY.toString();
+        String densities = DEFAULT_SOUP_DENSITIES;
+        int soups = DEFAULT_SOUPS;
+        int width = DEFAULT_SOUP_SIZE;
+        int height = DEFAULT_SOUP_SIZE;
+        int generations = SoupExperiment.DEFAULT_MAX_GENERATIONS;
+        int maxPeriod = SoupExperiment.DEFAULT_MAX_PERIOD;
+        long seed = 0;
+        int workers = Math.max(Runtime.getRuntime().availableProcessors(), 1);
+        for (int i = 2; i < args.length && parsed.valid; i++) {
+            switch (args[i]) {
+                case "-rules": {
+                    rules = flagValue(parsed, args, i++);
+                    break;
+                }
+                case "-densities": {
+                    densities = flagValue(parsed, args, i++);
+                    break;
+                }
+                case "-soups": {
+                    soups = parseNonNegative(parsed, flagValue(parsed, args, i++), "-soups");
+                    break;
+                }
+                case "-width": {
+                    width = parseNonNegative(parsed, flagValue(parsed, args, i++), "-width");
+                    break;
+                }
+                case "-height": {
+                    height = parseNonNegative(parsed, flagValue(parsed, args, i++), "-height");
+                    break;
+                }
+                case "-generations": {
+                    generations = parseNonNegative(parsed, flagValue(parsed, args, i++), "-generations");
+                    break;
+                }
+                case "-max-period": {
+                    maxPeriod = parseNonNegative(parsed, flagValue(parsed, args, i++), "-max-period");
+                    break;
+                }
+                case "-seed": {
+                    String value = flagValue(parsed, args, i++);
+                    try {
+                        seed = Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        parsed.valid = false;
+                        System.out.println("Error. Parsing -seed argument failed. Exception: "
+                                                   + e.getLocalizedMessage());
+                    }
+                    break;
+                }
+                case "-workers": {
+                    workers = parseNonNegative(parsed, flagValue(parsed, args, i++), "-workers");
+                    break;
+                }
+                default: {
+                    parsed.valid = false;
+                    System.out.println("Error. Unknown argument '" + args[i] + "'. Use -help to list arguments.");
+                }
+            }
+        }
+        if (parsed.valid && workers == 0) {
+            parsed.valid = false;
+            System.out.println("Error. '-workers' should be positive. Aborting");
+        }
+        if (!parsed.valid) {
+            return;
+        }
+        SoupExperiment experiment;
+        try {
+            List<LifeRule> ruleList = new ArrayList<>();
+            for (String rule : rules.split(",")) {
+                ruleList.add(LifeRule.parse(rule));
+            }
+            String[] densityValues = densities.split(",");
+            double[] densityList = new double[densityValues.length];
+            for (int i = 0; i < densityValues.length; i++) {
+                densityList[i] = Double.parseDouble(densityValues[i].trim());
             }
+            experiment = new SoupExperiment(width, height, ruleList, densityList, soups, generations, maxPeriod, seed);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error. " + e.getLocalizedMessage() + ". Aborting");
+            return;
+        }
+        List<SoupExperiment.Summary> summaries = experiment.run(workers);
+        try (Writer out = new BufferedWriter(new FileWriter(outputFile))) {
+            SoupExperiment.writeCsv(summaries, out);
+        } catch (IOException e) {
+            System.out.println("Error. IO exception, while writing experiment results: " + e.getLocalizedMessage());
         }
     }
 
+    /**
+     * Запускает сервер симуляции. Аргументы: "-server PORT", за которым может следовать "-workers N".
+     * Сервер работает, пока процесс не будет остановлен
+     *
+     * @param args - массив аргументов командной строки
+     */
+    private static void runServer(String[] args) {
+        ParsedArgs parsed = new ParsedArgs();
+        int port = parseNonNegative(parsed, flagValue(parsed, args, 0), "port");
+        int workers = Math.max(Runtime.getRuntime().availableProcessors(), 1);
+        for (int i = 2; i < args.length && parsed.valid; i++) {
+            if (args[i].equals("-workers")) {
+                workers = parseNonNegative(parsed, flagValue(parsed, args, i++), "-workers");
+            } else {
+                parsed.valid = false;
+                System.out.println("Error. Unknown argument '" + args[i] + "'. Use -help to list arguments.");
+            }
+        }
+        if (parsed.valid && workers == 0) {
+            parsed.valid = false;
+            System.out.println("Error. '-workers' should be positive. Aborting");
+        }
+        if (!parsed.valid) {
+            return;
+        }
+        try {
+            SimulationServer server = new SimulationServer(port, workers);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+            System.out.println("Simulation server is listening on http://localhost:" + server.getPort()
+                                       + "/simulate with " + workers + " workers");
+        } catch (IOException e) {
+            System.out.println("Error. Can't start simulation server: " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Возвращает размер терминала из переменной окружения, которую выставляет оболочка
+     *
+     * @param variable     - имя переменной окружения
+     * @param defaultValue - значение, если переменная не задана или некорректна
+     * @return - размер терминала в символах
+     */
+    private static int terminalSize(String variable, int defaultValue) {
+        String value = System.getenv(variable);
+        if (value != null) {
+            try {
+                int size = Integer.parseInt(value.trim());
+                if (size > 2) {
+                    return size;
+                }
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return defaultValue;
+    }
+
     /**
      * Считывает исходное состояние автомата из файла
      *
@@ -91,77 +567,257 @@ public class Main {
     }
 
     /**
-     * Разбирает данные аргументы командной строки
+     * Разбирает данные аргументы командной строки: три обязательных позиционных аргумента,
+     * за которыми в любом порядке следуют необязательные флаги
      *
      * @param args - массив аргументов командной строки в виде строк
      * @return - структура распознанных аргументов
      */
     private static ParsedArgs parseArgs(String[] args) {
-        boolean valid = true;
-        String inputFile = "";
-        String outputFile = "";
-        int stepNumber = 0;
-        boolean singleThread = false;
-        boolean forkJoin = false;
-        boolean realTime = false;
+        ParsedArgs parsed = new ParsedArgs();
         if (args.length < 1) {
             System.out.println("No arguments provided. Aborting");
-            return new ParsedArgs(false, inputFile, outputFile, stepNumber, singleThread, forkJoin, realTime);
+            parsed.valid = false;
+            return parsed;
         }
         if (args[0].equals("-help")
                 || args[0].equals("-h")
                 || args[0].equals("?")) {
-            valid = false;
+            parsed.valid = false;
             outputHelp();
+            return parsed;
+        }
+        if (args.length < 3) {
+            parsed.valid = false;
+            System.out.println("Wrong number of input arguments. At least 3 arguments are required. Aborting");
+            return parsed;
+        }
+        parsed.inputFile = args[0];
+        if (args[1].equals("-realtime")) {
+            parsed.realTime = true;
         } else {
-            if (args.length == 3 || args.length == 4) {
-                inputFile = args[0];
-                if (args[1].equals("-realtime")) {
-                    realTime = true;
-                } else {
-                    outputFile = args[1];
-                }
-                try {
-                    stepNumber = Integer.parseInt(args[2]);
-                } catch (NumberFormatException e) {
-                    valid = false;
-                    System.out.println(
-                            "Error. Parsing step number argument failed. Exception: " + e.getLocalizedMessage());
-                }
-                if (stepNumber < 0) {
-                    valid = false;
-                    System.out.println("Error. Negative value given for a step number argument. Aborting");
-                }
-                if (args.length == 4) {
-                    switch (args[3]) {
-                        case "-single": {
-                            singleThread = true;
-                            forkJoin = false;
-                            break;
-                        }
-                        case "-multi": {
-                            singleThread = false;
-                            forkJoin = false;
-                            break;
-                        }
-                        case "-fork": {
-                            singleThread = false;
-                            forkJoin = true;
-                            break;
-                        }
-                        default: {
-                            valid = false;
-                            System.out.println(
-                                    "Error. Invalid value for a fourth argument. Only '-single' and '-multi' are accepted.");
-                        }
+            parsed.outputFile = args[1];
+        }
+        parsed.stepNumber = parseNonNegative(parsed, args[2], "step number");
+        for (int i = 3; i < args.length && parsed.valid; i++) {
+            switch (args[i]) {
+                case "-single": {
+                    parsed.singleThread = true;
+                    parsed.forkJoin = false;
+                    parsed.auto = false;
+                    break;
+                }
+                case "-multi": {
+                    parsed.singleThread = false;
+                    parsed.forkJoin = false;
+                    parsed.auto = false;
+                    break;
+                }
+                case "-fork": {
+                    parsed.singleThread = false;
+                    parsed.forkJoin = true;
+                    parsed.auto = false;
+                    break;
+                }
+                case "-auto": {
+                    parsed.singleThread = false;
+                    parsed.forkJoin = false;
+                    parsed.auto = true;
+                    break;
+                }
+                case "-calibration-cache": {
+                    parsed.calibrationCache = flagValue(parsed, args, i++);
+                    break;
+                }
+                case "-emit": {
+                    parsed.emitEvery = parseNonNegative(parsed, flagValue(parsed, args, i++), "-emit");
+                    break;
+                }
+                case "-record": {
+                    parsed.recordFile = flagValue(parsed, args, i++);
+                    break;
+                }
+                case "-history": {
+                    parsed.historyFile = flagValue(parsed, args, i++);
+                    break;
+                }
+                case "-keyframes": {
+                    parsed.keyframeInterval = parseNonNegative(parsed, flagValue(parsed, args, i++), "-keyframes");
+                    break;
+                }
+                case "-share": {
+                    parsed.shareFile = flagValue(parsed, args, i++);
+                    break;
+                }
+                case "-share-every": {
+                    parsed.shareEvery = parseNonNegative(parsed, flagValue(parsed, args, i++), "-share-every");
+                    break;
+                }
+                case "-stream": {
+                    parsed.streamDirectory = flagValue(parsed, args, i++);
+                    break;
+                }
+                case "-stream-depth": {
+                    parsed.streamDepth = parseNonNegative(parsed, flagValue(parsed, args, i++), "-stream-depth");
+                    break;
+                }
+                case "-cache": {
+                    parsed.cacheDirectory = flagValue(parsed, args, i++);
+                    break;
+                }
+                case "-cache-size": {
+                    parsed.cacheSize = parseNonNegative(parsed, flagValue(parsed, args, i++), "-cache-size");
+                    break;
+                }
+                case "-cache-every": {
+                    parsed.cacheEvery = parseNonNegative(parsed, flagValue(parsed, args, i++), "-cache-every");
+                    break;
+                }
+                case "-3d": {
+                    parsed.rule3D = flagValue(parsed, args, i++);
+                    break;
+                }
+                case "-3d-von-neumann": {
+                    parsed.vonNeumann3D = true;
+                    break;
+                }
+                case "-scale": {
+                    parsed.imageScale = parseNonNegative(parsed, flagValue(parsed, args, i++), "-scale");
+                    break;
+                }
+                case "-emit-buffers": {
+                    parsed.emitBuffers = parseNonNegative(parsed, flagValue(parsed, args, i++), "-emit-buffers");
+                    break;
+                }
+                case "-backpressure": {
+                    String policy = flagValue(parsed, args, i++);
+                    try {
+                        parsed.backpressure = BackpressurePolicy.valueOf(
+                                policy.toUpperCase(Locale.ROOT).replace('-', '_'));
+                    } catch (IllegalArgumentException e) {
+                        parsed.valid = false;
+                        System.out.println("Error. Unknown backpressure policy '" + policy
+                                                   + "'. Only 'block', 'drop-newest' and 'drop-oldest' are accepted.");
                     }
+                    break;
+                }
+                default: {
+                    parsed.valid = false;
+                    System.out.println("Error. Unknown argument '" + args[i] + "'. Use -help to list arguments.");
                 }
-            } else {
-                valid = false;
-                System.out.println("Wrong number of input arguments. Only 3 or 4 arguments are allowed. Aborting");
             }
         }
-        return new ParsedArgs(valid, inputFile, outputFile, stepNumber, singleThread, forkJoin, realTime);
+        if (parsed.valid && parsed.emitEvery > 0 && parsed.realTime) {
+            parsed.valid = false;
+            System.out.println("Error. '-emit' needs an output file name to derive snapshot names. Aborting");
+        }
+        if (parsed.valid && (parsed.recordFile != null || parsed.historyFile != null) && parsed.realTime) {
+            parsed.valid = false;
+            System.out.println("Error. '-record' and '-history' are not supported in real-time mode. Aborting");
+        }
+        if (parsed.valid && parsed.shareFile != null && parsed.realTime) {
+            parsed.valid = false;
+            System.out.println("Error. '-share' is not supported in real-time mode. Aborting");
+        }
+        if (parsed.valid && parsed.shareEvery == 0) {
+            parsed.valid = false;
+            System.out.println("Error. '-share-every' should be positive. Aborting");
+        }
+        if (parsed.valid && parsed.recordFile != null && parsed.historyFile != null) {
+            parsed.valid = false;
+            System.out.println("Error. Only one of '-record' and '-history' can be used. Aborting");
+        }
+        if (parsed.valid && parsed.keyframeInterval == 0) {
+            parsed.valid = false;
+            System.out.println("Error. '-keyframes' should be positive. Aborting");
+        }
+        if (parsed.valid && parsed.streamDirectory != null && (parsed.realTime || parsed.emitEvery > 0
+                || parsed.recordFile != null || parsed.historyFile != null || parsed.shareFile != null)) {
+            parsed.valid = false;
+            System.out.println("Error. '-stream' only writes the final board, without real-time mode, '-emit',"
+                                       + " '-record', '-history' or '-share'. Aborting");
+        }
+        if (parsed.valid && parsed.cacheDirectory != null && (parsed.realTime || parsed.emitEvery > 0
+                || parsed.recordFile != null || parsed.historyFile != null || parsed.shareFile != null
+                || parsed.streamDirectory != null)) {
+            parsed.valid = false;
+            System.out.println("Error. '-cache' can skip generations, so it can't be combined with real-time mode,"
+                                       + " '-emit', '-record', '-history', '-share' or '-stream'. Aborting");
+        }
+        if (parsed.valid && parsed.rule3D != null && (parsed.realTime || parsed.emitEvery > 0
+                || parsed.recordFile != null || parsed.historyFile != null || parsed.shareFile != null
+                || parsed.streamDirectory != null || parsed.cacheDirectory != null || parsed.auto || parsed.forkJoin
+                || parsed.outputFile.endsWith(".pbm") || parsed.outputFile.endsWith(".png"))) {
+            parsed.valid = false;
+            System.out.println("Error. '-3d' only writes the final board as text slices, without real-time mode,"
+                                       + " '-emit', '-record', '-history', '-share', '-stream', '-cache', '-auto',"
+                                       + " '-fork' or image output. Aborting");
+        }
+        if (parsed.valid && parsed.vonNeumann3D && parsed.rule3D == null) {
+            parsed.valid = false;
+            System.out.println("Error. '-3d-von-neumann' needs '-3d RULE'. Aborting");
+        }
+        if (parsed.valid && parsed.cacheEvery == 0) {
+            parsed.valid = false;
+            System.out.println("Error. '-cache-every' should be positive. Aborting");
+        }
+        if (parsed.valid && parsed.imageScale == 0) {
+            parsed.valid = false;
+            System.out.println("Error. '-scale' should be positive. Aborting");
+        }
+        if (parsed.valid && parsed.streamDepth == 0) {
+            parsed.valid = false;
+            System.out.println("Error. '-stream-depth' should be positive. Aborting");
+        }
+        if (parsed.valid && parsed.emitBuffers == 0) {
+            parsed.valid = false;
+            System.out.println("Error. '-emit-buffers' should be positive. Aborting");
+        }
+        return parsed;
+    }
+
+    /**
+     * Возвращает значение флага, следующее за ним в аргументах
+     *
+     * @param parsed - структура распознанных аргументов, помечаемая невалидной, если значения нет
+     * @param args   - массив аргументов командной строки
+     * @param index  - индекс флага
+     * @return - значение флага или пустая строка, если его нет
+     */
+    private static String flagValue(ParsedArgs parsed, String[] args, int index) {
+        if (index + 1 >= args.length) {
+            parsed.valid = false;
+            System.out.println("Error. Argument '" + args[index] + "' requires a value. Aborting");
+            return "";
+        }
+        return args[index + 1];
+    }
+
+    /**
+     * Разбирает неотрицательное целое значение аргумента
+     *
+     * @param parsed - структура распознанных аргументов, помечаемая невалидной при ошибке
+     * @param value  - строка значения
+     * @param name   - название аргумента для сообщения об ошибке
+     * @return - значение аргумента или 0 при ошибке
+     */
+    private static int parseNonNegative(ParsedArgs parsed, String value, String name) {
+        if (!parsed.valid) {
+            return 0;
+        }
+        int result = 0;
+        try {
+            result = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            parsed.valid = false;
+            System.out.println(
+                    "Error. Parsing " + name + " argument failed. Exception: " + e.getLocalizedMessage());
+        }
+        if (result < 0) {
+            parsed.valid = false;
+            System.out.println("Error. Negative value given for a " + name + " argument. Aborting");
+        }
+        return result;
     }
 
     /**
@@ -173,45 +829,93 @@ public class Main {
         System.out.println("Arguments:");
         System.out.println(" 1) Input file name");
         System.out.println(" 2) Output file name or '-realtime' to instead render every step to the console output");
-        System.out.println(" 2) Number of steps");
+        System.out.println("    (real-time view fits the terminal; type w/a/s/d and Enter to pan it over larger boards)");
+        System.out.println("    (an output file ending with '.pbm' or '.png' gets a black and white image instead of text)");
+        System.out.println(" 3) Number of steps");
+        System.out.println("Optional arguments, in any order after the first three:");
         System.out.println(
-                " 4) (OPTIONAL) '-single' or '-multi'(default) or '-fork' to use either singlethread, multithread or fork-join pool based version of automata");
+                " '-single' or '-multi'(default) or '-fork' to use either singlethread, multithread or fork-join pool based version of automata");
+        System.out.println(" '-auto' to time all versions on the given board and pick the fastest, along with");
+        System.out.println("    thread count and fork-join task size; the choice is cached per hardware profile");
+        System.out.println(" '-calibration-cache FILE' to keep '-auto' choices in FILE (default '"
+                                   + DEFAULT_CALIBRATION_CACHE + "')");
+        System.out.println(" '-scale N' to shrink an image output N times, each N x N block of cells becomes one");
+        System.out.println("    point, black if any of the cells is alive");
+        System.out.println(" '-emit N' to also write every N-th generation to '<output file>.<generation>'");
+        System.out.println("    in the background, while stepping continues");
+        System.out.println(" '-record FILE' to record every generation to FILE as compressed differences");
+        System.out.println("    between consecutive generations, written in the background");
+        System.out.println(" '-history FILE' to record every generation to FILE with a full keyframe every K");
+        System.out.println("    generations and an index, so that any generation can be read back quickly");
+        System.out.println(" '-keyframes K' to set the keyframe period of '-history' (default "
+                                   + DEFAULT_KEYFRAME_INTERVAL + ")");
+        System.out.println(" '-share FILE' to publish the current generation to a memory-mapped FILE, so that");
+        System.out.println("    viewers in other processes can read it without slowing the simulation down");
+        System.out.println(" '-share-every N' to publish only every N-th generation (default 1)");
+        System.out.println(" '-stream DIR' to keep the board in files in DIR instead of memory, for boards larger");
+        System.out.println("    than RAM; the input may also be a packed board file");
+        System.out.println(" '-stream-depth N' to compute up to N generations per pass over the board files (default "
+                                   + StreamingRWAutomata.DEFAULT_PIPELINE_DEPTH + ")");
+        System.out.println(" '-cache DIR' to keep results in DIR: a repeated run is answered from DIR, and a run");
+        System.out.println("    for more steps resumes from the furthest generation saved for the same board");
+        System.out.println(" '-cache-size MB' to limit the cache, least recently used results go first (default "
+                                   + DEFAULT_CACHE_SIZE + ")");
+        System.out.println(" '-cache-every N' to save a resumable generation every N steps (default "
+                                   + DEFAULT_CACHE_INTERVAL + ")");
+        System.out.println(" '-3d RULE' to treat the input as a 3D board: slices along Z, separated by empty lines,");
+        System.out.println("    with a 3D rule in Bays notation like '4555' or as 'B5/S4,5'; 26 neighbors by default");
+        System.out.println(" '-3d-von-neumann' to count only the 6 orthogonal neighbors in '-3d' mode");
+        System.out.println(" '-emit-buffers N' to limit the number of snapshots waiting to be written (default "
+                                   + DEFAULT_EMIT_BUFFERS + ")");
+        System.out.println(" '-backpressure block|drop-newest|drop-oldest' to choose what happens when all");
+        System.out.println("    snapshot buffers are busy: wait for the writer (default) or lose a snapshot");
+        System.out.println("History mode: '-seek FILE GENERATION' prints the given generation from a '-history' file");
+        System.out.println("Experiment mode: '-experiment FILE' runs random soups and writes statistics per rule and");
+        System.out.println("    density to the CSV FILE: lifespan until the soup repeats itself, final population, share of");
+        System.out.println("    soups ending as still lifes, oscillators or dying out. Optional arguments:");
+        System.out.println("    '-rules B3/S23,B36/S23' (default B3/S23), '-densities 0.2,0.5' (default "
+                                   + DEFAULT_SOUP_DENSITIES + "),");
+        System.out.println("    '-soups N' per rule and density (default " + DEFAULT_SOUPS + "), '-width N' and '-height N'"
+                                   + " (default " + DEFAULT_SOUP_SIZE + "),");
+        System.out.println("    '-generations N' to give up on a soup (default " + SoupExperiment.DEFAULT_MAX_GENERATIONS
+                                   + "), '-max-period N' (default " + SoupExperiment.DEFAULT_MAX_PERIOD + "),");
+        System.out.println("    '-seed N' (default 0; results don't depend on thread count), '-workers N' (default: all cores)");
+        System.out.println("Server mode: '-server PORT [-workers N]' keeps the application running and serves");
+        System.out.println("    POST http://localhost:PORT/simulate?steps=N[&rule=B3/S23][&boundary=wraparound|dead|reflective]");
+        System.out.println("    [&every=K] with the board in the request body; the response is the board after N steps,");
+        System.out.println("    or every K-th generation as it is computed. Port 0 picks a free port");
     }
 
     /**
-     * Структруа распознанных аргументов командной строки
+     * Структруа распознанных аргументов командной строки. Поля заполняются при разборе,
+     * незаданные необязательные аргументы сохраняют значения по умолчанию
      */
     private static class ParsedArgs {
-        final boolean valid;
-        final String inputFile;
-        final String outputFile;
-        final int stepNumber;
-        final boolean singleThread;
-        final boolean forkJoin;
-        final boolean realTime;
-
-        /**
-         * Создает новую структуру, содердащую распознанные аргументы программы
-         *
-         * @param valid        - были ли аргументы валидны и нужно ли исполнять программу дальше
-         * @param inputFile    - пусть к входному файлу
-         * @param outputFile   - путь к выходному файлу
-         * @param stepNumber   - число шагов для автомата
-         * @param singleThread - нужно ли использовать однопоточный режим
-         * @param forkJoin     - нужно ли использовать вычисления через Fork-Join Pool
-         * @param realTime     - был ли запрошен вывод в реальном времени в консоль
-         */
-        public ParsedArgs(
-                boolean valid, String inputFile, String outputFile,
-                int stepNumber, boolean singleThread, boolean forkJoin, boolean realTime) {
-            this.valid = valid;
-            this.inputFile = inputFile;
-            this.outputFile = outputFile;
-            this.stepNumber = stepNumber;
-            this.singleThread = singleThread;
-            this.forkJoin = forkJoin;
-            this.realTime = realTime;
-        }
+        boolean valid = true;
+        String inputFile = "";
+        String outputFile = "";
+        int stepNumber;
+        boolean singleThread;
+        boolean forkJoin;
+        boolean realTime;
+        int emitEvery;
+        int emitBuffers = DEFAULT_EMIT_BUFFERS;
+        BackpressurePolicy backpressure = BackpressurePolicy.BLOCK;
+        boolean auto;
+        String calibrationCache = DEFAULT_CALIBRATION_CACHE;
+        String recordFile;
+        String historyFile;
+        int keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+        String shareFile;
+        int shareEvery = 1;
+        String streamDirectory;
+        int streamDepth = StreamingRWAutomata.DEFAULT_PIPELINE_DEPTH;
+        int imageScale = 1;
+        String cacheDirectory;
+        long cacheSize = DEFAULT_CACHE_SIZE;
+        int cacheEvery = DEFAULT_CACHE_INTERVAL;
+        String rule3D;
+        boolean vonNeumann3D;
     }
 
     /**
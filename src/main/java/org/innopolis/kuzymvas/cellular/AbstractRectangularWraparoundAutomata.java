@@ -1,32 +1,29 @@
 package org.innopolis.kuzymvas.cellular;
 
+import org.innopolis.kuzymvas.cellular.cells.AbstractCell;
 import org.innopolis.kuzymvas.cellular.cells.Cell;
 import org.innopolis.kuzymvas.cellular.cells.CellFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
- * Абстрактный класс прямогольного 2Д клеточного автомата с замкнутым полем
+ * Абстрактный класс прямогольного 2Д клеточного автомата. По умолчанию поле замкнуто,
+ * но края могут обрабатываться и в другом режиме {@link BoundaryMode}: соседи за краем
+ * связываются с отраженными клетками поля или с общей для всех, всегда мертвой клеткой
  */
-public abstract class AbstractRectangularWraparoundAutomata implements CellularAutomata {
-
-    private final static int[][] MOORE_DELTAS = {
-            {-1, -1, 0, 1, 1, 1, 0, -1},
-            {0, 1, 1, 1, 0, -1, -1, -1}
-    };
-    private final static int[][] VON_NEUMANN_DELTAS = {
-            {-1, 0, 0, 1},
-            {0, -1, 1, 0}
-    };
-    private final static int[][] EXTENDED_VON_NEUMANN_DELTAS = {
-            {-2, -1, 0, 0, 2, 1, 0, 0},
-            {0, 0, -2, -1, 0, 0, 2, 1}
-    };
+public abstract class AbstractRectangularWraparoundAutomata implements ChangeFeedAutomata {
+
+    private final static int PARALLEL_WIRING_THRESHOLD = 1 << 16;
+    private final static Cell DEAD_CELL = new DeadCell();
     protected final List<Cell> cells;
     private final int height;
     private final int width;
+    private final BoundaryMode boundaryMode;
+    private volatile AutomataStatistics statistics;
 
     /**
      * Создает новый автомат
@@ -41,30 +38,49 @@ public abstract class AbstractRectangularWraparoundAutomata implements CellularA
     public AbstractRectangularWraparoundAutomata(
             int width, int height,
             CellFactory factory, NeighborhoodType neighborhoodType) {
+        this(width, height, factory, neighborhoodType, BoundaryMode.WRAPAROUND);
+    }
+
+    /**
+     * Создает новый автомат с заданным режимом обработки краев поля
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param factory          - фабрика для клеток
+     * @param neighborhoodType - тип локального окружения клетки: по Муру - это 8 клеток вокруг,
+     *                         по Вон Нейману - 4 ортогональных клетки вокруг,
+     *                         Расширенный Вон Нейман - 8 ортогональных клеток, по две в каждую сторону
+     * @param boundaryMode     - режим обработки краев поля
+     */
+    public AbstractRectangularWraparoundAutomata(
+            int width, int height,
+            CellFactory factory, NeighborhoodType neighborhoodType, BoundaryMode boundaryMode) {
         if (width < 0 || height < 0) {
             throw new IllegalArgumentException("Automata grid dimensions can't be negative");
         }
         this.height = height;
         this.width = width;
+        this.boundaryMode = boundaryMode;
         this.cells = factory.createCells(width * height);
 
-        int[][] deltas = new int[0][];
-        switch (neighborhoodType) {
-            case MOORE: {
-                deltas = MOORE_DELTAS;
-                break;
-            }
-            case VON_NEUMANN: {
-                deltas = VON_NEUMANN_DELTAS;
-                break;
+        int[][] deltas = neighborhoodType.getDeltas();
+        int[][] neighborColumns = new int[deltas[0].length][width];
+        int[][] neighborRows = new int[deltas[0].length][height];
+        for (int i = 0; i < deltas[0].length; i++) {
+            for (int x = 0; x < width; x++) {
+                neighborColumns[i][x] = boundaryMode.resolve(x + deltas[0][i], width);
             }
-            case EXTENDED_VON_NEUMANN: {
-                deltas = EXTENDED_VON_NEUMANN_DELTAS;
+            for (int y = 0; y < height; y++) {
+                int row = boundaryMode.resolve(y + deltas[1][i], height);
+                neighborRows[i][y] = row < 0 ? -1 : row * width;
             }
         }
-
-        for (int i = 0; i < height * width; i++) {
-            initNeighborhood(i, deltas);
+        NeighborhoodWiring wiring = new NeighborhoodWiring(
+                cells.toArray(new Cell[0]), width, neighborColumns, neighborRows, 0, height);
+        if (width * height < PARALLEL_WIRING_THRESHOLD) {
+            wiring.wireRows();
+        } else {
+            ForkJoinPool.commonPool().invoke(wiring);
         }
     }
 
@@ -73,14 +89,18 @@ public abstract class AbstractRectangularWraparoundAutomata implements CellularA
         if (initialStates.size() != width * height) {
             throw new IllegalArgumentException("Provided states list doesn't match automata grid size");
         }
+        StatisticsAccumulator accumulator = new StatisticsAccumulator();
         for (int i = 0; i < width * height; i++) {
-            cells.get(i).setAlive(initialStates.get(i));
+            boolean state = initialStates.get(i);
+            cells.get(i).setAlive(state);
+            accumulator.record(i % width, i / width, state, state);
         }
+        publishStatistics(accumulator);
     }
 
     @Override
     public final List<Boolean> getCurrentState() {
-        List<Boolean> states = new ArrayList<>();
+        List<Boolean> states = new ArrayList<>(cells.size());
         for (Cell cell : cells) {
             states.add(cell.isAlive());
         }
@@ -92,6 +112,107 @@ public abstract class AbstractRectangularWraparoundAutomata implements CellularA
         return Arrays.asList(width, height);
     }
 
+    @Override
+    public AutomataStatistics getStatistics() {
+        AutomataStatistics current = statistics;
+        if (current == null) {
+            StatisticsAccumulator accumulator = new StatisticsAccumulator();
+            for (int i = 0; i < cells.size(); i++) {
+                boolean state = cells.get(i).isAlive();
+                accumulator.record(i % width, i / width, state, state);
+            }
+            current = accumulator.toStatistics();
+            statistics = current;
+        }
+        return current;
+    }
+
+    @Override
+    public boolean isCellAlive(int index) {
+        if (index < 0 || index >= cells.size()) {
+            throw new IllegalArgumentException("Cell index is out of bounds");
+        }
+        return cells.get(index).isAlive();
+    }
+
+    @Override
+    public void copyStates(int fromIndex, int toIndex, boolean[] target, int targetOffset) {
+        if (fromIndex < 0 || toIndex > cells.size() || fromIndex > toIndex) {
+            throw new IllegalArgumentException("Cell index range is out of bounds");
+        }
+        for (int i = fromIndex; i < toIndex; i++) {
+            target[targetOffset++] = cells.get(i).isAlive();
+        }
+    }
+
+    /**
+     * Вычисляет новое состояние клеток с индексами из заданного диапазона
+     *
+     * @param fromIndex - индекс первой клетки
+     * @param toIndex   - индекс, следующий за последней клеткой
+     */
+    final void calculateStates(int fromIndex, int toIndex) {
+        for (int i = fromIndex; i < toIndex; i++) {
+            cells.get(i).calculateNextState();
+        }
+    }
+
+    /**
+     * Обновляет состояние клеток с индексами из заданного диапазона, попутно собирая статистику
+     *
+     * @param fromIndex   - индекс первой клетки
+     * @param toIndex     - индекс, следующий за последней клеткой
+     * @param accumulator - накопитель статистики потока, выполняющего обновление
+     */
+    final void updateStates(int fromIndex, int toIndex, StatisticsAccumulator accumulator) {
+        int x = fromIndex % Math.max(width, 1);
+        int y = fromIndex / Math.max(width, 1);
+        for (int i = fromIndex; i < toIndex; i++) {
+            Cell cell = cells.get(i);
+            boolean wasAlive = cell.isAlive();
+            cell.updateState();
+            accumulator.record(x, y, wasAlive, cell.isAlive());
+            if (++x == width) {
+                x = 0;
+                y++;
+            }
+        }
+    }
+
+    /**
+     * Вычисляет новое состояние клеток одной плитки поля
+     *
+     * @param tiles - разбиение поля на плитки
+     * @param tile  - номер плитки
+     */
+    final void calculateTile(TilePartition tiles, int tile) {
+        for (int y = tiles.getTop(tile); y < tiles.getBottom(tile); y++) {
+            calculateStates(y * width + tiles.getLeft(tile), y * width + tiles.getRight(tile));
+        }
+    }
+
+    /**
+     * Обновляет состояние клеток одной плитки поля, попутно собирая статистику
+     *
+     * @param tiles       - разбиение поля на плитки
+     * @param tile        - номер плитки
+     * @param accumulator - накопитель статистики потока, выполняющего обновление
+     */
+    final void updateTile(TilePartition tiles, int tile, StatisticsAccumulator accumulator) {
+        for (int y = tiles.getTop(tile); y < tiles.getBottom(tile); y++) {
+            updateStates(y * width + tiles.getLeft(tile), y * width + tiles.getRight(tile), accumulator);
+        }
+    }
+
+    /**
+     * Публикует статистику нового поколения, собранную при обновлении
+     *
+     * @param accumulator - итоговый накопитель статистики шага
+     */
+    final void publishStatistics(StatisticsAccumulator accumulator) {
+        statistics = accumulator.toStatistics();
+    }
+
     /**
      * Возвращает клетку с указанными координатами по отношению к данной
      *
@@ -106,29 +227,120 @@ public abstract class AbstractRectangularWraparoundAutomata implements CellularA
         }
         int ownX = ownIndex % width;
         int ownY = ownIndex / width;
-        int neighborX = (ownX + deltaX) % width;
-        if (neighborX < 0) {
-            neighborX = width + neighborX;
-        }
-        int neighborY = (ownY + deltaY) % height;
-        if (neighborY < 0) {
-            neighborY = height + neighborY;
+        int neighborX = boundaryMode.resolve(ownX + deltaX, width);
+        int neighborY = boundaryMode.resolve(ownY + deltaY, height);
+        if (neighborX < 0 || neighborY < 0) {
+            return DEAD_CELL;
         }
         return cells.get(neighborY * width + neighborX);
     }
 
     /**
-     * Задает данной клетке ее соседей, определяемых заданными смещениями
-     *
-     * @param ownIndex - индекс исходной клетки
-     * @param deltas   - двумерный массив смещений: первое измерение - количество соседей,
-     *                 второе = 2: смещения по Х и по Y соответственно.
+     * Класс задачи для Fork-Join pool, задающей соседей клеткам в полосе строк поля.
+     * Индексы соседей берутся из заранее вычисленных таблиц столбцов и строк с уже обработанными краями,
+     * общих для всех задач, поэтому деления по модулю для каждой клетки не требуется.
+     * Отрицательный индекс в таблице означает всегда мертвую клетку за краем поля
      */
-    private void initNeighborhood(int ownIndex, int[][] deltas) {
-        List<Cell> neighborhood = new ArrayList<>();
-        for (int i = 0; i < deltas[0].length; i++) {
-            neighborhood.add(getNeighbor(ownIndex, deltas[0][i], deltas[1][i]));
+    private static class NeighborhoodWiring extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final static int THRESHOLD = 4096;
+        private final Cell[] cells;
+        private final int width;
+        private final int[][] neighborColumns;
+        private final int[][] neighborRows;
+        private final int fromRow;
+        private final int toRow;
+
+        /**
+         * Создает новую задачу для заданной полосы строк
+         *
+         * @param cells           - все клетки поля
+         * @param width           - ширина поля
+         * @param neighborColumns - для каждого соседа и каждого столбца - столбец соседа или -1
+         * @param neighborRows    - для каждого соседа и каждой строки - индекс начала строки соседа или -1
+         * @param fromRow         - первая строка полосы
+         * @param toRow           - строка, следующая за последней строкой полосы
+         */
+        NeighborhoodWiring(
+                Cell[] cells, int width, int[][] neighborColumns, int[][] neighborRows,
+                int fromRow, int toRow) {
+            this.cells = cells;
+            this.width = width;
+            this.neighborColumns = neighborColumns;
+            this.neighborRows = neighborRows;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        /**
+         * Либо задает соседей клеткам полосы напрямую, либо разбивает полосу пополам,
+         * порождая новые две задачи, если полоса слишком велика
+         */
+        @Override
+        protected void compute() {
+            if ((toRow - fromRow) * width < THRESHOLD || toRow - fromRow < 2) {
+                wireRows();
+            } else {
+                int middle = (fromRow + toRow) / 2;
+                NeighborhoodWiring top = new NeighborhoodWiring(
+                        cells, width, neighborColumns, neighborRows, fromRow, middle);
+                NeighborhoodWiring bottom = new NeighborhoodWiring(
+                        cells, width, neighborColumns, neighborRows, middle, toRow);
+                top.fork();
+                bottom.fork();
+                bottom.join();
+                top.join();
+            }
+        }
+
+        /**
+         * Задает соседей клеткам полосы в текущем потоке. Каждая клетка получает собственный массив соседей:
+         * наследники {@link AbstractCell} забирают его без копирования, остальным клеткам он передается списком
+         */
+        void wireRows() {
+            for (int y = fromRow; y < toRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    Cell[] neighbors = new Cell[neighborColumns.length];
+                    for (int i = 0; i < neighbors.length; i++) {
+                        int row = neighborRows[i][y];
+                        int column = neighborColumns[i][x];
+                        neighbors[i] = row < 0 || column < 0 ? DEAD_CELL : cells[row + column];
+                    }
+                    Cell cell = cells[y * width + x];
+                    if (cell instanceof AbstractCell) {
+                        ((AbstractCell) cell).adoptNeighborhood(neighbors);
+                    } else {
+                        cell.setNeighborhood(Arrays.asList(neighbors));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Клетка за краем поля в режиме {@link BoundaryMode#DEAD}: всегда мертва и не обновляется
+     */
+    private static class DeadCell implements Cell {
+
+        @Override
+        public void calculateNextState() {
+        }
+
+        @Override
+        public void updateState() {
+        }
+
+        @Override
+        public boolean isAlive() {
+            return false;
+        }
+
+        @Override
+        public void setAlive(boolean isAlive) {
+        }
+
+        @Override
+        public void setNeighborhood(List<Cell> neighborhood) {
         }
-        cells.get(ownIndex).setNeighborhood(neighborhood);
     }
 }
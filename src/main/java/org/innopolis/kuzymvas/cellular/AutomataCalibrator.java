@@ -0,0 +1,230 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.CellFactory;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Калибровщик, выбирающий реализацию автомата для конкретного поля на конкретной машине.
+ * Каждая реализация-кандидат (однопоточная, многопоточная с разным числом потоков,
+ * Fork-Join с разными размерами задач, вне кучи) несколько шагов обновляет само начальное поле,
+ * и выбирается та, у которой шаг быстрее. Решение сохраняется в файл свойств под ключом,
+ * составленным из профиля оборудования, свертки списка кандидатов и класса поля (порядок числа клеток, плотность),
+ * так что последующие запуски с похожими полями калибровку пропускают, а появление нового кандидата
+ * делает старые решения недействительными.
+ */
+public class AutomataCalibrator {
+
+    private static final int WARMUP_STEPS = 2;
+    private static final int MEASURED_STEPS = 3;
+    private static final int[][] FORK_THRESHOLDS = {
+            {ForkJoinRWAutomata.DEFAULT_PREPARE_THRESHOLD, ForkJoinRWAutomata.DEFAULT_UPDATE_THRESHOLD},
+            {256, 512},
+            {2048, 4096}
+    };
+    private static final int DENSITY_BUCKETS = 10;
+    private static final long ABANDON_FACTOR = 3;
+
+    private final File cacheFile;
+    private final CellFactory factory;
+    private final LifeRule rule;
+    private final NeighborhoodType neighborhoodType;
+    private final int cores;
+
+    /**
+     * Создает новый калибровщик для числа ядер текущей машины
+     *
+     * @param cacheFile        - файл свойств с сохраненными решениями; создается при первом сохранении
+     * @param factory          - фабрика клеток для автоматов на объектах
+     * @param rule             - то же правило в виде масок для автомата вне кучи или null, чтобы его не рассматривать
+     * @param neighborhoodType - тип локального окружения клетки
+     */
+    public AutomataCalibrator(
+            File cacheFile, CellFactory factory, LifeRule rule, NeighborhoodType neighborhoodType) {
+        this(cacheFile, factory, rule, neighborhoodType, Runtime.getRuntime().availableProcessors());
+    }
+
+    AutomataCalibrator(
+            File cacheFile, CellFactory factory, LifeRule rule, NeighborhoodType neighborhoodType, int cores) {
+        this.cacheFile = cacheFile;
+        this.factory = factory;
+        this.rule = rule;
+        this.neighborhoodType = neighborhoodType;
+        this.cores = cores;
+    }
+
+    /**
+     * Возвращает сохраненное решение для поля такого класса или, если его нет, калибрует и сохраняет новое
+     *
+     * @param width         - ширина поля
+     * @param height        - высота поля
+     * @param initialStates - начальное состояние поля
+     * @return - выбранная реализация
+     */
+    public EngineChoice choose(int width, int height, List<Boolean> initialStates) {
+        String key = profileKey(width, height, initialStates);
+        Properties cache = loadCache();
+        String cached = cache.getProperty(key);
+        if (cached != null) {
+            try {
+                return EngineChoice.decode(cached);
+            } catch (IllegalArgumentException ignored) {
+                // Испорченная запись просто перекалибровывается
+            }
+        }
+        EngineChoice choice = calibrate(width, height, initialStates);
+        cache.setProperty(key, choice.encode());
+        storeCache(cache);
+        return choice;
+    }
+
+    /**
+     * Измеряет всех кандидатов на заданном поле и возвращает самого быстрого
+     *
+     * @param width         - ширина поля
+     * @param height        - высота поля
+     * @param initialStates - начальное состояние поля
+     * @return - самая быстрая реализация
+     */
+    EngineChoice calibrate(int width, int height, List<Boolean> initialStates) {
+        EngineChoice best = null;
+        long bestTime = Long.MAX_VALUE;
+        for (EngineChoice candidate : candidates()) {
+            long time = measure(candidate, width, height, initialStates, bestTime);
+            if (time < bestTime) {
+                best = candidate;
+                bestTime = time;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Возвращает кандидатов для текущего числа ядер
+     *
+     * @return - список реализаций-кандидатов
+     */
+    List<EngineChoice> candidates() {
+        List<EngineChoice> candidates = new ArrayList<>();
+        candidates.add(new EngineChoice(EngineChoice.Engine.SINGLE, 1, 0, 0));
+        int defaultThreads = Math.max(cores, 2);
+        candidates.add(new EngineChoice(EngineChoice.Engine.MULTI, defaultThreads, 0, 0));
+        if (2 * cores > defaultThreads) {
+            candidates.add(new EngineChoice(EngineChoice.Engine.MULTI, 2 * cores, 0, 0));
+        }
+        for (int[] thresholds : FORK_THRESHOLDS) {
+            candidates.add(new EngineChoice(EngineChoice.Engine.FORK, 1, thresholds[0], thresholds[1]));
+        }
+        if (rule != null) {
+            candidates.add(new EngineChoice(EngineChoice.Engine.OFF_HEAP, 1, 0, 0));
+            if (neighborhoodType == NeighborhoodType.MOORE) {
+                candidates.add(new EngineChoice(EngineChoice.Engine.BLOCK_LOOKUP, 1, 0, 0));
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Измеряет лучшее время шага кандидата после прогрева. Измерение прекращается досрочно,
+     * если измеренный после прогрева шаг кандидата явно медленнее уже найденного лучшего
+     *
+     * @param candidate     - измеряемая реализация
+     * @param width         - ширина поля
+     * @param height        - высота поля
+     * @param initialStates - начальное состояние поля
+     * @param bestTime      - лучшее время шага среди уже измеренных кандидатов в наносекундах
+     * @return - лучшее время шага кандидата в наносекундах
+     */
+    private long measure(
+            EngineChoice candidate, int width, int height, List<Boolean> initialStates, long bestTime) {
+        try (CellularAutomata automata = candidate.create(width, height, factory, rule, neighborhoodType)) {
+            automata.initAutomata(initialStates);
+            long time = Long.MAX_VALUE;
+            for (int step = 0; step < WARMUP_STEPS + MEASURED_STEPS; step++) {
+                long start = System.nanoTime();
+                automata.updateAutomata();
+                long elapsed = System.nanoTime() - start;
+                if (step < WARMUP_STEPS) {
+                    continue;
+                }
+                time = Math.min(time, elapsed);
+                if (bestTime != Long.MAX_VALUE && elapsed / ABANDON_FACTOR > bestTime) {
+                    return elapsed;
+                }
+            }
+            return time;
+        }
+    }
+
+    /**
+     * Возвращает ключ решения: профиль оборудования, свертку списка кандидатов и класс поля
+     *
+     * @param width         - ширина поля
+     * @param height        - высота поля
+     * @param initialStates - начальное состояние поля
+     * @return - ключ для файла свойств
+     */
+    String profileKey(int width, int height, List<Boolean> initialStates) {
+        long cells = (long) width * height;
+        int alive = 0;
+        for (Boolean state : initialStates) {
+            if (state) {
+                alive++;
+            }
+        }
+        int density = cells == 0 ? 0 : (int) (alive * (long) DENSITY_BUCKETS / cells);
+        int sizeClass = Long.SIZE - 1 - Long.numberOfLeadingZeros(Math.max(cells, 1));
+        return String.format(Locale.ROOT, "cores%d.%s.java%s.%s.candidates%08x.cells2^%d.density%d",
+                             cores, System.getProperty("os.arch"), System.getProperty("java.specification.version"),
+                             neighborhoodType.name().toLowerCase(Locale.ROOT), candidatesDigest(),
+                             sizeClass, density);
+    }
+
+    /**
+     * Сворачивает записи всех кандидатов в одно число, чтобы решения, принятые среди другого набора
+     * реализаций, не использовались повторно
+     *
+     * @return - свертка списка кандидатов
+     */
+    private int candidatesDigest() {
+        StringBuilder encoded = new StringBuilder();
+        for (EngineChoice candidate : candidates()) {
+            encoded.append(candidate.encode()).append(';');
+        }
+        return encoded.toString().hashCode();
+    }
+
+    private Properties loadCache() {
+        Properties cache = new Properties();
+        if (cacheFile.isFile()) {
+            try (InputStream in = new FileInputStream(cacheFile)) {
+                cache.load(in);
+            } catch (IOException | IllegalArgumentException ignored) {
+                // Нечитаемый кэш равносилен пустому
+            }
+        }
+        return cache;
+    }
+
+    private void storeCache(Properties cache) {
+        File directory = cacheFile.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+        try (OutputStream out = new FileOutputStream(cacheFile)) {
+            cache.store(out, "Automata engine calibration results");
+        } catch (IOException ignored) {
+            // Без сохранения следующий запуск просто откалибрует заново
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.innopolis.kuzymvas.cellular;
+
+import java.util.Arrays;
+
+/**
+ * Статистика поколения клеточного автомата: число живых клеток, число рождений и смертей
+ * по сравнению с предыдущим поколением и ограничивающий живые клетки прямоугольник (параллелепипед).
+ * Автоматы собирают ее попутно с обновлением, без отдельного прохода по полю.
+ */
+public final class AutomataStatistics {
+
+    private final long population;
+    private final long births;
+    private final long deaths;
+    private final int[] minCoordinates;
+    private final int[] maxCoordinates;
+
+    /**
+     * Создает новую статистику
+     *
+     * @param population     - число живых клеток
+     * @param births         - число клеток, оживших на последнем шаге
+     * @param deaths         - число клеток, умерших на последнем шаге
+     * @param minCoordinates - минимальные координаты живых клеток по каждому измерению
+     * @param maxCoordinates - максимальные координаты живых клеток по каждому измерению
+     */
+    public AutomataStatistics(long population, long births, long deaths, int[] minCoordinates, int[] maxCoordinates) {
+        if (minCoordinates.length != maxCoordinates.length) {
+            throw new IllegalArgumentException("Bounding box corners should have the same number of dimensions");
+        }
+        this.population = population;
+        this.births = births;
+        this.deaths = deaths;
+        this.minCoordinates = minCoordinates.clone();
+        this.maxCoordinates = maxCoordinates.clone();
+    }
+
+    public long getPopulation() {
+        return population;
+    }
+
+    public long getBirths() {
+        return births;
+    }
+
+    public long getDeaths() {
+        return deaths;
+    }
+
+    /**
+     * Возвращает минимальную координату живых клеток вдоль измерения
+     *
+     * @param dimension - номер измерения, в порядке {@link CellularAutomata#getDimensions()}
+     * @return - минимальная координата или -1, если живых клеток нет
+     */
+    public int getMinCoordinate(int dimension) {
+        return population == 0 ? -1 : minCoordinates[dimension];
+    }
+
+    /**
+     * Возвращает максимальную координату живых клеток вдоль измерения
+     *
+     * @param dimension - номер измерения, в порядке {@link CellularAutomata#getDimensions()}
+     * @return - максимальная координата или -1, если живых клеток нет
+     */
+    public int getMaxCoordinate(int dimension) {
+        return population == 0 ? -1 : maxCoordinates[dimension];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AutomataStatistics)) {
+            return false;
+        }
+        AutomataStatistics other = (AutomataStatistics) o;
+        if (population != other.population || births != other.births || deaths != other.deaths) {
+            return false;
+        }
+        return population == 0 || (Arrays.equals(minCoordinates, other.minCoordinates)
+                && Arrays.equals(maxCoordinates, other.maxCoordinates));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(population);
+        result = 31 * result + Long.hashCode(births);
+        result = 31 * result + Long.hashCode(deaths);
+        if (population != 0) {
+            result = 31 * result + Arrays.hashCode(minCoordinates);
+            result = 31 * result + Arrays.hashCode(maxCoordinates);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "population=" + population + ", births=" + births + ", deaths=" + deaths
+                + (population == 0 ? ", empty"
+                : ", box=" + Arrays.toString(minCoordinates) + ".." + Arrays.toString(maxCoordinates));
+    }
+}
@@ -0,0 +1,505 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.Life3DRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Класс трехмерного клеточного автомата на замкнутом поле-параллелепипеде с окружением по Муру (26 клеток)
+ * или по Вон Нейману (6 клеток). Клетки хранятся по биту: строка вдоль X упакована в массив long,
+ * клетка (x, y, z) - бит x mod 64 слова x / 64 строки (y, z). Числа соседей считаются сразу для 64 клеток
+ * побитовыми сумматорами: для окружения по Муру сначала в каждой строке плоскости складываются
+ * клетка и ее соседи по X, затем для каждой строки плоскости - суммы трех соседних строк, и, наконец,
+ * суммы квадратов 3x3 трех соседних плоскостей. Суммы плоскостей вычисляются один раз на плоскость
+ * и переиспользуются тремя плоскостями результата.
+ * Поле делится по Z на слои, которые разбирают участники {@link WorkerPool}; каждый участник
+ * держит свои буферы сумм плоскостей и свою статистику, так что шаг ничего не выделяет.
+ * Индекс клетки в списках состояний - (z * height + y) * width + x
+ */
+public class BitPacked3DRWAutomata implements CellularAutomata {
+
+    private static final int WORD_BITS = Long.SIZE;
+    private static final int ROW_SUM_BITS = 2;
+    private static final int PLANE_SUM_BITS = 4;
+
+    private final int width;
+    private final int height;
+    private final int depth;
+    private final int words;
+    private final int lastBit;
+    private final long lastWordMask;
+    private final boolean moore;
+    private final int[] birthCounts;
+    private final int[] survivalCounts;
+    private final WorkerPool pool;
+    private final boolean ownsPool;
+    private final SlabWorker[] workers;
+    private final int slabCount;
+    private final AtomicInteger nextSlab = new AtomicInteger();
+    private final AtomicInteger nextParticipant = new AtomicInteger();
+    private volatile boolean closed;
+    private long[] current;
+    private long[] next;
+    private AutomataStatistics statistics;
+
+    /**
+     * Создает новый однопоточный автомат
+     *
+     * @param width            - размер поля по X
+     * @param height           - размер поля по Y
+     * @param depth            - размер поля по Z
+     * @param rule             - правило обновления клеток
+     * @param neighborhoodType - тип окружения: MOORE - 26 клеток вокруг, VON_NEUMANN - 6 ортогональных клеток
+     */
+    public BitPacked3DRWAutomata(
+            int width, int height, int depth, Life3DRule rule, NeighborhoodType neighborhoodType) {
+        this(width, height, depth, rule, neighborhoodType, null, false);
+    }
+
+    /**
+     * Создает новый автомат со своим пулом потоков
+     *
+     * @param width            - размер поля по X
+     * @param height           - размер поля по Y
+     * @param depth            - размер поля по Z
+     * @param rule             - правило обновления клеток
+     * @param neighborhoodType - тип окружения: MOORE - 26 клеток вокруг, VON_NEUMANN - 6 ортогональных клеток
+     * @param threadsNumber    - число потоков, обновляющих поле, включая вызывающий
+     */
+    public BitPacked3DRWAutomata(
+            int width, int height, int depth, Life3DRule rule, NeighborhoodType neighborhoodType,
+            int threadsNumber) {
+        this(width, height, depth, rule, neighborhoodType,
+             threadsNumber > 1 ? new WorkerPool(threadsNumber) : null, true);
+    }
+
+    /**
+     * Создает новый автомат, выполняющий шаги в общем пуле потоков. Пул после закрытия автомата остается открытым
+     *
+     * @param width            - размер поля по X
+     * @param height           - размер поля по Y
+     * @param depth            - размер поля по Z
+     * @param rule             - правило обновления клеток
+     * @param neighborhoodType - тип окружения: MOORE - 26 клеток вокруг, VON_NEUMANN - 6 ортогональных клеток
+     * @param pool             - пул потоков
+     */
+    public BitPacked3DRWAutomata(
+            int width, int height, int depth, Life3DRule rule, NeighborhoodType neighborhoodType,
+            WorkerPool pool) {
+        this(width, height, depth, rule, neighborhoodType, pool, false);
+    }
+
+    private BitPacked3DRWAutomata(
+            int width, int height, int depth, Life3DRule rule, NeighborhoodType neighborhoodType,
+            WorkerPool pool, boolean ownsPool) {
+        if (width <= 0 || height <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("Automata grid dimensions should be positive");
+        }
+        if (neighborhoodType != NeighborhoodType.MOORE && neighborhoodType != NeighborhoodType.VON_NEUMANN) {
+            throw new IllegalArgumentException("Only Moore and von Neumann neighborhoods are supported in 3D");
+        }
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.words = (width + WORD_BITS - 1) / WORD_BITS;
+        this.lastBit = (width - 1) % WORD_BITS;
+        this.lastWordMask = -1L >>> (WORD_BITS - 1 - lastBit);
+        this.moore = neighborhoodType == NeighborhoodType.MOORE;
+        this.birthCounts = counts(rule.getBirthMask(), 0);
+        // Сумма окружения по Муру включает саму клетку, так что живая клетка с n соседями дает сумму n + 1
+        this.survivalCounts = counts(rule.getSurvivalMask(), moore ? 1 : 0);
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        int participants = pool == null ? 1 : pool.getParallelism();
+        this.slabCount = Math.min(depth, participants);
+        this.workers = new SlabWorker[participants];
+        for (int i = 0; i < participants; i++) {
+            workers[i] = new SlabWorker();
+        }
+        long cells = (long) words * height * depth;
+        if (cells > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Automata grid is too large");
+        }
+        this.current = new long[(int) cells];
+        this.next = new long[current.length];
+        this.statistics = new AutomataStatistics(0, 0, 0, new int[3], new int[3]);
+    }
+
+    private static int[] counts(int mask, int shift) {
+        int[] counts = new int[Integer.bitCount(mask)];
+        int i = 0;
+        for (int count = 0; count <= Life3DRule.MAX_NEIGHBORS; count++) {
+            if ((mask & (1 << count)) != 0) {
+                counts[i++] = count + shift;
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public void initAutomata(List<Boolean> initialStates) {
+        if (initialStates.size() != width * height * depth) {
+            throw new IllegalArgumentException("Provided states list doesn't match automata grid size");
+        }
+        Arrays.fill(current, 0);
+        SlabWorker worker = workers[0];
+        worker.reset();
+        int index = 0;
+        for (int z = 0; z < depth; z++) {
+            for (int y = 0; y < height; y++) {
+                int row = rowOffset(y, z);
+                for (int x = 0; x < width; x++) {
+                    if (initialStates.get(index++)) {
+                        current[row + x / WORD_BITS] |= 1L << (x % WORD_BITS);
+                    }
+                }
+                for (int k = 0; k < words; k++) {
+                    worker.record(current[row + k], current[row + k], k, y, z);
+                }
+            }
+        }
+        statistics = worker.toStatistics();
+    }
+
+    @Override
+    public void updateAutomata() {
+        if (closed) {
+            throw new IllegalStateException("Automata is closed");
+        }
+        nextSlab.set(0);
+        nextParticipant.set(0);
+        for (SlabWorker worker : workers) {
+            worker.reset();
+        }
+        if (pool == null) {
+            updateSlabs();
+        } else {
+            pool.invoke(this::updateSlabs);
+        }
+        SlabWorker total = workers[0];
+        for (int i = 1; i < workers.length; i++) {
+            total.merge(workers[i]);
+        }
+        statistics = total.toStatistics();
+        long[] swap = current;
+        current = next;
+        next = swap;
+    }
+
+    /**
+     * Участник шага: разбирает слои по одному из общего счетчика
+     */
+    private void updateSlabs() {
+        SlabWorker worker = workers[nextParticipant.getAndIncrement()];
+        for (int slab = nextSlab.getAndIncrement(); slab < slabCount; slab = nextSlab.getAndIncrement()) {
+            int fromZ = (int) ((long) depth * slab / slabCount);
+            int toZ = (int) ((long) depth * (slab + 1) / slabCount);
+            if (moore) {
+                worker.updateMooreSlab(fromZ, toZ);
+            } else {
+                worker.updateVonNeumannSlab(fromZ, toZ);
+            }
+        }
+    }
+
+    @Override
+    public List<Boolean> getCurrentState() {
+        List<Boolean> states = new ArrayList<>(width * height * depth);
+        for (int i = 0; i < width * height * depth; i++) {
+            states.add(cell(i));
+        }
+        return states;
+    }
+
+    @Override
+    public List<Integer> getDimensions() {
+        return Arrays.asList(width, height, depth);
+    }
+
+    @Override
+    public AutomataStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public boolean isCellAlive(int index) {
+        if (index < 0 || index >= width * height * depth) {
+            throw new IllegalArgumentException("Cell index is out of bounds");
+        }
+        return cell(index);
+    }
+
+    @Override
+    public void copyStates(int fromIndex, int toIndex, boolean[] target, int targetOffset) {
+        if (fromIndex < 0 || toIndex > width * height * depth || fromIndex > toIndex) {
+            throw new IllegalArgumentException("Cell index range is out of bounds");
+        }
+        for (int i = fromIndex; i < toIndex; i++) {
+            target[targetOffset++] = cell(i);
+        }
+    }
+
+    /**
+     * Закрывает автомат; собственный пул потоков автомата останавливается, общий остается открытым
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (ownsPool && pool != null) {
+            pool.close();
+        }
+    }
+
+    private boolean cell(int index) {
+        int x = index % width;
+        int row = index / width;
+        return (current[row * words + x / WORD_BITS] & (1L << (x % WORD_BITS))) != 0;
+    }
+
+    private int rowOffset(int y, int z) {
+        return (z * height + y) * words;
+    }
+
+    private int wrap(int coordinate, int size) {
+        return coordinate < 0 ? coordinate + size : coordinate >= size ? coordinate - size : coordinate;
+    }
+
+    /**
+     * Слово строки, сдвинутое так, что бит x содержит клетку x - 1 (соседа с запада), с замыканием по X
+     */
+    private long west(long[] cells, int row, int k) {
+        long carry = k == 0 ? (cells[row + words - 1] >>> lastBit) & 1 : cells[row + k - 1] >>> (WORD_BITS - 1);
+        return cells[row + k] << 1 | carry;
+    }
+
+    /**
+     * Слово строки, сдвинутое так, что бит x содержит клетку x + 1 (соседа с востока), с замыканием по X
+     */
+    private long east(long[] cells, int row, int k) {
+        long carry = k == words - 1 ? (cells[row] & 1) << lastBit : (cells[row + k + 1] & 1) << (WORD_BITS - 1);
+        return cells[row + k] >>> 1 | carry;
+    }
+
+    private static long majority(long a, long b, long c) {
+        return (a & b) | (c & (a | b));
+    }
+
+    /**
+     * Маска клеток, побитовая сумма которых равна заданному числу
+     */
+    private static long equalTo(long b0, long b1, long b2, long b3, long b4, int value) {
+        return ((value & 1) != 0 ? b0 : ~b0)
+                & ((value & 2) != 0 ? b1 : ~b1)
+                & ((value & 4) != 0 ? b2 : ~b2)
+                & ((value & 8) != 0 ? b3 : ~b3)
+                & ((value & 16) != 0 ? b4 : ~b4);
+    }
+
+    /**
+     * Применяет правило к 64 клеткам по побитовой сумме их окружения
+     */
+    private long applyRule(long self, long b0, long b1, long b2, long b3, long b4) {
+        long born = 0;
+        for (int count : birthCounts) {
+            born |= equalTo(b0, b1, b2, b3, b4, count);
+        }
+        long survived = 0;
+        for (int count : survivalCounts) {
+            survived |= equalTo(b0, b1, b2, b3, b4, count);
+        }
+        return (~self & born) | (self & survived);
+    }
+
+    /**
+     * Участник шага: буферы сумм и статистика слоев, которые он обновил
+     */
+    private final class SlabWorker {
+        // Суммы строк текущей плоскости: по 2 бита-слоя на слово
+        private final long[] rowSums = new long[height * words * ROW_SUM_BITS];
+        // Кольцо сумм квадратов 3x3 трех плоскостей: по 4 бита-слоя на слово
+        private final long[][] planeSums = new long[3][height * words * PLANE_SUM_BITS];
+        private final int[] min = new int[3];
+        private final int[] max = new int[3];
+        private long population;
+        private long births;
+        private long deaths;
+
+        void reset() {
+            population = 0;
+            births = 0;
+            deaths = 0;
+            Arrays.fill(min, Integer.MAX_VALUE);
+            Arrays.fill(max, Integer.MIN_VALUE);
+        }
+
+        void record(long before, long after, int k, int y, int z) {
+            population += Long.bitCount(after);
+            births += Long.bitCount(after & ~before);
+            deaths += Long.bitCount(before & ~after);
+            if (after != 0) {
+                min[0] = Math.min(min[0], k * WORD_BITS + Long.numberOfTrailingZeros(after));
+                max[0] = Math.max(max[0], k * WORD_BITS + WORD_BITS - 1 - Long.numberOfLeadingZeros(after));
+                min[1] = Math.min(min[1], y);
+                max[1] = Math.max(max[1], y);
+                min[2] = Math.min(min[2], z);
+                max[2] = Math.max(max[2], z);
+            }
+        }
+
+        void merge(SlabWorker other) {
+            population += other.population;
+            births += other.births;
+            deaths += other.deaths;
+            for (int i = 0; i < min.length; i++) {
+                min[i] = Math.min(min[i], other.min[i]);
+                max[i] = Math.max(max[i], other.max[i]);
+            }
+        }
+
+        AutomataStatistics toStatistics() {
+            return new AutomataStatistics(population, births, deaths, min, max);
+        }
+
+        /**
+         * Обновляет плоскости [fromZ, toZ) с окружением по Муру. Суммы плоскостей z - 1 и z
+         * берутся с прошлой итерации, и для каждой плоскости вычисляется только сумма плоскости z + 1
+         */
+        void updateMooreSlab(int fromZ, int toZ) {
+            computePlaneSum(wrap(fromZ - 1, depth), planeSums[0]);
+            computePlaneSum(fromZ, planeSums[1]);
+            for (int z = fromZ; z < toZ; z++) {
+                long[] below = planeSums[(z - fromZ) % 3];
+                long[] middle = planeSums[(z - fromZ + 1) % 3];
+                long[] above = planeSums[(z - fromZ + 2) % 3];
+                computePlaneSum(wrap(z + 1, depth), above);
+                for (int y = 0; y < height; y++) {
+                    int row = rowOffset(y, z);
+                    for (int k = 0; k < words; k++) {
+                        int sum = (y * words + k) * PLANE_SUM_BITS;
+                        long p0 = below[sum];
+                        long p1 = below[sum + 1];
+                        long p2 = below[sum + 2];
+                        long p3 = below[sum + 3];
+                        long q0 = middle[sum];
+                        long q1 = middle[sum + 1];
+                        long q2 = middle[sum + 2];
+                        long q3 = middle[sum + 3];
+                        long r0 = above[sum];
+                        long r1 = above[sum + 1];
+                        long r2 = above[sum + 2];
+                        long r3 = above[sum + 3];
+                        // p + q, до 18 - пять бит
+                        long s0 = p0 ^ q0;
+                        long carry = p0 & q0;
+                        long s1 = p1 ^ q1 ^ carry;
+                        carry = majority(p1, q1, carry);
+                        long s2 = p2 ^ q2 ^ carry;
+                        carry = majority(p2, q2, carry);
+                        long s3 = p3 ^ q3 ^ carry;
+                        long s4 = majority(p3, q3, carry);
+                        // + r, до 27 - пять бит
+                        long t0 = s0 ^ r0;
+                        carry = s0 & r0;
+                        long t1 = s1 ^ r1 ^ carry;
+                        carry = majority(s1, r1, carry);
+                        long t2 = s2 ^ r2 ^ carry;
+                        carry = majority(s2, r2, carry);
+                        long t3 = s3 ^ r3 ^ carry;
+                        carry = majority(s3, r3, carry);
+                        long t4 = s4 ^ carry;
+                        long self = current[row + k];
+                        long result = applyRule(self, t0, t1, t2, t3, t4);
+                        if (k == words - 1) {
+                            result &= lastWordMask;
+                        }
+                        next[row + k] = result;
+                        record(self, result, k, y, z);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Вычисляет для каждой клетки плоскости число живых клеток в квадрате 3x3 вокруг нее, включая ее саму
+         *
+         * @param z      - номер плоскости
+         * @param target - буфер сумм плоскости
+         */
+        private void computePlaneSum(int z, long[] target) {
+            for (int y = 0; y < height; y++) {
+                int row = rowOffset(y, z);
+                for (int k = 0; k < words; k++) {
+                    long west = west(current, row, k);
+                    long self = current[row + k];
+                    long east = east(current, row, k);
+                    int sum = (y * words + k) * ROW_SUM_BITS;
+                    rowSums[sum] = west ^ self ^ east;
+                    rowSums[sum + 1] = majority(west, self, east);
+                }
+            }
+            for (int y = 0; y < height; y++) {
+                int up = wrap(y - 1, height) * words;
+                int down = wrap(y + 1, height) * words;
+                for (int k = 0; k < words; k++) {
+                    int a = (up + k) * ROW_SUM_BITS;
+                    int b = (y * words + k) * ROW_SUM_BITS;
+                    int c = (down + k) * ROW_SUM_BITS;
+                    long a0 = rowSums[a];
+                    long b0 = rowSums[b];
+                    long c0 = rowSums[c];
+                    long a1 = rowSums[a + 1];
+                    long b1 = rowSums[b + 1];
+                    long c1 = rowSums[c + 1];
+                    // Три двухбитных числа, до 9 - четыре бита
+                    long carry = majority(a0, b0, c0);
+                    long twos = a1 ^ b1 ^ c1;
+                    long fours = majority(a1, b1, c1);
+                    long extraFours = twos & carry;
+                    int sum = (y * words + k) * PLANE_SUM_BITS;
+                    target[sum] = a0 ^ b0 ^ c0;
+                    target[sum + 1] = twos ^ carry;
+                    target[sum + 2] = fours ^ extraFours;
+                    target[sum + 3] = fours & extraFours;
+                }
+            }
+        }
+
+        /**
+         * Обновляет плоскости [fromZ, toZ) с окружением по Вон Нейману: шесть соседей складываются напрямую
+         */
+        void updateVonNeumannSlab(int fromZ, int toZ) {
+            for (int z = fromZ; z < toZ; z++) {
+                for (int y = 0; y < height; y++) {
+                    int row = rowOffset(y, z);
+                    int north = rowOffset(wrap(y - 1, height), z);
+                    int south = rowOffset(wrap(y + 1, height), z);
+                    int below = rowOffset(y, wrap(z - 1, depth));
+                    int above = rowOffset(y, wrap(z + 1, depth));
+                    for (int k = 0; k < words; k++) {
+                        long west = west(current, row, k);
+                        long east = east(current, row, k);
+                        long n = current[north + k];
+                        long s = current[south + k];
+                        long d = current[below + k];
+                        long u = current[above + k];
+                        long a0 = west ^ east ^ n;
+                        long a1 = majority(west, east, n);
+                        long b0 = s ^ d ^ u;
+                        long b1 = majority(s, d, u);
+                        long carry = a0 & b0;
+                        long self = current[row + k];
+                        long result = applyRule(self, a0 ^ b0, a1 ^ b1 ^ carry, majority(a1, b1, carry), 0, 0);
+                        if (k == words - 1) {
+                            result &= lastWordMask;
+                        }
+                        next[row + k] = result;
+                        record(self, result, k, y, z);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Класс однопоточного клеточного автомата с окружением по Муру, вычисляющего поколение блоками 2x2 клетки.
+ * Для каждого блока шестнадцать клеток квадрата 4x4 вокруг него собираются в 16-битный индекс
+ * таблицы на 65536 записей, которая сразу дает новые состояния четырех клеток блока - без ветвлений
+ * и без подсчета соседей для каждой клетки. Таблица строится один раз из того же правила {@link LifeRule},
+ * которым пользуется {@link org.innopolis.kuzymvas.cellular.cells.ConwayCell}.
+ * Индексы собираются из четырехбитных столбцов, которые вычисляются один раз на полосу из двух строк.
+ * Вокруг поля есть рамка теневых клеток шириной в одну клетку, заполняемая согласно режиму обработки краев.
+ * Если ширина или высота поля нечетна, последний столбец или строка считаются поклеточно.
+ */
+public class BlockLookupRWAutomata implements ChangeFeedAutomata {
+
+    private static final int BLOCK_SIDE = 2;
+    private static final int WINDOW_SIDE = 4;
+    private static final int TOP_LEFT = 1;
+    private static final int TOP_RIGHT = 1 << 1;
+    private static final int BOTTOM_LEFT = 1 << 2;
+    private static final int BOTTOM_RIGHT = 1 << 3;
+
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final LifeRule rule;
+    private final BoundaryMode boundaryMode;
+    private final byte[] table;
+    private final int[] columns;
+    private StatisticsAccumulator accumulator = new StatisticsAccumulator();
+    private ChangeCollector changes;
+    private CellChangePublisher changePublisher;
+    private long generation;
+    private AutomataStatistics statistics;
+    private byte[] current;
+    private byte[] next;
+
+    /**
+     * Создает новый автомат на замкнутом поле
+     *
+     * @param width  - ширина поля
+     * @param height - высота поля
+     * @param rule   - правило обновления клеток
+     */
+    public BlockLookupRWAutomata(int width, int height, LifeRule rule) {
+        this(width, height, rule, BoundaryMode.WRAPAROUND);
+    }
+
+    /**
+     * Создает новый автомат с заданным режимом обработки краев поля
+     *
+     * @param width        - ширина поля
+     * @param height       - высота поля
+     * @param rule         - правило обновления клеток
+     * @param boundaryMode - режим обработки краев поля
+     */
+    public BlockLookupRWAutomata(int width, int height, LifeRule rule, BoundaryMode boundaryMode) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Automata grid dimensions can't be negative");
+        }
+        this.width = width;
+        this.height = height;
+        this.stride = width + 2;
+        this.rule = rule;
+        this.boundaryMode = boundaryMode;
+        this.table = buildTable(rule);
+        this.columns = new int[stride];
+        this.current = new byte[stride * (height + 2)];
+        this.next = new byte[current.length];
+        this.statistics = accumulator.toStatistics();
+    }
+
+    /**
+     * Строит таблицу переходов. Бит (4 * столбец + строка) индекса - состояние клетки квадрата 4x4,
+     * биты результата - новые состояния клеток центрального блока: левой верхней, правой верхней,
+     * левой нижней и правой нижней
+     *
+     * @param rule - правило обновления клеток
+     * @return - таблица на 65536 записей
+     */
+    static byte[] buildTable(LifeRule rule) {
+        byte[] table = new byte[1 << (WINDOW_SIDE * WINDOW_SIDE)];
+        for (int window = 0; window < table.length; window++) {
+            int result = 0;
+            for (int row = 1; row <= BLOCK_SIDE; row++) {
+                for (int column = 1; column <= BLOCK_SIDE; column++) {
+                    int count = 0;
+                    for (int dy = -1; dy <= 1; dy++) {
+                        for (int dx = -1; dx <= 1; dx++) {
+                            if (dx != 0 || dy != 0) {
+                                count += windowCell(window, column + dx, row + dy);
+                            }
+                        }
+                    }
+                    if (rule.nextState(windowCell(window, column, row) == 1, count)) {
+                        result |= 1 << ((row - 1) * BLOCK_SIDE + column - 1);
+                    }
+                }
+            }
+            table[window] = (byte) result;
+        }
+        return table;
+    }
+
+    private static int windowCell(int window, int column, int row) {
+        return (window >>> (WINDOW_SIDE * column + row)) & 1;
+    }
+
+    @Override
+    public void initAutomata(List<Boolean> initialStates) {
+        if (initialStates.size() != width * height) {
+            throw new IllegalArgumentException("Provided states list doesn't match automata grid size");
+        }
+        accumulator.reset();
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean state = initialStates.get(i++);
+                current[(y + 1) * stride + x + 1] = (byte) (state ? 1 : 0);
+                accumulator.record(x, y, state, state);
+            }
+        }
+        statistics = accumulator.toStatistics();
+        generation = 0;
+    }
+
+    /**
+     * Заполняет поле случайными клетками прямо в хранилище автомата, без промежуточного списка состояний.
+     * Клетки вытягиваются из генератора построчно, так что одинаковый генератор дает одинаковое поле
+     *
+     * @param random  - источник случайных чисел
+     * @param density - вероятность того, что клетка жива, от 0 до 1
+     */
+    public void initRandom(SplittableRandom random, double density) {
+        if (density < 0 || density > 1) {
+            throw new IllegalArgumentException("Density should be between 0 and 1");
+        }
+        accumulator.reset();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean state = random.nextDouble() < density;
+                current[(y + 1) * stride + x + 1] = (byte) (state ? 1 : 0);
+                accumulator.record(x, y, state, state);
+            }
+        }
+        statistics = accumulator.toStatistics();
+        generation = 0;
+    }
+
+    /**
+     * Вычисляет 64-битную свертку текущего поля для поиска повторяющихся поколений.
+     * Теневая рамка в свертку не входит
+     *
+     * @return - свертка поля
+     */
+    long stateHash() {
+        long hash = width * 31L + height;
+        for (int y = 1; y <= height; y++) {
+            int row = y * stride;
+            for (int x = 1; x <= width; x++) {
+                hash = (hash ^ current[row + x]) * 0x100000001B3L;
+            }
+            hash = (hash ^ (hash >>> 29)) * 0x9E3779B97F4A7C15L;
+        }
+        return hash ^ (hash >>> 32);
+    }
+
+    @Override
+    public void updateAutomata() {
+        if (width == 0 || height == 0) {
+            return;
+        }
+        refreshGhostCells();
+        accumulator.reset();
+        int evenWidth = width - width % BLOCK_SIDE;
+        int evenHeight = height - height % BLOCK_SIDE;
+        for (int y = 0; y < evenHeight; y += BLOCK_SIDE) {
+            int top = y * stride;
+            for (int x = 0; x < stride; x++) {
+                columns[x] = current[top + x]
+                        | current[top + stride + x] << 1
+                        | current[top + 2 * stride + x] << 2
+                        | current[top + 3 * stride + x] << 3;
+            }
+            int upper = (y + 1) * stride + 1;
+            int lower = upper + stride;
+            for (int x = 0; x < evenWidth; x += BLOCK_SIDE) {
+                int window = columns[x]
+                        | columns[x + 1] << WINDOW_SIDE
+                        | columns[x + 2] << (2 * WINDOW_SIDE)
+                        | columns[x + 3] << (3 * WINDOW_SIDE);
+                int result = table[window];
+                next[upper + x] = (byte) (result & 1);
+                next[upper + x + 1] = (byte) ((result >>> 1) & 1);
+                next[lower + x] = (byte) ((result >>> 2) & 1);
+                next[lower + x + 1] = (byte) ((result >>> 3) & 1);
+                int previous = (window >>> 5) & 0b11 | ((window >>> 9) & 0b11) << 2;
+                previous = (previous & 0b1001) | (previous & 0b0010) << 1 | (previous & 0b0100) >>> 1;
+                recordBlock(x, y, previous, result);
+            }
+            if (evenWidth < width) {
+                updateCell(width - 1, y);
+                updateCell(width - 1, y + 1);
+            }
+        }
+        if (evenHeight < height) {
+            for (int x = 0; x < width; x++) {
+                updateCell(x, height - 1);
+            }
+        }
+        statistics = accumulator.toStatistics();
+        byte[] swap = current;
+        current = next;
+        next = swap;
+        generation++;
+        if (changePublisher != null) {
+            changePublisher.publish(changes.toDelta(generation));
+        }
+    }
+
+    @Override
+    public List<Boolean> getCurrentState() {
+        List<Boolean> states = new ArrayList<>(width * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                states.add(current[(y + 1) * stride + x + 1] != 0);
+            }
+        }
+        return states;
+    }
+
+    @Override
+    public List<Integer> getDimensions() {
+        return Arrays.asList(width, height);
+    }
+
+    @Override
+    public AutomataStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public void setChangePublisher(CellChangePublisher publisher) {
+        changePublisher = publisher;
+        changes = publisher == null ? null : new ChangeCollector(width);
+        accumulator = publisher == null ? new StatisticsAccumulator() : changes;
+    }
+
+    @Override
+    public boolean isCellAlive(int index) {
+        if (index < 0 || index >= width * height) {
+            throw new IllegalArgumentException("Cell index is out of bounds");
+        }
+        return current[(index / width + 1) * stride + index % width + 1] != 0;
+    }
+
+    @Override
+    public void copyStates(int fromIndex, int toIndex, boolean[] target, int targetOffset) {
+        if (fromIndex < 0 || toIndex > width * height || fromIndex > toIndex) {
+            throw new IllegalArgumentException("Cell index range is out of bounds");
+        }
+        for (int i = fromIndex; i < toIndex; i++) {
+            target[targetOffset++] = current[(i / width + 1) * stride + i % width + 1] != 0;
+        }
+    }
+
+    /**
+     * Учитывает в статистике блок 2x2
+     *
+     * @param x        - столбец левых клеток блока
+     * @param y        - строка верхних клеток блока
+     * @param previous - прежние состояния клеток блока в порядке битов результата таблицы
+     * @param result   - новые состояния клеток блока
+     */
+    private void recordBlock(int x, int y, int previous, int result) {
+        accumulator.population += Integer.bitCount(result);
+        accumulator.births += Integer.bitCount(result & ~previous);
+        accumulator.deaths += Integer.bitCount(previous & ~result);
+        if (changes != null && previous != result) {
+            for (int bit = 0; bit < BLOCK_SIDE * BLOCK_SIDE; bit++) {
+                int index = (y + (bit >>> 1)) * width + x + (bit & 1);
+                if ((result & ~previous & (1 << bit)) != 0) {
+                    changes.born(index);
+                } else if ((previous & ~result & (1 << bit)) != 0) {
+                    changes.died(index);
+                }
+            }
+        }
+        if ((result & (TOP_LEFT | TOP_RIGHT)) != 0) {
+            accumulator.includeColumns((result & TOP_LEFT) != 0 ? x : x + 1,
+                                       (result & TOP_RIGHT) != 0 ? x + 1 : x, y);
+        }
+        if ((result & (BOTTOM_LEFT | BOTTOM_RIGHT)) != 0) {
+            accumulator.includeColumns((result & BOTTOM_LEFT) != 0 ? x : x + 1,
+                                       (result & BOTTOM_RIGHT) != 0 ? x + 1 : x, y + 1);
+        }
+    }
+
+    /**
+     * Вычисляет одну клетку напрямую, для последнего столбца или строки поля нечетного размера
+     *
+     * @param x - столбец клетки
+     * @param y - строка клетки
+     */
+    private void updateCell(int x, int y) {
+        int cell = (y + 1) * stride + x + 1;
+        int count = current[cell - stride - 1] + current[cell - stride] + current[cell - stride + 1]
+                + current[cell - 1] + current[cell + 1]
+                + current[cell + stride - 1] + current[cell + stride] + current[cell + stride + 1];
+        boolean alive = current[cell] != 0;
+        boolean state = rule.nextState(alive, count);
+        next[cell] = (byte) (state ? 1 : 0);
+        accumulator.record(x, y, alive, state);
+    }
+
+    /**
+     * Заполняет теневую рамку: сначала теневые столбцы строк поля, затем теневые строки целиком
+     */
+    private void refreshGhostCells() {
+        int left = boundaryMode.resolve(-1, width);
+        int right = boundaryMode.resolve(width, width);
+        for (int y = 1; y <= height; y++) {
+            int row = y * stride;
+            current[row] = left < 0 ? 0 : current[row + left + 1];
+            current[row + width + 1] = right < 0 ? 0 : current[row + right + 1];
+        }
+        refreshGhostRow(0, boundaryMode.resolve(-1, height));
+        refreshGhostRow(height + 1, boundaryMode.resolve(height, height));
+    }
+
+    private void refreshGhostRow(int row, int sourceRow) {
+        if (sourceRow < 0) {
+            Arrays.fill(current, row * stride, (row + 1) * stride, (byte) 0);
+        } else {
+            System.arraycopy(current, (sourceRow + 1) * stride, current, row * stride, stride);
+        }
+    }
+}
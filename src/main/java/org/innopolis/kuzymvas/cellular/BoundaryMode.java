@@ -0,0 +1,36 @@
+package org.innopolis.kuzymvas.cellular;
+
+/**
+ * Режим обработки краев поля: что видит клетка на месте соседа, выходящего за границу поля.
+ * - DEAD - за границей всегда мертвые клетки
+ * - REFLECTIVE - поле зеркально отражается относительно края, включая крайнюю клетку
+ * (сосед слева от столбца 0 - сам столбец 0, следующий - столбец 1 и т.д.)
+ * - WRAPAROUND - поле замкнуто в тор: за правым краем продолжается левый, за нижним - верхний
+ */
+public enum BoundaryMode {
+    DEAD,
+    REFLECTIVE,
+    WRAPAROUND;
+
+    /**
+     * Переводит координату, возможно выходящую за пределы поля, в координату клетки поля
+     *
+     * @param coordinate - координата вдоль одной оси
+     * @param size       - размер поля вдоль этой оси
+     * @return - координата клетки поля или -1, если на этом месте всегда мертвая клетка
+     */
+    public int resolve(int coordinate, int size) {
+        switch (this) {
+            case DEAD: {
+                return coordinate >= 0 && coordinate < size ? coordinate : -1;
+            }
+            case REFLECTIVE: {
+                int mirrored = Math.floorMod(coordinate, 2 * size);
+                return mirrored < size ? mirrored : 2 * size - 1 - mirrored;
+            }
+            default: {
+                return Math.floorMod(coordinate, size);
+            }
+        }
+    }
+}
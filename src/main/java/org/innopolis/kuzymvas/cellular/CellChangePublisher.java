@@ -0,0 +1,216 @@
+package org.innopolis.kuzymvas.cellular;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Издатель изменений поколений автомата. Автомат, которому задан издатель
+ * (см. {@link ChangeFeedAutomata#setChangePublisher}), собирает рождения и смерти прямо в цикле обновления
+ * и публикует их после каждого шага.
+ * Каждому подписчику элементы передаются только в пределах запрошенного им числа; неотправленные
+ * элементы ждут в очереди ограниченного размера, а когда она заполнена, шаг автомата ждет, пока подписчик
+ * не запросит следующие элементы или не отменит подписку. Элементы передаются в потоке автомата
+ * или в потоке, вызвавшем {@link Flow.Subscription#request}.
+ * Исключение из {@link Flow.Subscriber#onNext} не доходит до автомата: подписка отменяется,
+ * а подписчик получает его в {@link Flow.Subscriber#onError}. Если поток автомата прерван, пока он ждет
+ * места в очереди, подписка тоже отменяется с {@link InterruptedException} в onError, так что подписчик
+ * никогда не видит пропуска поколений, а флаг прерывания потока сохраняется
+ */
+public class CellChangePublisher implements Flow.Publisher<CellDelta>, AutoCloseable {
+
+    private final int capacity;
+    private final List<DeltaSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Object subscriptionLock = new Object();
+    private volatile boolean closed;
+
+    /**
+     * Создает нового издателя
+     *
+     * @param capacity - наибольшее число неотправленных элементов для одного подписчика
+     */
+    public CellChangePublisher(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Publisher needs room for at least one item per subscriber");
+        }
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CellDelta> subscriber) {
+        DeltaSubscription subscription = new DeltaSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        boolean alreadyClosed;
+        synchronized (subscriptionLock) {
+            alreadyClosed = closed;
+            if (!alreadyClosed) {
+                subscriptions.add(subscription);
+            }
+        }
+        if (alreadyClosed) {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * Передает изменения поколения всем подписчикам, дожидаясь места в очереди отстающих
+     *
+     * @param delta - изменения поколения
+     */
+    void publish(CellDelta delta) {
+        for (DeltaSubscription subscription : subscriptions) {
+            subscription.offer(delta);
+        }
+    }
+
+    /**
+     * Возвращает число подписчиков
+     *
+     * @return - число подписчиков, не отменивших подписку
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Завершает публикацию: подписчики получат {@link Flow.Subscriber#onComplete} после всех ожидающих элементов.
+     * Подписка, оформленная одновременно с закрытием, либо попадает в список до закрытия, либо сразу завершается
+     */
+    @Override
+    public void close() {
+        synchronized (subscriptionLock) {
+            closed = true;
+        }
+        for (DeltaSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+        subscriptions.clear();
+    }
+
+    /**
+     * Подписка с очередью неотправленных элементов и счетчиком запрошенных. Элементы передает поток,
+     * первым обнаруживший и элемент, и запрос; повторный вход из {@link Flow.Subscriber#onNext}
+     * не начинает вторую передачу, а только увеличивает запрос
+     */
+    private class DeltaSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super CellDelta> subscriber;
+        private final Queue<CellDelta> pending = new ArrayDeque<>();
+        private long demand;
+        private boolean delivering;
+        private boolean cancelled;
+        private boolean completed;
+        private boolean terminated;
+
+        DeltaSubscription(Flow.Subscriber<? super CellDelta> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Requested number of items should be positive"));
+                return;
+            }
+            synchronized (this) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            deliver();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                pending.clear();
+                notifyAll();
+            }
+            subscriptions.remove(this);
+        }
+
+        void offer(CellDelta delta) {
+            synchronized (this) {
+                while (pending.size() >= capacity && !cancelled) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        fail(e);
+                        return;
+                    }
+                }
+                if (cancelled) {
+                    return;
+                }
+                pending.add(delta);
+            }
+            deliver();
+        }
+
+        void complete() {
+            synchronized (this) {
+                completed = true;
+            }
+            deliver();
+        }
+
+        private void deliver() {
+            while (true) {
+                CellDelta next;
+                synchronized (this) {
+                    if (delivering || cancelled || terminated) {
+                        return;
+                    }
+                    if (pending.isEmpty() && completed) {
+                        terminated = true;
+                        next = null;
+                    } else if (demand == 0 || pending.isEmpty()) {
+                        return;
+                    } else {
+                        next = pending.poll();
+                        demand--;
+                        notifyAll();
+                    }
+                    delivering = true;
+                }
+                try {
+                    if (next == null) {
+                        subscriber.onComplete();
+                        return;
+                    }
+                    subscriber.onNext(next);
+                } catch (Throwable e) {
+                    fail(e);
+                    return;
+                } finally {
+                    synchronized (this) {
+                        delivering = false;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Отменяет подписку из-за ошибки и сообщает о ней подписчику. Исключение из самого onError
+         * уже некому передать, поэтому оно отбрасывается
+         *
+         * @param error - причина отмены
+         */
+        private void fail(Throwable error) {
+            synchronized (this) {
+                if (terminated) {
+                    return;
+                }
+                terminated = true;
+            }
+            cancel();
+            try {
+                subscriber.onError(error);
+            } catch (Throwable ignored) {
+                // Подписчик нарушил правила потока, и подписка уже отменена
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.innopolis.kuzymvas.cellular;
+
+/**
+ * Изменения одного поколения: индексы родившихся и умерших клеток в порядке
+ * {@link CellularAutomata#getCurrentState()}, по возрастанию. Набор изменений неизменяем: один и тот же объект
+ * получают все подписчики издателя, поэтому методы доступа возвращают копии массивов
+ */
+public final class CellDelta {
+
+    private final long generation;
+    private final int[] births;
+    private final int[] deaths;
+
+    /**
+     * Создает новый набор изменений
+     *
+     * @param generation - номер поколения, считая от инициализации автомата
+     * @param births     - индексы родившихся клеток
+     * @param deaths     - индексы умерших клеток
+     */
+    public CellDelta(long generation, int[] births, int[] deaths) {
+        this(generation, births.clone(), deaths.clone(), true);
+    }
+
+    /**
+     * Создает набор изменений из массивов, которые больше нигде не используются, не копируя их
+     *
+     * @param generation - номер поколения, считая от инициализации автомата
+     * @param births     - индексы родившихся клеток
+     * @param deaths     - индексы умерших клеток
+     * @param share      - признак того, что массивы передаются набору изменений без копирования
+     */
+    CellDelta(long generation, int[] births, int[] deaths, boolean share) {
+        this.generation = generation;
+        this.births = births;
+        this.deaths = deaths;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Возвращает индексы родившихся клеток
+     *
+     * @return - копия массива индексов, по возрастанию
+     */
+    public int[] getBirths() {
+        return births.clone();
+    }
+
+    /**
+     * Возвращает индексы умерших клеток
+     *
+     * @return - копия массива индексов, по возрастанию
+     */
+    public int[] getDeaths() {
+        return deaths.clone();
+    }
+
+    public int getBirthCount() {
+        return births.length;
+    }
+
+    public int getDeathCount() {
+        return deaths.length;
+    }
+}
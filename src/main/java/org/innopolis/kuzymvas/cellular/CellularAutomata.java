@@ -3,9 +3,10 @@ package org.innopolis.kuzymvas.cellular;
 import java.util.List;
 
 /**
- * Интерфейс клеточного автомата.
+ * Интерфейс клеточного автомата. Автоматы, которые держат потоки или файлы, освобождают их в {@link #close()};
+ * после закрытия автомат обновлять нельзя.
  */
-public interface CellularAutomata {
+public interface CellularAutomata extends AutoCloseable {
 
     /**
      * Задает начальные состояния клекто автомата. Размер списка должен соответствовать числу клеток в автомате
@@ -20,6 +21,21 @@ public interface CellularAutomata {
      */
     void updateAutomata();
 
+    /**
+     * Обновляет состояние автомата на заданное число шагов. Автоматы, которые умеют вычислять
+     * несколько поколений за один проход по полю, переопределяют этот метод
+     *
+     * @param steps - число шагов
+     */
+    default void updateAutomata(int steps) {
+        if (steps < 0) {
+            throw new IllegalArgumentException("Number of steps can't be negative");
+        }
+        for (int i = 0; i < steps; i++) {
+            updateAutomata();
+        }
+    }
+
     /**
      * Возвращает текущее состояние всех клеток автомата одномерным списком, полученным
      * последовательной конкатенцией вдоль всех измерений
@@ -34,4 +50,84 @@ public interface CellularAutomata {
      * @return - список размерностей автомата
      */
     List<Integer> getDimensions();
+
+    /**
+     * Возвращает статистику текущего поколения: число живых клеток, рождения и смерти на последнем шаге,
+     * ограничивающий живые клетки прямоугольник. Статистика собирается попутно с обновлением,
+     * поэтому запрос не требует прохода по полю
+     *
+     * @return - статистика текущего поколения
+     */
+    AutomataStatistics getStatistics();
+
+    /**
+     * Возвращает состояние одной клетки, не копируя остальное поле
+     *
+     * @param index - индекс клетки в порядке {@link #getCurrentState()}
+     * @return - true, если клетка жива
+     */
+    boolean isCellAlive(int index);
+
+    /**
+     * Копирует состояния непрерывного диапазона клеток в массив. Диапазон строк поля - это диапазон индексов
+     * от первой клетки первой строки до клетки, следующей за последней клеткой последней строки
+     *
+     * @param fromIndex    - индекс первой клетки в порядке {@link #getCurrentState()}
+     * @param toIndex      - индекс, следующий за последней клеткой
+     * @param target       - массив, в который копируются состояния
+     * @param targetOffset - позиция в массиве, с которой начинается запись
+     */
+    void copyStates(int fromIndex, int toIndex, boolean[] target, int targetOffset);
+
+    /**
+     * Возвращает состояния непрерывного диапазона клеток
+     *
+     * @param fromIndex - индекс первой клетки в порядке {@link #getCurrentState()}
+     * @param toIndex   - индекс, следующий за последней клеткой
+     * @return - массив состояний клеток диапазона
+     */
+    default boolean[] getStates(int fromIndex, int toIndex) {
+        if (fromIndex > toIndex) {
+            throw new IllegalArgumentException("Cell index range is reversed");
+        }
+        boolean[] states = new boolean[toIndex - fromIndex];
+        copyStates(fromIndex, toIndex, states, 0);
+        return states;
+    }
+
+    /**
+     * Возвращает состояния клеток прямоугольной области двумерного поля построчно.
+     * Читаются только строки области, а не все поле
+     *
+     * @param left         - столбец левого края области
+     * @param top          - строка верхнего края области
+     * @param regionWidth  - ширина области
+     * @param regionHeight - высота области
+     * @return - массив состояний клеток области длиной regionWidth * regionHeight
+     */
+    default boolean[] getRegion(int left, int top, int regionWidth, int regionHeight) {
+        List<Integer> dims = getDimensions();
+        if (dims.size() != 2) {
+            throw new IllegalArgumentException("Rectangular regions are only defined for 2D automatas");
+        }
+        int width = dims.get(0);
+        int height = dims.get(1);
+        if (left < 0 || top < 0 || regionWidth < 0 || regionHeight < 0
+                || left + regionWidth > width || top + regionHeight > height) {
+            throw new IllegalArgumentException("Region doesn't fit into automata grid");
+        }
+        boolean[] region = new boolean[regionWidth * regionHeight];
+        for (int y = 0; y < regionHeight; y++) {
+            int rowStart = (top + y) * width + left;
+            copyStates(rowStart, rowStart + regionWidth, region, y * regionWidth);
+        }
+        return region;
+    }
+
+    /**
+     * Освобождает ресурсы автомата. По умолчанию ничего не делает
+     */
+    @Override
+    default void close() {
+    }
 }
@@ -0,0 +1,98 @@
+package org.innopolis.kuzymvas.cellular;
+
+import java.util.Arrays;
+
+/**
+ * Накопитель статистики, попутно собирающий индексы родившихся и умерших клеток шага.
+ * Автомат, которому задан издатель изменений, подставляет его вместо обычного накопителя,
+ * поэтому изменения берутся из того же цикла обновления, что и статистика, без повторного сравнения полей.
+ * Многопоточные автоматы держат по накопителю на поток или часть поля и после шага собирают их изменения
+ * через {@link #append}; накопители потоков дополняются до размера строки кэша (см. {@link PaddedChangeCollector})
+ */
+class ChangeCollector extends StatisticsAccumulator {
+
+    private final int width;
+    private int[] births = new int[16];
+    private int[] deaths = new int[16];
+    private int birthCount;
+    private int deathCount;
+
+    /**
+     * Создает новый накопитель
+     *
+     * @param width - ширина поля, чтобы переводить координаты клетки в индекс
+     */
+    ChangeCollector(int width) {
+        this.width = width;
+    }
+
+    @Override
+    void reset() {
+        super.reset();
+        birthCount = 0;
+        deathCount = 0;
+    }
+
+    @Override
+    void record(int x, int y, boolean wasAlive, boolean isAlive) {
+        super.record(x, y, wasAlive, isAlive);
+        if (isAlive && !wasAlive) {
+            born(y * width + x);
+        } else if (wasAlive && !isAlive) {
+            died(y * width + x);
+        }
+    }
+
+    /**
+     * Добавляет родившуюся клетку, не меняя статистику
+     *
+     * @param index - индекс клетки
+     */
+    void born(int index) {
+        if (birthCount == births.length) {
+            births = Arrays.copyOf(births, 2 * birthCount);
+        }
+        births[birthCount++] = index;
+    }
+
+    /**
+     * Добавляет умершую клетку, не меняя статистику
+     *
+     * @param index - индекс клетки
+     */
+    void died(int index) {
+        if (deathCount == deaths.length) {
+            deaths = Arrays.copyOf(deaths, 2 * deathCount);
+        }
+        deaths[deathCount++] = index;
+    }
+
+    /**
+     * Добавляет изменения, собранные другим накопителем, не меняя статистику.
+     * Статистика многопоточного шага сливается отдельно, через {@link #merge}
+     *
+     * @param other - накопитель другого потока или другой части поля
+     */
+    void append(ChangeCollector other) {
+        for (int i = 0; i < other.birthCount; i++) {
+            born(other.births[i]);
+        }
+        for (int i = 0; i < other.deathCount; i++) {
+            died(other.deaths[i]);
+        }
+    }
+
+    /**
+     * Возвращает изменения шага с индексами по возрастанию
+     *
+     * @param generation - номер поколения
+     * @return - изменения поколения
+     */
+    CellDelta toDelta(long generation) {
+        int[] bornCells = Arrays.copyOf(births, birthCount);
+        int[] deadCells = Arrays.copyOf(deaths, deathCount);
+        Arrays.sort(bornCells);
+        Arrays.sort(deadCells);
+        return new CellDelta(generation, bornCells, deadCells, true);
+    }
+}
@@ -0,0 +1,17 @@
+package org.innopolis.kuzymvas.cellular;
+
+/**
+ * Клеточный автомат, умеющий публиковать рождения и смерти клеток каждого поколения.
+ * Изменения собираются прямо в цикле обновления вместе со статистикой, см. {@link CellChangePublisher}
+ */
+public interface ChangeFeedAutomata extends CellularAutomata {
+
+    /**
+     * Задает издателя изменений: после каждого шага автомат публикует в него рождения и смерти клеток,
+     * собранные в цикле обновления. Номер первого опубликованного поколения - 1, отсчет начинается заново
+     * при каждой инициализации автомата
+     *
+     * @param publisher - издатель изменений или null, чтобы перестать публиковать изменения
+     */
+    void setChangePublisher(CellChangePublisher publisher);
+}
@@ -0,0 +1,168 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.CellFactory;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+
+import java.util.Locale;
+
+/**
+ * Выбор реализации автомата и ее параметров: движок, число потоков и размеры задач Fork-Join.
+ * Может быть записан в строку и восстановлен из нее, чтобы результат калибровки можно было сохранить
+ */
+public final class EngineChoice {
+
+    /**
+     * Реализации автомата, между которыми делается выбор
+     */
+    public enum Engine {
+        SINGLE,
+        MULTI,
+        FORK,
+        OFF_HEAP,
+        BLOCK_LOOKUP
+    }
+
+    private final Engine engine;
+    private final int threads;
+    private final int prepareThreshold;
+    private final int updateThreshold;
+
+    /**
+     * Создает новый выбор реализации
+     *
+     * @param engine           - реализация автомата
+     * @param threads          - число потоков для многопоточного автомата, для остальных игнорируется
+     * @param prepareThreshold - размер задачи вычисления состояния для Fork-Join автомата
+     * @param updateThreshold  - размер задачи обновления состояния для Fork-Join автомата
+     */
+    public EngineChoice(Engine engine, int threads, int prepareThreshold, int updateThreshold) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Engine needs at least one thread");
+        }
+        this.engine = engine;
+        this.threads = threads;
+        this.prepareThreshold = prepareThreshold;
+        this.updateThreshold = updateThreshold;
+    }
+
+    /**
+     * Создает автомат согласно выбору
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param factory          - фабрика для клеток автоматов на объектах
+     * @param rule             - то же правило в виде масок для автомата вне кучи
+     * @param neighborhoodType - тип локального окружения клетки
+     * @return - новый автомат
+     */
+    public CellularAutomata create(
+            int width, int height, CellFactory factory, LifeRule rule, NeighborhoodType neighborhoodType) {
+        switch (engine) {
+            case SINGLE: {
+                return new SingleThreadRWAutomata(width, height, factory, neighborhoodType);
+            }
+            case MULTI: {
+                return new MultiThreadRWAutomata(width, height, factory, neighborhoodType, threads);
+            }
+            case FORK: {
+                return new ForkJoinRWAutomata(width, height, factory, neighborhoodType, BoundaryMode.WRAPAROUND,
+                                              prepareThreshold, updateThreshold);
+            }
+            case BLOCK_LOOKUP: {
+                return new BlockLookupRWAutomata(width, height, rule);
+            }
+            default: {
+                return new OffHeapRWAutomata(width, height, rule, neighborhoodType);
+            }
+        }
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getPrepareThreshold() {
+        return prepareThreshold;
+    }
+
+    public int getUpdateThreshold() {
+        return updateThreshold;
+    }
+
+    /**
+     * Записывает выбор в строку вида "fork,1,256,512"
+     *
+     * @return - строковое представление выбора
+     */
+    public String encode() {
+        return engine.name().toLowerCase(Locale.ROOT) + "," + threads + "," + prepareThreshold + "," + updateThreshold;
+    }
+
+    /**
+     * Восстанавливает выбор из строки, полученной {@link #encode()}
+     *
+     * @param encoded - строковое представление выбора
+     * @return - восстановленный выбор
+     */
+    public static EngineChoice decode(String encoded) {
+        String[] parts = encoded.split(",");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Malformed engine choice: " + encoded);
+        }
+        try {
+            return new EngineChoice(Engine.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)),
+                                    Integer.parseInt(parts[1].trim()),
+                                    Integer.parseInt(parts[2].trim()),
+                                    Integer.parseInt(parts[3].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed engine choice: " + encoded, e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EngineChoice)) {
+            return false;
+        }
+        EngineChoice other = (EngineChoice) o;
+        return engine == other.engine && threads == other.threads
+                && prepareThreshold == other.prepareThreshold && updateThreshold == other.updateThreshold;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = engine.hashCode();
+        result = 31 * result + threads;
+        result = 31 * result + prepareThreshold;
+        result = 31 * result + updateThreshold;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        switch (engine) {
+            case MULTI: {
+                return "multithread automata with " + threads + " threads";
+            }
+            case FORK: {
+                return "fork-join automata with task thresholds " + prepareThreshold + "/" + updateThreshold;
+            }
+            case OFF_HEAP: {
+                return "off-heap automata";
+            }
+            case BLOCK_LOOKUP: {
+                return "block lookup automata";
+            }
+            default: {
+                return "singlethread automata";
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.innopolis.kuzymvas.cellular;
+
+/**
+ * Интерфейсы потока с обратным давлением в том же виде, что и java.util.concurrent.Flow из Java 9.
+ * Проект собирается под Java 8, поэтому интерфейсы повторены здесь; их смысл и правила вызова
+ * такие же, что и у оригинала, и переход на java.util.concurrent.Flow сводится к замене импорта
+ */
+public final class Flow {
+
+    private Flow() {
+    }
+
+    /**
+     * Издатель элементов, которые получают подписчики
+     *
+     * @param <T> - тип элементов
+     */
+    public interface Publisher<T> {
+
+        /**
+         * Добавляет подписчика. Подписчик получает {@link Subscriber#onSubscribe}, а элементы - только после запроса
+         *
+         * @param subscriber - подписчик
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Получатель элементов издателя
+     *
+     * @param <T> - тип элементов
+     */
+    public interface Subscriber<T> {
+
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    /**
+     * Связь подписчика с издателем, через которую подписчик запрашивает элементы
+     */
+    public interface Subscription {
+
+        /**
+         * Разрешает издателю передать еще n элементов
+         *
+         * @param n - число элементов, должно быть положительным
+         */
+        void request(long n);
+
+        /**
+         * Отменяет подписку; после этого подписчик может получить еще несколько уже отправленных сигналов
+         */
+        void cancel();
+    }
+}
@@ -8,10 +8,34 @@ import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
 
 /**
- * Класс многопоточного клеточного автомата, использующего Fork-Join pool для расчетов, на замкнутом прямоугольном поле
+ * Класс многопоточного клеточного автомата, использующего Fork-Join pool для расчетов, на замкнутом прямоугольном поле.
+ * По умолчанию используется общий пул {@link ForkJoinPool#commonPool()}, но пул можно передать явно;
+ * своих потоков автомат не держит, и переданный пул после закрытия автомата остается открытым.
+ * Деревья задач строятся один раз при создании автомата и переиспользуются на каждом шаге,
+ * так что шаг не порождает новых задач. Если задан издатель изменений, листья дерева обновления собирают
+ * рождения и смерти своих диапазонов, а после шага их изменения сводятся в одно поколение обходом листьев.
+ * Размер деревьев ограничен: порог деления не опускается ниже cells / (parallelism * {@link #LEAVES_PER_THREAD}),
+ * так что на поток приходится не больше 2 * LEAVES_PER_THREAD листьев при любом размере поля.
+ * Чем меньше листьев, тем меньше задач в памяти и накладных расходов на запуск каждой из них на шаге,
+ * но тем грубее балансировка: поток, получивший лист последним, может закончить позже остальных
+ * на время обработки одного листа. Нескольких десятков листьев на поток для балансировки хватает
  */
 public class ForkJoinRWAutomata extends AbstractRectangularWraparoundAutomata {
 
+    public final static int DEFAULT_PREPARE_THRESHOLD = 50;
+    public final static int DEFAULT_UPDATE_THRESHOLD = 100;
+    /**
+     * Число листьев дерева задач на поток пула, на которое рассчитан наименьший порог деления
+     */
+    static final int LEAVES_PER_THREAD = 32;
+
+    private final ForkJoinPool pool;
+    private final CellPrepare prepareTask;
+    private final CellUpdate updateTask;
+    private ChangeCollector changes;
+    private CellChangePublisher changePublisher;
+    private long generation;
+
     /**
      * Создает новый автомат
      *
@@ -25,49 +49,170 @@ public class ForkJoinRWAutomata extends AbstractRectangularWraparoundAutomata {
     public ForkJoinRWAutomata(
             int width, int height, CellFactory factory,
             NeighborhoodType neighborhoodType) {
-        super(width, height, factory, neighborhoodType);
+        this(width, height, factory, neighborhoodType, BoundaryMode.WRAPAROUND);
+    }
+
+    /**
+     * Создает новый автомат с заданным режимом обработки краев поля
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param factory          - фабрика для клеток
+     * @param neighborhoodType - тип локального окружения клетки: по Муру - это 8 клеток вокруг,
+     *                         по Вон Нейману - 4 ортогональных клетки вокруг,
+     *                         Расширенный Вон Нейман - 8 ортогональных клеток, по две в каждую сторону
+     * @param boundaryMode     - режим обработки краев поля
+     */
+    public ForkJoinRWAutomata(
+            int width, int height, CellFactory factory,
+            NeighborhoodType neighborhoodType, BoundaryMode boundaryMode) {
+        this(width, height, factory, neighborhoodType, boundaryMode,
+             DEFAULT_PREPARE_THRESHOLD, DEFAULT_UPDATE_THRESHOLD);
+    }
+
+    /**
+     * Создает новый автомат с заданным режимом обработки краев поля и размерами задач
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param factory          - фабрика для клеток
+     * @param neighborhoodType - тип локального окружения клетки: по Муру - это 8 клеток вокруг,
+     *                         по Вон Нейману - 4 ортогональных клетки вокруг,
+     *                         Расширенный Вон Нейман - 8 ортогональных клеток, по две в каждую сторону
+     * @param boundaryMode     - режим обработки краев поля
+     * @param prepareThreshold - число клеток, начиная с которого задача вычисления состояния делится пополам
+     * @param updateThreshold  - число клеток, начиная с которого задача обновления состояния делится пополам
+     */
+    public ForkJoinRWAutomata(
+            int width, int height, CellFactory factory, NeighborhoodType neighborhoodType,
+            BoundaryMode boundaryMode, int prepareThreshold, int updateThreshold) {
+        this(width, height, factory, neighborhoodType, boundaryMode, prepareThreshold, updateThreshold,
+             ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Создает новый автомат, выполняющий задачи в заданном пуле
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param factory          - фабрика для клеток
+     * @param neighborhoodType - тип локального окружения клетки: по Муру - это 8 клеток вокруг,
+     *                         по Вон Нейману - 4 ортогональных клетки вокруг,
+     *                         Расширенный Вон Нейман - 8 ортогональных клеток, по две в каждую сторону
+     * @param boundaryMode     - режим обработки краев поля
+     * @param prepareThreshold - число клеток, начиная с которого задача вычисления состояния делится пополам;
+     *                         на больших полях порог увеличивается (см. {@link #boundedThreshold})
+     * @param updateThreshold  - число клеток, начиная с которого задача обновления состояния делится пополам;
+     *                         на больших полях порог увеличивается (см. {@link #boundedThreshold})
+     * @param pool             - пул для задач обновления
+     */
+    public ForkJoinRWAutomata(
+            int width, int height, CellFactory factory, NeighborhoodType neighborhoodType,
+            BoundaryMode boundaryMode, int prepareThreshold, int updateThreshold, ForkJoinPool pool) {
+        super(width, height, factory, neighborhoodType, boundaryMode);
+        if (prepareThreshold < 2 || updateThreshold < 2) {
+            throw new IllegalArgumentException("Fork-Join task thresholds should be at least 2 cells");
+        }
+        this.pool = pool;
+        int parallelism = pool.getParallelism();
+        this.prepareTask = new CellPrepare(
+                cells, 0, cells.size(), boundedThreshold(prepareThreshold, cells.size(), parallelism));
+        this.updateTask = new CellUpdate(
+                this, 0, cells.size(), boundedThreshold(updateThreshold, cells.size(), parallelism));
+    }
+
+    /**
+     * Возвращает порог деления задач, при котором дерево задач содержит не больше
+     * 2 * parallelism * {@link #LEAVES_PER_THREAD} листьев
+     *
+     * @param threshold   - заданный порог деления
+     * @param cellCount   - число клеток поля
+     * @param parallelism - число потоков пула
+     * @return - наибольший из заданного порога и cellCount / (parallelism * LEAVES_PER_THREAD)
+     */
+    static int boundedThreshold(int threshold, int cellCount, int parallelism) {
+        long leaves = (long) Math.max(parallelism, 1) * LEAVES_PER_THREAD;
+        return (int) Math.max(threshold, (cellCount + leaves - 1) / leaves);
+    }
+
+    @Override
+    public void initAutomata(List<Boolean> initialStates) {
+        super.initAutomata(initialStates);
+        generation = 0;
     }
 
     /**
      * Настоящее обновление выполняется в задачах типаа RecursiveAction на потоках Fork-Join pool.
-     * Этот метод лишь  последовательно запускает две фазы обновления, создаевая исходные две задачи
+     * Этот метод лишь  последовательно запускает две фазы обновления, заново запуская корни деревьев задач
      */
     @Override
     public void updateAutomata() {
-        CellPrepare cellPrepareTask = new CellPrepare(cells);
-        ForkJoinPool.commonPool().invoke(cellPrepareTask);
-        CellUpdate cellUpdateTask = new CellUpdate(cells);
-        ForkJoinPool.commonPool().invoke(cellUpdateTask);
+        prepareTask.reinitialize();
+        pool.invoke(prepareTask);
+        updateTask.reinitialize();
+        pool.invoke(updateTask);
+        publishStatistics(updateTask.accumulator);
+        generation++;
+        if (changePublisher != null) {
+            changes.reset();
+            updateTask.appendChanges(changes);
+            changePublisher.publish(changes.toDelta(generation));
+        }
+    }
+
+    @Override
+    public void setChangePublisher(CellChangePublisher publisher) {
+        changePublisher = publisher;
+        int width = getDimensions().get(0);
+        changes = publisher == null ? null : new ChangeCollector(width);
+        updateTask.collectChanges(width, publisher != null);
     }
 
     /**
      * Класс задачи для Fork-Join pool, выполняющей вычисление нового состояния клеток
      */
     static class CellPrepare extends RecursiveAction {
-        private final static int THRESHOLD = 50;
         private final List<Cell> cells;
+        private final int fromIndex;
+        private final int toIndex;
+        private final CellPrepare left;
+        private final CellPrepare right;
 
         /**
-         *  Создает новую задачу для заданного списка клеток
-         * @param cells - список клеток для вычисления нового состояния
+         * Создает новую задачу для заданного диапазона клеток вместе с поддеревом ее подзадач
+         *
+         * @param cells     - список клеток автомата
+         * @param fromIndex - индекс первой клетки
+         * @param toIndex   - индекс, следующий за последней клеткой
+         * @param threshold - размер диапазона, начиная с которого задача делится пополам
          */
-        public CellPrepare(List<Cell> cells) {
+        public CellPrepare(List<Cell> cells, int fromIndex, int toIndex, int threshold) {
             this.cells = cells;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            if (toIndex - fromIndex < threshold) {
+                left = null;
+                right = null;
+            } else {
+                int middle = (fromIndex + toIndex) >>> 1;
+                left = new CellPrepare(cells, fromIndex, middle, threshold);
+                right = new CellPrepare(cells, middle, toIndex, threshold);
+            }
         }
 
         /**
-         * Либо вычисляет новое состояние клеток напрямую, либо разбивает их список пополам,
-         * порождая новые две задачи, если список слишком велик
+         * Либо вычисляет новое состояние клеток напрямую, либо заново запускает две подзадачи,
+         * если диапазон был разбит пополам
          */
         @Override
         protected void compute() {
-            if (cells.size() < THRESHOLD) {
-                for (Cell cell : cells) {
-                    cell.calculateNextState();
+            if (left == null) {
+                for (int i = fromIndex; i < toIndex; i++) {
+                    cells.get(i).calculateNextState();
                 }
             } else {
-                CellPrepare left = new CellPrepare(cells.subList(0, cells.size() / 2));
-                CellPrepare right = new CellPrepare(cells.subList(cells.size() / 2, cells.size()));
+                left.reinitialize();
+                right.reinitialize();
                 left.fork();
                 right.fork();
                 right.join();
@@ -77,37 +222,85 @@ public class ForkJoinRWAutomata extends AbstractRectangularWraparoundAutomata {
     }
 
     /**
-     * Класс задачи для Fork-Join pool, выполняющей обновление состояния клеток
+     * Класс задачи для Fork-Join pool, выполняющей обновление состояния клеток и сбор статистики по ним
      */
     static class CellUpdate extends RecursiveAction {
-        private final static int THRESHOLD = 100;
-        private final List<Cell> cells;
+        private final AbstractRectangularWraparoundAutomata automata;
+        private final int fromIndex;
+        private final int toIndex;
+        private final CellUpdate left;
+        private final CellUpdate right;
+        private StatisticsAccumulator accumulator = new StatisticsAccumulator();
 
         /**
-         *  Создает новую задачу для заданного списка клеток
-         * @param cells - список клеток для обновления
+         *  Создает новую задачу для заданного диапазона клеток вместе с поддеревом ее подзадач
+         * @param automata  - автомат, клетки которого следует обновлять
+         * @param fromIndex - индекс первой клетки
+         * @param toIndex   - индекс, следующий за последней клеткой
+         * @param threshold - размер диапазона, начиная с которого задача делится пополам
          */
-        public CellUpdate(List<Cell> cells) {
-            this.cells = cells;
+        public CellUpdate(
+                AbstractRectangularWraparoundAutomata automata, int fromIndex, int toIndex, int threshold) {
+            this.automata = automata;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            if (toIndex - fromIndex < threshold) {
+                left = null;
+                right = null;
+            } else {
+                int middle = (fromIndex + toIndex) >>> 1;
+                left = new CellUpdate(automata, fromIndex, middle, threshold);
+                right = new CellUpdate(automata, middle, toIndex, threshold);
+            }
         }
 
         /**
-         * Либо обновляет состояние клеток напрямую, либо разбивает их список пополам,
-         * порождая новые две задачи, если список слишком велик
+         * Либо обновляет состояние клеток напрямую, либо заново запускает две подзадачи,
+         * если диапазон был разбит пополам. Статистика половин сливается после их завершения
          */
         @Override
         protected void compute() {
-            if (cells.size() < THRESHOLD) {
-                for (Cell cell : cells) {
-                    cell.updateState();
-                }
+            accumulator.reset();
+            if (left == null) {
+                automata.updateStates(fromIndex, toIndex, accumulator);
             } else {
-                CellUpdate left = new CellUpdate(cells.subList(0, cells.size() / 2));
-                CellUpdate right = new CellUpdate(cells.subList(cells.size() / 2, cells.size()));
+                left.reinitialize();
+                right.reinitialize();
                 left.fork();
                 right.fork();
                 right.join();
                 left.join();
+                accumulator.merge(left.accumulator);
+                accumulator.merge(right.accumulator);
+            }
+        }
+
+        /**
+         * Задает листьям поддерева накопители изменений или обычные накопители статистики
+         *
+         * @param width   - ширина поля
+         * @param collect - собирать ли изменения
+         */
+        void collectChanges(int width, boolean collect) {
+            if (left == null) {
+                accumulator = collect ? new ChangeCollector(width) : new StatisticsAccumulator();
+            } else {
+                left.collectChanges(width, collect);
+                right.collectChanges(width, collect);
+            }
+        }
+
+        /**
+         * Добавляет изменения, собранные листьями поддерева
+         *
+         * @param changes - накопитель изменений всего шага
+         */
+        void appendChanges(ChangeCollector changes) {
+            if (left == null) {
+                changes.append((ChangeCollector) accumulator);
+            } else {
+                left.appendChanges(changes);
+                right.appendChanges(changes);
             }
         }
     }
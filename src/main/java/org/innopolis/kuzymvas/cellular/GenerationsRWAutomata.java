@@ -0,0 +1,294 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.GenerationsRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Класс однопоточного многоцветного клеточного автомата семейства Generations на прямоугольном поле,
+ * по умолчанию замкнутом.
+ * Состояния клеток упакованы в массив long по 2 бита на клетку (до 4 состояний) или по 4 бита (до 16 состояний),
+ * так что поколение занимает в 2-4 раза меньше памяти, чем байт на клетку.
+ * Обновление идет построчно: в скользящем окне из 2 * radius + 1 строк, дополненных по краям теневыми клетками
+ * согласно режиму обработки краев, распаковывается только признак "жива",
+ * а новое состояние клетки берется из заранее построенной таблицы переходов по текущему состоянию и числу живых соседей.
+ * Живой считается клетка в состоянии 1, поэтому {@link #getCurrentState()} возвращает true только для таких клеток.
+ */
+public class GenerationsRWAutomata implements ChangeFeedAutomata {
+
+    private final int width;
+    private final int height;
+    private final int bitsPerCell;
+    private final long cellMask;
+    private final int wordsPerRow;
+    private final int pad;
+    private final BoundaryMode boundaryMode;
+    private final int[] deltaX;
+    private final int[] deltaY;
+    private final byte[] transitions;
+    private final int countsPerState;
+    private final byte[][] aliveWindow;
+    private final byte[][] neighborRows;
+    private final byte[] stateRow;
+    private long[] current;
+    private long[] next;
+    private StatisticsAccumulator accumulator = new StatisticsAccumulator();
+    private CellChangePublisher changePublisher;
+    private long generation;
+    private AutomataStatistics statistics;
+
+    /**
+     * Создает новый автомат
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param rule             - правило обновления клеток
+     * @param neighborhoodType - тип локального окружения клетки
+     */
+    public GenerationsRWAutomata(int width, int height, GenerationsRule rule, NeighborhoodType neighborhoodType) {
+        this(width, height, rule, neighborhoodType, BoundaryMode.WRAPAROUND);
+    }
+
+    /**
+     * Создает новый автомат с заданным режимом обработки краев поля
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param rule             - правило обновления клеток
+     * @param neighborhoodType - тип локального окружения клетки
+     * @param boundaryMode     - режим обработки краев поля
+     */
+    public GenerationsRWAutomata(
+            int width, int height, GenerationsRule rule,
+            NeighborhoodType neighborhoodType, BoundaryMode boundaryMode) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Automata grid dimensions can't be negative");
+        }
+        this.width = width;
+        this.height = height;
+        this.bitsPerCell = rule.getStateCount() <= 4 ? 2 : 4;
+        this.cellMask = (1L << bitsPerCell) - 1;
+        this.wordsPerRow = (width * bitsPerCell + Long.SIZE - 1) / Long.SIZE;
+        if ((long) wordsPerRow * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Automata grid is too large to be indexed");
+        }
+        this.current = new long[wordsPerRow * height];
+        this.next = new long[wordsPerRow * height];
+
+        int[][] deltas = neighborhoodType.getDeltas();
+        this.deltaX = deltas[0];
+        this.deltaY = deltas[1];
+        this.pad = neighborhoodType.getRadius();
+        this.boundaryMode = boundaryMode;
+        this.countsPerState = neighborhoodType.size() + 1;
+        this.transitions = new byte[rule.getStateCount() * countsPerState];
+        for (int state = 0; state < rule.getStateCount(); state++) {
+            for (int count = 0; count < countsPerState; count++) {
+                transitions[state * countsPerState + count] = (byte) rule.nextState(state, count);
+            }
+        }
+        this.aliveWindow = new byte[2 * pad + 1][width + 2 * pad];
+        this.neighborRows = new byte[deltaX.length][];
+        this.stateRow = new byte[width];
+    }
+
+    @Override
+    public void initAutomata(List<Boolean> initialStates) {
+        if (initialStates.size() != width * height) {
+            throw new IllegalArgumentException("Provided states list doesn't match automata grid size");
+        }
+        Arrays.fill(current, 0L);
+        accumulator.reset();
+        for (int i = 0; i < width * height; i++) {
+            boolean state = initialStates.get(i);
+            if (state) {
+                setState(current, i % width, i / width, 1);
+            }
+            accumulator.record(i % width, i / width, state, state);
+        }
+        statistics = accumulator.toStatistics();
+        generation = 0;
+    }
+
+    @Override
+    public void updateAutomata() {
+        if (width == 0 || height == 0) {
+            return;
+        }
+        accumulator.reset();
+        for (int dy = -pad; dy < pad; dy++) {
+            unpackAlive(boundaryMode.resolve(dy, height), aliveWindow[Math.floorMod(dy, aliveWindow.length)]);
+        }
+        for (int y = 0; y < height; y++) {
+            unpackAlive(boundaryMode.resolve(y + pad, height), aliveWindow[(y + pad) % aliveWindow.length]);
+            unpackStates(y);
+            for (int i = 0; i < deltaX.length; i++) {
+                neighborRows[i] = aliveWindow[Math.floorMod(y + deltaY[i], aliveWindow.length)];
+            }
+            int rowWord = y * wordsPerRow;
+            long word = 0;
+            int shift = 0;
+            for (int x = 0; x < width; x++) {
+                int count = 0;
+                for (int i = 0; i < deltaX.length; i++) {
+                    count += neighborRows[i][x + pad + deltaX[i]];
+                }
+                int state = transitions[stateRow[x] * countsPerState + count];
+                accumulator.record(x, y, stateRow[x] == 1, state == 1);
+                word |= (long) state << shift;
+                shift += bitsPerCell;
+                if (shift == Long.SIZE) {
+                    next[rowWord++] = word;
+                    word = 0;
+                    shift = 0;
+                }
+            }
+            if (shift != 0) {
+                next[rowWord] = word;
+            }
+        }
+        statistics = accumulator.toStatistics();
+        long[] swap = current;
+        current = next;
+        next = swap;
+        generation++;
+        if (changePublisher != null) {
+            changePublisher.publish(((ChangeCollector) accumulator).toDelta(generation));
+        }
+    }
+
+    @Override
+    public List<Boolean> getCurrentState() {
+        List<Boolean> states = new ArrayList<>(width * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                states.add(getState(current, x, y) == 1);
+            }
+        }
+        return states;
+    }
+
+    @Override
+    public List<Integer> getDimensions() {
+        return Arrays.asList(width, height);
+    }
+
+    /**
+     * Возвращает статистику текущего поколения. Живыми считаются только клетки в состоянии 1,
+     * угасающие клетки в статистику не входят
+     *
+     * @return - статистика текущего поколения
+     */
+    @Override
+    public AutomataStatistics getStatistics() {
+        if (statistics == null) {
+            accumulator.reset();
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    boolean state = getState(current, x, y) == 1;
+                    accumulator.record(x, y, state, state);
+                }
+            }
+            statistics = accumulator.toStatistics();
+        }
+        return statistics;
+    }
+
+    @Override
+    public void setChangePublisher(CellChangePublisher publisher) {
+        changePublisher = publisher;
+        accumulator = publisher == null ? new StatisticsAccumulator() : new ChangeCollector(width);
+    }
+
+    @Override
+    public boolean isCellAlive(int index) {
+        return getCellState(index) == 1;
+    }
+
+    @Override
+    public void copyStates(int fromIndex, int toIndex, boolean[] target, int targetOffset) {
+        if (fromIndex < 0 || toIndex > width * height || fromIndex > toIndex) {
+            throw new IllegalArgumentException("Cell index range is out of bounds");
+        }
+        for (int i = fromIndex; i < toIndex; i++) {
+            target[targetOffset++] = getState(current, i % width, i / width) == 1;
+        }
+    }
+
+    /**
+     * Возвращает полное состояние клетки
+     *
+     * @param index - индекс клетки в порядке строк
+     * @return - состояние клетки: 0 - мертва, 1 - жива, остальные - угасает
+     */
+    public int getCellState(int index) {
+        checkIndex(index);
+        return getState(current, index % width, index / width);
+    }
+
+    /**
+     * Задает полное состояние клетки
+     *
+     * @param index - индекс клетки в порядке строк
+     * @param state - состояние клетки: 0 - мертва, 1 - жива, остальные - угасает
+     */
+    public void setCellState(int index, int state) {
+        checkIndex(index);
+        if (state < 0 || state >= transitions.length / countsPerState) {
+            throw new IllegalArgumentException("Cell state is out of rule states range");
+        }
+        setState(current, index % width, index / width, state);
+        statistics = null;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= width * height) {
+            throw new IllegalArgumentException("Cell index is out of bounds");
+        }
+    }
+
+    private int getState(long[] grid, int x, int y) {
+        int bit = x * bitsPerCell;
+        return (int) ((grid[y * wordsPerRow + bit / Long.SIZE] >>> (bit % Long.SIZE)) & cellMask);
+    }
+
+    private void setState(long[] grid, int x, int y, int state) {
+        int bit = x * bitsPerCell;
+        int word = y * wordsPerRow + bit / Long.SIZE;
+        int shift = bit % Long.SIZE;
+        grid[word] = (grid[word] & ~(cellMask << shift)) | ((long) state << shift);
+    }
+
+    /**
+     * Распаковывает признаки "жива" для строки текущего поколения в строку окна,
+     * дополняя ее по краям теневыми клетками согласно режиму обработки краев
+     *
+     * @param y      - номер строки поля или -1 для строки всегда мертвых клеток за краем
+     * @param target - строка окна длиной width + 2 * pad
+     */
+    private void unpackAlive(int y, byte[] target) {
+        if (y < 0) {
+            Arrays.fill(target, (byte) 0);
+            return;
+        }
+        for (int x = 0; x < width; x++) {
+            target[x + pad] = (byte) (getState(current, x, y) == 1 ? 1 : 0);
+        }
+        for (int g = 0; g < pad; g++) {
+            target[g] = ghostAlive(target, boundaryMode.resolve(g - pad, width));
+            target[pad + width + g] = ghostAlive(target, boundaryMode.resolve(width + g, width));
+        }
+    }
+
+    private byte ghostAlive(byte[] row, int sourceColumn) {
+        return sourceColumn < 0 ? 0 : row[pad + sourceColumn];
+    }
+
+    private void unpackStates(int y) {
+        for (int x = 0; x < width; x++) {
+            stateRow[x] = (byte) getState(current, x, y);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.RangeRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Класс однопоточного клеточного автомата "Больше, чем жизнь" (Larger than Life) на замкнутом прямоугольном поле:
+ * окружение клетки - квадрат по Муру или ромб по Вон Нейману произвольного радиуса.
+ * Число живых клеток окружения считается за O(1) на клетку независимо от радиуса:
+ * - для окружения по Муру - скользящими суммами сначала вдоль строк, затем вдоль столбцов;
+ * - для окружения по Вон Нейману - скользящей вдоль строки суммой ромба, края которого
+ * берутся из префиксных сумм по диагоналям поля, дополненного по краям копиями клеток с противоположной стороны.
+ * Если окружение больше поля, клетки учитываются столько раз, сколько раз окружение накрывает их на торе.
+ */
+public class LargerThanLifeRWAutomata implements ChangeFeedAutomata {
+
+    private final int width;
+    private final int height;
+    private final int radius;
+    private final NeighborhoodType shape;
+    private final RangeRule rule;
+    private byte[] current;
+    private byte[] next;
+    private StatisticsAccumulator accumulator = new StatisticsAccumulator();
+    private CellChangePublisher changePublisher;
+    private long generation;
+    private AutomataStatistics statistics;
+
+    private int[] horizontalSums;
+    private int[] verticalWindow;
+    private int[] addedColumns;
+    private int[] removedColumns;
+    private int[] addedRows;
+    private int[] removedRows;
+
+    private int pad;
+    private int paddedWidth;
+    private int[] padded;
+    private int[] rowPrefixSums;
+    private int[] diagonalSums;
+    private int[] antiDiagonalSums;
+
+    /**
+     * Создает новый автомат
+     *
+     * @param width  - ширина поля
+     * @param height - высота поля
+     * @param rule   - правило обновления клеток
+     * @param shape  - форма окружения: MOORE - квадрат со стороной 2 * radius + 1,
+     *               VON_NEUMANN - ромб из клеток, манхэттенское расстояние до которых не больше radius
+     * @param radius - радиус окружения, не меньше 1
+     */
+    public LargerThanLifeRWAutomata(int width, int height, RangeRule rule, NeighborhoodType shape, int radius) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Automata grid dimensions can't be negative");
+        }
+        if (radius < 1) {
+            throw new IllegalArgumentException("Neighborhood radius should be at least 1");
+        }
+        this.width = width;
+        this.height = height;
+        this.radius = radius;
+        this.shape = shape;
+        this.rule = rule;
+        this.current = new byte[width * height];
+        this.next = new byte[width * height];
+        this.statistics = accumulator.toStatistics();
+        if (width == 0 || height == 0) {
+            return;
+        }
+        switch (shape) {
+            case MOORE: {
+                initMoore();
+                break;
+            }
+            case VON_NEUMANN: {
+                initVonNeumann();
+                break;
+            }
+            default: {
+                throw new IllegalArgumentException("Only Moore and Von Neumann neighborhoods can have a radius");
+            }
+        }
+    }
+
+    @Override
+    public void initAutomata(List<Boolean> initialStates) {
+        if (initialStates.size() != width * height) {
+            throw new IllegalArgumentException("Provided states list doesn't match automata grid size");
+        }
+        accumulator.reset();
+        for (int i = 0; i < width * height; i++) {
+            boolean state = initialStates.get(i);
+            current[i] = (byte) (state ? 1 : 0);
+            accumulator.record(i % width, i / width, state, state);
+        }
+        statistics = accumulator.toStatistics();
+        generation = 0;
+    }
+
+    @Override
+    public void updateAutomata() {
+        if (width == 0 || height == 0) {
+            return;
+        }
+        accumulator.reset();
+        if (shape == NeighborhoodType.MOORE) {
+            updateMoore();
+        } else {
+            updateVonNeumann();
+        }
+        statistics = accumulator.toStatistics();
+        byte[] swap = current;
+        current = next;
+        next = swap;
+        generation++;
+        if (changePublisher != null) {
+            changePublisher.publish(((ChangeCollector) accumulator).toDelta(generation));
+        }
+    }
+
+    @Override
+    public List<Boolean> getCurrentState() {
+        List<Boolean> states = new ArrayList<>(width * height);
+        for (byte state : current) {
+            states.add(state != 0);
+        }
+        return states;
+    }
+
+    @Override
+    public List<Integer> getDimensions() {
+        return Arrays.asList(width, height);
+    }
+
+    @Override
+    public AutomataStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public void setChangePublisher(CellChangePublisher publisher) {
+        changePublisher = publisher;
+        accumulator = publisher == null ? new StatisticsAccumulator() : new ChangeCollector(width);
+    }
+
+    @Override
+    public boolean isCellAlive(int index) {
+        if (index < 0 || index >= current.length) {
+            throw new IllegalArgumentException("Cell index is out of bounds");
+        }
+        return current[index] != 0;
+    }
+
+    @Override
+    public void copyStates(int fromIndex, int toIndex, boolean[] target, int targetOffset) {
+        if (fromIndex < 0 || toIndex > current.length || fromIndex > toIndex) {
+            throw new IllegalArgumentException("Cell index range is out of bounds");
+        }
+        for (int i = fromIndex; i < toIndex; i++) {
+            target[targetOffset++] = current[i] != 0;
+        }
+    }
+
+    private void initMoore() {
+        horizontalSums = new int[width * height];
+        verticalWindow = new int[width];
+        addedColumns = new int[width];
+        removedColumns = new int[width];
+        for (int x = 0; x < width; x++) {
+            addedColumns[x] = Math.floorMod(x + radius + 1, width);
+            removedColumns[x] = Math.floorMod(x - radius, width);
+        }
+        addedRows = new int[height];
+        removedRows = new int[height];
+        for (int y = 0; y < height; y++) {
+            addedRows[y] = Math.floorMod(y + radius + 1, height) * width;
+            removedRows[y] = Math.floorMod(y - radius, height) * width;
+        }
+    }
+
+    /**
+     * Обновление для окружения по Муру: сумма квадрата раскладывается на скользящие суммы по строкам и столбцам
+     */
+    private void updateMoore() {
+        for (int row = 0; row < width * height; row += width) {
+            int sum = 0;
+            for (int dx = -radius; dx <= radius; dx++) {
+                sum += current[row + Math.floorMod(dx, width)];
+            }
+            for (int x = 0; x < width; x++) {
+                horizontalSums[row + x] = sum;
+                sum += current[row + addedColumns[x]] - current[row + removedColumns[x]];
+            }
+        }
+        Arrays.fill(verticalWindow, 0);
+        for (int dy = -radius; dy <= radius; dy++) {
+            int row = Math.floorMod(dy, height) * width;
+            for (int x = 0; x < width; x++) {
+                verticalWindow[x] += horizontalSums[row + x];
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                next[row + x] = applyRule(current[row + x], verticalWindow[x]);
+                accumulator.record(x, y, current[row + x] != 0, next[row + x] != 0);
+                verticalWindow[x] += horizontalSums[addedRows[y] + x] - horizontalSums[removedRows[y] + x];
+            }
+        }
+    }
+
+    private void initVonNeumann() {
+        pad = radius + 2;
+        paddedWidth = width + 2 * pad;
+        int paddedHeight = height + 2 * pad;
+        if ((long) (paddedWidth + 1) * paddedHeight > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Automata grid is too large for this neighborhood radius");
+        }
+        padded = new int[paddedWidth * paddedHeight];
+        rowPrefixSums = new int[(paddedWidth + 1) * paddedHeight];
+        diagonalSums = new int[paddedWidth * paddedHeight];
+        antiDiagonalSums = new int[paddedWidth * paddedHeight];
+        addedColumns = new int[paddedWidth];
+        for (int j = 0; j < paddedWidth; j++) {
+            addedColumns[j] = Math.floorMod(j - pad, width);
+        }
+        addedRows = new int[paddedHeight];
+        for (int i = 0; i < paddedHeight; i++) {
+            addedRows[i] = Math.floorMod(i - pad, height) * width;
+        }
+    }
+
+    /**
+     * Обновление для окружения по Вон Нейману. При сдвиге центра ромба на клетку вправо
+     * добавляется правый край ромба радиуса radius + 1 (две диагонали справа от центра),
+     * а убирается левый край ромба радиуса radius (две диагонали слева от центра, включая его столбец)
+     */
+    private void updateVonNeumann() {
+        int paddedHeight = addedRows.length;
+        for (int i = 0; i < paddedHeight; i++) {
+            int row = i * paddedWidth;
+            int prefixRow = i * (paddedWidth + 1);
+            for (int j = 0; j < paddedWidth; j++) {
+                int cell = current[addedRows[i] + addedColumns[j]];
+                padded[row + j] = cell;
+                rowPrefixSums[prefixRow + j + 1] = rowPrefixSums[prefixRow + j] + cell;
+                diagonalSums[row + j] = cell + (i > 0 && j > 0 ? diagonalSums[row - paddedWidth + j - 1] : 0);
+                antiDiagonalSums[row + j] = cell
+                        + (i > 0 && j < paddedWidth - 1 ? antiDiagonalSums[row - paddedWidth + j + 1] : 0);
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            int centerRow = y + pad;
+            int sum = 0;
+            for (int dy = -radius; dy <= radius; dy++) {
+                int halfWidth = radius - Math.abs(dy);
+                int prefixRow = (centerRow + dy) * (paddedWidth + 1);
+                sum += rowPrefixSums[prefixRow + pad + halfWidth + 1] - rowPrefixSums[prefixRow + pad - halfWidth];
+            }
+            for (int x = 0; x < width; x++) {
+                int column = x + pad;
+                next[y * width + x] = applyRule(current[y * width + x], sum);
+                accumulator.record(x, y, current[y * width + x] != 0, next[y * width + x] != 0);
+                sum += diagonal(centerRow - radius, column + 1, centerRow, column + radius + 1)
+                        + antiDiagonal(centerRow + 1, column + radius, centerRow + radius, column + 1)
+                        - antiDiagonal(centerRow - radius, column, centerRow, column - radius)
+                        - diagonal(centerRow + 1, column - radius + 1, centerRow + radius, column);
+            }
+        }
+    }
+
+    /**
+     * Сумма отрезка диагонали, идущей вниз-вправо, от (fromRow, fromColumn) до (toRow, toColumn) включительно
+     */
+    private int diagonal(int fromRow, int fromColumn, int toRow, int toColumn) {
+        return diagonalSums[toRow * paddedWidth + toColumn]
+                - diagonalSums[(fromRow - 1) * paddedWidth + fromColumn - 1];
+    }
+
+    /**
+     * Сумма отрезка диагонали, идущей вниз-влево, от (fromRow, fromColumn) до (toRow, toColumn) включительно
+     */
+    private int antiDiagonal(int fromRow, int fromColumn, int toRow, int toColumn) {
+        return antiDiagonalSums[toRow * paddedWidth + toColumn]
+                - antiDiagonalSums[(fromRow - 1) * paddedWidth + fromColumn + 1];
+    }
+
+    private byte applyRule(byte state, int sum) {
+        int count = rule.isMiddleIncluded() ? sum : sum - state;
+        return (byte) (rule.nextState(state != 0, count) ? 1 : 0);
+    }
+}
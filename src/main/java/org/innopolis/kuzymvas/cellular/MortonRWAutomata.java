@@ -0,0 +1,396 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Класс однопоточного клеточного автомата на прямоугольном поле, хранящего клетки в порядке Мортона (Z-порядке):
+ * адрес клетки получается чередованием битов ее столбца и строки. Соседи клетки по вертикали при этом
+ * лежат в памяти почти так же близко, как соседи по горизонтали, а поле обходится тоже в порядке Мортона,
+ * поэтому окрестности соседних клеток попадают в одни и те же строки кэша.
+ * Адреса соседей вычисляются арифметикой "разреженных" чисел: к битам столбца адреса прибавляется
+ * разреженное смещение по столбцу, к битам строки - по строке, без перевода адреса обратно в координаты.
+ * Вокруг поля есть рамка теневых клеток шириной в радиус окружения, которая раз в поколение
+ * заполняется согласно режиму обработки краев, так что адреса соседей никогда не выходят за поле.
+ * Состояния по-прежнему принимаются и отдаются построчно.
+ */
+public class MortonRWAutomata implements ChangeFeedAutomata {
+
+    private static final int MAX_ADDRESS_BITS = 30;
+
+    /**
+     * Способ раскладки клеток в памяти. Построчная раскладка - это те же разреженные числа, в которых все биты
+     * столбца младше всех битов строки; она оставлена для сравнения с порядком Мортона на одном и том же коде
+     */
+    enum MemoryLayout {
+        MORTON,
+        ROW_MAJOR
+    }
+
+    private final int width;
+    private final int height;
+    private final int pad;
+    private final int columnMask;
+    private final int rowMask;
+    private final int[] columnCodes;
+    private final int[] rowCodes;
+    private final int[] neighborColumnSteps;
+    private final int[] neighborRowSteps;
+    private final boolean[] neighborColumnBackward;
+    private final boolean[] neighborRowBackward;
+    private final byte[] transitions;
+    private final int countsPerState;
+    private final int[] ghostTargets;
+    private final int[] ghostSources;
+    private final StatisticsAccumulator accumulator = new StatisticsAccumulator();
+    private AutomataStatistics statistics;
+    private ChangeCollector changes;
+    private CellChangePublisher changePublisher;
+    private long generation;
+    private byte[] current;
+    private byte[] next;
+
+    /**
+     * Создает новый автомат на замкнутом поле
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param rule             - правило обновления клеток
+     * @param neighborhoodType - тип локального окружения клетки
+     */
+    public MortonRWAutomata(int width, int height, LifeRule rule, NeighborhoodType neighborhoodType) {
+        this(width, height, rule, neighborhoodType, BoundaryMode.WRAPAROUND);
+    }
+
+    /**
+     * Создает новый автомат с заданным режимом обработки краев поля
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param rule             - правило обновления клеток
+     * @param neighborhoodType - тип локального окружения клетки
+     * @param boundaryMode     - режим обработки краев поля
+     */
+    public MortonRWAutomata(
+            int width, int height, LifeRule rule,
+            NeighborhoodType neighborhoodType, BoundaryMode boundaryMode) {
+        this(width, height, rule, neighborhoodType, boundaryMode, MemoryLayout.MORTON);
+    }
+
+    /**
+     * Создает новый автомат с заданной раскладкой клеток в памяти
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param rule             - правило обновления клеток
+     * @param neighborhoodType - тип локального окружения клетки
+     * @param boundaryMode     - режим обработки краев поля
+     * @param layout           - раскладка клеток в памяти
+     */
+    MortonRWAutomata(
+            int width, int height, LifeRule rule, NeighborhoodType neighborhoodType,
+            BoundaryMode boundaryMode, MemoryLayout layout) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Automata grid dimensions can't be negative");
+        }
+        this.width = width;
+        this.height = height;
+        this.pad = neighborhoodType.getRadius();
+        int columnBits = bitsFor(width + 2 * pad);
+        int rowBits = bitsFor(height + 2 * pad);
+        if (columnBits + rowBits > MAX_ADDRESS_BITS) {
+            throw new IllegalArgumentException("Automata grid is too large to be indexed");
+        }
+        int[] masks = layout == MemoryLayout.MORTON
+                ? interleavedMasks(columnBits, rowBits)
+                : new int[]{(1 << columnBits) - 1, ((1 << rowBits) - 1) << columnBits};
+        this.columnMask = masks[0];
+        this.rowMask = masks[1];
+        this.columnCodes = new int[width + 2 * pad];
+        for (int x = 0; x < columnCodes.length; x++) {
+            columnCodes[x] = dilate(x, columnMask);
+        }
+        this.rowCodes = new int[height + 2 * pad];
+        for (int y = 0; y < rowCodes.length; y++) {
+            rowCodes[y] = dilate(y, rowMask);
+        }
+
+        int[][] deltas = neighborhoodType.getDeltas();
+        this.neighborColumnSteps = new int[deltas[0].length];
+        this.neighborRowSteps = new int[deltas[0].length];
+        this.neighborColumnBackward = new boolean[deltas[0].length];
+        this.neighborRowBackward = new boolean[deltas[0].length];
+        for (int i = 0; i < deltas[0].length; i++) {
+            neighborColumnSteps[i] = dilate(Math.abs(deltas[0][i]), columnMask);
+            neighborColumnBackward[i] = deltas[0][i] < 0;
+            neighborRowSteps[i] = dilate(Math.abs(deltas[1][i]), rowMask);
+            neighborRowBackward[i] = deltas[1][i] < 0;
+        }
+        this.countsPerState = deltas[0].length + 1;
+        this.transitions = new byte[2 * countsPerState];
+        for (int count = 0; count < countsPerState; count++) {
+            transitions[count] = (byte) (rule.nextState(false, count) ? 1 : 0);
+            transitions[countsPerState + count] = (byte) (rule.nextState(true, count) ? 1 : 0);
+        }
+
+        List<int[]> ghosts = new ArrayList<>();
+        for (int y = 0; y < height + 2 * pad; y++) {
+            for (int x = 0; x < width + 2 * pad; x++) {
+                boolean interior = x >= pad && x < width + pad && y >= pad && y < height + pad;
+                if (!interior && width > 0 && height > 0) {
+                    int sourceX = boundaryMode.resolve(x - pad, width);
+                    int sourceY = boundaryMode.resolve(y - pad, height);
+                    int source = sourceX < 0 || sourceY < 0 ? -1 : address(sourceX + pad, sourceY + pad);
+                    ghosts.add(new int[]{address(x, y), source});
+                }
+            }
+        }
+        this.ghostTargets = new int[ghosts.size()];
+        this.ghostSources = new int[ghosts.size()];
+        for (int i = 0; i < ghosts.size(); i++) {
+            ghostTargets[i] = ghosts.get(i)[0];
+            ghostSources[i] = ghosts.get(i)[1];
+        }
+        this.current = new byte[1 << (columnBits + rowBits)];
+        this.next = new byte[current.length];
+        this.statistics = accumulator.toStatistics();
+    }
+
+    @Override
+    public void initAutomata(List<Boolean> initialStates) {
+        if (initialStates.size() != width * height) {
+            throw new IllegalArgumentException("Provided states list doesn't match automata grid size");
+        }
+        Arrays.fill(current, (byte) 0);
+        accumulator.reset();
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean state = initialStates.get(i++);
+                current[address(x + pad, y + pad)] = (byte) (state ? 1 : 0);
+                accumulator.record(x, y, state, state);
+            }
+        }
+        statistics = accumulator.toStatistics();
+        generation = 0;
+    }
+
+    /**
+     * Обходит все адреса в порядке Мортона, пропуская теневые клетки и хвост адресного пространства за полем.
+     * Разреженные числа сохраняют порядок, поэтому принадлежность полю проверяется прямо по битам адреса
+     */
+    @Override
+    public void updateAutomata() {
+        if (width == 0 || height == 0) {
+            return;
+        }
+        for (int i = 0; i < ghostTargets.length; i++) {
+            current[ghostTargets[i]] = ghostSources[i] < 0 ? 0 : current[ghostSources[i]];
+        }
+        int firstColumn = columnCodes[pad];
+        int lastColumn = columnCodes[width + pad - 1];
+        int firstRow = rowCodes[pad];
+        int lastRow = rowCodes[height + pad - 1];
+        long population = 0;
+        long births = 0;
+        long deaths = 0;
+        int minColumn = Integer.MAX_VALUE;
+        int maxColumn = Integer.MIN_VALUE;
+        int minRow = Integer.MAX_VALUE;
+        int maxRow = Integer.MIN_VALUE;
+        int end = addressEnd();
+        if (changes != null) {
+            changes.reset();
+        }
+        for (int code = 0; code < end; code++) {
+            int column = code & columnMask;
+            int row = code & rowMask;
+            if (column < firstColumn || column > lastColumn || row < firstRow || row > lastRow) {
+                continue;
+            }
+            int count = 0;
+            for (int i = 0; i < neighborColumnSteps.length; i++) {
+                int neighborColumn = neighborColumnBackward[i]
+                        ? (column - neighborColumnSteps[i]) & columnMask
+                        : ((column | ~columnMask) + neighborColumnSteps[i]) & columnMask;
+                int neighborRow = neighborRowBackward[i]
+                        ? (row - neighborRowSteps[i]) & rowMask
+                        : ((row | ~rowMask) + neighborRowSteps[i]) & rowMask;
+                count += current[neighborColumn | neighborRow];
+            }
+            byte alive = current[code];
+            byte state = transitions[alive * countsPerState + count];
+            next[code] = state;
+            if (changes != null && state != alive) {
+                int index = (compact(row, rowMask) - pad) * width + compact(column, columnMask) - pad;
+                if (state != 0) {
+                    changes.born(index);
+                } else {
+                    changes.died(index);
+                }
+            }
+            if (state != 0) {
+                population++;
+                births += 1 - alive;
+                minColumn = Math.min(minColumn, column);
+                maxColumn = Math.max(maxColumn, column);
+                minRow = Math.min(minRow, row);
+                maxRow = Math.max(maxRow, row);
+            } else {
+                deaths += alive;
+            }
+        }
+        accumulator.reset();
+        accumulator.population = population;
+        accumulator.births = births;
+        accumulator.deaths = deaths;
+        if (population != 0) {
+            accumulator.includeColumns(compact(minColumn, columnMask) - pad, compact(maxColumn, columnMask) - pad,
+                                       compact(minRow, rowMask) - pad);
+            accumulator.includeColumns(compact(minColumn, columnMask) - pad, compact(maxColumn, columnMask) - pad,
+                                       compact(maxRow, rowMask) - pad);
+        }
+        statistics = accumulator.toStatistics();
+        byte[] swap = current;
+        current = next;
+        next = swap;
+        generation++;
+        if (changePublisher != null) {
+            changePublisher.publish(changes.toDelta(generation));
+        }
+    }
+
+    @Override
+    public void setChangePublisher(CellChangePublisher publisher) {
+        changePublisher = publisher;
+        changes = publisher == null ? null : new ChangeCollector(width);
+    }
+
+    @Override
+    public List<Boolean> getCurrentState() {
+        List<Boolean> states = new ArrayList<>(width * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                states.add(current[address(x + pad, y + pad)] != 0);
+            }
+        }
+        return states;
+    }
+
+    @Override
+    public List<Integer> getDimensions() {
+        return Arrays.asList(width, height);
+    }
+
+    @Override
+    public AutomataStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public boolean isCellAlive(int index) {
+        if (index < 0 || index >= width * height) {
+            throw new IllegalArgumentException("Cell index is out of bounds");
+        }
+        return current[address(index % width + pad, index / width + pad)] != 0;
+    }
+
+    @Override
+    public void copyStates(int fromIndex, int toIndex, boolean[] target, int targetOffset) {
+        if (fromIndex < 0 || toIndex > width * height || fromIndex > toIndex) {
+            throw new IllegalArgumentException("Cell index range is out of bounds");
+        }
+        for (int i = fromIndex; i < toIndex; i++) {
+            target[targetOffset++] = current[address(i % width + pad, i / width + pad)] != 0;
+        }
+    }
+
+    /**
+     * Возвращает адрес клетки рамки или поля по ее координатам с учетом рамки
+     *
+     * @param x - столбец, считая теневые столбцы
+     * @param y - строка, считая теневые строки
+     * @return - адрес клетки в массиве
+     */
+    private int address(int x, int y) {
+        return columnCodes[x] | rowCodes[y];
+    }
+
+    /**
+     * Возвращает адрес, следующий за последней клеткой поля вместе с рамкой
+     *
+     * @return - граница обхода адресов
+     */
+    private int addressEnd() {
+        return address(width + 2 * pad - 1, height + 2 * pad - 1) + 1;
+    }
+
+    /**
+     * Возвращает маски битов столбца и строки для порядка Мортона: биты чередуются начиная со столбца,
+     * а оставшиеся старшие биты более длинной координаты идут подряд
+     *
+     * @param columnBits - число битов столбца
+     * @param rowBits    - число битов строки
+     * @return - массив из маски столбца и маски строки
+     */
+    private static int[] interleavedMasks(int columnBits, int rowBits) {
+        int columnMask = 0;
+        int rowMask = 0;
+        int bit = 0;
+        for (int i = 0; i < Math.max(columnBits, rowBits); i++) {
+            if (i < columnBits) {
+                columnMask |= 1 << bit++;
+            }
+            if (i < rowBits) {
+                rowMask |= 1 << bit++;
+            }
+        }
+        return new int[]{columnMask, rowMask};
+    }
+
+    /**
+     * Раскладывает биты числа по позициям маски, от младших к старшим
+     *
+     * @param value - исходное число
+     * @param mask  - маска позиций
+     * @return - разреженное число
+     */
+    static int dilate(int value, int mask) {
+        int result = 0;
+        for (int bit = 1; value != 0 && mask != 0; bit <<= 1) {
+            int lowest = Integer.lowestOneBit(mask);
+            if ((value & bit) != 0) {
+                result |= lowest;
+                value &= ~bit;
+            }
+            mask &= ~lowest;
+        }
+        return result;
+    }
+
+    /**
+     * Собирает биты разреженного числа с позиций маски обратно в обычное число
+     *
+     * @param dilated - разреженное число
+     * @param mask    - маска позиций
+     * @return - исходное число
+     */
+    static int compact(int dilated, int mask) {
+        int result = 0;
+        for (int bit = 1; mask != 0; bit <<= 1) {
+            int lowest = Integer.lowestOneBit(mask);
+            if ((dilated & lowest) != 0) {
+                result |= bit;
+            }
+            mask &= ~lowest;
+        }
+        return result;
+    }
+
+    private static int bitsFor(int size) {
+        return size <= 1 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(size - 1);
+    }
+}
@@ -1,24 +1,40 @@
 package org.innopolis.kuzymvas.cellular;
 
-import org.innopolis.kuzymvas.cellular.cells.Cell;
 import org.innopolis.kuzymvas.cellular.cells.CellFactory;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BrokenBarrierException;
-import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Класс многопоточного клеточного автомата на замкнутом прямоугольном поле
+ * Класс многопоточного клеточного автомата на замкнутом прямоугольном поле.
+ * Поле разбито на квадратные плитки, клетки которых помещаются в кэш ядра; потоки не привязаны к частям поля,
+ * а в каждой фазе разбирают плитки по одной из общего счетчика. Так соседей на границе чужой части
+ * у потока меньше, чем при нарезке поля полосами, а поток, которому достались пустые или простые плитки,
+ * не простаивает, пока другие заканчивают свои.
+ * Собственных потоков у автомата нет: фазы шага выполняются в {@link WorkerPool}, который можно разделить
+ * между многими автоматами. Автомат, создавший пул сам, останавливает его в {@link #close()}.
+ * Если задан издатель изменений, каждый участник собирает рождения и смерти своих плиток в свой накопитель,
+ * а после шага изменения участников сводятся в одно поколение.
  */
 public class MultiThreadRWAutomata extends AbstractRectangularWraparoundAutomata {
 
-    CyclicBarrier barrier;
-    boolean isOkay;
-    List<Thread> updatersThread;
+    private final WorkerPool pool;
+    private final boolean ownsPool;
+    private final StatisticsAccumulator[] participantAccumulators;
+    private StatisticsAccumulator accumulator = new StatisticsAccumulator();
+    private ChangeCollector changes;
+    private CellChangePublisher changePublisher;
+    private long generation;
+    private final TilePartition tiles;
+    private final TileCounter nextPrepareTile = new TileCounter();
+    private final TileCounter nextUpdateTile = new TileCounter();
+    private final AtomicInteger nextParticipant = new AtomicInteger();
+    private volatile boolean closed;
+
+    static final int TILE_SIZE = 32;
 
     /**
-     * Создает новый автомат
+     * Создает новый автомат со своим пулом потоков
      *
      * @param width            - ширина поля
      * @param height           - высота поля
@@ -31,102 +47,153 @@ public class MultiThreadRWAutomata extends AbstractRectangularWraparoundAutomata
     public MultiThreadRWAutomata(
             int width, int height, CellFactory factory,
             NeighborhoodType neighborhoodType, int threadsNumber) {
-        super(width, height, factory, neighborhoodType);
-        isOkay = true;
-        barrier = new CyclicBarrier(threadsNumber + 1);
-        updatersThread = new ArrayList<>();
-        int share = cells.size() / threadsNumber;
-        for (int i = 0; i < threadsNumber - 1; i++) {
-            List<Cell> currThreadCells = cells.subList(i * share, (i + 1) * share);
-            CellUpdater updater = new CellUpdater(currThreadCells, barrier);
-            Thread updaterThread = new Thread(updater);
-            updaterThread.setDaemon(true);
-            updaterThread.start();
-            updatersThread.add(updaterThread);
+        this(width, height, factory, neighborhoodType, BoundaryMode.WRAPAROUND, threadsNumber);
+    }
+
+    /**
+     * Создает новый автомат со своим пулом потоков и заданным режимом обработки краев поля
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param factory          - фабрика для клеток
+     * @param neighborhoodType - тип локального окружения клетки: по Муру - это 8 клеток вокруг,
+     *                         по Вон Нейману - 4 ортогональных клетки вокруг,
+     *                         Расширенный Вон Нейман - 8 ортогональных клеток, по две в каждую сторону
+     * @param boundaryMode     - режим обработки краев поля
+     * @param threadsNumber    - число потоков для использования в обновлениях
+     */
+    public MultiThreadRWAutomata(
+            int width, int height, CellFactory factory,
+            NeighborhoodType neighborhoodType, BoundaryMode boundaryMode, int threadsNumber) {
+        this(width, height, factory, neighborhoodType, boundaryMode, new WorkerPool(threadsNumber), true);
+    }
+
+    /**
+     * Создает новый автомат, выполняющий обновления в общем пуле потоков. Пул остается открытым
+     * после закрытия автомата
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param factory          - фабрика для клеток
+     * @param neighborhoodType - тип локального окружения клетки: по Муру - это 8 клеток вокруг,
+     *                         по Вон Нейману - 4 ортогональных клетки вокруг,
+     *                         Расширенный Вон Нейман - 8 ортогональных клеток, по две в каждую сторону
+     * @param boundaryMode     - режим обработки краев поля
+     * @param pool             - общий пул потоков
+     */
+    public MultiThreadRWAutomata(
+            int width, int height, CellFactory factory,
+            NeighborhoodType neighborhoodType, BoundaryMode boundaryMode, WorkerPool pool) {
+        this(width, height, factory, neighborhoodType, boundaryMode, pool, false);
+    }
+
+    private MultiThreadRWAutomata(
+            int width, int height, CellFactory factory,
+            NeighborhoodType neighborhoodType, BoundaryMode boundaryMode, WorkerPool pool, boolean ownsPool) {
+        super(width, height, factory, neighborhoodType, boundaryMode);
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        this.tiles = new TilePartition(width, height, TILE_SIZE, TILE_SIZE);
+        this.participantAccumulators = new StatisticsAccumulator[pool.getParallelism()];
+        for (int i = 0; i < participantAccumulators.length; i++) {
+            participantAccumulators[i] = new PaddedStatisticsAccumulator();
         }
-        List<Cell> lastThreadCells = cells.subList((threadsNumber - 1) * share, cells.size());
-        CellUpdater updater = new CellUpdater(lastThreadCells, barrier);
-        Thread updaterThread = new Thread(updater);
-        updaterThread.setDaemon(true);
-        updaterThread.start();
-        updatersThread.add(updaterThread);
+    }
+
+    @Override
+    public void initAutomata(List<Boolean> initialStates) {
+        super.initAutomata(initialStates);
+        generation = 0;
     }
 
     /**
-     * Настоящее обновление выполняется в других потоках. Этот метод лишь управляет ими,
-     * пропуская их через барьер по мере выполнения фаз обновления.
+     * Настоящее обновление выполняется участниками пула потоков, включая вызывающий поток:
+     * сначала все плитки перерасчитываются, затем перерасчитанные состояния записываются
      */
     @Override
     public void updateAutomata() {
-        if (!isOkay) {
-            return;
+        if (closed) {
+            throw new IllegalStateException("Automata is closed");
+        }
+        nextPrepareTile.set(0);
+        pool.invoke(this::prepareTiles);
+        nextUpdateTile.set(0);
+        nextParticipant.set(0);
+        for (StatisticsAccumulator participantAccumulator : participantAccumulators) {
+            participantAccumulator.reset();
         }
-        try {
-            barrier.await();
-            barrier.await();
-            barrier.await();
-        } catch (InterruptedException e) {
-            System.out.println("Attempt to interrupt main automata thread. Shutting down automata");
-            shutDown();
-        } catch (BrokenBarrierException e) {
-            System.out.println("Automata cyclic barrier was broken. Shutting down automata");
-            shutDown();
+        pool.invoke(this::updateTiles);
+        accumulator.reset();
+        for (StatisticsAccumulator participantAccumulator : participantAccumulators) {
+            accumulator.merge(participantAccumulator);
+            if (changes != null) {
+                changes.append((ChangeCollector) participantAccumulator);
+            }
+        }
+        publishStatistics(accumulator);
+        generation++;
+        if (changePublisher != null) {
+            changePublisher.publish(changes.toDelta(generation));
+        }
+    }
+
+    @Override
+    public void setChangePublisher(CellChangePublisher publisher) {
+        changePublisher = publisher;
+        int width = getDimensions().get(0);
+        changes = publisher == null ? null : new ChangeCollector(width);
+        accumulator = publisher == null ? new StatisticsAccumulator() : changes;
+        for (int i = 0; i < participantAccumulators.length; i++) {
+            participantAccumulators[i] = publisher == null
+                    ? new PaddedStatisticsAccumulator() : new PaddedChangeCollector(width);
         }
     }
 
     /**
-     * Прерывает потоки обновления и выключает возможность обновления у автомата
+     * Закрывает автомат; собственный пул потоков автомата останавливается, общий остается открытым
      */
-    private void shutDown() {
-        for (Thread updaterThread : updatersThread) {
-            updaterThread.interrupt();
+    @Override
+    public void close() {
+        closed = true;
+        if (ownsPool) {
+            pool.close();
         }
-        isOkay = false;
     }
 
     /**
-     * Класс обновителя клеток для многопоточного автомата
+     * Фаза перерасчета: участник разбирает плитки по одной из общего счетчика
      */
-    private static class CellUpdater implements Runnable {
-
-        private final List<Cell> cells;
-        private final CyclicBarrier barrier;
-
-        /**
-         * Создает новый обновитель
-         *
-         * @param cells   - клетки, которые следует обновлять
-         * @param barrier - барьер для синхронизации потоков
-         */
-        public CellUpdater(List<Cell> cells, CyclicBarrier barrier) {
-            this.cells = cells;
-            this.barrier = barrier;
+    private void prepareTiles() {
+        for (int tile = nextPrepareTile.getAndIncrement(); tile < tiles.getTileCount();
+             tile = nextPrepareTile.getAndIncrement()) {
+            calculateTile(tiles, tile);
         }
+    }
 
-        /**
-         * Выполняет фазы обновления до тех пор, пока поток не будет прерван.
-         * Фазы разделены барьерами:
-         * - фаза простоя, пока обновление не начато
-         * - фаза перерасчета состояния
-         * - фаза записи перерасчитанных состояний
-         * - фаза простоя, пока обновление не начато...
-         */
-        @Override
-        public void run() {
-            try {
-                while (!Thread.interrupted()) {
-                    barrier.await();
-                    for (Cell cell : cells) {
-                        cell.calculateNextState();
-                    }
-                    barrier.await();
-                    for (Cell cell : cells) {
-                        cell.updateState();
-                    }
-                    barrier.await();
-                }
-            } catch (InterruptedException | BrokenBarrierException ignored) {
-            }
+    /**
+     * Фаза записи: участник разбирает плитки по одной из общего счетчика, собирая статистику в свой накопитель
+     */
+    private void updateTiles() {
+        StatisticsAccumulator participantAccumulator = participantAccumulators[nextParticipant.getAndIncrement()];
+        for (int tile = nextUpdateTile.getAndIncrement(); tile < tiles.getTileCount();
+             tile = nextUpdateTile.getAndIncrement()) {
+            updateTile(tiles, tile, participantAccumulator);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Счетчик очередной свободной плитки, дополненный до размера, превышающего строку кэша,
+     * чтобы два счетчика фаз не делили одну строку
+     */
+    private static final class TileCounter extends AtomicInteger {
+        private static final long serialVersionUID = 1L;
+        long p1;
+        long p2;
+        long p3;
+        long p4;
+        long p5;
+        long p6;
+        long p7;
+        long p8;
+    }
+}
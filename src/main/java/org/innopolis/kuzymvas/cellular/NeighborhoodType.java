@@ -6,7 +6,58 @@ package org.innopolis.kuzymvas.cellular;
  * Расширенный Вон Нейман - 8 ортогональных клеток, по две в каждую сторону
  */
 public enum NeighborhoodType {
-    MOORE,
-    VON_NEUMANN,
-    EXTENDED_VON_NEUMANN
+    MOORE(new int[][]{
+            {-1, -1, 0, 1, 1, 1, 0, -1},
+            {0, 1, 1, 1, 0, -1, -1, -1}
+    }),
+    VON_NEUMANN(new int[][]{
+            {-1, 0, 0, 1},
+            {0, -1, 1, 0}
+    }),
+    EXTENDED_VON_NEUMANN(new int[][]{
+            {-2, -1, 0, 0, 2, 1, 0, 0},
+            {0, 0, -2, -1, 0, 0, 2, 1}
+    });
+
+    private final int[][] deltas;
+    private final int radius;
+
+    NeighborhoodType(int[][] deltas) {
+        this.deltas = deltas;
+        int maxDelta = 0;
+        for (int[] axisDeltas : deltas) {
+            for (int delta : axisDeltas) {
+                maxDelta = Math.max(maxDelta, Math.abs(delta));
+            }
+        }
+        this.radius = maxDelta;
+    }
+
+    /**
+     * Возвращает смещения до соседей клетки
+     *
+     * @return - двумерный массив смещений: первое измерение = 2: смещения по Х и по Y соответственно,
+     * второе - количество соседей
+     */
+    public int[][] getDeltas() {
+        return new int[][]{deltas[0].clone(), deltas[1].clone()};
+    }
+
+    /**
+     * Возвращает число соседей в окружении
+     *
+     * @return - размер окружения клетки
+     */
+    public int size() {
+        return deltas[0].length;
+    }
+
+    /**
+     * Возвращает радиус окружения - максимальное смещение до соседа по любой из осей
+     *
+     * @return - радиус окружения
+     */
+    public int getRadius() {
+        return radius;
+    }
 }
@@ -0,0 +1,242 @@
+package org.innopolis.kuzymvas.cellular;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Прямоугольная сетка байт вне кучи Java: по байту на клетку, строки одинаковой длины.
+ * Строки хранятся в сегментах - прямых буферах или отображенных в память участках файла,
+ * так что общий размер сетки не ограничен ни размером кучи, ни максимальным размером одного буфера.
+ * Каждая строка целиком лежит в одном сегменте. Порядок байт в словах - от младшего к старшему,
+ * так что байт с меньшим номером столбца всегда попадает в младшие разряды слова.
+ * Память сегментов освобождается явно методом {@link #release()}, не дожидаясь сборщика мусора.
+ */
+final class OffHeapGrid {
+
+    static final int MAX_SEGMENT_BYTES = 1 << 30;
+
+    private final ByteBuffer[] segments;
+    private final int rowsPerSegment;
+    private final int stride;
+    private final int rows;
+
+    private static final BufferCleaner CLEANER = findCleaner();
+
+    private OffHeapGrid(ByteBuffer[] segments, int rowsPerSegment, int rows, int stride) {
+        this.segments = segments;
+        this.rowsPerSegment = rowsPerSegment;
+        this.rows = rows;
+        this.stride = stride;
+    }
+
+    /**
+     * Создает сетку в прямых буферах
+     *
+     * @param rows   - число строк
+     * @param stride - длина строки в байтах, кратная 8
+     * @return - новая сетка, заполненная нулями
+     */
+    static OffHeapGrid allocateDirect(int rows, int stride) {
+        int rowsPerSegment = rowsPerSegment(stride);
+        ByteBuffer[] segments = new ByteBuffer[segmentCount(rows, rowsPerSegment)];
+        for (int i = 0; i < segments.length; i++) {
+            int segmentRows = Math.min(rowsPerSegment, rows - i * rowsPerSegment);
+            segments[i] = ByteBuffer.allocateDirect(segmentRows * stride).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return new OffHeapGrid(segments, rowsPerSegment, rows, stride);
+    }
+
+    /**
+     * Создает сетку, отображенную в память из участка файла
+     *
+     * @param channel  - канал файла, открытый на чтение и запись
+     * @param position - смещение начала сетки в файле
+     * @param rows     - число строк
+     * @param stride   - длина строки в байтах, кратная 8
+     * @return - новая сетка
+     * @throws IOException - если отображение файла в память не удалось
+     */
+    static OffHeapGrid map(FileChannel channel, long position, int rows, int stride) throws IOException {
+        int rowsPerSegment = rowsPerSegment(stride);
+        ByteBuffer[] segments = new ByteBuffer[segmentCount(rows, rowsPerSegment)];
+        long segmentPosition = position;
+        for (int i = 0; i < segments.length; i++) {
+            int segmentRows = Math.min(rowsPerSegment, rows - i * rowsPerSegment);
+            long size = (long) segmentRows * stride;
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, segmentPosition, size)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            segmentPosition += size;
+        }
+        return new OffHeapGrid(segments, rowsPerSegment, rows, stride);
+    }
+
+    /**
+     * Возвращает размер сетки в байтах
+     *
+     * @param rows   - число строк
+     * @param stride - длина строки в байтах
+     * @return - размер сетки в байтах
+     */
+    static long byteSize(int rows, int stride) {
+        return (long) rows * stride;
+    }
+
+    private static int rowsPerSegment(int stride) {
+        if (stride > MAX_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("Grid row is too long to fit into one segment");
+        }
+        return Math.max(1, MAX_SEGMENT_BYTES / Math.max(stride, 1));
+    }
+
+    private static int segmentCount(int rows, int rowsPerSegment) {
+        return Math.max(1, (rows + rowsPerSegment - 1) / rowsPerSegment);
+    }
+
+    /**
+     * Возвращает сегмент, содержащий заданную строку
+     *
+     * @param row - номер строки
+     * @return - буфер сегмента
+     */
+    ByteBuffer segment(int row) {
+        return segments[row / rowsPerSegment];
+    }
+
+    /**
+     * Возвращает смещение начала заданной строки внутри ее сегмента
+     *
+     * @param row - номер строки
+     * @return - смещение в байтах
+     */
+    int offset(int row) {
+        return (row % rowsPerSegment) * stride;
+    }
+
+    byte get(int row, int column) {
+        return segment(row).get(offset(row) + column);
+    }
+
+    void put(int row, int column, byte value) {
+        segment(row).put(offset(row) + column, value);
+    }
+
+    /**
+     * Копирует одну строку сетки в другую словами по 8 байт
+     *
+     * @param sourceRow - номер исходной строки
+     * @param targetRow - номер строки назначения
+     */
+    void copyRow(int sourceRow, int targetRow) {
+        ByteBuffer source = segment(sourceRow);
+        ByteBuffer target = segment(targetRow);
+        int sourceOffset = offset(sourceRow);
+        int targetOffset = offset(targetRow);
+        for (int i = 0; i < stride; i += Long.BYTES) {
+            target.putLong(targetOffset + i, source.getLong(sourceOffset + i));
+        }
+    }
+
+    /**
+     * Заполняет строку сетки нулями
+     *
+     * @param row - номер строки
+     */
+    void clearRow(int row) {
+        ByteBuffer target = segment(row);
+        int targetOffset = offset(row);
+        for (int i = 0; i < stride; i += Long.BYTES) {
+            target.putLong(targetOffset + i, 0L);
+        }
+    }
+
+    /**
+     * Сразу освобождает память всех сегментов: прямые буферы возвращают память системе,
+     * отображения файла снимаются. После вызова обращаться к сетке нельзя - это приведет
+     * к обращению к освобожденной памяти. Если среда выполнения не дает освободить буфер явно,
+     * память вернется системе, когда сборщик мусора соберет сегменты
+     *
+     * @return - true, если все сегменты освобождены явно
+     */
+    boolean release() {
+        boolean released = CLEANER != null;
+        for (int i = 0; i < segments.length; i++) {
+            ByteBuffer segment = segments[i];
+            segments[i] = null;
+            if (segment != null && released) {
+                released = CLEANER.clean(segment);
+            }
+        }
+        return released;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getStride() {
+        return stride;
+    }
+
+    /**
+     * Ищет способ явно освободить прямой буфер: Unsafe.invokeCleaner в Java 9 и новее,
+     * метод cleaner() прямого буфера в Java 8
+     *
+     * @return - способ освобождения или null, если среда выполнения его не дает
+     */
+    private static BufferCleaner findCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> {
+                invokeCleaner.invoke(unsafe, buffer);
+                return true;
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Java 8: у прямого буфера есть свой метод cleaner()
+        }
+        try {
+            Method cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> {
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner == null) {
+                    return false;
+                }
+                clean.invoke(cleaner);
+                return true;
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Способ явного освобождения прямого буфера
+     */
+    private interface BufferCleaner {
+
+        /**
+         * Освобождает память буфера
+         *
+         * @param buffer - прямой или отображенный в память буфер
+         * @return - true, если память освобождена
+         * @throws ReflectiveOperationException - если вызов механизма освобождения не удался
+         */
+        boolean doClean(ByteBuffer buffer) throws ReflectiveOperationException;
+
+        default boolean clean(ByteBuffer buffer) {
+            try {
+                return doClean(buffer);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Класс однопоточного клеточного автомата на прямоугольном поле, хранящего состояния клеток вне кучи Java.
+ * Текущее и следующее поколения - байтовые сетки (по байту на клетку) в прямых буферах
+ * или в отображенном в память временном файле. Вокруг поля есть рамка из теневых клеток шириной в радиус окружения,
+ * которая раз в поколение заполняется согласно режиму обработки краев: копиями клеток с противоположного края,
+ * отраженными клетками или мертвыми клетками. Поэтому во внутреннем цикле нет ни проверок на край,
+ * ни деления по модулю. Клетки обрабатываются словами по 8 байт: число живых соседей для
+ * восьми клеток сразу получается сложением слов, а правило применяется побайтовыми масками.
+ */
+public class OffHeapRWAutomata implements ChangeFeedAutomata {
+
+    private static final long LANE_ONES = 0x0101010101010101L;
+    private static final long LANE_HIGH_BITS = 0x8080808080808080L;
+    private static final long LANE_LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private final int width;
+    private final int height;
+    private final int pad;
+    private final BoundaryMode boundaryMode;
+    private final int[] deltaX;
+    private final int[] deltaY;
+    private final long[] birthPatterns;
+    private final long[] survivalPatterns;
+    private final ByteBuffer[] neighborSegments;
+    private final int[] neighborOffsets;
+    private OffHeapGrid current;
+    private OffHeapGrid next;
+    private final StatisticsAccumulator accumulator = new StatisticsAccumulator();
+    private AutomataStatistics statistics;
+    private ChangeCollector changes;
+    private CellChangePublisher changePublisher;
+    private long generation;
+    private File scratchFile;
+    private boolean closed;
+
+    /**
+     * Создает новый автомат, хранящий поколения в прямых буферах
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param rule             - правило обновления клеток
+     * @param neighborhoodType - тип локального окружения клетки
+     */
+    public OffHeapRWAutomata(int width, int height, LifeRule rule, NeighborhoodType neighborhoodType) {
+        this(width, height, rule, neighborhoodType, BoundaryMode.WRAPAROUND, null);
+    }
+
+    /**
+     * Создает новый автомат, хранящий поколения в прямых буферах, с заданным режимом обработки краев поля
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param rule             - правило обновления клеток
+     * @param neighborhoodType - тип локального окружения клетки
+     * @param boundaryMode     - режим обработки краев поля
+     */
+    public OffHeapRWAutomata(
+            int width, int height, LifeRule rule,
+            NeighborhoodType neighborhoodType, BoundaryMode boundaryMode) {
+        this(width, height, rule, neighborhoodType, boundaryMode, null);
+    }
+
+    /**
+     * Создает новый автомат, хранящий поколения во временном файле, отображенном в память.
+     * Подходит для полей, не помещающихся даже в память вне кучи: страницами управляет ОС.
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param rule             - правило обновления клеток
+     * @param neighborhoodType - тип локального окружения клетки
+     * @param scratchDirectory - каталог для временного файла или null, чтобы использовать прямые буферы
+     */
+    public OffHeapRWAutomata(
+            int width, int height, LifeRule rule,
+            NeighborhoodType neighborhoodType, File scratchDirectory) {
+        this(width, height, rule, neighborhoodType, BoundaryMode.WRAPAROUND, scratchDirectory);
+    }
+
+    /**
+     * Создает новый автомат с заданным режимом обработки краев поля,
+     * хранящий поколения во временном файле, отображенном в память.
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param rule             - правило обновления клеток
+     * @param neighborhoodType - тип локального окружения клетки
+     * @param boundaryMode     - режим обработки краев поля
+     * @param scratchDirectory - каталог для временного файла или null, чтобы использовать прямые буферы
+     */
+    public OffHeapRWAutomata(
+            int width, int height, LifeRule rule, NeighborhoodType neighborhoodType,
+            BoundaryMode boundaryMode, File scratchDirectory) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Automata grid dimensions can't be negative");
+        }
+        if ((long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Automata grid is too large to be indexed");
+        }
+        this.width = width;
+        this.height = height;
+        this.pad = neighborhoodType.getRadius();
+        this.boundaryMode = boundaryMode;
+        int[][] deltas = neighborhoodType.getDeltas();
+        this.deltaX = deltas[0];
+        this.deltaY = deltas[1];
+        this.birthPatterns = lanePatterns(rule.getBirthMask());
+        this.survivalPatterns = lanePatterns(rule.getSurvivalMask());
+        this.neighborSegments = new ByteBuffer[deltaX.length];
+        this.neighborOffsets = new int[deltaX.length];
+
+        int stride = roundUpToWord(2 * pad + roundUpToWord(width));
+        int rows = height + 2 * pad;
+        if (scratchDirectory == null) {
+            current = OffHeapGrid.allocateDirect(rows, stride);
+            next = OffHeapGrid.allocateDirect(rows, stride);
+        } else {
+            try {
+                scratchFile = File.createTempFile("lifegame-", ".grid", scratchDirectory);
+                scratchFile.deleteOnExit();
+                long gridBytes = OffHeapGrid.byteSize(rows, stride);
+                try (RandomAccessFile file = new RandomAccessFile(scratchFile, "rw")) {
+                    file.setLength(2 * gridBytes);
+                    FileChannel channel = file.getChannel();
+                    current = OffHeapGrid.map(channel, 0, rows, stride);
+                    next = OffHeapGrid.map(channel, gridBytes, rows, stride);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map automata scratch file", e);
+            }
+        }
+        statistics = accumulator.toStatistics();
+    }
+
+    @Override
+    public void initAutomata(List<Boolean> initialStates) {
+        if (initialStates.size() != width * height) {
+            throw new IllegalArgumentException("Provided states list doesn't match automata grid size");
+        }
+        checkOpen();
+        accumulator.reset();
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean state = initialStates.get(i++);
+                current.put(y + pad, x + pad, (byte) (state ? 1 : 0));
+                accumulator.record(x, y, state, state);
+            }
+        }
+        statistics = accumulator.toStatistics();
+        generation = 0;
+    }
+
+    @Override
+    public void updateAutomata() {
+        checkOpen();
+        if (width == 0 || height == 0) {
+            return;
+        }
+        refreshGhostCells();
+        accumulator.reset();
+        if (changes != null) {
+            changes.reset();
+        }
+        for (int y = pad; y < height + pad; y++) {
+            for (int i = 0; i < neighborSegments.length; i++) {
+                neighborSegments[i] = current.segment(y + deltaY[i]);
+                neighborOffsets[i] = current.offset(y + deltaY[i]) + deltaX[i];
+            }
+            ByteBuffer own = current.segment(y);
+            int ownOffset = current.offset(y);
+            ByteBuffer target = next.segment(y);
+            int targetOffset = next.offset(y);
+            int firstAlive = -1;
+            int lastAlive = -1;
+            for (int x = pad; x < width + pad; x += Long.BYTES) {
+                long neighbors = 0;
+                for (int i = 0; i < neighborSegments.length; i++) {
+                    neighbors += neighborSegments[i].getLong(neighborOffsets[i] + x);
+                }
+                long alive = own.getLong(ownOffset + x);
+                long updated = applyRule(neighbors, alive);
+                target.putLong(targetOffset + x, updated);
+
+                long lanes = interiorLanes(width + pad - x);
+                long born = updated & ~alive & lanes;
+                long died = alive & ~updated & lanes;
+                long population = updated & lanes;
+                accumulator.births += Long.bitCount(born);
+                accumulator.deaths += Long.bitCount(died);
+                accumulator.population += Long.bitCount(population);
+                if (changes != null && (born | died) != 0) {
+                    recordChanges(born, died, (y - pad) * width + x - pad);
+                }
+                if (population != 0) {
+                    if (firstAlive < 0) {
+                        firstAlive = x - pad + Long.numberOfTrailingZeros(population) / Byte.SIZE;
+                    }
+                    lastAlive = x - pad + (Long.SIZE - 1 - Long.numberOfLeadingZeros(population)) / Byte.SIZE;
+                }
+            }
+            if (firstAlive >= 0) {
+                accumulator.includeColumns(firstAlive, lastAlive, y - pad);
+            }
+        }
+        statistics = accumulator.toStatistics();
+        OffHeapGrid swap = current;
+        current = next;
+        next = swap;
+        generation++;
+        if (changePublisher != null) {
+            changePublisher.publish(changes.toDelta(generation));
+        }
+    }
+
+    @Override
+    public void setChangePublisher(CellChangePublisher publisher) {
+        changePublisher = publisher;
+        changes = publisher == null ? null : new ChangeCollector(width);
+    }
+
+    @Override
+    public List<Boolean> getCurrentState() {
+        checkOpen();
+        List<Boolean> states = new ArrayList<>(width * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                states.add(current.get(y + pad, x + pad) != 0);
+            }
+        }
+        return states;
+    }
+
+    @Override
+    public List<Integer> getDimensions() {
+        return Arrays.asList(width, height);
+    }
+
+    @Override
+    public AutomataStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public boolean isCellAlive(int index) {
+        if (index < 0 || index >= width * height) {
+            throw new IllegalArgumentException("Cell index is out of bounds");
+        }
+        checkOpen();
+        return current.get(index / width + pad, index % width + pad) != 0;
+    }
+
+    @Override
+    public void copyStates(int fromIndex, int toIndex, boolean[] target, int targetOffset) {
+        if (fromIndex < 0 || toIndex > width * height || fromIndex > toIndex) {
+            throw new IllegalArgumentException("Cell index range is out of bounds");
+        }
+        checkOpen();
+        int i = fromIndex;
+        while (i < toIndex) {
+            int row = i / width + pad;
+            int column = i % width;
+            ByteBuffer segment = current.segment(row);
+            int offset = current.offset(row) + pad;
+            int rowEnd = Math.min(width, column + toIndex - i);
+            for (int x = column; x < rowEnd; x++) {
+                target[targetOffset++] = segment.get(offset + x) != 0;
+            }
+            i += rowEnd - column;
+        }
+    }
+
+    /**
+     * Закрывает автомат: сразу освобождает прямые буферы или снимает отображение файла поколений
+     * (см. {@link OffHeapGrid#release()}) и удаляет временный файл, если поколения хранились в нем
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Arrays.fill(neighborSegments, null);
+        current.release();
+        next.release();
+        current = null;
+        next = null;
+        if (scratchFile != null) {
+            try {
+                Files.deleteIfExists(scratchFile.toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to delete automata scratch file", e);
+            }
+        }
+    }
+
+    /**
+     * Возвращает временный файл поколений
+     *
+     * @return - временный файл или null, если поколения хранятся в прямых буферах
+     */
+    File getScratchFile() {
+        return scratchFile;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Automata is closed");
+        }
+    }
+
+    /**
+     * Возвращает маску байтов слова, относящихся к клеткам поля, а не к теневой рамке справа от него
+     *
+     * @param remaining - число клеток поля, оставшихся в строке начиная с первого байта слова
+     * @return - маска, в которой младший бит каждого байта поля равен 1
+     */
+    private static long interiorLanes(int remaining) {
+        return remaining >= Long.BYTES ? LANE_ONES : LANE_ONES >>> (Byte.SIZE * (Long.BYTES - remaining));
+    }
+
+    /**
+     * Добавляет родившиеся и умершие клетки слова в накопитель изменений
+     *
+     * @param born  - побайтовая маска родившихся клеток
+     * @param died  - побайтовая маска умерших клеток
+     * @param index - индекс клетки, соответствующей первому байту слова
+     */
+    private void recordChanges(long born, long died, int index) {
+        for (; born != 0; born &= born - 1) {
+            changes.born(index + Long.numberOfTrailingZeros(born) / Byte.SIZE);
+        }
+        for (; died != 0; died &= died - 1) {
+            changes.died(index + Long.numberOfTrailingZeros(died) / Byte.SIZE);
+        }
+    }
+
+    /**
+     * Применяет правило к восьми клеткам сразу
+     *
+     * @param neighbors - побайтовые числа живых соседей
+     * @param alive     - побайтовые состояния клеток: 1 - жива, 0 - мертва
+     * @return - побайтовые новые состояния клеток
+     */
+    private long applyRule(long neighbors, long alive) {
+        long birth = 0;
+        for (long pattern : birthPatterns) {
+            birth |= zeroLanes(neighbors ^ pattern);
+        }
+        long survival = 0;
+        for (long pattern : survivalPatterns) {
+            survival |= zeroLanes(neighbors ^ pattern);
+        }
+        return (birth & (alive ^ LANE_ONES)) | (survival & alive);
+    }
+
+    /**
+     * Возвращает слово, в котором байт равен 1, если соответствующий байт аргумента нулевой, и 0 иначе.
+     * Корректно, пока каждый байт аргумента меньше 0x80, что верно для чисел соседей.
+     *
+     * @param lanes - восемь байтовых значений
+     * @return - побайтовая маска нулевых значений
+     */
+    private static long zeroLanes(long lanes) {
+        return (~(lanes + LANE_LOW_BITS) & LANE_HIGH_BITS) >>> 7;
+    }
+
+    /**
+     * Заполняет теневую рамку вокруг поля согласно режиму обработки краев. Сначала заполняются теневые столбцы
+     * строк поля, затем теневые строки копируются целиком, вместе с уже заполненными углами
+     */
+    private void refreshGhostCells() {
+        for (int y = pad; y < height + pad; y++) {
+            for (int g = 0; g < pad; g++) {
+                current.put(y, g, ghostState(y, boundaryMode.resolve(g - pad, width)));
+                current.put(y, pad + width + g, ghostState(y, boundaryMode.resolve(width + g, width)));
+            }
+        }
+        for (int g = 0; g < pad; g++) {
+            refreshGhostRow(g, boundaryMode.resolve(g - pad, height));
+            refreshGhostRow(pad + height + g, boundaryMode.resolve(height + g, height));
+        }
+    }
+
+    private byte ghostState(int row, int sourceColumn) {
+        return sourceColumn < 0 ? 0 : current.get(row, pad + sourceColumn);
+    }
+
+    private void refreshGhostRow(int row, int sourceRow) {
+        if (sourceRow < 0) {
+            current.clearRow(row);
+        } else {
+            current.copyRow(pad + sourceRow, row);
+        }
+    }
+
+    private static long[] lanePatterns(int countsMask) {
+        long[] patterns = new long[Integer.bitCount(countsMask)];
+        int i = 0;
+        for (int count = 0; count < Integer.SIZE; count++) {
+            if ((countsMask & (1 << count)) != 0) {
+                patterns[i++] = count * LANE_ONES;
+            }
+        }
+        return patterns;
+    }
+
+    private static int roundUpToWord(int value) {
+        return (value + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+    }
+}
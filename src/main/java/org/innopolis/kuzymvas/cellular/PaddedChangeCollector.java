@@ -0,0 +1,27 @@
+package org.innopolis.kuzymvas.cellular;
+
+/**
+ * Сборщик изменений, дополненный неиспользуемыми полями до размера, превышающего строку кэша,
+ * по той же причине, что и {@link PaddedStatisticsAccumulator}: сборщики разных потоков создаются друг за другом
+ * и без дополнения делили бы строки кэша, в которые каждый поток пишет на каждой клетке
+ */
+final class PaddedChangeCollector extends ChangeCollector {
+
+    long p1;
+    long p2;
+    long p3;
+    long p4;
+    long p5;
+    long p6;
+    long p7;
+    long p8;
+
+    /**
+     * Создает новый сборщик
+     *
+     * @param width - ширина поля, чтобы переводить координаты клетки в индекс
+     */
+    PaddedChangeCollector(int width) {
+        super(width);
+    }
+}
@@ -0,0 +1,18 @@
+package org.innopolis.kuzymvas.cellular;
+
+/**
+ * Накопитель статистики, дополненный неиспользуемыми полями до размера, превышающего строку кэша.
+ * Накопители разных потоков, созданные друг за другом, иначе оказываются рядом в памяти,
+ * и запись одного потока постоянно вытесняет из кэша строку, которую пишет другой
+ */
+final class PaddedStatisticsAccumulator extends StatisticsAccumulator {
+
+    long p1;
+    long p2;
+    long p3;
+    long p4;
+    long p5;
+    long p6;
+    long p7;
+    long p8;
+}
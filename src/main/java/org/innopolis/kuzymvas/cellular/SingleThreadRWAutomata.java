@@ -1,25 +1,50 @@
 package org.innopolis.kuzymvas.cellular;
 
-import org.innopolis.kuzymvas.cellular.cells.Cell;
 import org.innopolis.kuzymvas.cellular.cells.CellFactory;
 
+import java.util.List;
+
 /**
  * Класс однопоточного клеточного автомата на замкнутом прямоугольном поле
  */
 public class SingleThreadRWAutomata extends AbstractRectangularWraparoundAutomata {
 
+    private StatisticsAccumulator accumulator = new StatisticsAccumulator();
+    private CellChangePublisher changePublisher;
+    private long generation;
+
     public SingleThreadRWAutomata(
             int width, int height, CellFactory factory, NeighborhoodType neighborhoodType) {
         super(width, height, factory, neighborhoodType);
     }
 
+    public SingleThreadRWAutomata(
+            int width, int height, CellFactory factory, NeighborhoodType neighborhoodType,
+            BoundaryMode boundaryMode) {
+        super(width, height, factory, neighborhoodType, boundaryMode);
+    }
+
+    @Override
+    public void initAutomata(List<Boolean> initialStates) {
+        super.initAutomata(initialStates);
+        generation = 0;
+    }
+
     @Override
     public void updateAutomata() {
-        for (Cell cell : cells) {
-            cell.calculateNextState();
-        }
-        for (Cell cell : cells) {
-            cell.updateState();
+        calculateStates(0, cells.size());
+        accumulator.reset();
+        updateStates(0, cells.size(), accumulator);
+        publishStatistics(accumulator);
+        generation++;
+        if (changePublisher != null) {
+            changePublisher.publish(((ChangeCollector) accumulator).toDelta(generation));
         }
     }
+
+    @Override
+    public void setChangePublisher(CellChangePublisher publisher) {
+        changePublisher = publisher;
+        accumulator = publisher == null ? new StatisticsAccumulator() : new ChangeCollector(getDimensions().get(0));
+    }
 }
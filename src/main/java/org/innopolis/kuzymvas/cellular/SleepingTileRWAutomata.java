@@ -0,0 +1,473 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Класс клеточного автомата на прямоугольном поле, пропускающего неизменные участки поля.
+ * Поле разбито на плитки; плитка засыпает, если на прошлом шаге не изменились ни она сама,
+ * ни плитки, клетки которых попадают в окружение ее клеток (для окружения радиуса не больше размера плитки
+ * это восемь соседних плиток, с учетом режима обработки краев). Спящая плитка не пересчитывается вовсе:
+ * ее следующее поколение совпадает с текущим, а буфер следующего поколения уже содержит те же значения.
+ * Как только на соседней плитке что-то меняется, плитка просыпается на следующем шаге.
+ * Многопоточный вариант раздает потокам только бодрствующие плитки; потоки берутся из {@link WorkerPool},
+ * собственного или общего для многих автоматов.
+ * Если задан издатель изменений, каждый участник собирает рождения и смерти своих плиток в свой накопитель;
+ * спящие плитки не меняются, поэтому изменений в них нет.
+ */
+public class SleepingTileRWAutomata implements ChangeFeedAutomata {
+
+    static final int TILE_SIZE = 32;
+
+    private final int width;
+    private final int height;
+    private final int pad;
+    private final int stride;
+    private final int[] neighborOffsets;
+    private final byte[] transitions;
+    private final int countsPerState;
+    private final int[] ghostTargets;
+    private final int[] ghostSources;
+    private final TilePartition tiles;
+    private final int[][] wakeSources;
+    private final boolean[] changed;
+    private final boolean[] awake;
+    private final int[] awakeTiles;
+    private final long[] tilePopulation;
+    private final long[] tileBirths;
+    private final long[] tileDeaths;
+    private final int[][] tileBox;
+    private final StatisticsAccumulator accumulator = new StatisticsAccumulator();
+    private AutomataStatistics statistics;
+    private int awakeCount;
+    private byte[] current;
+    private byte[] next;
+
+    private final WorkerPool pool;
+    private final boolean ownsPool;
+    private final AtomicInteger nextAwakeTile = new AtomicInteger();
+    private final AtomicInteger nextParticipant = new AtomicInteger();
+    private ChangeCollector[] participantChanges;
+    private ChangeCollector changes;
+    private CellChangePublisher changePublisher;
+    private long generation;
+    private volatile boolean closed;
+
+    /**
+     * Создает новый однопоточный автомат на замкнутом поле
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param rule             - правило обновления клеток
+     * @param neighborhoodType - тип локального окружения клетки
+     */
+    public SleepingTileRWAutomata(int width, int height, LifeRule rule, NeighborhoodType neighborhoodType) {
+        this(width, height, rule, neighborhoodType, BoundaryMode.WRAPAROUND, 1);
+    }
+
+    /**
+     * Создает новый автомат с заданным режимом обработки краев поля и числом потоков
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param rule             - правило обновления клеток
+     * @param neighborhoodType - тип локального окружения клетки
+     * @param boundaryMode     - режим обработки краев поля
+     * @param threadsNumber    - число потоков; при одном потоке плитки считаются в вызывающем потоке
+     */
+    public SleepingTileRWAutomata(
+            int width, int height, LifeRule rule, NeighborhoodType neighborhoodType,
+            BoundaryMode boundaryMode, int threadsNumber) {
+        this(width, height, rule, neighborhoodType, boundaryMode, threadsNumber, TILE_SIZE);
+    }
+
+    /**
+     * Создает новый автомат с заданным размером плиток
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param rule             - правило обновления клеток
+     * @param neighborhoodType - тип локального окружения клетки
+     * @param boundaryMode     - режим обработки краев поля
+     * @param threadsNumber    - число потоков; при одном потоке плитки считаются в вызывающем потоке
+     * @param tileSize         - сторона плитки, не меньше радиуса окружения
+     */
+    SleepingTileRWAutomata(
+            int width, int height, LifeRule rule, NeighborhoodType neighborhoodType,
+            BoundaryMode boundaryMode, int threadsNumber, int tileSize) {
+        this(width, height, rule, neighborhoodType, boundaryMode, ownPool(threadsNumber), true, tileSize);
+    }
+
+    /**
+     * Создает новый автомат, пересчитывающий плитки в общем пуле потоков. Пул остается открытым
+     * после закрытия автомата
+     *
+     * @param width            - ширина поля
+     * @param height           - высота поля
+     * @param rule             - правило обновления клеток
+     * @param neighborhoodType - тип локального окружения клетки
+     * @param boundaryMode     - режим обработки краев поля
+     * @param pool             - общий пул потоков
+     */
+    public SleepingTileRWAutomata(
+            int width, int height, LifeRule rule, NeighborhoodType neighborhoodType,
+            BoundaryMode boundaryMode, WorkerPool pool) {
+        this(width, height, rule, neighborhoodType, boundaryMode, pool, false, TILE_SIZE);
+    }
+
+    private SleepingTileRWAutomata(
+            int width, int height, LifeRule rule, NeighborhoodType neighborhoodType,
+            BoundaryMode boundaryMode, WorkerPool pool, boolean ownsPool, int tileSize) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Automata grid dimensions can't be negative");
+        }
+        if (tileSize < neighborhoodType.getRadius()) {
+            throw new IllegalArgumentException("Tiles can't be smaller than neighborhood radius");
+        }
+        this.width = width;
+        this.height = height;
+        this.pad = neighborhoodType.getRadius();
+        this.stride = width + 2 * pad;
+        int[][] deltas = neighborhoodType.getDeltas();
+        this.neighborOffsets = new int[deltas[0].length];
+        for (int i = 0; i < neighborOffsets.length; i++) {
+            neighborOffsets[i] = deltas[1][i] * stride + deltas[0][i];
+        }
+        this.countsPerState = neighborOffsets.length + 1;
+        this.transitions = new byte[2 * countsPerState];
+        for (int count = 0; count < countsPerState; count++) {
+            transitions[count] = (byte) (rule.nextState(false, count) ? 1 : 0);
+            transitions[countsPerState + count] = (byte) (rule.nextState(true, count) ? 1 : 0);
+        }
+
+        List<int[]> ghosts = new ArrayList<>();
+        for (int y = 0; y < height + 2 * pad; y++) {
+            for (int x = 0; x < stride; x++) {
+                boolean interior = x >= pad && x < width + pad && y >= pad && y < height + pad;
+                if (!interior && width > 0 && height > 0) {
+                    int sourceX = boundaryMode.resolve(x - pad, width);
+                    int sourceY = boundaryMode.resolve(y - pad, height);
+                    int source = sourceX < 0 || sourceY < 0 ? -1 : (sourceY + pad) * stride + sourceX + pad;
+                    ghosts.add(new int[]{y * stride + x, source});
+                }
+            }
+        }
+        this.ghostTargets = new int[ghosts.size()];
+        this.ghostSources = new int[ghosts.size()];
+        for (int i = 0; i < ghosts.size(); i++) {
+            ghostTargets[i] = ghosts.get(i)[0];
+            ghostSources[i] = ghosts.get(i)[1];
+        }
+
+        this.tiles = new TilePartition(width, height, tileSize, tileSize);
+        int tileCount = tiles.getTileCount();
+        this.wakeSources = new int[tileCount][];
+        for (int tile = 0; tile < tileCount; tile++) {
+            wakeSources[tile] = wakeSources(tile, boundaryMode, tileSize);
+        }
+        this.changed = new boolean[tileCount];
+        this.awake = new boolean[tileCount];
+        this.awakeTiles = new int[tileCount];
+        this.tilePopulation = new long[tileCount];
+        this.tileBirths = new long[tileCount];
+        this.tileDeaths = new long[tileCount];
+        this.tileBox = new int[tileCount][4];
+        this.current = new byte[stride * (height + 2 * pad)];
+        this.next = new byte[current.length];
+        this.statistics = accumulator.toStatistics();
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+    }
+
+    /**
+     * Создает собственный пул автомата; одному потоку пул не нужен, плитки считаются в вызывающем потоке
+     *
+     * @param threadsNumber - число потоков
+     * @return - пул или null для одного потока
+     */
+    private static WorkerPool ownPool(int threadsNumber) {
+        if (threadsNumber < 1) {
+            throw new IllegalArgumentException("Automata needs at least one thread");
+        }
+        return threadsNumber > 1 ? new WorkerPool(threadsNumber) : null;
+    }
+
+    @Override
+    public void initAutomata(List<Boolean> initialStates) {
+        if (initialStates.size() != width * height) {
+            throw new IllegalArgumentException("Provided states list doesn't match automata grid size");
+        }
+        accumulator.reset();
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean state = initialStates.get(i++);
+                current[(y + pad) * stride + x + pad] = (byte) (state ? 1 : 0);
+                accumulator.record(x, y, state, state);
+            }
+        }
+        Arrays.fill(changed, true);
+        statistics = accumulator.toStatistics();
+        generation = 0;
+    }
+
+    @Override
+    public void updateAutomata() {
+        if (closed) {
+            throw new IllegalStateException("Automata is closed");
+        }
+        if (width == 0 || height == 0) {
+            return;
+        }
+        for (int i = 0; i < ghostTargets.length; i++) {
+            current[ghostTargets[i]] = ghostSources[i] < 0 ? 0 : current[ghostSources[i]];
+        }
+        awakeCount = 0;
+        for (int tile = 0; tile < awake.length; tile++) {
+            boolean isAwake = false;
+            for (int source : wakeSources[tile]) {
+                if (changed[source]) {
+                    isAwake = true;
+                    break;
+                }
+            }
+            awake[tile] = isAwake;
+            if (isAwake) {
+                awakeTiles[awakeCount++] = tile;
+            }
+        }
+        if (participantChanges != null) {
+            for (ChangeCollector collector : participantChanges) {
+                collector.reset();
+            }
+        }
+        if (pool == null) {
+            ChangeCollector tileChanges = participantChanges == null ? null : participantChanges[0];
+            for (int i = 0; i < awakeCount; i++) {
+                updateTile(awakeTiles[i], tileChanges);
+            }
+        } else {
+            nextAwakeTile.set(0);
+            nextParticipant.set(0);
+            pool.invoke(this::updateAwakeTiles);
+        }
+        accumulator.reset();
+        for (int tile = 0; tile < awake.length; tile++) {
+            if (!awake[tile]) {
+                changed[tile] = false;
+                tileBirths[tile] = 0;
+                tileDeaths[tile] = 0;
+            }
+            accumulator.population += tilePopulation[tile];
+            accumulator.births += tileBirths[tile];
+            accumulator.deaths += tileDeaths[tile];
+            if (tilePopulation[tile] != 0) {
+                int[] box = tileBox[tile];
+                accumulator.includeColumns(box[0], box[1], box[2]);
+                accumulator.includeColumns(box[0], box[1], box[3]);
+            }
+        }
+        statistics = accumulator.toStatistics();
+        byte[] swap = current;
+        current = next;
+        next = swap;
+        generation++;
+        if (changePublisher != null) {
+            changes.reset();
+            for (ChangeCollector collector : participantChanges) {
+                changes.append(collector);
+            }
+            changePublisher.publish(changes.toDelta(generation));
+        }
+    }
+
+    @Override
+    public void setChangePublisher(CellChangePublisher publisher) {
+        changePublisher = publisher;
+        if (publisher == null) {
+            changes = null;
+            participantChanges = null;
+        } else {
+            changes = new ChangeCollector(width);
+            participantChanges = new ChangeCollector[pool == null ? 1 : pool.getParallelism()];
+            for (int i = 0; i < participantChanges.length; i++) {
+                participantChanges[i] = new PaddedChangeCollector(width);
+            }
+        }
+    }
+
+    @Override
+    public List<Boolean> getCurrentState() {
+        List<Boolean> states = new ArrayList<>(width * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                states.add(current[(y + pad) * stride + x + pad] != 0);
+            }
+        }
+        return states;
+    }
+
+    @Override
+    public List<Integer> getDimensions() {
+        return Arrays.asList(width, height);
+    }
+
+    @Override
+    public AutomataStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public boolean isCellAlive(int index) {
+        if (index < 0 || index >= width * height) {
+            throw new IllegalArgumentException("Cell index is out of bounds");
+        }
+        return current[(index / width + pad) * stride + index % width + pad] != 0;
+    }
+
+    @Override
+    public void copyStates(int fromIndex, int toIndex, boolean[] target, int targetOffset) {
+        if (fromIndex < 0 || toIndex > width * height || fromIndex > toIndex) {
+            throw new IllegalArgumentException("Cell index range is out of bounds");
+        }
+        for (int i = fromIndex; i < toIndex; i++) {
+            target[targetOffset++] = current[(i / width + pad) * stride + i % width + pad] != 0;
+        }
+    }
+
+    /**
+     * Закрывает автомат; собственный пул потоков автомата останавливается, общий остается открытым
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (ownsPool && pool != null) {
+            pool.close();
+        }
+    }
+
+    /**
+     * Возвращает число плиток, пересчитанных на последнем шаге
+     *
+     * @return - число бодрствующих плиток
+     */
+    public int getAwakeTileCount() {
+        return awakeCount;
+    }
+
+    /**
+     * Пересчитывает одну плитку, отмечая, изменилась ли она, и собирая ее статистику
+     *
+     * @param tile        - номер плитки
+     * @param tileChanges - накопитель изменений участника или null, если изменения не нужны
+     */
+    private void updateTile(int tile, ChangeCollector tileChanges) {
+        boolean tileChanged = false;
+        long population = 0;
+        long births = 0;
+        long deaths = 0;
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int y = tiles.getTop(tile); y < tiles.getBottom(tile); y++) {
+            int row = (y + pad) * stride + pad;
+            for (int x = tiles.getLeft(tile); x < tiles.getRight(tile); x++) {
+                int cell = row + x;
+                int count = 0;
+                for (int offset : neighborOffsets) {
+                    count += current[cell + offset];
+                }
+                byte alive = current[cell];
+                byte state = transitions[alive * countsPerState + count];
+                next[cell] = state;
+                if (state != alive) {
+                    tileChanged = true;
+                    births += state;
+                    deaths += alive;
+                    if (tileChanges != null) {
+                        if (state != 0) {
+                            tileChanges.born(y * width + x);
+                        } else {
+                            tileChanges.died(y * width + x);
+                        }
+                    }
+                }
+                if (state != 0) {
+                    population++;
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+        changed[tile] = tileChanged;
+        tilePopulation[tile] = population;
+        tileBirths[tile] = births;
+        tileDeaths[tile] = deaths;
+        int[] box = tileBox[tile];
+        box[0] = minX;
+        box[1] = maxX;
+        box[2] = minY;
+        box[3] = maxY;
+    }
+
+    /**
+     * Возвращает плитки, изменение которых будит заданную: саму плитку и все плитки, клетки которых
+     * попадают в окружение ее клеток с учетом режима обработки краев
+     *
+     * @param tile         - номер плитки
+     * @param boundaryMode - режим обработки краев поля
+     * @param tileSize     - сторона плитки
+     * @return - номера плиток без повторов
+     */
+    private int[] wakeSources(int tile, BoundaryMode boundaryMode, int tileSize) {
+        boolean[] seen = new boolean[tiles.getTileCount()];
+        seen[tile] = true;
+        int count = 1;
+        for (int y = tiles.getTop(tile) - pad; y < tiles.getBottom(tile) + pad; y++) {
+            for (int x = tiles.getLeft(tile) - pad; x < tiles.getRight(tile) + pad; x++) {
+                boolean inside = y >= tiles.getTop(tile) && y < tiles.getBottom(tile)
+                        && x >= tiles.getLeft(tile) && x < tiles.getRight(tile);
+                if (inside) {
+                    x = tiles.getRight(tile) - 1;
+                    continue;
+                }
+                int sourceX = boundaryMode.resolve(x, width);
+                int sourceY = boundaryMode.resolve(y, height);
+                if (sourceX >= 0 && sourceY >= 0) {
+                    int source = (sourceY / tileSize) * tiles.getTilesX() + sourceX / tileSize;
+                    if (!seen[source]) {
+                        seen[source] = true;
+                        count++;
+                    }
+                }
+            }
+        }
+        int[] sources = new int[count];
+        sources[0] = tile;
+        int i = 1;
+        for (int source = 0; source < seen.length; source++) {
+            if (seen[source] && source != tile) {
+                sources[i++] = source;
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Работа участника пула: разбирает бодрствующие плитки по одной из общего счетчика
+     */
+    private void updateAwakeTiles() {
+        ChangeCollector[] collectors = participantChanges;
+        ChangeCollector tileChanges = collectors == null ? null : collectors[nextParticipant.getAndIncrement()];
+        for (int i = nextAwakeTile.getAndIncrement(); i < awakeCount; i = nextAwakeTile.getAndIncrement()) {
+            updateTile(awakeTiles[i], tileChanges);
+        }
+    }
+}
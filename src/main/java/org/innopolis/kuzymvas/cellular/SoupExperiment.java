@@ -0,0 +1,270 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Статистический эксперимент над случайными "супами": для каждого правила и каждой плотности
+ * запускается заданное число случайных полей, и для каждого измеряются время жизни, итоговая популяция и период.
+ * Суп считается устоявшимся, как только поколение повторяет одно из последних maxPeriod поколений:
+ * временем жизни тогда считается номер первого поколения цикла, а периодом - длина цикла.
+ * Супы, не устоявшиеся за maxGenerations шагов, считаются неустоявшимися.
+ * Каждый суп получает свой генератор {@link SplittableRandom}, отщепленный от корневого в фиксированном порядке,
+ * и порождается прямо в хранилище {@link BlockLookupRWAutomata}, поэтому результаты зависят только от зерна,
+ * но не от числа потоков. Супы разбираются потоками пула по одному, а сводка собирается в порядке супов
+ */
+public class SoupExperiment {
+
+    public static final int DEFAULT_MAX_GENERATIONS = 5000;
+    public static final int DEFAULT_MAX_PERIOD = 30;
+
+    private static final String CSV_HEADER = "rule,density,soups,stabilized,died_out,still_lifes,oscillators,"
+            + "mean_lifespan,stddev_lifespan,max_lifespan,mean_final_population";
+
+    private final int width;
+    private final int height;
+    private final List<LifeRule> rules;
+    private final double[] densities;
+    private final int soups;
+    private final int maxGenerations;
+    private final int maxPeriod;
+    private final long seed;
+
+    /**
+     * Создает новый эксперимент на замкнутых полях
+     *
+     * @param width          - ширина поля супа
+     * @param height         - высота поля супа
+     * @param rules          - правила, для каждого из которых проводится эксперимент
+     * @param densities      - плотности живых клеток, от 0 до 1
+     * @param soups          - число супов на каждую пару правила и плотности
+     * @param maxGenerations - наибольшее число шагов на суп
+     * @param maxPeriod      - наибольший распознаваемый период
+     * @param seed           - зерно корневого генератора
+     */
+    public SoupExperiment(
+            int width, int height, List<LifeRule> rules, double[] densities, int soups,
+            int maxGenerations, int maxPeriod, long seed) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Soup dimensions should be positive");
+        }
+        if (rules.isEmpty() || densities.length == 0) {
+            throw new IllegalArgumentException("Experiment needs at least one rule and one density");
+        }
+        for (double density : densities) {
+            if (density < 0 || density > 1) {
+                throw new IllegalArgumentException("Density should be between 0 and 1");
+            }
+        }
+        if (soups <= 0 || maxGenerations <= 0 || maxPeriod <= 0) {
+            throw new IllegalArgumentException("Soup count, generation limit and period limit should be positive");
+        }
+        this.width = width;
+        this.height = height;
+        this.rules = new ArrayList<>(rules);
+        this.densities = densities.clone();
+        this.soups = soups;
+        this.maxGenerations = maxGenerations;
+        this.maxPeriod = maxPeriod;
+        this.seed = seed;
+    }
+
+    /**
+     * Проводит эксперимент
+     *
+     * @param threads - число потоков
+     * @return - сводки по каждой паре правила и плотности, в порядке правил, а внутри правила - в порядке плотностей
+     */
+    public List<Summary> run(int threads) {
+        int total = rules.size() * densities.length * soups;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[total];
+        for (int i = 0; i < total; i++) {
+            randoms[i] = root.split();
+        }
+        SoupResult[] results = new SoupResult[total];
+        AtomicInteger nextSoup = new AtomicInteger();
+        try (WorkerPool pool = new WorkerPool(threads)) {
+            pool.invoke(() -> {
+                Map<LifeRule, BlockLookupRWAutomata> automatas = new HashMap<>();
+                int soup;
+                while ((soup = nextSoup.getAndIncrement()) < total) {
+                    int series = soup / soups;
+                    LifeRule rule = rules.get(series / densities.length);
+                    BlockLookupRWAutomata automata = automatas.computeIfAbsent(
+                            rule, key -> new BlockLookupRWAutomata(width, height, key));
+                    results[soup] = runSoup(automata, randoms[soup], densities[series % densities.length]);
+                }
+            });
+        }
+        List<Summary> summaries = new ArrayList<>();
+        for (int series = 0; series < rules.size() * densities.length; series++) {
+            Summary summary = new Summary(rules.get(series / densities.length), densities[series % densities.length]);
+            for (int soup = series * soups; soup < (series + 1) * soups; soup++) {
+                summary.add(results[soup]);
+            }
+            summaries.add(summary);
+        }
+        return summaries;
+    }
+
+    /**
+     * Порождает и прогоняет один суп до устоявшегося состояния или до предела шагов.
+     * Свертки последних maxPeriod поколений хранятся в кольцевом буфере
+     *
+     * @param automata - автомат для супа
+     * @param random   - генератор супа
+     * @param density  - плотность живых клеток
+     * @return - результат супа
+     */
+    SoupResult runSoup(BlockLookupRWAutomata automata, SplittableRandom random, double density) {
+        automata.initRandom(random, density);
+        long[] recent = new long[maxPeriod];
+        recent[0] = automata.stateHash();
+        for (int generation = 1; generation <= maxGenerations; generation++) {
+            automata.updateAutomata();
+            long hash = automata.stateHash();
+            for (int period = 1; period <= Math.min(generation, maxPeriod); period++) {
+                if (recent[(generation - period) % maxPeriod] == hash) {
+                    return new SoupResult(generation - period, period, automata.getStatistics().getPopulation());
+                }
+            }
+            recent[generation % maxPeriod] = hash;
+        }
+        return new SoupResult(maxGenerations, 0, automata.getStatistics().getPopulation());
+    }
+
+    /**
+     * Записывает сводки в формате CSV с заголовком
+     *
+     * @param summaries - сводки эксперимента
+     * @param out       - целевой поток
+     * @throws IOException - если запись не удалась
+     */
+    public static void writeCsv(List<Summary> summaries, Writer out) throws IOException {
+        out.write(CSV_HEADER);
+        out.write('\n');
+        for (Summary summary : summaries) {
+            out.write(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%d,%d,%.3f,%.3f,%d,%.3f\n",
+                                    summary.rule, summary.density, summary.soups, summary.stabilized,
+                                    summary.diedOut, summary.stillLifes, summary.oscillators,
+                                    summary.getMeanLifespan(), summary.getLifespanDeviation(), summary.maxLifespan,
+                                    summary.getMeanFinalPopulation()));
+        }
+        out.flush();
+    }
+
+    /**
+     * Результат одного супа
+     */
+    static class SoupResult {
+        final long lifespan;
+        final int period;
+        final long finalPopulation;
+
+        /**
+         * @param lifespan        - номер первого поколения цикла или предел шагов, если суп не устоялся
+         * @param period          - период цикла или 0, если суп не устоялся
+         * @param finalPopulation - популяция последнего вычисленного поколения
+         */
+        SoupResult(long lifespan, int period, long finalPopulation) {
+            this.lifespan = lifespan;
+            this.period = period;
+            this.finalPopulation = finalPopulation;
+        }
+    }
+
+    /**
+     * Сводка по всем супам одной пары правила и плотности
+     */
+    public static class Summary {
+        private final LifeRule rule;
+        private final double density;
+        private int soups;
+        private int stabilized;
+        private int diedOut;
+        private int stillLifes;
+        private int oscillators;
+        private long maxLifespan;
+        private double lifespanSum;
+        private double lifespanSquaresSum;
+        private double populationSum;
+
+        Summary(LifeRule rule, double density) {
+            this.rule = rule;
+            this.density = density;
+        }
+
+        void add(SoupResult result) {
+            soups++;
+            if (result.period > 0) {
+                stabilized++;
+                if (result.finalPopulation == 0) {
+                    diedOut++;
+                } else if (result.period == 1) {
+                    stillLifes++;
+                } else {
+                    oscillators++;
+                }
+            }
+            maxLifespan = Math.max(maxLifespan, result.lifespan);
+            lifespanSum += result.lifespan;
+            lifespanSquaresSum += (double) result.lifespan * result.lifespan;
+            populationSum += result.finalPopulation;
+        }
+
+        public LifeRule getRule() {
+            return rule;
+        }
+
+        public double getDensity() {
+            return density;
+        }
+
+        public int getSoups() {
+            return soups;
+        }
+
+        public int getStabilized() {
+            return stabilized;
+        }
+
+        public int getDiedOut() {
+            return diedOut;
+        }
+
+        public int getStillLifes() {
+            return stillLifes;
+        }
+
+        public int getOscillators() {
+            return oscillators;
+        }
+
+        public long getMaxLifespan() {
+            return maxLifespan;
+        }
+
+        public double getMeanLifespan() {
+            return lifespanSum / soups;
+        }
+
+        public double getLifespanDeviation() {
+            double mean = getMeanLifespan();
+            return Math.sqrt(Math.max(lifespanSquaresSum / soups - mean * mean, 0));
+        }
+
+        public double getMeanFinalPopulation() {
+            return populationSum / soups;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.innopolis.kuzymvas.cellular;
+
+/**
+ * Изменяемый накопитель статистики двумерного поколения. Каждый поток обновления заполняет свой накопитель,
+ * а в конце шага накопители сливаются в один и превращаются в неизменяемую {@link AutomataStatistics}
+ */
+class StatisticsAccumulator {
+
+    long population;
+    long births;
+    long deaths;
+    int minX;
+    int minY;
+    int maxX;
+    int maxY;
+
+    StatisticsAccumulator() {
+        reset();
+    }
+
+    /**
+     * Очищает накопитель перед новым шагом
+     */
+    void reset() {
+        population = 0;
+        births = 0;
+        deaths = 0;
+        minX = Integer.MAX_VALUE;
+        minY = Integer.MAX_VALUE;
+        maxX = Integer.MIN_VALUE;
+        maxY = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Учитывает одну клетку
+     *
+     * @param x        - столбец клетки
+     * @param y        - строка клетки
+     * @param wasAlive - была ли клетка жива в предыдущем поколении
+     * @param isAlive  - жива ли клетка в новом поколении
+     */
+    void record(int x, int y, boolean wasAlive, boolean isAlive) {
+        if (isAlive) {
+            population++;
+            if (!wasAlive) {
+                births++;
+            }
+            includeColumns(x, x, y);
+        } else if (wasAlive) {
+            deaths++;
+        }
+    }
+
+    /**
+     * Расширяет ограничивающий прямоугольник до отрезка живых клеток строки
+     *
+     * @param fromX - первый столбец отрезка
+     * @param toX   - последний столбец отрезка
+     * @param y     - строка
+     */
+    void includeColumns(int fromX, int toX, int y) {
+        if (fromX < minX) {
+            minX = fromX;
+        }
+        if (toX > maxX) {
+            maxX = toX;
+        }
+        if (y < minY) {
+            minY = y;
+        }
+        if (y > maxY) {
+            maxY = y;
+        }
+    }
+
+    /**
+     * Добавляет к накопителю данные другого накопителя
+     *
+     * @param other - накопитель другого потока обновления
+     */
+    void merge(StatisticsAccumulator other) {
+        population += other.population;
+        births += other.births;
+        deaths += other.deaths;
+        if (other.population != 0) {
+            includeColumns(other.minX, other.maxX, other.minY);
+            includeColumns(other.minX, other.maxX, other.maxY);
+        }
+    }
+
+    AutomataStatistics toStatistics() {
+        return new AutomataStatistics(population, births, deaths, new int[]{minX, minY}, new int[]{maxX, maxY});
+    }
+}
@@ -0,0 +1,546 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Класс клеточного автомата с окружением по Муру для полей, не помещающихся в память. Поле хранится на диске
+ * в упакованном виде (бит на клетку, см. {@link #PACKED_MAGIC}) и за проход читается построчно, а в памяти
+ * находится только скользящее окно из трех строк на каждое вычисляемое поколение.
+ * За один проход вычисляется сразу несколько поколений: строка поколения g+1 вычисляется, как только
+ * готовы три строки поколения g вокруг нее, поэтому каждое следующее поколение отстает от предыдущего
+ * на одну строку, а поле читается и пишется один раз на всю глубину конвейера.
+ * Для замкнутого поля первые и последние строки исходного поколения держатся в памяти и подаются
+ * перед началом и после конца поля, так что строки вычисляемых поколений на стыке получаются верными.
+ * Для остальных режимов краев теневые строки каждого поколения строятся на месте.
+ * Поле можно загрузить из текстового файла, как у остальной программы, или из упакованного файла.
+ */
+public class StreamingRWAutomata implements CellularAutomata {
+
+    /**
+     * Признак упакованного файла поля. За ним идут ширина и высота (int, от старшего байта к младшему)
+     * и строки поля подряд: по (ширина + 7) / 8 байт на строку, клетка x - бит (x mod 8) байта x / 8
+     */
+    public static final int PACKED_MAGIC = 'L' << 24 | 'P' << 16 | 'K' << 8 | 'B';
+    public static final int DEFAULT_PIPELINE_DEPTH = 8;
+
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+    private static final int WINDOW_ROWS = 3;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final int rowBytes;
+    private final LifeRule rule;
+    private final BoundaryMode boundaryMode;
+    private final int pipelineDepth;
+    private final byte[] zeroRow;
+    private final byte[] packedRow;
+    private final StatisticsAccumulator accumulator = new StatisticsAccumulator();
+    private AutomataStatistics statistics;
+    private File current;
+    private File next;
+    private byte[][][] outputs;
+    private int[] nextOutput;
+    private byte[][] above;
+    private byte[][] center;
+    private int[] received;
+    private OutputStream writer;
+
+    /**
+     * Создает новый автомат на замкнутом поле с глубиной конвейера по умолчанию
+     *
+     * @param width     - ширина поля
+     * @param height    - высота поля
+     * @param rule      - правило обновления клеток
+     * @param directory - каталог для файлов поля
+     * @throws IOException - если файлы поля не удалось создать
+     */
+    public StreamingRWAutomata(int width, int height, LifeRule rule, File directory) throws IOException {
+        this(width, height, rule, BoundaryMode.WRAPAROUND, directory, DEFAULT_PIPELINE_DEPTH);
+    }
+
+    /**
+     * Создает новый автомат
+     *
+     * @param width         - ширина поля
+     * @param height        - высота поля
+     * @param rule          - правило обновления клеток
+     * @param boundaryMode  - режим обработки краев поля
+     * @param directory     - каталог для файлов поля
+     * @param pipelineDepth - наибольшее число поколений, вычисляемых за один проход по полю
+     * @throws IOException - если файлы поля не удалось создать
+     */
+    public StreamingRWAutomata(
+            int width, int height, LifeRule rule, BoundaryMode boundaryMode, File directory,
+            int pipelineDepth) throws IOException {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Automata grid dimensions can't be negative");
+        }
+        if (pipelineDepth <= 0) {
+            throw new IllegalArgumentException("Pipeline depth should be positive");
+        }
+        this.width = width;
+        this.height = height;
+        this.stride = width + 2;
+        this.rowBytes = (width + Byte.SIZE - 1) / Byte.SIZE;
+        this.rule = rule;
+        this.boundaryMode = boundaryMode;
+        this.pipelineDepth = pipelineDepth;
+        this.zeroRow = new byte[stride];
+        this.packedRow = new byte[rowBytes];
+        this.current = File.createTempFile("lifegame", ".bits", directory);
+        this.next = File.createTempFile("lifegame", ".bits", directory);
+        try (RandomAccessFile file = new RandomAccessFile(current, "rw")) {
+            file.writeInt(PACKED_MAGIC);
+            file.writeInt(width);
+            file.writeInt(height);
+            file.setLength(rowOffset(height));
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        this.statistics = accumulator.toStatistics();
+    }
+
+    /**
+     * Создает автомат по файлу поля, не загружая поле в память целиком. Упакованный файл узнается
+     * по признаку {@link #PACKED_MAGIC}, иначе файл читается как текст: строка файла - строка поля,
+     * ' ' и '_' - мертвые клетки, остальные символы - живые, поле заканчивается на пустой строке
+     *
+     * @param board         - файл поля
+     * @param rule          - правило обновления клеток
+     * @param boundaryMode  - режим обработки краев поля
+     * @param directory     - каталог для файлов поля
+     * @param pipelineDepth - наибольшее число поколений, вычисляемых за один проход по полю
+     * @return - автомат с загруженным полем
+     * @throws IOException - если файл поля не удалось прочитать или он некорректен
+     */
+    public static StreamingRWAutomata open(
+            File board, LifeRule rule, BoundaryMode boundaryMode, File directory,
+            int pipelineDepth) throws IOException {
+        File packed = board;
+        boolean converted = false;
+        if (!isPacked(board)) {
+            packed = File.createTempFile("lifegame", ".pkb", directory);
+            converted = true;
+            try {
+                textToPacked(board, packed);
+            } catch (IOException e) {
+                Files.deleteIfExists(packed.toPath());
+                throw e;
+            }
+        }
+        try {
+            int width;
+            int height;
+            try (DataInputStream in = new DataInputStream(new FileInputStream(packed))) {
+                in.readInt();
+                width = in.readInt();
+                height = in.readInt();
+            }
+            if (width < 0 || height < 0) {
+                throw new IOException("Packed board has negative dimensions: " + board);
+            }
+            if (packed.length() < HEADER_SIZE + (long) height * ((width + Byte.SIZE - 1) / Byte.SIZE)) {
+                throw new IOException("Packed board is truncated: " + board);
+            }
+            StreamingRWAutomata automata = new StreamingRWAutomata(
+                    width, height, rule, boundaryMode, directory, pipelineDepth);
+            try {
+                if (converted) {
+                    Files.move(packed.toPath(), automata.current.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    Files.copy(packed.toPath(), automata.current.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                automata.recordInitialStatistics();
+            } catch (IOException e) {
+                automata.close();
+                throw e;
+            }
+            return automata;
+        } finally {
+            if (converted) {
+                Files.deleteIfExists(packed.toPath());
+            }
+        }
+    }
+
+    /**
+     * Переводит текстовый файл поля в упакованный, читая его построчно
+     *
+     * @param text   - текстовый файл поля
+     * @param packed - создаваемый упакованный файл
+     * @throws IOException - если файлы не удалось прочитать или записать или поле не прямоугольное
+     */
+    public static void textToPacked(File text, File packed) throws IOException {
+        int width = -1;
+        int height = 0;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(text)));
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(packed), IO_BUFFER_SIZE))) {
+            out.writeInt(PACKED_MAGIC);
+            out.writeInt(0);
+            out.writeInt(0);
+            byte[] row = new byte[0];
+            String line = in.readLine();
+            while (line != null && line.length() != 0) {
+                if (width == -1) {
+                    width = line.length();
+                    row = new byte[(width + Byte.SIZE - 1) / Byte.SIZE];
+                } else if (line.length() != width) {
+                    throw new IOException("Board should be rectangular: " + text);
+                }
+                Arrays.fill(row, (byte) 0);
+                for (int x = 0; x < width; x++) {
+                    char c = line.charAt(x);
+                    if (!(c == ' ' || c == '_')) {
+                        row[x / Byte.SIZE] |= 1 << (x % Byte.SIZE);
+                    }
+                }
+                out.write(row);
+                height++;
+                line = in.readLine();
+            }
+        }
+        try (RandomAccessFile file = new RandomAccessFile(packed, "rw")) {
+            file.seek(Integer.BYTES);
+            file.writeInt(Math.max(width, 0));
+            file.writeInt(height);
+        }
+    }
+
+    private static boolean isPacked(File board) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(board))) {
+            return in.readInt() == PACKED_MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Сохраняет текущее поколение в упакованный файл
+     *
+     * @param packed - создаваемый упакованный файл
+     * @throws IOException - если файл не удалось записать
+     */
+    public void savePacked(File packed) throws IOException {
+        Files.copy(current.toPath(), packed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void initAutomata(List<Boolean> initialStates) {
+        if (initialStates.size() != width * height) {
+            throw new IllegalArgumentException("Provided states list doesn't match automata grid size");
+        }
+        try (OutputStream out = openWriter(current)) {
+            int i = 0;
+            for (int y = 0; y < height; y++) {
+                Arrays.fill(packedRow, (byte) 0);
+                for (int x = 0; x < width; x++) {
+                    if (initialStates.get(i++)) {
+                        packedRow[x / Byte.SIZE] |= 1 << (x % Byte.SIZE);
+                    }
+                }
+                out.write(packedRow);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        recordInitialStatistics();
+    }
+
+    @Override
+    public void updateAutomata() {
+        updateAutomata(1);
+    }
+
+    /**
+     * Обновляет состояние автомата на заданное число шагов проходами по полю, каждый из которых
+     * вычисляет до глубины конвейера поколений
+     *
+     * @param steps - число шагов
+     */
+    @Override
+    public void updateAutomata(int steps) {
+        if (steps < 0) {
+            throw new IllegalArgumentException("Number of steps can't be negative");
+        }
+        if (width == 0 || height == 0) {
+            return;
+        }
+        int maxDepth = boundaryMode == BoundaryMode.WRAPAROUND ? Math.min(pipelineDepth, height) : pipelineDepth;
+        try {
+            while (steps > 0) {
+                int depth = Math.min(steps, maxDepth);
+                pass(depth);
+                steps -= depth;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public List<Boolean> getCurrentState() {
+        boolean[] states = getStates(0, width * height);
+        List<Boolean> result = new ArrayList<>(states.length);
+        for (boolean state : states) {
+            result.add(state);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Integer> getDimensions() {
+        return Arrays.asList(width, height);
+    }
+
+    @Override
+    public AutomataStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public boolean isCellAlive(int index) {
+        if (index < 0 || index >= width * height) {
+            throw new IllegalArgumentException("Cell index is out of bounds");
+        }
+        boolean[] state = new boolean[1];
+        copyStates(index, index + 1, state, 0);
+        return state[0];
+    }
+
+    @Override
+    public void copyStates(int fromIndex, int toIndex, boolean[] target, int targetOffset) {
+        if (fromIndex < 0 || toIndex > width * height || fromIndex > toIndex) {
+            throw new IllegalArgumentException("Cell index range is out of bounds");
+        }
+        if (fromIndex == toIndex) {
+            return;
+        }
+        int firstRow = fromIndex / width;
+        int lastRow = (toIndex - 1) / width;
+        try (InputStream in = openReader(current, firstRow)) {
+            for (int y = firstRow; y <= lastRow; y++) {
+                readFully(in, packedRow);
+                int from = Math.max(fromIndex - y * width, 0);
+                int to = Math.min(toIndex - y * width, width);
+                for (int x = from; x < to; x++) {
+                    target[targetOffset++] = (packedRow[x / Byte.SIZE] & (1 << (x % Byte.SIZE))) != 0;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Удаляет файлы поля
+     */
+    @Override
+    public void close() {
+        try {
+            Files.deleteIfExists(current.toPath());
+            Files.deleteIfExists(next.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Один проход по полю: текущее поколение читается построчно и через цепочку из depth ступеней,
+     * каждая из которых держит окно из трех строк своего поколения, новое поколение пишется в другой файл
+     *
+     * @param depth - число вычисляемых за проход поколений
+     * @throws IOException - если файлы поля не удалось прочитать или записать
+     */
+    private void pass(int depth) throws IOException {
+        outputs = new byte[depth][WINDOW_ROWS][stride];
+        nextOutput = new int[depth];
+        above = new byte[depth][];
+        center = new byte[depth][];
+        received = new int[depth];
+        accumulator.reset();
+        byte[][] source = new byte[WINDOW_ROWS][stride];
+        try (InputStream in = openReader(current, 0);
+             OutputStream out = openWriter(next)) {
+            writer = out;
+            if (boundaryMode == BoundaryMode.WRAPAROUND) {
+                byte[][] first = new byte[depth][stride];
+                byte[][] last = new byte[depth][stride];
+                try (InputStream tail = openReader(current, height - depth)) {
+                    for (byte[] row : last) {
+                        readRow(tail, row);
+                    }
+                }
+                for (int i = 0; i < depth; i++) {
+                    push(0, last[i], i - depth);
+                }
+                for (int y = 0; y < height; y++) {
+                    byte[] row = y < depth ? first[y] : source[y % WINDOW_ROWS];
+                    readRow(in, row);
+                    push(0, row, y);
+                }
+                for (int i = 0; i < depth; i++) {
+                    push(0, first[i], height + i);
+                }
+            } else {
+                for (int y = 0; y < height; y++) {
+                    byte[] row = source[y % WINDOW_ROWS];
+                    readRow(in, row);
+                    push(0, row, y);
+                }
+                for (int stage = 0; stage < depth; stage++) {
+                    push(stage, boundaryMode == BoundaryMode.DEAD ? zeroRow : center[stage], height);
+                }
+            }
+        } finally {
+            writer = null;
+        }
+        statistics = accumulator.toStatistics();
+        File swap = current;
+        current = next;
+        next = swap;
+    }
+
+    /**
+     * Передает ступени конвейера очередную строку ее входного поколения. Когда у ступени есть
+     * три строки подряд, она вычисляет среднюю строку следующего поколения и передает ее дальше,
+     * а последняя ступень пишет ее в файл
+     *
+     * @param stage - номер ступени
+     * @param row   - строка с заполненными теневыми клетками
+     * @param y     - номер строки, для замкнутого поля может выходить за пределы поля
+     * @throws IOException - если строку не удалось записать
+     */
+    private void push(int stage, byte[] row, int y) throws IOException {
+        if (received[stage] == 0 && boundaryMode != BoundaryMode.WRAPAROUND) {
+            center[stage] = boundaryMode == BoundaryMode.DEAD ? zeroRow : row;
+            received[stage]++;
+        }
+        if (received[stage] >= 2) {
+            boolean last = stage == outputs.length - 1;
+            byte[] result = outputs[stage][nextOutput[stage]];
+            nextOutput[stage] = (nextOutput[stage] + 1) % WINDOW_ROWS;
+            computeRow(above[stage], center[stage], row, result, last ? y - 1 : -1);
+            if (last) {
+                writeRow(result);
+            } else {
+                fillGhostColumns(result);
+                push(stage + 1, result, y - 1);
+            }
+        }
+        above[stage] = center[stage];
+        center[stage] = row;
+        received[stage]++;
+    }
+
+    /**
+     * Вычисляет строку следующего поколения по трем строкам текущего
+     *
+     * @param upper  - строка над вычисляемой
+     * @param middle - строка на месте вычисляемой
+     * @param lower  - строка под вычисляемой
+     * @param result - вычисленная строка
+     * @param y      - номер строки для статистики или -1, если статистику собирать не нужно
+     */
+    private void computeRow(byte[] upper, byte[] middle, byte[] lower, byte[] result, int y) {
+        for (int x = 1; x <= width; x++) {
+            int count = upper[x - 1] + upper[x] + upper[x + 1]
+                    + middle[x - 1] + middle[x + 1]
+                    + lower[x - 1] + lower[x] + lower[x + 1];
+            boolean alive = middle[x] != 0;
+            boolean state = rule.nextState(alive, count);
+            result[x] = (byte) (state ? 1 : 0);
+            if (y >= 0) {
+                accumulator.record(x - 1, y, alive, state);
+            }
+        }
+    }
+
+    private void readRow(InputStream in, byte[] row) throws IOException {
+        readFully(in, packedRow);
+        for (int x = 0; x < width; x++) {
+            row[x + 1] = (byte) ((packedRow[x / Byte.SIZE] >>> (x % Byte.SIZE)) & 1);
+        }
+        fillGhostColumns(row);
+    }
+
+    private void writeRow(byte[] row) throws IOException {
+        Arrays.fill(packedRow, (byte) 0);
+        for (int x = 0; x < width; x++) {
+            packedRow[x / Byte.SIZE] |= row[x + 1] << (x % Byte.SIZE);
+        }
+        writer.write(packedRow);
+    }
+
+    private void fillGhostColumns(byte[] row) {
+        int left = boundaryMode.resolve(-1, width);
+        int right = boundaryMode.resolve(width, width);
+        row[0] = left < 0 ? 0 : row[left + 1];
+        row[width + 1] = right < 0 ? 0 : row[right + 1];
+    }
+
+    /**
+     * Пересчитывает статистику загруженного поколения одним проходом по файлу
+     */
+    private void recordInitialStatistics() {
+        accumulator.reset();
+        byte[] row = new byte[stride];
+        try (InputStream in = openReader(current, 0)) {
+            for (int y = 0; y < height; y++) {
+                readRow(in, row);
+                for (int x = 0; x < width; x++) {
+                    boolean state = row[x + 1] != 0;
+                    accumulator.record(x, y, state, state);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        statistics = accumulator.toStatistics();
+    }
+
+    private long rowOffset(int y) {
+        return HEADER_SIZE + (long) y * rowBytes;
+    }
+
+    private InputStream openReader(File file, int firstRow) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            in.getChannel().position(rowOffset(firstRow));
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new BufferedInputStream(in, IO_BUFFER_SIZE);
+    }
+
+    private OutputStream openWriter(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), IO_BUFFER_SIZE));
+        out.writeInt(PACKED_MAGIC);
+        out.writeInt(width);
+        out.writeInt(height);
+        return out;
+    }
+
+    private static void readFully(InputStream in, byte[] buffer) throws IOException {
+        int read = 0;
+        while (read < buffer.length) {
+            int count = in.read(buffer, read, buffer.length - read);
+            if (count < 0) {
+                throw new EOFException("Board file is truncated");
+            }
+            read += count;
+        }
+    }
+}
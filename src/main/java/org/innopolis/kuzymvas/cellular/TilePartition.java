@@ -0,0 +1,75 @@
+package org.innopolis.kuzymvas.cellular;
+
+/**
+ * Разбиение прямоугольного поля на прямоугольные плитки одинакового размера (крайние плитки могут быть меньше).
+ * Плитки нумеруются построчно: сначала вдоль ширины поля, затем вдоль высоты
+ */
+final class TilePartition {
+
+    private final int width;
+    private final int height;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int tilesX;
+    private final int tilesY;
+
+    /**
+     * Создает новое разбиение
+     *
+     * @param width      - ширина поля
+     * @param height     - высота поля
+     * @param tileWidth  - ширина плитки
+     * @param tileHeight - высота плитки
+     */
+    TilePartition(int width, int height, int tileWidth, int tileHeight) {
+        if (tileWidth <= 0 || tileHeight <= 0) {
+            throw new IllegalArgumentException("Tile dimensions should be positive");
+        }
+        this.width = width;
+        this.height = height;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.tilesX = (width + tileWidth - 1) / tileWidth;
+        this.tilesY = (height + tileHeight - 1) / tileHeight;
+    }
+
+    int getTileCount() {
+        return tilesX * tilesY;
+    }
+
+    int getTilesX() {
+        return tilesX;
+    }
+
+    int getTilesY() {
+        return tilesY;
+    }
+
+    int getLeft(int tile) {
+        return (tile % tilesX) * tileWidth;
+    }
+
+    int getTop(int tile) {
+        return (tile / tilesX) * tileHeight;
+    }
+
+    /**
+     * Возвращает столбец, следующий за правым краем плитки
+     *
+     * @param tile - номер плитки
+     * @return - столбец после правого края
+     */
+    int getRight(int tile) {
+        return Math.min(getLeft(tile) + tileWidth, width);
+    }
+
+    /**
+     * Возвращает строку, следующую за нижним краем плитки
+     *
+     * @param tile - номер плитки
+     * @return - строка после нижнего края
+     */
+    int getBottom(int tile) {
+        return Math.min(getTop(tile) + tileHeight, height);
+    }
+}
@@ -0,0 +1,139 @@
+package org.innopolis.kuzymvas.cellular;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Пул рабочих потоков для многопоточных автоматов. Один пул можно разделить между любым числом автоматов:
+ * автомат не держит собственных потоков, а на каждую фазу шага отдает в пул задачу, которую выполняют
+ * до getParallelism() участников, включая вызывающий поток. Участники разбирают работу из общих счетчиков,
+ * поэтому вызывающий поток не ждет помощников, которые так и не начали работу из-за занятости пула:
+ * такие помощники отменяются, и шаг не может зависнуть, даже если пул занят другими автоматами.
+ * Собственные потоки пула завершаются после простоя, так что простаивающие автоматы не стоят ни одного потока.
+ * Пул может работать и поверх внешнего исполнителя, который тогда закрывает его владелец
+ */
+public class WorkerPool implements AutoCloseable {
+
+    private static final long KEEP_ALIVE_SECONDS = 1;
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final boolean ownsExecutor;
+
+    /**
+     * Создает пул с собственными потоками-демонами
+     *
+     * @param parallelism - число участников каждой задачи, включая вызывающий поток
+     */
+    public WorkerPool(int parallelism) {
+        this(newExecutor(parallelism), parallelism, true);
+    }
+
+    /**
+     * Создает пул поверх внешнего исполнителя. Закрытие пула исполнитель не останавливает
+     *
+     * @param executor    - исполнитель для помощников вызывающего потока
+     * @param parallelism - число участников каждой задачи, включая вызывающий поток
+     */
+    public WorkerPool(ExecutorService executor, int parallelism) {
+        this(executor, parallelism, false);
+    }
+
+    private WorkerPool(ExecutorService executor, int parallelism, boolean ownsExecutor) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Worker pool needs at least one participant");
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    private static ExecutorService newExecutor(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Worker pool needs at least one participant");
+        }
+        int helpers = Math.max(parallelism - 1, 1);
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                helpers, helpers, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread worker = new Thread(task, "automata-worker-" + counter.incrementAndGet());
+            worker.setDaemon(true);
+            return worker;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Выполняет задачу силами до getParallelism() участников и ждет, пока все начавшие ее участники закончат.
+     * Каждый участник выполняет задачу целиком, так что задача должна сама делить работу между участниками
+     *
+     * @param task - задача
+     */
+    public void invoke(Runnable task) {
+        int helpers = parallelism - 1;
+        AtomicInteger unstarted = new AtomicInteger(helpers);
+        CountDownLatch finished = new CountDownLatch(helpers);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Runnable helper = () -> {
+            if (unstarted.getAndDecrement() > 0) {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    finished.countDown();
+                }
+            }
+        };
+        for (int i = 0; i < helpers; i++) {
+            executor.execute(helper);
+        }
+        try {
+            task.run();
+        } finally {
+            int cancelled = Math.max(unstarted.getAndSet(0), 0);
+            for (int i = 0; i < cancelled; i++) {
+                finished.countDown();
+            }
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    finished.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Throwable error = failure.get();
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+    }
+
+    /**
+     * Останавливает собственные потоки пула; внешний исполнитель не трогает
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -13,7 +13,7 @@ public abstract class AbstractCell implements Cell {
     private final List<Boolean> states;
     private volatile boolean aliveState;
     private boolean nextState;
-    private List<Cell> neighborhood;
+    private Cell[] neighborhood;
 
     public AbstractCell(boolean aliveAtStart) {
         this.aliveState = aliveAtStart;
@@ -46,7 +46,17 @@ public abstract class AbstractCell implements Cell {
 
     @Override
     public final void setNeighborhood(List<Cell> neighborhood) {
-        this.neighborhood = new ArrayList<>(neighborhood);
+        this.neighborhood = neighborhood.toArray(new Cell[0]);
+    }
+
+    /**
+     * Задает соседей клетки массивом, который клетка забирает себе без копирования.
+     * Вызывающий не должен ни изменять массив после вызова, ни передавать его другим клеткам
+     *
+     * @param neighborhood - соседи клетки
+     */
+    public final void adoptNeighborhood(Cell[] neighborhood) {
+        this.neighborhood = neighborhood;
     }
 
     /**
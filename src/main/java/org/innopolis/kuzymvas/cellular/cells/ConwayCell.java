@@ -23,10 +23,6 @@ public class ConwayCell extends AbstractCell {
                 totalAliveNeighboors++;
             }
         }
-        if (isAlive()) {
-            return (totalAliveNeighboors == 2) || (totalAliveNeighboors == 3);
-        } else {
-            return (totalAliveNeighboors == 3);
-        }
+        return LifeRule.CONWAY.nextState(isAlive(), totalAliveNeighboors);
     }
 }
@@ -15,7 +15,7 @@ public class ConwayCellFactory implements CellFactory {
 
     @Override
     public List<Cell> createCells(int amount) {
-        List<Cell> cells = new ArrayList<>();
+        List<Cell> cells = new ArrayList<>(amount);
         for (int i = 0; i < amount; i++) {
             cells.add(createCelL());
         }
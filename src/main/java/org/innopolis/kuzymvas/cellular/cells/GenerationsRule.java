@@ -0,0 +1,113 @@
+package org.innopolis.kuzymvas.cellular.cells;
+
+/**
+ * Правило автоматов семейства Generations: у клетки есть состояния от 0 до stateCount - 1.
+ * 0 - мертвая клетка, 1 - живая, остальные - угасающие.
+ * - Мертвая клетка оживает, если число живых соседей входит в набор рождения (B)
+ * - Живая клетка остается живой, если число живых соседей входит в набор выживания (S), иначе начинает угасать
+ * - Угасающая клетка на каждом шаге переходит в следующее состояние, а из последнего - в мертвое
+ * Соседи считаются живыми только в состоянии 1. Числа соседей хранятся битовыми масками, как в {@link LifeRule}.
+ */
+public final class GenerationsRule {
+
+    /**
+     * Мозг Брайана (Brian's Brain): /2/3
+     */
+    public static final GenerationsRule BRIANS_BRAIN = new GenerationsRule(1 << 2, 0, 3);
+
+    /**
+     * Звездные войны (Star Wars): 345/2/4
+     */
+    public static final GenerationsRule STAR_WARS = new GenerationsRule(
+            1 << 2, (1 << 3) | (1 << 4) | (1 << 5), 4);
+
+    public static final int MAX_STATES = 16;
+
+    private final LifeRule lifeRule;
+    private final int stateCount;
+
+    /**
+     * Создает новое правило
+     *
+     * @param birthMask    - маска чисел живых соседей, при которых мертвая клетка оживает
+     * @param survivalMask - маска чисел живых соседей, при которых живая клетка остается живой
+     * @param stateCount   - число состояний клетки, от 2 до 16
+     */
+    public GenerationsRule(int birthMask, int survivalMask, int stateCount) {
+        if (stateCount < 2 || stateCount > MAX_STATES) {
+            throw new IllegalArgumentException("Generations rule should have from 2 to " + MAX_STATES + " states");
+        }
+        this.lifeRule = new LifeRule(birthMask, survivalMask);
+        this.stateCount = stateCount;
+    }
+
+    /**
+     * Разбирает правило, записанное в нотации "345/2/4" (выживание/рождение/число состояний)
+     * или "B2/S345/C4"
+     *
+     * @param notation - строковая запись правила
+     * @return - разобранное правило
+     */
+    public static GenerationsRule parse(String notation) {
+        String trimmed = notation.trim().toUpperCase();
+        int lastSlash = trimmed.lastIndexOf('/');
+        if (lastSlash < 0) {
+            throw new IllegalArgumentException("Generations rule notation should contain state count: " + notation);
+        }
+        String states = trimmed.substring(lastSlash + 1);
+        if (states.startsWith("C")) {
+            states = states.substring(1);
+        }
+        int stateCount;
+        try {
+            stateCount = Integer.parseInt(states);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed generations rule notation: " + notation, e);
+        }
+        LifeRule rule = LifeRule.parse(trimmed.substring(0, lastSlash));
+        return new GenerationsRule(rule.getBirthMask(), rule.getSurvivalMask(), stateCount);
+    }
+
+    /**
+     * Вычисляет новое состояние клетки
+     *
+     * @param state           - текущее состояние клетки
+     * @param aliveNeighbors - число соседей в состоянии 1
+     * @return - новое состояние клетки
+     */
+    public int nextState(int state, int aliveNeighbors) {
+        if (state == 0) {
+            return lifeRule.nextState(false, aliveNeighbors) ? 1 : 0;
+        }
+        if (state == 1 && lifeRule.nextState(true, aliveNeighbors)) {
+            return 1;
+        }
+        return (state + 1) % stateCount;
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GenerationsRule)) {
+            return false;
+        }
+        GenerationsRule other = (GenerationsRule) o;
+        return stateCount == other.stateCount && lifeRule.equals(other.lifeRule);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * lifeRule.hashCode() + stateCount;
+    }
+
+    @Override
+    public String toString() {
+        return lifeRule + "/C" + stateCount;
+    }
+}
@@ -0,0 +1,160 @@
+package org.innopolis.kuzymvas.cellular.cells;
+
+/**
+ * Правило трехмерного "жизнеподобного" клеточного автомата: наборы чисел живых соседей (от 0 до 26),
+ * при которых мертвая клетка оживает и живая клетка выживает. Числа соседей хранятся битовыми масками,
+ * бит k отвечает за k живых соседей.
+ * Правило записывается в нотации Бейса "ElEuFlFu" (например, 4555: живая клетка выживает при 4-5 соседях,
+ * мертвая оживает при 5) или в нотации "B5/S4,5", где числа и диапазоны "4-5" разделяются запятыми.
+ */
+public final class Life3DRule {
+
+    /**
+     * Правило Бейса 4555 для окружения по Муру из 26 клеток
+     */
+    public static final Life3DRule BAYS_4555 = parse("4555");
+
+    /**
+     * Правило Бейса 5766 для окружения по Муру из 26 клеток
+     */
+    public static final Life3DRule BAYS_5766 = parse("5766");
+
+    public static final int MAX_NEIGHBORS = 26;
+
+    private static final int BAYS_NOTATION_LENGTH = 4;
+
+    private final int birthMask;
+    private final int survivalMask;
+
+    /**
+     * Создает новое правило по битовым маскам
+     *
+     * @param birthMask    - маска чисел соседей, при которых мертвая клетка оживает
+     * @param survivalMask - маска чисел соседей, при которых живая клетка выживает
+     */
+    public Life3DRule(int birthMask, int survivalMask) {
+        int allowed = (1 << (MAX_NEIGHBORS + 1)) - 1;
+        if ((birthMask & ~allowed) != 0 || (survivalMask & ~allowed) != 0) {
+            throw new IllegalArgumentException("Rule masks can only contain neighbor counts from 0 to " + MAX_NEIGHBORS);
+        }
+        this.birthMask = birthMask;
+        this.survivalMask = survivalMask;
+    }
+
+    /**
+     * Разбирает правило, записанное в нотации Бейса "4555" или в нотации "B5/S4,5"
+     *
+     * @param notation - строковая запись правила
+     * @return - разобранное правило
+     */
+    public static Life3DRule parse(String notation) {
+        String trimmed = notation.trim().toUpperCase();
+        if (trimmed.length() == BAYS_NOTATION_LENGTH && trimmed.chars().allMatch(Character::isDigit)) {
+            int survivalMin = trimmed.charAt(0) - '0';
+            int survivalMax = trimmed.charAt(1) - '0';
+            int birthMin = trimmed.charAt(2) - '0';
+            int birthMax = trimmed.charAt(3) - '0';
+            if (survivalMin > survivalMax || birthMin > birthMax) {
+                throw new IllegalArgumentException("Malformed rule notation: " + notation);
+            }
+            return new Life3DRule(rangeMask(birthMin, birthMax), rangeMask(survivalMin, survivalMax));
+        }
+        String[] parts = trimmed.split("/", -1);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Rule notation should be 'ElEuFlFu' or 'B.../S...': " + notation);
+        }
+        String birth;
+        String survival;
+        if (parts[0].startsWith("B") && parts[1].startsWith("S")) {
+            birth = parts[0].substring(1);
+            survival = parts[1].substring(1);
+        } else if (parts[0].startsWith("S") && parts[1].startsWith("B")) {
+            survival = parts[0].substring(1);
+            birth = parts[1].substring(1);
+        } else {
+            throw new IllegalArgumentException("Rule notation should be 'ElEuFlFu' or 'B.../S...': " + notation);
+        }
+        return new Life3DRule(parseCounts(birth, notation), parseCounts(survival, notation));
+    }
+
+    private static int parseCounts(String counts, String notation) {
+        int mask = 0;
+        if (counts.isEmpty()) {
+            return mask;
+        }
+        try {
+            for (String item : counts.split(",", -1)) {
+                int dash = item.indexOf('-');
+                int from = Integer.parseInt(dash < 0 ? item : item.substring(0, dash));
+                int to = dash < 0 ? from : Integer.parseInt(item.substring(dash + 1));
+                if (from < 0 || from > to || to > MAX_NEIGHBORS) {
+                    throw new IllegalArgumentException("Malformed rule notation: " + notation);
+                }
+                mask |= rangeMask(from, to);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed rule notation: " + notation, e);
+        }
+        return mask;
+    }
+
+    private static int rangeMask(int from, int to) {
+        return (int) ((1L << (to + 1)) - (1L << from));
+    }
+
+    /**
+     * Вычисляет новое состояние клетки
+     *
+     * @param alive          - текущее состояние клетки
+     * @param aliveNeighbors - число живых соседей клетки
+     * @return - новое состояние клетки
+     */
+    public boolean nextState(boolean alive, int aliveNeighbors) {
+        int mask = alive ? survivalMask : birthMask;
+        return aliveNeighbors <= MAX_NEIGHBORS && (mask & (1 << aliveNeighbors)) != 0;
+    }
+
+    public int getBirthMask() {
+        return birthMask;
+    }
+
+    public int getSurvivalMask() {
+        return survivalMask;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Life3DRule)) {
+            return false;
+        }
+        Life3DRule other = (Life3DRule) o;
+        return birthMask == other.birthMask && survivalMask == other.survivalMask;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * birthMask + survivalMask;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("B");
+        appendCounts(builder, birthMask);
+        builder.append("/S");
+        appendCounts(builder, survivalMask);
+        return builder.toString();
+    }
+
+    private static void appendCounts(StringBuilder builder, int mask) {
+        String separator = "";
+        for (int i = 0; i <= MAX_NEIGHBORS; i++) {
+            if ((mask & (1 << i)) != 0) {
+                builder.append(separator).append(i);
+                separator = ",";
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.innopolis.kuzymvas.cellular.cells;
+
+/**
+ * Правило "жизнеподобного" клеточного автомата в нотации B/S: набор чисел живых соседей,
+ * при которых мертвая клетка оживает (B), и набор чисел живых соседей, при которых живая клетка выживает (S).
+ * Числа соседей хранятся битовыми масками, бит k отвечает за k живых соседей (от 0 до 8).
+ */
+public final class LifeRule {
+
+    /**
+     * Правило игры "Жизнь" Конвея: B3/S23
+     */
+    public static final LifeRule CONWAY = new LifeRule(1 << 3, (1 << 2) | (1 << 3));
+
+    private static final int MAX_NEIGHBORS = 8;
+
+    private final int birthMask;
+    private final int survivalMask;
+
+    /**
+     * Создает новое правило по битовым маскам
+     *
+     * @param birthMask    - маска чисел соседей, при которых мертвая клетка оживает
+     * @param survivalMask - маска чисел соседей, при которых живая клетка выживает
+     */
+    public LifeRule(int birthMask, int survivalMask) {
+        int allowed = (1 << (MAX_NEIGHBORS + 1)) - 1;
+        if ((birthMask & ~allowed) != 0 || (survivalMask & ~allowed) != 0) {
+            throw new IllegalArgumentException("Rule masks can only contain neighbor counts from 0 to " + MAX_NEIGHBORS);
+        }
+        this.birthMask = birthMask;
+        this.survivalMask = survivalMask;
+    }
+
+    /**
+     * Разбирает правило, записанное в нотации "B3/S23" или в классической нотации "23/3" (выживание/рождение)
+     *
+     * @param notation - строковая запись правила
+     * @return - разобранное правило
+     */
+    public static LifeRule parse(String notation) {
+        String[] parts = notation.trim().toUpperCase().split("/", -1);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Rule notation should contain exactly one '/': " + notation);
+        }
+        String birth;
+        String survival;
+        if (parts[0].startsWith("B") && parts[1].startsWith("S")) {
+            birth = parts[0].substring(1);
+            survival = parts[1].substring(1);
+        } else if (parts[0].startsWith("S") && parts[1].startsWith("B")) {
+            survival = parts[0].substring(1);
+            birth = parts[1].substring(1);
+        } else {
+            survival = parts[0];
+            birth = parts[1];
+        }
+        return new LifeRule(parseCounts(birth, notation), parseCounts(survival, notation));
+    }
+
+    private static int parseCounts(String digits, String notation) {
+        int mask = 0;
+        for (char c : digits.toCharArray()) {
+            if (c < '0' || c > '0' + MAX_NEIGHBORS) {
+                throw new IllegalArgumentException("Malformed rule notation: " + notation);
+            }
+            mask |= 1 << (c - '0');
+        }
+        return mask;
+    }
+
+    /**
+     * Вычисляет новое состояние клетки
+     *
+     * @param alive          - текущее состояние клетки
+     * @param aliveNeighbors - число живых соседей клетки
+     * @return - новое состояние клетки
+     */
+    public boolean nextState(boolean alive, int aliveNeighbors) {
+        int mask = alive ? survivalMask : birthMask;
+        return aliveNeighbors <= MAX_NEIGHBORS && (mask & (1 << aliveNeighbors)) != 0;
+    }
+
+    public int getBirthMask() {
+        return birthMask;
+    }
+
+    public int getSurvivalMask() {
+        return survivalMask;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LifeRule)) {
+            return false;
+        }
+        LifeRule other = (LifeRule) o;
+        return birthMask == other.birthMask && survivalMask == other.survivalMask;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * birthMask + survivalMask;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("B");
+        appendCounts(builder, birthMask);
+        builder.append("/S");
+        appendCounts(builder, survivalMask);
+        return builder.toString();
+    }
+
+    private static void appendCounts(StringBuilder builder, int mask) {
+        for (int i = 0; i <= MAX_NEIGHBORS; i++) {
+            if ((mask & (1 << i)) != 0) {
+                builder.append(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.innopolis.kuzymvas.cellular.cells;
+
+/**
+ * Тоталистическое правило с диапазонами, как в автоматах "Больше, чем жизнь" (Larger than Life):
+ * мертвая клетка оживает, если число живых клеток в окружении попадает в диапазон рождения,
+ * живая клетка выживает, если оно попадает в диапазон выживания. Сама клетка может как входить
+ * в подсчет, так и нет.
+ */
+public final class RangeRule {
+
+    private final int birthMin;
+    private final int birthMax;
+    private final int survivalMin;
+    private final int survivalMax;
+    private final boolean middleIncluded;
+
+    /**
+     * Создает новое правило
+     *
+     * @param birthMin       - нижняя граница диапазона рождения, включительно
+     * @param birthMax       - верхняя граница диапазона рождения, включительно
+     * @param survivalMin    - нижняя граница диапазона выживания, включительно
+     * @param survivalMax    - верхняя граница диапазона выживания, включительно
+     * @param middleIncluded - учитывается ли сама клетка при подсчете живых клеток окружения
+     */
+    public RangeRule(int birthMin, int birthMax, int survivalMin, int survivalMax, boolean middleIncluded) {
+        if (birthMin < 0 || survivalMin < 0 || birthMin > birthMax || survivalMin > survivalMax) {
+            throw new IllegalArgumentException("Rule ranges should be non-negative and non-empty");
+        }
+        this.birthMin = birthMin;
+        this.birthMax = birthMax;
+        this.survivalMin = survivalMin;
+        this.survivalMax = survivalMax;
+        this.middleIncluded = middleIncluded;
+    }
+
+    /**
+     * Вычисляет новое состояние клетки
+     *
+     * @param alive      - текущее состояние клетки
+     * @param aliveCount - число живых клеток в окружении, с учетом самой клетки, если так задано правилом
+     * @return - новое состояние клетки
+     */
+    public boolean nextState(boolean alive, int aliveCount) {
+        if (alive) {
+            return aliveCount >= survivalMin && aliveCount <= survivalMax;
+        } else {
+            return aliveCount >= birthMin && aliveCount <= birthMax;
+        }
+    }
+
+    public boolean isMiddleIncluded() {
+        return middleIncluded;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RangeRule)) {
+            return false;
+        }
+        RangeRule other = (RangeRule) o;
+        return birthMin == other.birthMin && birthMax == other.birthMax
+                && survivalMin == other.survivalMin && survivalMax == other.survivalMax
+                && middleIncluded == other.middleIncluded;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = birthMin;
+        result = 31 * result + birthMax;
+        result = 31 * result + survivalMin;
+        result = 31 * result + survivalMax;
+        return 31 * result + (middleIncluded ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "M" + (middleIncluded ? 1 : 0) + ",S" + survivalMin + ".." + survivalMax
+                + ",B" + birthMin + ".." + birthMax;
+    }
+}
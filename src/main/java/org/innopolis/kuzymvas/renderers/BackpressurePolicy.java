@@ -0,0 +1,19 @@
+package org.innopolis.kuzymvas.renderers;
+
+/**
+ * Политика конвейера снимков на случай, когда запись не успевает за вычислением и все буферы заняты
+ */
+public enum BackpressurePolicy {
+    /**
+     * Остановить вычисление, пока запись не освободит буфер
+     */
+    BLOCK,
+    /**
+     * Пропустить новый снимок
+     */
+    DROP_NEWEST,
+    /**
+     * Выбросить самый старый еще не записанный снимок и использовать его буфер для нового
+     */
+    DROP_OLDEST
+}
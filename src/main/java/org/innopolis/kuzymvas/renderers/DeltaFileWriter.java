@@ -0,0 +1,177 @@
+package org.innopolis.kuzymvas.renderers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Основа для записи поколений в файл разностями: буфер поверх канала файла, запись чисел varint
+ * и кодирование разности (XOR) поколения с предыдущим записанным парами отрезков
+ * "сколько клеток не изменилось, сколько подряд изменилось"
+ */
+abstract class DeltaFileWriter implements SnapshotWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private boolean[] previous;
+    private int[] runs;
+    private int width = -1;
+    private int height = -1;
+
+    /**
+     * Создает файл, заменяя существующий
+     *
+     * @param file - файл
+     * @throws IOException - если файл не удалось создать
+     */
+    DeltaFileWriter(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                        StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    /**
+     * Запоминает размеры поля при первом снимке и проверяет их при последующих
+     *
+     * @param width  - ширина поля
+     * @param height - высота поля
+     * @return - true, если это первый снимок и нужно записать заголовок
+     */
+    final boolean checkDimensions(int width, int height) {
+        if (previous == null) {
+            this.width = width;
+            this.height = height;
+            this.previous = new boolean[width * height];
+            this.runs = new int[2];
+            return true;
+        }
+        if (width != this.width || height != this.height) {
+            throw new IllegalArgumentException("Recorded field can't change its dimensions");
+        }
+        return false;
+    }
+
+    /**
+     * Записывает разность снимка с предыдущим: число пар и сами пары
+     *
+     * @param states - состояния клеток построчно
+     * @throws IOException - если запись не удалась
+     */
+    final void putDelta(boolean[] states) throws IOException {
+        int pairs = 0;
+        int unchanged = 0;
+        int i = 0;
+        while (i < states.length) {
+            if (states[i] == previous[i]) {
+                unchanged++;
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < states.length && states[i] != previous[i]) {
+                previous[i] = states[i];
+                i++;
+            }
+            if (2 * pairs + 2 > runs.length) {
+                int[] grown = new int[2 * runs.length];
+                System.arraycopy(runs, 0, grown, 0, runs.length);
+                runs = grown;
+            }
+            runs[2 * pairs] = unchanged;
+            runs[2 * pairs + 1] = i - start;
+            pairs++;
+            unchanged = 0;
+        }
+        putVarint(pairs);
+        for (int run = 0; run < 2 * pairs; run++) {
+            putVarint(runs[run]);
+        }
+    }
+
+    /**
+     * Записывает снимок целиком по биту на клетку и делает его точкой отсчета следующей разности
+     *
+     * @param states - состояния клеток построчно
+     * @throws IOException - если запись не удалась
+     */
+    final void putBits(boolean[] states) throws IOException {
+        for (int i = 0; i < states.length; i += Byte.SIZE) {
+            int packed = 0;
+            for (int bit = 0; bit < Byte.SIZE && i + bit < states.length; bit++) {
+                if (states[i + bit]) {
+                    packed |= 1 << bit;
+                }
+            }
+            putByte(packed);
+        }
+        System.arraycopy(states, 0, previous, 0, states.length);
+    }
+
+    final void putVarint(long value) throws IOException {
+        if (buffer.remaining() < MAX_VARINT_BYTES) {
+            flush();
+        }
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    final void putByte(int value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put((byte) value);
+    }
+
+    final void putBytes(byte[] bytes) throws IOException {
+        for (byte b : bytes) {
+            putByte(b);
+        }
+    }
+
+    final void putLong(long value) throws IOException {
+        if (buffer.remaining() < Long.BYTES) {
+            flush();
+        }
+        buffer.putLong(value);
+    }
+
+    /**
+     * Возвращает смещение в файле, с которого будут записаны следующие данные
+     *
+     * @return - смещение в байтах
+     * @throws IOException - если положение канала не удалось узнать
+     */
+    final long position() throws IOException {
+        return channel.position() + buffer.position();
+    }
+
+    /**
+     * Сбрасывает буфер в файл и закрывает его
+     *
+     * @throws IOException - если запись не удалась
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -2,8 +2,10 @@ package org.innopolis.kuzymvas.renderers;
 
 import org.innopolis.kuzymvas.cellular.CellularAutomata;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 /**
@@ -11,8 +13,12 @@ import java.util.List;
  */
 public class EndStepRenderer {
 
+    private static final int PRINT_CHUNK_CELLS = 1 << 16;
+
     private final CellularAutomata automata;
     private final int width;
+    private final int height;
+    private final ImageSnapshotWriter image;
 
     /**
      * Создает новый рендерер для заданного клеточного автомата
@@ -20,12 +26,24 @@ public class EndStepRenderer {
      * @param automata - клеточный автомат
      */
     public EndStepRenderer(CellularAutomata automata) {
+        this(automata, null);
+    }
+
+    /**
+     * Создает новый рендерер, который выводит итоговое состояние изображением, а не текстом
+     *
+     * @param automata - клеточный автомат
+     * @param image    - способ записи изображения или null для текстового вывода
+     */
+    public EndStepRenderer(CellularAutomata automata, ImageSnapshotWriter image) {
         this.automata = automata;
+        this.image = image;
         List<Integer> dims = automata.getDimensions();
         if (dims.size() != 2) {
             throw new IllegalArgumentException("This renderer only works for 2D automatas");
         }
         this.width = dims.get(0);
+        this.height = dims.get(1);
     }
 
     /**
@@ -40,6 +58,80 @@ public class EndStepRenderer {
         for (int i = 0; i < stepNumber; i++) {
             automata.updateAutomata();
         }
+        printState(out);
+    }
+
+    /**
+     * Проходит автоматом заданное число шагов от заданного начального состояния, предлагая каждое поколение,
+     * начиная с исходного, всем конвейерам снимков (каждый выгружает только свои поколения, см.
+     * {@link SnapshotPipeline#offer}), и рендерит итоговое состояния в выходной поток
+     *
+     * @param out          - целевой поток вывода
+     * @param stepNumber   - число шагов
+     * @param initialState - исходное состояние автомата
+     * @param pipelines    - конвейеры снимков
+     * @throws IOException - если запись одного из снимков не удалась
+     */
+    public void render(
+            OutputStream out, int stepNumber, List<Boolean> initialState,
+            List<SnapshotPipeline> pipelines) throws IOException {
+        automata.initAutomata(initialState);
+        for (int i = 0; i <= stepNumber; i++) {
+            if (i > 0) {
+                automata.updateAutomata();
+            }
+            for (SnapshotPipeline pipeline : pipelines) {
+                pipeline.offer(i, automata);
+            }
+        }
+        printState(out);
+    }
+
+    /**
+     * Проходит автоматом заданное число шагов от уже заданного в нем состояния и рендерит итоговое
+     * состояние в выходной поток по нескольку строк за раз, не собирая поле в памяти целиком.
+     * Шаги выполняются одним вызовом {@link CellularAutomata#updateAutomata(int)}, так что автомат
+     * может вычислять несколько поколений за проход, как {@link org.innopolis.kuzymvas.cellular.StreamingRWAutomata}.
+     * Начальное состояние этот метод не задает: перед вызовом автомат должен быть инициализирован
+     * через {@link CellularAutomata#initAutomata} (или иначе, как потоковый автомат из файла)
+     *
+     * @param out        - целевой поток вывода
+     * @param stepNumber - число шагов
+     */
+    public void renderFromCurrentState(OutputStream out, int stepNumber) {
+        automata.updateAutomata(stepNumber);
+        if (image != null) {
+            printState(out);
+            return;
+        }
+        PrintStream printer = new PrintStream(out);
+        int rowsPerChunk = Math.max(1, PRINT_CHUNK_CELLS / Math.max(width, 1));
+        boolean[] states = new boolean[rowsPerChunk * width];
+        StringBuilder chunk = new StringBuilder();
+        for (int top = 0; top < height; top += rowsPerChunk) {
+            int rows = Math.min(rowsPerChunk, height - top);
+            automata.copyStates(top * width, (top + rows) * width, states, 0);
+            chunk.setLength(0);
+            for (int i = 0; i < rows * width; i++) {
+                chunk.append(states[i] ? 'O' : '_');
+                if ((i % width) == (width - 1)) {
+                    chunk.append(System.lineSeparator());
+                }
+            }
+            printer.print(chunk);
+        }
+        printer.flush();
+    }
+
+    private void printState(OutputStream out) {
+        if (image != null) {
+            try {
+                image.writeImage(out, automata);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
         PrintStream printer = new PrintStream(out);
         List<Boolean> states = automata.getCurrentState();
         for (int i = 0; i < states.size(); i++) {
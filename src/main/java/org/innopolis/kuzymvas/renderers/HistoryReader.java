@@ -0,0 +1,194 @@
+package org.innopolis.kuzymvas.renderers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Чтение истории, записанной {@link HistoryWriter}, с произвольным доступом к поколениям.
+ * Индекс ключевых кадров отображается в память при открытии; для поиска поколения в память
+ * отображается только участок файла от ближайшего ключевого кадра до следующего, так что время поиска
+ * не зависит от длины истории, а размер файла не ограничен размером одного отображения
+ */
+public class HistoryReader implements AutoCloseable {
+
+    private static final int MAX_HEADER_SIZE = 64;
+
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final int keyframeInterval;
+    private final LongBuffer index;
+    private final int keyframes;
+    private final long indexOffset;
+    private final long lastGeneration;
+    private final boolean[] states;
+
+    /**
+     * Открывает файл истории и читает его заголовок и индекс
+     *
+     * @param file - файл истории
+     * @throws IOException - если файл не удалось прочитать или он не является законченной историей
+     */
+    public HistoryReader(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HistoryWriter.MAGIC.length + HistoryWriter.TRAILER_SIZE) {
+                throw new IOException("Not a history file: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_HEADER_SIZE));
+            expectMagic(header, HistoryWriter.MAGIC, file);
+            int version = header.get();
+            if (version != HistoryWriter.VERSION) {
+                throw new IOException("Unsupported history version " + version);
+            }
+            this.width = (int) readVarint(header);
+            this.height = (int) readVarint(header);
+            this.keyframeInterval = (int) readVarint(header);
+            ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, size - HistoryWriter.TRAILER_SIZE,
+                                             HistoryWriter.TRAILER_SIZE);
+            this.lastGeneration = trailer.getLong();
+            this.indexOffset = trailer.getLong();
+            expectMagic(trailer, HistoryWriter.INDEX_MAGIC, file);
+            long indexSize = size - HistoryWriter.TRAILER_SIZE - indexOffset;
+            if (indexOffset < 0 || indexSize <= 0 || indexSize % (2 * Long.BYTES) != 0) {
+                throw new IOException("History index is damaged: " + file);
+            }
+            this.index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, indexSize).asLongBuffer();
+            this.keyframes = (int) (indexSize / (2 * Long.BYTES));
+            this.states = new boolean[width * height];
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Восстанавливает заданное поколение
+     *
+     * @param generation - номер поколения
+     * @return - состояния клеток построчно. Массив принадлежит читателю и меняется при следующем поиске
+     * @throws IOException - если файл поврежден
+     */
+    public boolean[] seek(long generation) throws IOException {
+        if (generation < index.get(0) || generation > lastGeneration) {
+            throw new IllegalArgumentException("Generation " + generation + " is out of the recorded range");
+        }
+        int low = 0;
+        int high = keyframes - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (index.get(2 * middle) <= generation) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        long start = index.get(2 * low + 1);
+        long end = low + 1 < keyframes ? index.get(2 * low + 3) : indexOffset;
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("History segment is too large to be mapped");
+        }
+        ByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        if (segment.get() != HistoryWriter.KEYFRAME) {
+            throw new IOException("History index doesn't point to a keyframe");
+        }
+        long current = readVarint(segment);
+        readBits(segment);
+        while (current < generation) {
+            if (!segment.hasRemaining() || segment.get() != HistoryWriter.DELTA) {
+                break;
+            }
+            current = readVarint(segment);
+            applyDelta(segment);
+        }
+        if (current != generation) {
+            throw new IllegalArgumentException("Generation " + generation + " is not recorded");
+        }
+        return states;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    /**
+     * Возвращает номер первого записанного поколения
+     *
+     * @return - номер поколения
+     */
+    public long getFirstGeneration() {
+        return index.get(0);
+    }
+
+    /**
+     * Возвращает номер последнего записанного поколения
+     *
+     * @return - номер поколения
+     */
+    public long getLastGeneration() {
+        return lastGeneration;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readBits(ByteBuffer segment) {
+        for (int i = 0; i < states.length; i += Byte.SIZE) {
+            int packed = segment.get();
+            for (int bit = 0; bit < Byte.SIZE && i + bit < states.length; bit++) {
+                states[i + bit] = (packed & (1 << bit)) != 0;
+            }
+        }
+    }
+
+    private void applyDelta(ByteBuffer segment) throws IOException {
+        long pairs = readVarint(segment);
+        int position = 0;
+        for (long pair = 0; pair < pairs; pair++) {
+            position += (int) readVarint(segment);
+            int changed = (int) readVarint(segment);
+            if (position + changed > states.length) {
+                throw new IOException("History frame exceeds the field");
+            }
+            for (int i = position; i < position + changed; i++) {
+                states[i] = !states[i];
+            }
+            position += changed;
+        }
+    }
+
+    private static void expectMagic(ByteBuffer buffer, byte[] magic, File file) throws IOException {
+        for (byte expected : magic) {
+            if (buffer.get() != expected) {
+                throw new IOException("Not a history file: " + file);
+            }
+        }
+    }
+
+    private static long readVarint(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in history");
+    }
+}
@@ -0,0 +1,100 @@
+package org.innopolis.kuzymvas.renderers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Запись истории автомата с произвольным доступом к поколениям. Каждый K-й записанный кадр - ключевой:
+ * поле целиком по биту на клетку, остальные кадры - разности с предыдущим кадром, как в {@link TrajectoryWriter}.
+ * При закрытии в конец файла дописывается индекс ключевых кадров, по которому {@link HistoryReader}
+ * находит ближайший ключевой кадр и восстанавливает любое поколение, применив не больше K-1 разностей.
+ * Формат файла: заголовок "LHST", байт версии, ширина, высота и K (varint); кадры: байт вида кадра,
+ * номер поколения (varint) и содержимое; индекс - пары (номер поколения, смещение кадра) по 8 байт;
+ * концевик - номер последнего поколения, смещение индекса (по 8 байт) и "LIDX".
+ */
+public class HistoryWriter extends DeltaFileWriter {
+
+    static final byte[] MAGIC = {'L', 'H', 'S', 'T'};
+    static final byte[] INDEX_MAGIC = {'L', 'I', 'D', 'X'};
+    static final int VERSION = 1;
+    static final int KEYFRAME = 0;
+    static final int DELTA = 1;
+    static final int TRAILER_SIZE = 2 * Long.BYTES + 4;
+
+    private final int keyframeInterval;
+    private long[] keyframeGenerations = new long[16];
+    private long[] keyframeOffsets = new long[16];
+    private int keyframes;
+    private long frames;
+    private long lastGeneration = -1;
+
+    /**
+     * Создает файл истории, заменяя существующий
+     *
+     * @param file             - файл истории
+     * @param keyframeInterval - период ключевых кадров в кадрах
+     * @throws IOException - если файл не удалось создать
+     */
+    public HistoryWriter(File file, int keyframeInterval) throws IOException {
+        super(file);
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Keyframe interval should be positive");
+        }
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    @Override
+    public void write(long generation, int width, int height, boolean[] states) throws IOException {
+        if (checkDimensions(width, height)) {
+            putBytes(MAGIC);
+            putByte(VERSION);
+            putVarint(width);
+            putVarint(height);
+            putVarint(keyframeInterval);
+        } else if (generation <= lastGeneration) {
+            throw new IllegalArgumentException("Generations should be written in increasing order");
+        }
+        if (frames % keyframeInterval == 0) {
+            if (keyframes == keyframeGenerations.length) {
+                keyframeGenerations = Arrays.copyOf(keyframeGenerations, 2 * keyframes);
+                keyframeOffsets = Arrays.copyOf(keyframeOffsets, 2 * keyframes);
+            }
+            keyframeGenerations[keyframes] = generation;
+            keyframeOffsets[keyframes] = position();
+            keyframes++;
+            putByte(KEYFRAME);
+            putVarint(generation);
+            putBits(states);
+        } else {
+            putByte(DELTA);
+            putVarint(generation);
+            putDelta(states);
+        }
+        frames++;
+        lastGeneration = generation;
+    }
+
+    /**
+     * Дописывает индекс ключевых кадров и закрывает файл
+     *
+     * @throws IOException - если запись не удалась
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (frames > 0) {
+                long indexOffset = position();
+                for (int i = 0; i < keyframes; i++) {
+                    putLong(keyframeGenerations[i]);
+                    putLong(keyframeOffsets[i]);
+                }
+                putLong(lastGeneration);
+                putLong(indexOffset);
+                putBytes(INDEX_MAGIC);
+            }
+        } finally {
+            super.close();
+        }
+    }
+}
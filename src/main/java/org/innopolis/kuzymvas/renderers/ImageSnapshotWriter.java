@@ -0,0 +1,249 @@
+package org.innopolis.kuzymvas.renderers;
+
+import org.innopolis.kuzymvas.cellular.CellularAutomata;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Основа записи поля двумерного автомата в черно-белое изображение: живая клетка - черная точка.
+ * Изображение кодируется полосами строк: полосы читаются из поля по очереди, а упаковка и сжатие
+ * полос идут параллельно в пуле потоков, после чего полосы пишутся в поток по порядку.
+ * В работе одновременно не больше двух полос на поток, так что память не зависит от размера поля.
+ * Необязательный коэффициент уменьшения сводит квадрат scale x scale клеток в одну точку,
+ * черную, если в квадрате есть хоть одна живая клетка, - для обзорных изображений больших полей.
+ * Снимки конвейера пишутся в файлы "префикс.N.расширение"
+ */
+public abstract class ImageSnapshotWriter implements SnapshotWriter {
+
+    private static final int STRIP_BYTES = 1 << 18;
+    private static final int STRIPS_PER_THREAD = 2;
+
+    private final String pathPrefix;
+    private final String extension;
+    private final int scale;
+    private final int threads;
+    private final ExecutorService encoders;
+    private int stripBytes = STRIP_BYTES;
+
+    /**
+     * Создает новый способ записи и его пул потоков кодирования
+     *
+     * @param pathPrefix - путь к файлам снимков без номера поколения
+     * @param extension  - расширение файлов снимков
+     * @param scale      - коэффициент уменьшения, 1 - точка на клетку
+     * @param threads    - число потоков кодирования
+     */
+    protected ImageSnapshotWriter(String pathPrefix, String extension, int scale, int threads) {
+        if (scale < 1) {
+            throw new IllegalArgumentException("Image scale should be positive");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Image writer needs at least one encoder thread");
+        }
+        this.pathPrefix = pathPrefix;
+        this.extension = extension;
+        this.scale = scale;
+        this.threads = threads;
+        AtomicInteger counter = new AtomicInteger();
+        this.encoders = Executors.newFixedThreadPool(threads, task -> {
+            Thread encoder = new Thread(task, "image-encoder-" + counter.incrementAndGet());
+            encoder.setDaemon(true);
+            return encoder;
+        });
+    }
+
+    @Override
+    public void write(long generation, int width, int height, boolean[] states) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(
+                new FileOutputStream(pathPrefix + "." + generation + extension))) {
+            writeImage(out, width, height,
+                       (from, to, target, offset) -> System.arraycopy(states, from, target, offset, to - from));
+        }
+    }
+
+    /**
+     * Записывает изображение текущего поля автомата. Поле читается полосами через
+     * {@link CellularAutomata#copyStates}, поэтому целиком в памяти не собирается
+     *
+     * @param out      - целевой поток
+     * @param automata - двумерный клеточный автомат
+     * @throws IOException - если запись не удалась
+     */
+    public void writeImage(OutputStream out, CellularAutomata automata) throws IOException {
+        List<Integer> dims = automata.getDimensions();
+        if (dims.size() != 2) {
+            throw new IllegalArgumentException("Images can only be written for 2D automatas");
+        }
+        writeImage(out, dims.get(0), dims.get(1), automata::copyStates);
+    }
+
+    /**
+     * Записывает изображение поля
+     *
+     * @param out    - целевой поток
+     * @param width  - ширина поля
+     * @param height - высота поля
+     * @param cells  - источник состояний клеток
+     * @throws IOException - если запись не удалась
+     */
+    public synchronized void writeImage(OutputStream out, int width, int height, CellSource cells)
+            throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Image of an empty field can't be written");
+        }
+        int imageWidth = (width + scale - 1) / scale;
+        int imageHeight = (height + scale - 1) / scale;
+        int rowBytes = (imageWidth + Byte.SIZE - 1) / Byte.SIZE;
+        int rowsPerStrip = Math.max(1, stripBytes / rowBytes);
+        writeHeader(out, imageWidth, imageHeight);
+        Deque<Future<EncodedStrip>> pending = new ArrayDeque<>();
+        try {
+            for (int top = 0; top < imageHeight; top += rowsPerStrip) {
+                int rows = Math.min(rowsPerStrip, imageHeight - top);
+                int firstCellRow = top * scale;
+                int lastCellRow = Math.min((top + rows) * scale, height);
+                boolean[] states = new boolean[(lastCellRow - firstCellRow) * width];
+                cells.copyStates(firstCellRow * width, lastCellRow * width, states, 0);
+                boolean last = top + rows == imageHeight;
+                pending.add(encoders.submit(
+                        () -> encodeStrip(pack(states, width, rowBytes, rows), rowBytes, rows, last)));
+                if (pending.size() >= threads * STRIPS_PER_THREAD) {
+                    writeStrip(out, pending.poll().get());
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeStrip(out, pending.poll().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Image encoding was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Image strip encoding failed", e.getCause());
+        } finally {
+            for (Future<EncodedStrip> strip : pending) {
+                strip.cancel(true);
+            }
+        }
+        writeTrailer(out);
+        out.flush();
+    }
+
+    /**
+     * Задает примерный размер полосы в упакованных байтах
+     *
+     * @param stripBytes - размер полосы
+     */
+    synchronized void setStripBytes(int stripBytes) {
+        if (stripBytes < 1) {
+            throw new IllegalArgumentException("Strip size should be positive");
+        }
+        this.stripBytes = stripBytes;
+    }
+
+    /**
+     * Останавливает потоки кодирования
+     */
+    @Override
+    public void close() {
+        encoders.shutdownNow();
+    }
+
+    /**
+     * Пишет заголовок изображения
+     *
+     * @param out    - целевой поток
+     * @param width  - ширина изображения в точках
+     * @param height - высота изображения в точках
+     * @throws IOException - если запись не удалась
+     */
+    protected abstract void writeHeader(OutputStream out, int width, int height) throws IOException;
+
+    /**
+     * Кодирует полосу изображения. Вызывается параллельно из потоков кодирования
+     *
+     * @param packed   - строки полосы по rowBytes байт, точка x - бит (7 - x mod 8) байта x / 8, 1 - черная точка
+     * @param rowBytes - длина строки в байтах
+     * @param rows     - число строк полосы
+     * @param last     - true для последней полосы изображения
+     * @return - закодированная полоса
+     * @throws IOException - если кодирование не удалось
+     */
+    protected abstract EncodedStrip encodeStrip(byte[] packed, int rowBytes, int rows, boolean last)
+            throws IOException;
+
+    /**
+     * Пишет закодированную полосу; полосы пишутся по порядку из вызывающего потока
+     *
+     * @param out   - целевой поток
+     * @param strip - закодированная полоса
+     * @throws IOException - если запись не удалась
+     */
+    protected void writeStrip(OutputStream out, EncodedStrip strip) throws IOException {
+        out.write(strip.data);
+    }
+
+    /**
+     * Пишет окончание изображения; по умолчанию ничего не пишет
+     *
+     * @param out - целевой поток
+     * @throws IOException - если запись не удалась
+     */
+    protected void writeTrailer(OutputStream out) throws IOException {
+    }
+
+    /**
+     * Упаковывает клетки полосы в строки точек с учетом коэффициента уменьшения
+     */
+    private byte[] pack(boolean[] states, int width, int rowBytes, int rows) {
+        byte[] packed = new byte[rows * rowBytes];
+        int cellRows = states.length / width;
+        for (int cellRow = 0; cellRow < cellRows; cellRow++) {
+            int rowStart = (cellRow / scale) * rowBytes;
+            for (int x = 0; x < width; x++) {
+                if (states[cellRow * width + x]) {
+                    int pixel = x / scale;
+                    packed[rowStart + pixel / Byte.SIZE] |= 0x80 >>> (pixel % Byte.SIZE);
+                }
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Источник состояний клеток поля, как {@link CellularAutomata#copyStates}
+     */
+    public interface CellSource {
+        void copyStates(int fromIndex, int toIndex, boolean[] target, int targetOffset);
+    }
+
+    /**
+     * Закодированная полоса изображения: байты и, для форматов со сжатием, контрольная сумма
+     * и длина несжатых данных
+     */
+    protected static class EncodedStrip {
+        final byte[] data;
+        final long checksum;
+        final long rawLength;
+
+        protected EncodedStrip(byte[] data, long checksum, long rawLength) {
+            this.data = data;
+            this.checksum = checksum;
+            this.rawLength = rawLength;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.innopolis.kuzymvas.renderers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Запись поля в двоичный формат PBM ("P4"): точка на бит, строки выровнены на байт, 1 - черная точка.
+ * Упакованные строки полосы уже совпадают с форматом, так что кодирование сводится к упаковке
+ */
+public class PbmSnapshotWriter extends ImageSnapshotWriter {
+
+    /**
+     * Создает новый способ записи
+     *
+     * @param pathPrefix - путь к файлам снимков без номера поколения
+     * @param scale      - коэффициент уменьшения, 1 - точка на клетку
+     * @param threads    - число потоков кодирования
+     */
+    public PbmSnapshotWriter(String pathPrefix, int scale, int threads) {
+        super(pathPrefix, ".pbm", scale, threads);
+    }
+
+    @Override
+    protected void writeHeader(OutputStream out, int width, int height) throws IOException {
+        out.write(("P4\n" + width + " " + height + "\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    protected EncodedStrip encodeStrip(byte[] packed, int rowBytes, int rows, boolean last) {
+        return new EncodedStrip(packed, 0, packed.length);
+    }
+}
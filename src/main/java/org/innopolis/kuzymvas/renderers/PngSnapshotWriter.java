@@ -0,0 +1,172 @@
+package org.innopolis.kuzymvas.renderers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Запись поля в PNG с одним битом на точку в оттенках серого (0 - черная точка).
+ * Каждая полоса строк сжимается независимо в своем потоке кодирования отдельным {@link Deflater}
+ * без заголовка zlib: промежуточные полосы заканчиваются сбросом до границы байта (SYNC_FLUSH),
+ * последняя - завершающим блоком, поэтому полосы, записанные подряд, образуют один поток deflate.
+ * Каждая полоса становится отдельным фрагментом IDAT; заголовок zlib пишется перед первой полосой,
+ * а контрольная сумма Adler-32 всего потока собирается из сумм полос так же, как adler32_combine в zlib
+ */
+public class PngSnapshotWriter extends ImageSnapshotWriter {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] ZLIB_HEADER = {0x78, (byte) 0x9C};
+    private static final int BIT_DEPTH = 1;
+    private static final int GRAYSCALE = 0;
+    private static final int NO_FILTER = 0;
+    private static final long ADLER_BASE = 65521;
+
+    private final int level;
+    private boolean started;
+    private long checksum;
+
+    /**
+     * Создает новый способ записи со степенью сжатия по умолчанию
+     *
+     * @param pathPrefix - путь к файлам снимков без номера поколения
+     * @param scale      - коэффициент уменьшения, 1 - точка на клетку
+     * @param threads    - число потоков кодирования
+     */
+    public PngSnapshotWriter(String pathPrefix, int scale, int threads) {
+        this(pathPrefix, scale, threads, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Создает новый способ записи
+     *
+     * @param pathPrefix - путь к файлам снимков без номера поколения
+     * @param scale      - коэффициент уменьшения, 1 - точка на клетку
+     * @param threads    - число потоков кодирования
+     * @param level      - степень сжатия {@link Deflater}
+     */
+    public PngSnapshotWriter(String pathPrefix, int scale, int threads, int level) {
+        super(pathPrefix, ".png", scale, threads);
+        if (level != Deflater.DEFAULT_COMPRESSION
+                && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Unknown compression level " + level);
+        }
+        this.level = level;
+    }
+
+    @Override
+    protected void writeHeader(OutputStream out, int width, int height) throws IOException {
+        out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(header);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeByte(BIT_DEPTH);
+        data.writeByte(GRAYSCALE);
+        data.writeByte(0);
+        data.writeByte(0);
+        data.writeByte(0);
+        writeChunk(out, "IHDR", header.toByteArray());
+        started = false;
+        checksum = 1;
+    }
+
+    @Override
+    protected EncodedStrip encodeStrip(byte[] packed, int rowBytes, int rows, boolean last) {
+        byte[] raw = new byte[rows * (rowBytes + 1)];
+        for (int row = 0; row < rows; row++) {
+            int line = row * (rowBytes + 1);
+            raw[line] = NO_FILTER;
+            for (int i = 0; i < rowBytes; i++) {
+                raw[line + 1 + i] = (byte) ~packed[row * rowBytes + i];
+            }
+        }
+        Adler32 adler = new Adler32();
+        adler.update(raw, 0, raw.length);
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(raw);
+            if (last) {
+                deflater.finish();
+            }
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+            byte[] buffer = new byte[1 << 16];
+            while (true) {
+                int count = deflater.deflate(buffer, 0, buffer.length,
+                                             last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                compressed.write(buffer, 0, count);
+                if (last ? deflater.finished() : count < buffer.length) {
+                    break;
+                }
+            }
+            return new EncodedStrip(compressed.toByteArray(), adler.getValue(), raw.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    protected void writeStrip(OutputStream out, EncodedStrip strip) throws IOException {
+        byte[] data = strip.data;
+        if (!started) {
+            data = new byte[ZLIB_HEADER.length + strip.data.length];
+            System.arraycopy(ZLIB_HEADER, 0, data, 0, ZLIB_HEADER.length);
+            System.arraycopy(strip.data, 0, data, ZLIB_HEADER.length, strip.data.length);
+            started = true;
+        }
+        checksum = combineAdler(checksum, strip.checksum, strip.rawLength);
+        writeChunk(out, "IDAT", data);
+    }
+
+    @Override
+    protected void writeTrailer(OutputStream out) throws IOException {
+        writeChunk(out, "IDAT", new byte[]{
+                (byte) (checksum >>> 24), (byte) (checksum >>> 16), (byte) (checksum >>> 8), (byte) checksum});
+        writeChunk(out, "IEND", new byte[0]);
+    }
+
+    /**
+     * Вычисляет Adler-32 склейки двух последовательностей по их суммам
+     *
+     * @param first  - сумма первой последовательности
+     * @param second - сумма второй последовательности
+     * @param length - длина второй последовательности
+     * @return - сумма склейки
+     */
+    static long combineAdler(long first, long second, long length) {
+        long remainder = length % ADLER_BASE;
+        long sum1 = first & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (second & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((first >>> 16) & 0xFFFF) + ((second >>> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= 2 * ADLER_BASE) {
+            sum2 -= 2 * ADLER_BASE;
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        DataOutputStream chunk = new DataOutputStream(out);
+        chunk.writeInt(data.length);
+        chunk.write(typeBytes);
+        chunk.write(data);
+        chunk.writeInt((int) crc.getValue());
+    }
+}
@@ -2,32 +2,61 @@ package org.innopolis.kuzymvas.renderers;
 
 import org.innopolis.kuzymvas.cellular.CellularAutomata;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.List;
 
 /**
- * Класс рендерера состояний клеточного автомата в реальном времени
+ * Класс рендерера состояний клеточного автомата в реальном времени.
+ * Выводится не все поле, а окно заданного размера, которое читается из автомата запросом области,
+ * поэтому стоимость кадра не зависит от размера поля. Окно можно сдвигать клавишами w/a/s/d,
+ * которые читаются из потока ввода без блокировки. Кадры выводятся с постоянной частотой:
+ * время вычисления шага вычитается из паузы до следующего кадра.
  */
 public class RealTimeStepRenderer implements Runnable {
 
     private final CellularAutomata automata;
     private final int delay;
     private final PrintStream out;
+    private final InputStream in;
     private final int width;
+    private final int height;
+    private final int viewportWidth;
+    private final int viewportHeight;
     private int stepNumber;
+    private int left;
+    private int top;
 
     /**
-     * Создает новый рендерер с заданными параметрами
+     * Создает новый рендерер с заданными параметрами, выводящий все поле без управления с клавиатуры
      *
      * @param automata   - автомат, состояния которого будут выводиться рендерером
      * @param out        - поток для вывода состояний
-     * @param delay      - минимальная задержка в миллисекундах между выводами состояний
+     * @param delay      - период вывода состояний в миллисекундах
      * @param stepNumber - число шагов, которое нужно вывести
      */
     public RealTimeStepRenderer(
             CellularAutomata automata, OutputStream out, int delay,
             int stepNumber) {
+        this(automata, out, null, delay, stepNumber, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Создает новый рендерер с заданными параметрами, выводящий окно на поле
+     *
+     * @param automata       - автомат, состояния которого будут выводиться рендерером
+     * @param out            - поток для вывода состояний
+     * @param in             - поток ввода для команд сдвига окна или null, если окно неподвижно
+     * @param delay          - период вывода состояний в миллисекундах
+     * @param stepNumber     - число шагов, которое нужно вывести
+     * @param viewportWidth  - ширина окна; если поле уже, окно сужается до поля
+     * @param viewportHeight - высота окна; если поле ниже, окно сужается до поля
+     */
+    public RealTimeStepRenderer(
+            CellularAutomata automata, OutputStream out, InputStream in, int delay,
+            int stepNumber, int viewportWidth, int viewportHeight) {
         List<Integer> dims = automata.getDimensions();
         if (dims.size() != 2) {
             throw new IllegalArgumentException("This renderer only works for 2D automatas");
@@ -38,11 +67,18 @@ public class RealTimeStepRenderer implements Runnable {
         if (stepNumber < 0) {
             throw new IllegalArgumentException("Число шагов для рендера не может быть меньше нуля");
         }
+        if (viewportWidth <= 0 || viewportHeight <= 0) {
+            throw new IllegalArgumentException("Размер окна должен быть больше нуля");
+        }
         this.width = dims.get(0);
+        this.height = dims.get(1);
         this.automata = automata;
         this.delay = delay;
         this.out = new PrintStream(out);
+        this.in = in;
         this.stepNumber = stepNumber;
+        this.viewportWidth = Math.min(viewportWidth, width);
+        this.viewportHeight = Math.min(viewportHeight, height);
     }
 
     /**
@@ -50,27 +86,98 @@ public class RealTimeStepRenderer implements Runnable {
      */
     @Override
     public void run() {
+        long nextFrame = System.nanoTime();
+        StringBuilder frame = new StringBuilder((viewportWidth + 1) * (viewportHeight + 2));
         while (stepNumber >= 0) {
-            out.print("\033[2J");
-            List<Boolean> states = automata.getCurrentState();
-            for (int i = 0; i < states.size(); i++) {
-                if (states.get(i)) {
-                    out.print("O");
-                } else {
-                    out.print("_");
-                }
-                if ((i % width) == (width - 1)) {
-                    out.println();
+            readCommands();
+            frame.setLength(0);
+            frame.append("\033[2J");
+            boolean[] region = automata.getRegion(left, top, viewportWidth, viewportHeight);
+            for (int i = 0; i < region.length; i++) {
+                frame.append(region[i] ? 'O' : '_');
+                if ((i % viewportWidth) == (viewportWidth - 1)) {
+                    frame.append(System.lineSeparator());
                 }
             }
-            out.println();
+            if (viewportWidth < width || viewportHeight < height) {
+                frame.append('[').append(left).append(',').append(top).append("] ")
+                        .append(viewportWidth).append('x').append(viewportHeight)
+                        .append(" of ").append(width).append('x').append(height);
+            }
+            frame.append(System.lineSeparator());
+            out.print(frame);
+            out.flush();
             automata.updateAutomata();
             stepNumber--;
-            try {
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                return;
+            nextFrame += delay * 1_000_000L;
+            long pause = nextFrame - System.nanoTime();
+            if (pause > 0) {
+                try {
+                    Thread.sleep(pause / 1_000_000L, (int) (pause % 1_000_000L));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            } else {
+                nextFrame = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Возвращает столбец левого края окна
+     *
+     * @return - столбец левого края окна
+     */
+    public int getLeft() {
+        return left;
+    }
+
+    /**
+     * Возвращает строку верхнего края окна
+     *
+     * @return - строка верхнего края окна
+     */
+    public int getTop() {
+        return top;
+    }
+
+    /**
+     * Читает уже поступившие команды сдвига окна, не блокируясь в ожидании новых.
+     * Каждая команда сдвигает окно на четверть его размера, не выводя его за края поля
+     */
+    private void readCommands() {
+        if (in == null) {
+            return;
+        }
+        try {
+            while (in.available() > 0) {
+                int command = in.read();
+                int stepX = Math.max(1, viewportWidth / 4);
+                int stepY = Math.max(1, viewportHeight / 4);
+                switch (command) {
+                    case 'a': {
+                        left = Math.max(0, left - stepX);
+                        break;
+                    }
+                    case 'd': {
+                        left = Math.min(width - viewportWidth, left + stepX);
+                        break;
+                    }
+                    case 'w': {
+                        top = Math.max(0, top - stepY);
+                        break;
+                    }
+                    case 's': {
+                        top = Math.min(height - viewportHeight, top + stepY);
+                        break;
+                    }
+                    default: {
+                        break;
+                    }
+                }
             }
+        } catch (IOException e) {
+            System.out.println("Error. IO exception, while reading viewport commands: " + e.getLocalizedMessage());
         }
     }
 }
@@ -0,0 +1,281 @@
+package org.innopolis.kuzymvas.renderers;
+
+import org.innopolis.kuzymvas.cellular.BoundaryMode;
+import org.innopolis.kuzymvas.cellular.NeighborhoodType;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Дисковый кэш результатов, адресуемый содержимым. Ключ задачи - SHA-256 от исходного поля, его размеров,
+ * правила, окружения и режима краев (см. {@link #key}), а каждая запись кэша - поколение с номером N,
+ * полученное из этого поля за N шагов. Поэтому запрос на большее число шагов продолжает вычисление
+ * с самого дальнего сохраненного поколения, а не с нулевого: промежуточные поколения сохраняются
+ * как контрольные точки через {@link #checkpointWriter}.
+ * Записи хранятся в файлах "ключ-N.board" и вытесняются по давности последнего использования,
+ * когда их общий размер превышает заданный. Давность хранится во времени изменения файла, поэтому
+ * кэш переживает перезапуск программы и может использоваться несколькими процессами сразу
+ */
+public class ResultCache {
+
+    private static final int MAGIC = 'L' << 24 | 'R' << 16 | 'C' << 8 | 'B';
+    private static final String EXTENSION = ".board";
+    private static final String KEY_VERSION = "LRC1";
+
+    private final File directory;
+    private final long maxBytes;
+
+    /**
+     * Создает кэш в заданном каталоге, создавая каталог при необходимости
+     *
+     * @param directory - каталог кэша
+     * @param maxBytes  - наибольший общий размер записей в байтах
+     * @throws IOException - если каталог не удалось создать
+     */
+    public ResultCache(File directory, long maxBytes) throws IOException {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache size can't be negative");
+        }
+        Files.createDirectories(directory.toPath());
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Вычисляет ключ задачи
+     *
+     * @param width        - ширина поля
+     * @param height       - высота поля
+     * @param states       - исходные состояния клеток построчно
+     * @param rule         - правило обновления клеток
+     * @param neighborhood - тип окружения клеток
+     * @param boundaryMode - режим обработки краев поля
+     * @return - шестнадцатеричная запись SHA-256
+     */
+    public static String key(
+            int width, int height, List<Boolean> states, LifeRule rule, NeighborhoodType neighborhood,
+            BoundaryMode boundaryMode) {
+        if (states.size() != width * height) {
+            throw new IllegalArgumentException("Provided states list doesn't match field size");
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        String header = KEY_VERSION + " " + width + "x" + height + " " + rule + " " + neighborhood + " "
+                + boundaryMode + "\n";
+        digest.update(header.getBytes(StandardCharsets.US_ASCII));
+        byte[] packed = new byte[(states.size() + Byte.SIZE - 1) / Byte.SIZE];
+        for (int i = 0; i < states.size(); i++) {
+            if (states.get(i)) {
+                packed[i / Byte.SIZE] |= 1 << (i % Byte.SIZE);
+            }
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest(packed)) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Ищет самое дальнее сохраненное поколение задачи, не превышающее заданного, и отмечает его как использованное.
+     * Поврежденные записи удаляются и пропускаются
+     *
+     * @param key   - ключ задачи
+     * @param steps - наибольший нужный номер поколения
+     * @return - найденное поколение или null, если для задачи ничего не сохранено
+     */
+    public synchronized Checkpoint find(String key, long steps) {
+        List<Long> generations = new ArrayList<>();
+        String prefix = key + "-";
+        String[] names = directory.list((dir, name) -> name.startsWith(prefix) && name.endsWith(EXTENSION));
+        for (String name : names == null ? new String[0] : names) {
+            try {
+                long generation = Long.parseLong(name.substring(prefix.length(), name.length() - EXTENSION.length()));
+                if (generation <= steps) {
+                    generations.add(generation);
+                }
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        generations.sort(Comparator.reverseOrder());
+        for (long generation : generations) {
+            File file = entryFile(key, generation);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readLong() != generation) {
+                    throw new IOException("Not a cache entry: " + file);
+                }
+                int width = in.readInt();
+                int height = in.readInt();
+                byte[] packed = new byte[(width * height + Byte.SIZE - 1) / Byte.SIZE];
+                in.readFully(packed);
+                boolean[] states = new boolean[width * height];
+                for (int i = 0; i < states.length; i++) {
+                    states[i] = (packed[i / Byte.SIZE] & (1 << (i % Byte.SIZE))) != 0;
+                }
+                file.setLastModified(System.currentTimeMillis());
+                return new Checkpoint(generation, width, height, states);
+            } catch (IOException | NegativeArraySizeException e) {
+                file.delete();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Сохраняет поколение задачи и вытесняет давно не использованные записи, если кэш переполнен.
+     * Запись сначала пишется во временный файл, так что читатели не видят ее недописанной
+     *
+     * @param key        - ключ задачи
+     * @param generation - номер поколения
+     * @param width      - ширина поля
+     * @param height     - высота поля
+     * @param states     - состояния клеток построчно
+     * @throws IOException - если запись не удалась
+     */
+    public synchronized void store(String key, long generation, int width, int height, boolean[] states)
+            throws IOException {
+        File entry = entryFile(key, generation);
+        File temporary = File.createTempFile(key, ".tmp", directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeLong(generation);
+                out.writeInt(width);
+                out.writeInt(height);
+                byte[] packed = new byte[(width * height + Byte.SIZE - 1) / Byte.SIZE];
+                for (int i = 0; i < width * height; i++) {
+                    if (states[i]) {
+                        packed[i / Byte.SIZE] |= 1 << (i % Byte.SIZE);
+                    }
+                }
+                out.write(packed);
+            }
+            Files.move(temporary.toPath(), entry.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+        evict(entry);
+    }
+
+    /**
+     * Возвращает способ записи, сохраняющий снимки конвейера как контрольные точки задачи
+     *
+     * @param key            - ключ задачи
+     * @param baseGeneration - номер поколения, с которого продолжается вычисление; прибавляется к номерам снимков
+     * @return - способ записи для {@link SnapshotPipeline}
+     */
+    public SnapshotWriter checkpointWriter(String key, long baseGeneration) {
+        return (generation, width, height, states) -> store(key, baseGeneration + generation, width, height, states);
+    }
+
+    /**
+     * Возвращает общий размер записей кэша
+     *
+     * @return - размер в байтах
+     */
+    public synchronized long getSize() {
+        long size = 0;
+        for (File file : entries()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    /**
+     * Удаляет записи, начиная с давно не использованных, пока общий размер не станет допустимым.
+     * Только что сохраненная запись удаляется последней, даже если время изменения файлов совпадает
+     *
+     * @param newest - только что сохраненная запись
+     */
+    private void evict(File newest) {
+        File[] entries = entries();
+        long size = 0;
+        long[] lastUsed = new long[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            size += entries[i].length();
+            lastUsed[i] = entries[i].equals(newest) ? Long.MAX_VALUE : entries[i].lastModified();
+        }
+        if (size <= maxBytes) {
+            return;
+        }
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> lastUsed[i]));
+        for (int i = 0; i < order.length && size > maxBytes; i++) {
+            File entry = entries[order[i]];
+            long length = entry.length();
+            if (entry.delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private File[] entries() {
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        return entries == null ? new File[0] : entries;
+    }
+
+    private File entryFile(String key, long generation) {
+        return new File(directory, key + "-" + generation + EXTENSION);
+    }
+
+    /**
+     * Сохраненное поколение задачи
+     */
+    public static class Checkpoint {
+        private final long generation;
+        private final int width;
+        private final int height;
+        private final boolean[] states;
+
+        Checkpoint(long generation, int width, int height, boolean[] states) {
+            this.generation = generation;
+            this.width = width;
+            this.height = height;
+            this.states = states;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Возвращает состояния клеток поколения в виде списка, как их принимает
+         * {@link org.innopolis.kuzymvas.cellular.CellularAutomata#initAutomata}
+         *
+         * @return - список состояний клеток построчно
+         */
+        public List<Boolean> getStates() {
+            List<Boolean> list = new ArrayList<>(states.length);
+            for (boolean state : states) {
+                list.add(state);
+            }
+            return list;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.innopolis.kuzymvas.renderers;
+
+/**
+ * Разметка файла общего состояния, см. {@link SharedStatePublisher}. Все числа - от младшего байта к старшему.
+ * Заголовок занимает 64 байта: "LSHS", версия (int), счетчик последовательной блокировки (long),
+ * ширина и высота (int), номер поколения (long), остальное зарезервировано. Следом идут состояния клеток
+ * построчно по биту на клетку: клетка с индексом i - бит (i mod 64) слова i / 64
+ */
+final class SharedStateLayout {
+
+    static final int MAGIC = 'L' | 'S' << 8 | 'H' << 16 | 'S' << 24;
+    static final int VERSION = 1;
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int SEQUENCE_OFFSET = 8;
+    static final int WIDTH_OFFSET = 16;
+    static final int HEIGHT_OFFSET = 20;
+    static final int GENERATION_OFFSET = 24;
+    static final int HEADER_SIZE = 64;
+
+    private static volatile int fence;
+
+    private SharedStateLayout() {
+    }
+
+    /**
+     * Возвращает размер файла для поля заданного размера
+     *
+     * @param cells - число клеток поля
+     * @return - размер файла в байтах
+     */
+    static long fileSize(int cells) {
+        return HEADER_SIZE + (long) words(cells) * Long.BYTES;
+    }
+
+    /**
+     * Возвращает число слов состояний для поля заданного размера
+     *
+     * @param cells - число клеток поля
+     * @return - число 64-битных слов
+     */
+    static int words(int cells) {
+        return (cells + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    /**
+     * Полный барьер памяти: запись и последующее чтение volatile поля не дают переставить обращения
+     * к отображенной памяти через барьер ни компилятору, ни процессору. В Java 8 нет
+     * VarHandle.fullFence, поэтому используется этот прием
+     */
+    static void fullFence() {
+        fence = 0;
+        if (fence != 0) {
+            throw new IllegalStateException();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.innopolis.kuzymvas.renderers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Публикация текущего поколения в файл, отображенный в память, для наблюдателей из других процессов.
+ * Состояния клеток хранятся по биту на клетку (см. {@link SharedStateLayout}), а заголовок защищен
+ * последовательной блокировкой: перед записью поколения счетчик становится нечетным, после - снова четным.
+ * Читатель ({@link SharedStateReader}) читает прямо из отображения без блокировок и копирования
+ * и повторяет чтение, если счетчик за это время изменился. Публикация выполняется фоновым потоком
+ * конвейера снимков, поэтому не задерживает вычисление.
+ */
+public class SharedStatePublisher implements SnapshotWriter {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int width;
+    private final int height;
+    private long sequence;
+
+    /**
+     * Создает файл общего состояния, заменяя существующий, и записывает в него заголовок
+     *
+     * @param file   - файл общего состояния
+     * @param width  - ширина поля
+     * @param height - высота поля
+     * @throws IOException - если файл не удалось создать или отобразить в память
+     */
+    public SharedStatePublisher(File file, int width, int height) throws IOException {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Field dimensions can't be negative");
+        }
+        this.width = width;
+        this.height = height;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                      SharedStateLayout.fileSize(width * height));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(SharedStateLayout.VERSION_OFFSET, SharedStateLayout.VERSION);
+        buffer.putLong(SharedStateLayout.SEQUENCE_OFFSET, 0);
+        buffer.putInt(SharedStateLayout.WIDTH_OFFSET, width);
+        buffer.putInt(SharedStateLayout.HEIGHT_OFFSET, height);
+        buffer.putLong(SharedStateLayout.GENERATION_OFFSET, -1);
+        SharedStateLayout.fullFence();
+        buffer.putInt(SharedStateLayout.MAGIC_OFFSET, SharedStateLayout.MAGIC);
+    }
+
+    @Override
+    public void write(long generation, int width, int height, boolean[] states) {
+        if (width != this.width || height != this.height) {
+            throw new IllegalArgumentException("Published field can't change its dimensions");
+        }
+        buffer.putLong(SharedStateLayout.SEQUENCE_OFFSET, ++sequence);
+        SharedStateLayout.fullFence();
+        int words = SharedStateLayout.words(states.length);
+        for (int word = 0; word < words; word++) {
+            long bits = 0;
+            int base = word * Long.SIZE;
+            int end = Math.min(base + Long.SIZE, states.length);
+            for (int i = base; i < end; i++) {
+                if (states[i]) {
+                    bits |= 1L << (i - base);
+                }
+            }
+            buffer.putLong(SharedStateLayout.HEADER_SIZE + word * Long.BYTES, bits);
+        }
+        buffer.putLong(SharedStateLayout.GENERATION_OFFSET, generation);
+        SharedStateLayout.fullFence();
+        buffer.putLong(SharedStateLayout.SEQUENCE_OFFSET, ++sequence);
+    }
+
+    /**
+     * Закрывает файл; опубликованное последним поколение остается в нем для новых читателей
+     *
+     * @throws IOException - если файл не удалось закрыть
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,143 @@
+package org.innopolis.kuzymvas.renderers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Читатель файла общего состояния, опубликованного {@link SharedStatePublisher}, в том числе из другой JVM.
+ * Чтение без копирования: между {@link #beginRead()} и {@link #validate(long)} клетки читаются прямо
+ * из отображенной памяти через {@link #isAlive(int)}; если validate вернул false, поколение сменилось
+ * во время чтения и прочитанное нужно отбросить. {@link #snapshot(boolean[])} делает это сам
+ */
+public class SharedStateReader implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int width;
+    private final int height;
+
+    /**
+     * Открывает файл общего состояния
+     *
+     * @param file - файл общего состояния
+     * @throws IOException - если файл не удалось прочитать или он не является файлом общего состояния
+     */
+    public SharedStateReader(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < SharedStateLayout.HEADER_SIZE) {
+                throw new IOException("Not a shared state file: " + file);
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(SharedStateLayout.MAGIC_OFFSET) != SharedStateLayout.MAGIC) {
+                throw new IOException("Not a shared state file: " + file);
+            }
+            int version = buffer.getInt(SharedStateLayout.VERSION_OFFSET);
+            if (version != SharedStateLayout.VERSION) {
+                throw new IOException("Unsupported shared state version " + version);
+            }
+            this.width = buffer.getInt(SharedStateLayout.WIDTH_OFFSET);
+            this.height = buffer.getInt(SharedStateLayout.HEIGHT_OFFSET);
+            if (size < SharedStateLayout.fileSize(width * height)) {
+                throw new IOException("Shared state file is truncated: " + file);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Начинает чтение: дожидается, пока публикатор закончит запись поколения
+     *
+     * @return - значение счетчика, которое нужно передать в {@link #validate(long)}
+     */
+    public long beginRead() {
+        long sequence = buffer.getLong(SharedStateLayout.SEQUENCE_OFFSET);
+        while ((sequence & 1) != 0) {
+            Thread.yield();
+            sequence = buffer.getLong(SharedStateLayout.SEQUENCE_OFFSET);
+        }
+        SharedStateLayout.fullFence();
+        return sequence;
+    }
+
+    /**
+     * Проверяет, что прочитанное после {@link #beginRead()} относится к одному поколению
+     *
+     * @param sequence - значение, возвращенное beginRead
+     * @return - true, если поколение за время чтения не менялось
+     */
+    public boolean validate(long sequence) {
+        SharedStateLayout.fullFence();
+        return buffer.getLong(SharedStateLayout.SEQUENCE_OFFSET) == sequence;
+    }
+
+    /**
+     * Возвращает номер опубликованного поколения; результат достоверен только после успешного validate
+     *
+     * @return - номер поколения или -1, если ни одно поколение еще не опубликовано
+     */
+    public long getGeneration() {
+        return buffer.getLong(SharedStateLayout.GENERATION_OFFSET);
+    }
+
+    /**
+     * Возвращает состояние клетки прямо из отображенной памяти; результат достоверен только после успешного validate
+     *
+     * @param index - индекс клетки построчно
+     * @return - true, если клетка жива
+     */
+    public boolean isAlive(int index) {
+        if (index < 0 || index >= width * height) {
+            throw new IllegalArgumentException("Cell index is out of bounds");
+        }
+        long word = buffer.getLong(SharedStateLayout.HEADER_SIZE + (index / Long.SIZE) * Long.BYTES);
+        return (word & (1L << (index % Long.SIZE))) != 0;
+    }
+
+    /**
+     * Копирует согласованный снимок опубликованного поколения, повторяя чтение, пока оно не удастся
+     *
+     * @param target - массив не короче числа клеток поля
+     * @return - номер скопированного поколения
+     */
+    public long snapshot(boolean[] target) {
+        int cells = width * height;
+        int words = SharedStateLayout.words(cells);
+        while (true) {
+            long sequence = beginRead();
+            long generation = getGeneration();
+            for (int word = 0; word < words; word++) {
+                long bits = buffer.getLong(SharedStateLayout.HEADER_SIZE + word * Long.BYTES);
+                int base = word * Long.SIZE;
+                int end = Math.min(base + Long.SIZE, cells);
+                for (int i = base; i < end; i++) {
+                    target[i] = (bits & (1L << (i - base))) != 0;
+                }
+            }
+            if (validate(sequence)) {
+                return generation;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
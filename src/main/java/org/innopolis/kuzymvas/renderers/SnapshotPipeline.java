@@ -0,0 +1,252 @@
+package org.innopolis.kuzymvas.renderers;
+
+import org.innopolis.kuzymvas.cellular.CellularAutomata;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Конвейер асинхронной выгрузки снимков поколений двумерного автомата.
+ * Поток вычисления лишь копирует поколение в свободный буфер и ставит его в очередь,
+ * а форматирование и запись выполняет фоновый поток, пока автомат считает следующие поколения.
+ * Число буферов ограничено, поэтому память не растет, даже если запись отстает:
+ * что делать, когда свободных буферов нет, определяет {@link BackpressurePolicy}.
+ */
+public class SnapshotPipeline implements AutoCloseable {
+
+    private static final Snapshot END_OF_STREAM = new Snapshot(-1, null);
+
+    private final int width;
+    private final int height;
+    private final int capacity;
+    private final BackpressurePolicy policy;
+    private final SnapshotWriter writer;
+    private final long period;
+    private final long firstGeneration;
+    private final BlockingQueue<Snapshot> pending;
+    private final BlockingQueue<boolean[]> freeBuffers;
+    private final Thread writerThread;
+    private final AtomicLong written;
+    private int allocatedBuffers;
+    private long dropped;
+    private volatile IOException failure;
+    private boolean closed;
+
+    /**
+     * Создает новый конвейер и запускает его фоновый поток записи
+     *
+     * @param automata - двумерный автомат, снимки которого будут выгружаться
+     * @param capacity - число буферов, то есть наибольшее число снимков, ожидающих записи или записываемых
+     * @param policy   - политика на случай, когда все буферы заняты
+     * @param writer   - способ записи снимков
+     */
+    public SnapshotPipeline(CellularAutomata automata, int capacity, BackpressurePolicy policy, SnapshotWriter writer) {
+        this(automata, capacity, policy, writer, 1, 0);
+    }
+
+    /**
+     * Создает новый конвейер, принимающий через {@link #offer} только поколения с заданным периодом,
+     * и запускает его фоновый поток записи
+     *
+     * @param automata        - двумерный автомат, снимки которого будут выгружаться
+     * @param capacity        - число буферов, то есть наибольшее число снимков, ожидающих записи или записываемых
+     * @param policy          - политика на случай, когда все буферы заняты
+     * @param writer          - способ записи снимков
+     * @param period          - период выгружаемых поколений
+     * @param firstGeneration - номер первого поколения, которое может быть выгружено
+     */
+    public SnapshotPipeline(CellularAutomata automata, int capacity, BackpressurePolicy policy, SnapshotWriter writer,
+                            long period, long firstGeneration) {
+        if (period < 1) {
+            throw new IllegalArgumentException("Snapshot period should be positive");
+        }
+        this.period = period;
+        this.firstGeneration = firstGeneration;
+        List<Integer> dims = automata.getDimensions();
+        if (dims.size() != 2) {
+            throw new IllegalArgumentException("Snapshot pipeline only works for 2D automatas");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Snapshot pipeline needs at least one buffer");
+        }
+        this.width = dims.get(0);
+        this.height = dims.get(1);
+        this.capacity = capacity;
+        this.policy = policy;
+        this.writer = writer;
+        this.pending = new LinkedBlockingQueue<>();
+        this.freeBuffers = new ArrayBlockingQueue<>(capacity);
+        this.written = new AtomicLong();
+        this.writerThread = new Thread(this::writeSnapshots, "snapshot-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Ставит поколение в очередь на запись, если оно не раньше первого выгружаемого и кратно периоду конвейера
+     *
+     * @param generation - номер поколения
+     * @param automata   - автомат, поколение которого выгружается
+     * @return - true, если снимок поставлен в очередь
+     * @throws IOException - если фоновая запись одного из предыдущих снимков не удалась
+     */
+    public boolean offer(long generation, CellularAutomata automata) throws IOException {
+        if (generation < firstGeneration || generation % period != 0) {
+            return false;
+        }
+        return submit(generation, automata);
+    }
+
+    /**
+     * Копирует текущее поколение автомата и ставит его в очередь на запись
+     *
+     * @param generation - номер поколения
+     * @param automata   - автомат, поколение которого выгружается
+     * @return - true, если снимок поставлен в очередь, false, если он пропущен согласно политике
+     * @throws IOException - если фоновая запись одного из предыдущих снимков не удалась
+     */
+    public boolean submit(long generation, CellularAutomata automata) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Snapshot pipeline is already closed");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        boolean[] buffer = acquireBuffer();
+        if (buffer == null) {
+            dropped++;
+            return false;
+        }
+        automata.copyStates(0, width * height, buffer, 0);
+        pending.add(new Snapshot(generation, buffer));
+        return true;
+    }
+
+    /**
+     * Дожидается записи всех снимков из очереди, останавливает фоновый поток и закрывает способ записи
+     *
+     * @throws IOException - если запись одного из снимков не удалась
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            pending.add(END_OF_STREAM);
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                writerThread.interrupt();
+                Thread.currentThread().interrupt();
+            }
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Возвращает число записанных снимков
+     *
+     * @return - число записанных снимков
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * Возвращает число снимков, пропущенных или выброшенных из очереди согласно политике
+     *
+     * @return - число потерянных снимков
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Возвращает свободный буфер, выделяя новые, пока их число не достигнет емкости конвейера,
+     * а затем поступая согласно политике
+     *
+     * @return - буфер для снимка или null, если снимок следует пропустить
+     */
+    private boolean[] acquireBuffer() {
+        boolean[] buffer = freeBuffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (allocatedBuffers < capacity) {
+            allocatedBuffers++;
+            return new boolean[width * height];
+        }
+        try {
+            switch (policy) {
+                case DROP_NEWEST: {
+                    return null;
+                }
+                case DROP_OLDEST: {
+                    Snapshot oldest = pending.poll();
+                    if (oldest != null) {
+                        dropped++;
+                        return oldest.states;
+                    }
+                    return freeBuffers.take();
+                }
+                default: {
+                    return freeBuffers.take();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Цикл фонового потока: записывает снимки по порядку и возвращает их буферы в пул.
+     * После первой ошибки записи снимки больше не пишутся, но буферы по-прежнему освобождаются
+     */
+    private void writeSnapshots() {
+        try {
+            while (true) {
+                Snapshot snapshot = pending.take();
+                if (snapshot == END_OF_STREAM) {
+                    return;
+                }
+                try {
+                    if (failure == null) {
+                        writer.write(snapshot.generation, width, height, snapshot.states);
+                        written.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    freeBuffers.add(snapshot.states);
+                }
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    /**
+     * Структура снимка, ожидающего записи
+     */
+    private static class Snapshot {
+        final long generation;
+        final boolean[] states;
+
+        Snapshot(long generation, boolean[] states) {
+            this.generation = generation;
+            this.states = states;
+        }
+    }
+}
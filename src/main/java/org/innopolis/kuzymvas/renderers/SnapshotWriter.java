@@ -0,0 +1,32 @@
+package org.innopolis.kuzymvas.renderers;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Интерфейс записи снимка поколения двумерного автомата. Вызывается фоновым потоком конвейера снимков.
+ * Конвейер закрывает способ записи, когда все снимки записаны
+ */
+public interface SnapshotWriter extends Closeable {
+
+    /**
+     * Записывает снимок поколения. Массив состояний принадлежит конвейеру и будет переиспользован
+     * после возврата из метода, поэтому сохранять ссылку на него нельзя
+     *
+     * @param generation - номер поколения
+     * @param width      - ширина поля
+     * @param height     - высота поля
+     * @param states     - состояния клеток построчно
+     * @throws IOException - если запись не удалась
+     */
+    void write(long generation, int width, int height, boolean[] states) throws IOException;
+
+    /**
+     * Освобождает ресурсы способа записи. По умолчанию ничего не делает
+     *
+     * @throws IOException - если завершить запись не удалось
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
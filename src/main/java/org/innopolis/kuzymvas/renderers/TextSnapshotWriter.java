@@ -0,0 +1,41 @@
+package org.innopolis.kuzymvas.renderers;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Запись снимков в текстовые файлы того же формата, что и у {@link EndStepRenderer}:
+ * 'O' - живая клетка, '_' - мертвая. Снимок поколения N пишется в файл "префикс.N"
+ */
+public class TextSnapshotWriter implements SnapshotWriter {
+
+    private final String pathPrefix;
+
+    /**
+     * Создает новый способ записи снимков
+     *
+     * @param pathPrefix - путь к файлам снимков без номера поколения
+     */
+    public TextSnapshotWriter(String pathPrefix) {
+        this.pathPrefix = pathPrefix;
+    }
+
+    @Override
+    public void write(long generation, int width, int height, boolean[] states) throws IOException {
+        char[] line = new char[width];
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(pathPrefix + "." + generation), StandardCharsets.US_ASCII))) {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    line[x] = states[y * width + x] ? 'O' : '_';
+                }
+                out.write(line);
+                out.write(System.lineSeparator());
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.innopolis.kuzymvas.renderers;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Последовательное чтение траектории, записанной {@link TrajectoryWriter}.
+ * Поколения восстанавливаются по порядку применением разностей к предыдущему поколению
+ */
+public class TrajectoryReader implements AutoCloseable {
+
+    private final InputStream in;
+    private final int width;
+    private final int height;
+    private final boolean[] states;
+    private long generation = -1;
+
+    /**
+     * Открывает файл траектории и читает его заголовок
+     *
+     * @param file - файл траектории
+     * @throws IOException - если файл не удалось прочитать или он не является траекторией
+     */
+    public TrajectoryReader(File file) throws IOException {
+        this.in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            for (byte expected : TrajectoryWriter.MAGIC) {
+                if (in.read() != expected) {
+                    throw new IOException("Not a trajectory file: " + file);
+                }
+            }
+            int version = in.read();
+            if (version != TrajectoryWriter.VERSION) {
+                throw new IOException("Unsupported trajectory version " + version);
+            }
+            this.width = (int) readVarint();
+            this.height = (int) readVarint();
+            this.states = new boolean[width * height];
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Читает следующее поколение
+     *
+     * @return - true, если поколение прочитано, false, если траектория закончилась
+     * @throws IOException - если файл поврежден или обрывается посреди поколения
+     */
+    public boolean next() throws IOException {
+        in.mark(1);
+        if (in.read() < 0) {
+            return false;
+        }
+        in.reset();
+        generation = readVarint();
+        long pairs = readVarint();
+        int position = 0;
+        for (long pair = 0; pair < pairs; pair++) {
+            position += (int) readVarint();
+            int changed = (int) readVarint();
+            if (position + changed > states.length) {
+                throw new IOException("Trajectory frame of generation " + generation + " exceeds the field");
+            }
+            for (int i = position; i < position + changed; i++) {
+                states[i] = !states[i];
+            }
+            position += changed;
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает номер последнего прочитанного поколения
+     *
+     * @return - номер поколения или -1, если еще ни одно не прочитано
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Возвращает состояния клеток последнего прочитанного поколения построчно.
+     * Массив принадлежит читателю и меняется при чтении следующего поколения
+     *
+     * @return - состояния клеток
+     */
+    public boolean[] getStates() {
+        return states;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Trajectory ends in the middle of a frame");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in trajectory");
+    }
+}
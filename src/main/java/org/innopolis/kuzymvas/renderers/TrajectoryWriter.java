@@ -0,0 +1,41 @@
+package org.innopolis.kuzymvas.renderers;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Запись траектории автомата - всех поколений подряд - в один файл, к которому данные только дописываются.
+ * Каждое поколение хранится как разность (XOR) с предыдущим записанным поколением, закодированная отрезками:
+ * пары "сколько клеток не изменилось, сколько подряд изменилось", все числа - varint (по 7 бит в байте).
+ * Для разреженного поля, где меняется лишь несколько клеток, поколение занимает единицы байт.
+ * Формат файла: заголовок "LTRJ", байт версии, ширина и высота (varint); затем кадры:
+ * номер поколения, число пар и сами пары (все varint). Читается {@link TrajectoryReader}.
+ * Данные копятся в буфере и сбрасываются в канал файла крупными блоками.
+ */
+public class TrajectoryWriter extends DeltaFileWriter {
+
+    static final byte[] MAGIC = {'L', 'T', 'R', 'J'};
+    static final int VERSION = 1;
+
+    /**
+     * Создает файл траектории, заменяя существующий
+     *
+     * @param file - файл траектории
+     * @throws IOException - если файл не удалось создать
+     */
+    public TrajectoryWriter(File file) throws IOException {
+        super(file);
+    }
+
+    @Override
+    public void write(long generation, int width, int height, boolean[] states) throws IOException {
+        if (checkDimensions(width, height)) {
+            putBytes(MAGIC);
+            putByte(VERSION);
+            putVarint(width);
+            putVarint(height);
+        }
+        putVarint(generation);
+        putDelta(states);
+    }
+}
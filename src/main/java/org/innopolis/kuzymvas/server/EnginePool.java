@@ -0,0 +1,90 @@
+package org.innopolis.kuzymvas.server;
+
+import org.innopolis.kuzymvas.cellular.BlockLookupRWAutomata;
+import org.innopolis.kuzymvas.cellular.BoundaryMode;
+import org.innopolis.kuzymvas.cellular.CellularAutomata;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Пул прогретых автоматов, сгруппированных по размеру поля, правилу и режиму краев.
+ * Построение автомата (выделение сетки и таблицы переходов) стоит дороже, чем небольшая задача целиком,
+ * поэтому автомат после задачи возвращается в пул и переиспользуется следующей задачей той же формы.
+ * Число хранимых форм и автоматов каждой формы ограничено; давно не использованные формы вытесняются.
+ */
+final class EnginePool {
+
+    private final int maxShapes;
+    private final int maxIdlePerShape;
+    private final Map<String, Deque<CellularAutomata>> idle;
+    private long created;
+
+    /**
+     * Создает новый пустой пул
+     *
+     * @param maxShapes       - наибольшее число хранимых форм
+     * @param maxIdlePerShape - наибольшее число свободных автоматов одной формы
+     */
+    EnginePool(int maxShapes, int maxIdlePerShape) {
+        this.maxShapes = maxShapes;
+        this.maxIdlePerShape = maxIdlePerShape;
+        this.idle = new LinkedHashMap<String, Deque<CellularAutomata>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Deque<CellularAutomata>> eldest) {
+                return size() > EnginePool.this.maxShapes;
+            }
+        };
+    }
+
+    /**
+     * Берет из пула свободный автомат нужной формы или создает новый
+     *
+     * @param width        - ширина поля
+     * @param height       - высота поля
+     * @param rule         - правило обновления клеток
+     * @param boundaryMode - режим обработки краев поля
+     * @return - автомат, который нужно вернуть в пул через {@link #release}
+     */
+    CellularAutomata acquire(int width, int height, LifeRule rule, BoundaryMode boundaryMode) {
+        synchronized (this) {
+            Deque<CellularAutomata> engines = idle.get(key(width, height, rule, boundaryMode));
+            if (engines != null && !engines.isEmpty()) {
+                return engines.pop();
+            }
+            created++;
+        }
+        return new BlockLookupRWAutomata(width, height, rule, boundaryMode);
+    }
+
+    /**
+     * Возвращает автомат в пул
+     *
+     * @param rule         - правило, с которым автомат был взят
+     * @param boundaryMode - режим краев, с которым автомат был взят
+     * @param automata     - возвращаемый автомат
+     */
+    synchronized void release(LifeRule rule, BoundaryMode boundaryMode, CellularAutomata automata) {
+        String key = key(automata.getDimensions().get(0), automata.getDimensions().get(1), rule, boundaryMode);
+        Deque<CellularAutomata> engines = idle.computeIfAbsent(key, k -> new ArrayDeque<>());
+        if (engines.size() < maxIdlePerShape) {
+            engines.push(automata);
+        }
+    }
+
+    /**
+     * Возвращает число автоматов, созданных пулом за все время
+     *
+     * @return - число созданных автоматов
+     */
+    synchronized long getCreated() {
+        return created;
+    }
+
+    private static String key(int width, int height, LifeRule rule, BoundaryMode boundaryMode) {
+        return width + "x" + height + " " + rule + " " + boundaryMode;
+    }
+}
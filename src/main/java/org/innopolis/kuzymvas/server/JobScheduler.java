@@ -0,0 +1,143 @@
+package org.innopolis.kuzymvas.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Планировщик задач сервера на общем пуле рабочих потоков.
+ * Большая задача занимает рабочий поток целиком. Небольшие задачи складываются в очередь
+ * и выполняются пачками: рабочий поток забирает из очереди сразу до {@link #BATCH_SIZE} задач,
+ * так что накладные расходы на передачу задачи в пул делятся на всю пачку.
+ * В пуле одновременно ожидает не больше пачек, чем нужно для разбора очереди, и не больше, чем рабочих потоков:
+ * пока ожидающих пачек хватает, новые небольшие задачи просто присоединяются к ним.
+ */
+final class JobScheduler implements AutoCloseable {
+
+    /**
+     * Наибольший объем работы (число обновлений клеток), при котором задача считается небольшой
+     */
+    static final long SMALL_JOB_WORK = 1L << 20;
+    static final int BATCH_SIZE = 16;
+    private static final int MAX_SHAPES = 64;
+    private static final int MAX_IDLE_PER_SHAPE = 4;
+
+    private final ExecutorService workers;
+    private final EnginePool engines;
+    private final int threads;
+    private final Queue<SimulationJob> smallJobs;
+    private final AtomicInteger queuedJobs;
+    private final AtomicInteger pendingBatches;
+    private final AtomicLong batches;
+
+    /**
+     * Создает новый планировщик и его пул рабочих потоков
+     *
+     * @param threads - число рабочих потоков
+     */
+    JobScheduler(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Scheduler needs at least one worker thread");
+        }
+        this.threads = threads;
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread worker = new Thread(task, "simulation-worker-" + counter.incrementAndGet());
+            worker.setDaemon(true);
+            return worker;
+        });
+        this.engines = new EnginePool(MAX_SHAPES, MAX_IDLE_PER_SHAPE);
+        this.smallJobs = new ConcurrentLinkedQueue<>();
+        this.queuedJobs = new AtomicInteger();
+        this.pendingBatches = new AtomicInteger();
+        this.batches = new AtomicLong();
+    }
+
+    /**
+     * Ставит задачу на выполнение
+     *
+     * @param job - задача
+     */
+    void submit(SimulationJob job) {
+        if (job.getWork() > SMALL_JOB_WORK) {
+            workers.execute(() -> job.run(engines));
+            return;
+        }
+        smallJobs.add(job);
+        queuedJobs.incrementAndGet();
+        scheduleBatches();
+    }
+
+    /**
+     * Возвращает число выполненных пачек небольших задач
+     *
+     * @return - число пачек
+     */
+    long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * Возвращает пул автоматов планировщика
+     *
+     * @return - пул автоматов
+     */
+    EnginePool getEngines() {
+        return engines;
+    }
+
+    /**
+     * Останавливает рабочие потоки, давая начатым задачам завершиться
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+    }
+
+    /**
+     * Доводит число ожидающих пачек до min(threads, ceil(queued / BATCH_SIZE))
+     */
+    private void scheduleBatches() {
+        while (true) {
+            int pending = pendingBatches.get();
+            int queued = queuedJobs.get();
+            int needed = Math.min(threads, (queued + BATCH_SIZE - 1) / BATCH_SIZE);
+            if (pending >= needed) {
+                return;
+            }
+            if (pendingBatches.compareAndSet(pending, pending + 1)) {
+                workers.execute(this::runBatch);
+            }
+        }
+    }
+
+    /**
+     * Выполняет до {@link #BATCH_SIZE} небольших задач подряд. Пачка перестает считаться ожидающей до разбора
+     * очереди, поэтому задача, добавленная во время выполнения, попадет либо в эту пачку, либо в новую
+     */
+    private void runBatch() {
+        pendingBatches.decrementAndGet();
+        batches.incrementAndGet();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            SimulationJob job = smallJobs.poll();
+            if (job == null) {
+                break;
+            }
+            queuedJobs.decrementAndGet();
+            job.run(engines);
+        }
+        if (queuedJobs.get() > 0) {
+            scheduleBatches();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.innopolis.kuzymvas.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.innopolis.kuzymvas.cellular.BoundaryMode;
+import org.innopolis.kuzymvas.cellular.CellularAutomata;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Задача сервера: прогнать поле заданное число шагов и записать ответ клиенту.
+ * Если задан период выдачи, промежуточные поколения отправляются по мере вычисления
+ * в виде блоков "generation N", за которыми следуют строки поля и пустая строка.
+ */
+final class SimulationJob {
+
+    private final HttpExchange exchange;
+    private final int width;
+    private final int height;
+    private final List<Boolean> states;
+    private final LifeRule rule;
+    private final BoundaryMode boundaryMode;
+    private final int steps;
+    private final int emitEvery;
+
+    /**
+     * Создает новую задачу
+     *
+     * @param exchange     - запрос, на который нужно ответить
+     * @param width        - ширина поля
+     * @param height       - высота поля
+     * @param states       - начальные состояния клеток построчно
+     * @param rule         - правило обновления клеток
+     * @param boundaryMode - режим обработки краев поля
+     * @param steps        - число шагов
+     * @param emitEvery    - период выдачи промежуточных поколений или 0, если нужно только последнее
+     */
+    SimulationJob(HttpExchange exchange, int width, int height, List<Boolean> states, LifeRule rule,
+                  BoundaryMode boundaryMode, int steps, int emitEvery) {
+        this.exchange = exchange;
+        this.width = width;
+        this.height = height;
+        this.states = states;
+        this.rule = rule;
+        this.boundaryMode = boundaryMode;
+        this.steps = steps;
+        this.emitEvery = emitEvery;
+    }
+
+    /**
+     * Возвращает оценку объема работы задачи - число обновлений клеток
+     *
+     * @return - произведение площади поля на число шагов
+     */
+    long getWork() {
+        return (long) width * height * Math.max(steps, 1);
+    }
+
+    /**
+     * Выполняет задачу на автомате из пула и отвечает клиенту. Ошибки записи (например, клиент
+     * закрыл соединение) прерывают только эту задачу. Если задача упала до отправки заголовков ответа,
+     * клиент получает ответ 500 с текстом ошибки
+     *
+     * @param engines - пул автоматов
+     */
+    void run(EnginePool engines) {
+        CellularAutomata automata = engines.acquire(width, height, rule, boundaryMode);
+        try {
+            automata.initAutomata(states);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            boolean[] buffer = new boolean[width * height];
+            if (emitEvery == 0) {
+                for (int step = 0; step < steps; step++) {
+                    automata.updateAutomata();
+                }
+                byte[] body = format(automata, buffer);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } else {
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    for (int generation = 0; ; generation++) {
+                        if (generation % emitEvery == 0 || generation == steps) {
+                            out.write(("generation " + generation + "\n").getBytes(StandardCharsets.US_ASCII));
+                            out.write(format(automata, buffer));
+                            out.write('\n');
+                            out.flush();
+                        }
+                        if (generation == steps) {
+                            break;
+                        }
+                        automata.updateAutomata();
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            fail(e);
+        } catch (IOException e) {
+            exchange.close();
+        } finally {
+            engines.release(rule, boundaryMode, automata);
+        }
+    }
+
+    /**
+     * Отвечает клиенту ошибкой 500, если заголовки ответа еще не отправлены, иначе просто обрывает ответ
+     *
+     * @param error - исключение, прервавшее задачу
+     */
+    private void fail(RuntimeException error) {
+        if (exchange.getResponseCode() != -1) {
+            exchange.close();
+            return;
+        }
+        try {
+            SimulationServer.sendError(exchange, 500, String.valueOf(error.getMessage()));
+        } catch (IOException e) {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Записывает текущее поколение автомата строками из 'O' и '_'
+     *
+     * @param automata - автомат
+     * @param buffer   - буфер для состояний всех клеток поля
+     * @return - текстовое представление поля
+     */
+    private byte[] format(CellularAutomata automata, boolean[] buffer) {
+        automata.copyStates(0, buffer.length, buffer, 0);
+        byte[] text = new byte[(width + 1) * height];
+        int position = 0;
+        for (int i = 0; i < buffer.length; i++) {
+            text[position++] = (byte) (buffer[i] ? 'O' : '_');
+            if (i % width == width - 1) {
+                text[position++] = '\n';
+            }
+        }
+        return text;
+    }
+}
@@ -0,0 +1,193 @@
+package org.innopolis.kuzymvas.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.innopolis.kuzymvas.cellular.BoundaryMode;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Долгоживущий HTTP сервер симуляции, слушающий только локальный адрес.
+ * Избавляет от запуска JVM, прогрева и разбора аргументов на каждый прогон: клиент отправляет
+ * POST запрос на /simulate, в теле которого поле в формате входного файла (строки из 'O' и '_'),
+ * а в параметрах запроса - steps (число шагов), и необязательные rule (например, B3/S23, по умолчанию правило Конвея),
+ * boundary (wraparound, dead или reflective) и every (период выдачи промежуточных поколений).
+ * В ответ приходит поле после заданного числа шагов или, если задан every, поток промежуточных поколений.
+ * Задачи выполняются на общем пуле рабочих потоков, см. {@link JobScheduler}.
+ */
+public class SimulationServer implements AutoCloseable {
+
+    /**
+     * Наибольшее число клеток поля в одном запросе
+     */
+    public static final int MAX_CELLS = 1 << 24;
+    private static final int HANDLER_THREADS = 2;
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final JobScheduler scheduler;
+
+    /**
+     * Создает и запускает новый сервер на локальном адресе
+     *
+     * @param port    - порт или 0, чтобы выбрать свободный порт
+     * @param workers - число рабочих потоков симуляции
+     * @throws IOException - если порт не удалось занять
+     */
+    public SimulationServer(int port, int workers) throws IOException {
+        this.scheduler = new JobScheduler(workers);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.handlers = Executors.newFixedThreadPool(HANDLER_THREADS, task -> {
+            Thread handler = new Thread(task, "simulation-http");
+            handler.setDaemon(true);
+            return handler;
+        });
+        server.setExecutor(handlers);
+        server.createContext("/simulate", this::handleSimulate);
+        server.start();
+    }
+
+    /**
+     * Возвращает порт, на котором слушает сервер
+     *
+     * @return - номер порта
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Останавливает сервер; начатые задачи получают немного времени на завершение
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        scheduler.close();
+        handlers.shutdownNow();
+    }
+
+    JobScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Разбирает запрос и ставит задачу в очередь. Ответ на корректный запрос отправит рабочий поток,
+     * на некорректный - сразу отправляется ответ с кодом ошибки
+     *
+     * @param exchange - запрос
+     * @throws IOException - если не удалось прочитать запрос или отправить ответ об ошибке
+     */
+    private void handleSimulate(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            sendError(exchange, 405, "Only POST is supported");
+            return;
+        }
+        SimulationJob job;
+        try {
+            job = parseJob(exchange);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+            return;
+        }
+        scheduler.submit(job);
+    }
+
+    private static SimulationJob parseJob(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        if (!parameters.containsKey("steps")) {
+            throw new IllegalArgumentException("Parameter 'steps' is required");
+        }
+        int steps = parseNonNegative(parameters.get("steps"), "steps");
+        int emitEvery = parameters.containsKey("every") ? parseNonNegative(parameters.get("every"), "every") : 0;
+        LifeRule rule = parameters.containsKey("rule") ? LifeRule.parse(parameters.get("rule")) : LifeRule.CONWAY;
+        BoundaryMode boundaryMode = BoundaryMode.WRAPAROUND;
+        if (parameters.containsKey("boundary")) {
+            try {
+                boundaryMode = BoundaryMode.valueOf(parameters.get("boundary").toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown boundary mode '" + parameters.get("boundary") + "'");
+            }
+        }
+        int width = -1;
+        int height = 0;
+        List<Boolean> states = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            while (line != null && line.length() != 0) {
+                if (width == -1) {
+                    width = line.length();
+                }
+                if (width != line.length()) {
+                    throw new IllegalArgumentException("Board should be rectangular");
+                }
+                if ((long) width * (height + 1) > MAX_CELLS) {
+                    throw new IllegalArgumentException("Board is larger than " + MAX_CELLS + " cells");
+                }
+                for (char c : line.toCharArray()) {
+                    states.add(!(c == ' ' || c == '_'));
+                }
+                height++;
+                line = reader.readLine();
+            }
+        }
+        if (height == 0) {
+            throw new IllegalArgumentException("Board is empty");
+        }
+        return new SimulationJob(exchange, width, height, states, rule, boundaryMode, steps, emitEvery);
+    }
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Parameter '" + pair + "' has no value");
+            }
+            parameters.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+                           URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+        }
+        return parameters;
+    }
+
+    private static int parseNonNegative(String value, String name) {
+        int result;
+        try {
+            result = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter '" + name + "' should be an integer");
+        }
+        if (result < 0) {
+            throw new IllegalArgumentException("Parameter '" + name + "' can't be negative");
+        }
+        return result;
+    }
+
+    static void sendError(HttpExchange exchange, int code, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
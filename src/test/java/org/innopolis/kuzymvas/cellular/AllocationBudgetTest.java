@@ -0,0 +1,194 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.innopolis.kuzymvas.cellular.cells.GenerationsRule;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+import org.innopolis.kuzymvas.cellular.cells.RangeRule;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Проверяет, что шаг каждого автомата выделяет в куче не больше заявленного бюджета.
+ * Выделения считаются по всем потокам, участвующим в шаге: вызывающему, рабочим потокам пулов
+ * автоматов и потокам Fork-Join pool. Перед замером автомат прогревается, чтобы JIT успел
+ * убрать выделения, которые устраняет анализ убегания
+ */
+@RunWith(Parameterized.class)
+public class AllocationBudgetTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int WARMUP_STEPS = 2000;
+    private static final int MEASURED_STEPS = 200;
+    private static final int MEASURED_COPIES = 200;
+    private static final long SEED = 48L;
+    // Неизменяемый снимок статистики, публикуемый каждым шагом
+    private static final long STATISTICS_BYTES = 256;
+    // Список getCurrentState: ссылка на кэшированный Boolean на клетку плюс заголовки
+    private static final long STATE_LIST_BYTES_PER_CELL = 8;
+    private static final long STATE_LIST_OVERHEAD_BYTES = 1024;
+    private static final String[] WORKER_PREFIXES = {"automata-worker-", "ForkJoinPool"};
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    private final Supplier<CellularAutomata> constructor;
+    private final String automataName;
+    private final long stepBudget;
+
+    public AllocationBudgetTest(Supplier<CellularAutomata> constructor, String automataName, long stepBudget) {
+        this.constructor = constructor;
+        this.automataName = automataName;
+        this.stepBudget = stepBudget;
+    }
+
+    @Parameterized.Parameters
+    public static Collection automataToTest() {
+        return Arrays.asList(new Object[][]{
+                {(Supplier<CellularAutomata>) () -> new SingleThreadRWAutomata(
+                        WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE),
+                        "Singlethread automata", STATISTICS_BYTES},
+                {(Supplier<CellularAutomata>) () -> new MultiThreadRWAutomata(
+                        WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE, 2),
+                        "Tiled multithread automata", STATISTICS_BYTES + 1024},
+                {(Supplier<CellularAutomata>) () -> new ForkJoinRWAutomata(
+                        WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE),
+                        "Fork-Join automata", STATISTICS_BYTES + 256},
+                {(Supplier<CellularAutomata>) () -> new BlockLookupRWAutomata(WIDTH, HEIGHT, LifeRule.CONWAY),
+                        "Block lookup automata", STATISTICS_BYTES},
+                {(Supplier<CellularAutomata>) () -> new MortonRWAutomata(
+                        WIDTH, HEIGHT, LifeRule.CONWAY, NeighborhoodType.MOORE),
+                        "Z-order automata", STATISTICS_BYTES},
+                {(Supplier<CellularAutomata>) () -> new OffHeapRWAutomata(
+                        WIDTH, HEIGHT, LifeRule.CONWAY, NeighborhoodType.MOORE),
+                        "Off-heap automata", STATISTICS_BYTES},
+                {(Supplier<CellularAutomata>) () -> new SleepingTileRWAutomata(
+                        WIDTH, HEIGHT, LifeRule.CONWAY, NeighborhoodType.MOORE, BoundaryMode.WRAPAROUND, 2),
+                        "Multithread sleeping tile automata", STATISTICS_BYTES + 1024},
+                {(Supplier<CellularAutomata>) () -> new GenerationsRWAutomata(
+                        WIDTH, HEIGHT, GenerationsRule.parse("345/2/4"), NeighborhoodType.MOORE),
+                        "Generations automata", STATISTICS_BYTES},
+                {(Supplier<CellularAutomata>) () -> new LargerThanLifeRWAutomata(
+                        WIDTH, HEIGHT, new RangeRule(34, 45, 34, 58, true), NeighborhoodType.MOORE, 5),
+                        "Larger than Life automata", STATISTICS_BYTES}
+        });
+    }
+
+    @BeforeClass
+    public static void enableAllocationCounting() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue("Per-thread allocation counting isn't available",
+                          bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue("Per-thread allocation counting isn't available",
+                          threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void testStepStaysWithinBudget() {
+        try (CellularAutomata automata = constructor.get()) {
+            automata.initAutomata(RandomFields.randomStates(SEED, WIDTH * HEIGHT));
+            automata.updateAutomata(WARMUP_STEPS);
+            long perStep = allocatedBy(() -> {
+                for (int i = 0; i < MEASURED_STEPS; i++) {
+                    automata.updateAutomata();
+                }
+            }) / MEASURED_STEPS;
+            Assert.assertTrue(automataName + " allocated " + perStep + " bytes per step, budget is " + stepBudget,
+                              perStep <= stepBudget);
+        }
+    }
+
+    @Test
+    public void testStateCopyDoesNotAllocate() {
+        try (CellularAutomata automata = constructor.get()) {
+            automata.initAutomata(RandomFields.randomStates(SEED, WIDTH * HEIGHT));
+            boolean[] target = new boolean[WIDTH * HEIGHT];
+            for (int i = 0; i < WARMUP_STEPS; i++) {
+                automata.copyStates(0, WIDTH * HEIGHT, target, 0);
+                automata.isCellAlive(i % (WIDTH * HEIGHT));
+            }
+            long perCopy = allocatedBy(() -> {
+                for (int i = 0; i < MEASURED_COPIES; i++) {
+                    automata.copyStates(0, WIDTH * HEIGHT, target, 0);
+                    automata.isCellAlive(i % (WIDTH * HEIGHT));
+                }
+            }) / MEASURED_COPIES;
+            Assert.assertEquals(automataName + " allocated while copying states", 0, perCopy);
+        }
+    }
+
+    @Test
+    public void testCurrentStateAllocatesOnlyTheList() {
+        try (CellularAutomata automata = constructor.get()) {
+            automata.initAutomata(RandomFields.randomStates(SEED, WIDTH * HEIGHT));
+            for (int i = 0; i < WARMUP_STEPS / 10; i++) {
+                automata.getCurrentState();
+            }
+            long perCall = allocatedBy(() -> {
+                for (int i = 0; i < MEASURED_COPIES; i++) {
+                    automata.getCurrentState();
+                }
+            }) / MEASURED_COPIES;
+            long budget = STATE_LIST_BYTES_PER_CELL * WIDTH * HEIGHT + STATE_LIST_OVERHEAD_BYTES;
+            Assert.assertTrue(automataName + " allocated " + perCall + " bytes per state list, budget is " + budget,
+                              perCall <= budget);
+        }
+    }
+
+    /**
+     * Считает байты, выделенные вызывающим потоком и рабочими потоками за время работы.
+     * Счетчики рабочих потоков снимаются до и после счетчика вызывающего потока, так что собственные
+     * выделения замера в результат не попадают. Потоки, появившиеся во время работы, считаются с нуля,
+     * а завершившиеся до конца замера не учитываются
+     *
+     * @param work - измеряемая работа
+     * @return - число выделенных байт
+     */
+    private static long allocatedBy(Runnable work) {
+        Map<Long, Long> workersBefore = workerAllocatedBytes();
+        long caller = Thread.currentThread().getId();
+        long callerBefore = threads.getThreadAllocatedBytes(caller);
+        work.run();
+        long callerAfter = threads.getThreadAllocatedBytes(caller);
+        Map<Long, Long> workersAfter = workerAllocatedBytes();
+        long total = callerAfter - callerBefore;
+        for (Map.Entry<Long, Long> entry : workersAfter.entrySet()) {
+            if (entry.getValue() >= 0) {
+                total += entry.getValue() - workersBefore.getOrDefault(entry.getKey(), 0L);
+            }
+        }
+        return total;
+    }
+
+    private static Map<Long, Long> workerAllocatedBytes() {
+        Map<Long, Long> allocated = new HashMap<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (isWorker(thread) && thread != Thread.currentThread()) {
+                allocated.put(thread.getId(), threads.getThreadAllocatedBytes(thread.getId()));
+            }
+        }
+        return allocated;
+    }
+
+    private static boolean isWorker(Thread thread) {
+        for (String prefix : WORKER_PREFIXES) {
+            if (thread.getName().startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
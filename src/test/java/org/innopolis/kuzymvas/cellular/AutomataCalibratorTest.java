@@ -0,0 +1,115 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+public class AutomataCalibratorTest {
+
+    private static final int WIDTH = 24;
+    private static final int HEIGHT = 16;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testChoiceIsCachedPerProfile() throws IOException {
+        File cacheFile = new File(folder.newFolder(), "calibration.properties");
+        List<Boolean> states = RandomFields.randomStates(34L, WIDTH * HEIGHT);
+        CountingCalibrator.calibrations = 0;
+        CountingCalibrator calibrator = new CountingCalibrator(cacheFile, 4);
+        EngineChoice first = calibrator.choose(WIDTH, HEIGHT, states);
+        Assert.assertTrue("Calibration result wasn't stored", cacheFile.isFile());
+        Assert.assertTrue("Calibrator chose engine out of its candidates", calibrator.candidates().contains(first));
+        EngineChoice second = new CountingCalibrator(cacheFile, 4).choose(WIDTH, HEIGHT, states);
+        Assert.assertEquals("Cached choice differs from calibrated one", first, second);
+        Assert.assertEquals("Calibration ran again for the same profile", 1, CountingCalibrator.calibrations);
+        new CountingCalibrator(cacheFile, 8).choose(WIDTH, HEIGHT, states);
+        Assert.assertEquals("Calibration was reused for a different core count", 2, CountingCalibrator.calibrations);
+    }
+
+    @Test
+    public void testNewCandidateInvalidatesCachedChoice() throws IOException {
+        File cacheFile = new File(folder.newFolder(), "calibration.properties");
+        List<Boolean> states = RandomFields.randomStates(36L, WIDTH * HEIGHT);
+        CountingCalibrator.calibrations = 0;
+        CountingCalibrator older = new CountingCalibrator(cacheFile, 4) {
+            @Override
+            List<EngineChoice> candidates() {
+                List<EngineChoice> candidates = super.candidates();
+                candidates.removeIf(choice -> choice.encode().startsWith("block_lookup"));
+                return candidates;
+            }
+        };
+        older.choose(WIDTH, HEIGHT, states);
+        older.choose(WIDTH, HEIGHT, states);
+        Assert.assertEquals("Calibration ran again for the same candidates", 1, CountingCalibrator.calibrations);
+        new CountingCalibrator(cacheFile, 4).choose(WIDTH, HEIGHT, states);
+        Assert.assertEquals("Choice made without the new candidate was reused", 2, CountingCalibrator.calibrations);
+    }
+
+    @Test
+    public void testChosenEngineMatchesReference() throws IOException {
+        File cacheFile = new File(folder.newFolder(), "calibration.properties");
+        List<Boolean> states = RandomFields.randomStates(35L, WIDTH * HEIGHT);
+        EngineChoice choice = new AutomataCalibrator(
+                cacheFile, new ConwayCellFactory(), LifeRule.CONWAY, NeighborhoodType.MOORE)
+                .choose(WIDTH, HEIGHT, states);
+        CellularAutomata automata = choice.create(
+                WIDTH, HEIGHT, new ConwayCellFactory(), LifeRule.CONWAY, NeighborhoodType.MOORE);
+        CellularAutomata reference = new SingleThreadRWAutomata(
+                WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE);
+        automata.initAutomata(states);
+        reference.initAutomata(states);
+        for (int step = 0; step < 5; step++) {
+            automata.updateAutomata();
+            reference.updateAutomata();
+        }
+        Assert.assertEquals(choice + " diverged from reference", reference.getCurrentState(),
+                            automata.getCurrentState());
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        for (EngineChoice choice : new CountingCalibrator(new File("unused"), 4).candidates()) {
+            Assert.assertEquals("Choice wasn't restored from its encoding",
+                                choice, EngineChoice.decode(choice.encode()));
+        }
+        try {
+            EngineChoice.decode("fork,1,256");
+            Assert.fail("Malformed choice was decoded");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testForkJoinThresholdsAreValidated() {
+        try {
+            new ForkJoinRWAutomata(WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE,
+                                   BoundaryMode.WRAPAROUND, 1, 100);
+            Assert.fail("Fork-Join automata accepted task threshold that never stops splitting");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    private static class CountingCalibrator extends AutomataCalibrator {
+        static int calibrations;
+
+        CountingCalibrator(File cacheFile, int cores) {
+            super(cacheFile, new ConwayCellFactory(), LifeRule.CONWAY, NeighborhoodType.MOORE, cores);
+        }
+
+        @Override
+        EngineChoice calibrate(int width, int height, List<Boolean> initialStates) {
+            calibrations++;
+            return super.calibrate(width, height, initialStates);
+        }
+    }
+}
@@ -6,15 +6,21 @@ public class AutomataFactory {
 
     public static CellularAutomata createAutomata(AutomataType type, int width, int height,
                                                   CellFactory factory, NeighborhoodType neighborhoodType) {
+        return createAutomata(type, width, height, factory, neighborhoodType, BoundaryMode.WRAPAROUND);
+    }
+
+    public static CellularAutomata createAutomata(AutomataType type, int width, int height,
+                                                  CellFactory factory, NeighborhoodType neighborhoodType,
+                                                  BoundaryMode boundaryMode) {
        switch (type) {
            case SINGLE_RWA: {
-               return new SingleThreadRWAutomata(width, height, factory, neighborhoodType);
+               return new SingleThreadRWAutomata(width, height, factory, neighborhoodType, boundaryMode);
            }
            case MULTI_RWA: {
-               return new MultiThreadRWAutomata(width,height,factory,neighborhoodType, 2);
+               return new MultiThreadRWAutomata(width,height,factory,neighborhoodType, boundaryMode, 2);
            }
            case FORK_RWA: {
-               return new ForkJoinRWAutomata(width,height,factory,neighborhoodType);
+               return new ForkJoinRWAutomata(width,height,factory,neighborhoodType, boundaryMode);
            }
            default: {
                return null;
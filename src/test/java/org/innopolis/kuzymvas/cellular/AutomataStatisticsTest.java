@@ -0,0 +1,124 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.innopolis.kuzymvas.cellular.cells.GenerationsRule;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+import org.innopolis.kuzymvas.cellular.cells.RangeRule;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+@RunWith(Parameterized.class)
+public class AutomataStatisticsTest {
+
+    private static final int[][] AUTOMATA_DIMS = {
+            {1, 1}, {3, 2}, {8, 5}, {13, 9}, {40, 33}
+    };
+    private static final int STEPS = 10;
+    private static final long SEED = 31L;
+
+    private final EngineConstructor constructor;
+    private final String automataName;
+
+    public AutomataStatisticsTest(EngineConstructor constructor, String automataName) {
+        this.constructor = constructor;
+        this.automataName = automataName;
+    }
+
+    @Parameterized.Parameters
+    public static Collection automataToTest() {
+        File scratchDirectory = new File(System.getProperty("java.io.tmpdir"));
+        return Arrays.asList(new Object[][]{
+                {(EngineConstructor) (width, height) -> new SingleThreadRWAutomata(
+                        width, height, new ConwayCellFactory(), NeighborhoodType.MOORE), "Singlethread automata"},
+                {(EngineConstructor) (width, height) -> new MultiThreadRWAutomata(
+                        width, height, new ConwayCellFactory(), NeighborhoodType.MOORE, 3), "Multithread automata"},
+                {(EngineConstructor) (width, height) -> new ForkJoinRWAutomata(
+                        width, height, new ConwayCellFactory(), NeighborhoodType.MOORE), "Fork-Join pool automata"},
+                {(EngineConstructor) (width, height) -> new ForkJoinRWAutomata(
+                        width, height, new ConwayCellFactory(), NeighborhoodType.MOORE,
+                        BoundaryMode.WRAPAROUND, 2, 3),
+                        "Fork-Join pool automata with smallest tasks"},
+                {(EngineConstructor) (width, height) -> new OffHeapRWAutomata(
+                        width, height, LifeRule.CONWAY, NeighborhoodType.MOORE), "Off-heap automata"},
+                {(EngineConstructor) (width, height) -> new OffHeapRWAutomata(
+                        width, height, LifeRule.CONWAY, NeighborhoodType.MOORE, scratchDirectory),
+                        "Memory-mapped off-heap automata"},
+                {(EngineConstructor) (width, height) -> new MortonRWAutomata(
+                        width, height, LifeRule.CONWAY, NeighborhoodType.MOORE), "Z-order automata"},
+                {(EngineConstructor) (width, height) -> new SleepingTileRWAutomata(
+                        width, height, LifeRule.CONWAY, NeighborhoodType.MOORE, BoundaryMode.WRAPAROUND, 2, 4),
+                        "Sleeping tile automata"},
+                {(EngineConstructor) (width, height) -> new BlockLookupRWAutomata(
+                        width, height, LifeRule.CONWAY), "Block lookup automata"},
+                {(EngineConstructor) (width, height) -> new GenerationsRWAutomata(
+                        width, height, GenerationsRule.STAR_WARS, NeighborhoodType.MOORE), "Generations automata"},
+                {(EngineConstructor) (width, height) -> new LargerThanLifeRWAutomata(
+                        width, height, new RangeRule(3, 3, 2, 3, false), NeighborhoodType.MOORE, 1),
+                        "Larger than Life automata"}
+        });
+    }
+
+    @Test
+    public void testStatisticsMatchStates() {
+        Random random = new Random(SEED);
+        for (int[] dims : AUTOMATA_DIMS) {
+            List<Boolean> states = new ArrayList<>();
+            for (int i = 0; i < dims[0] * dims[1]; i++) {
+                states.add(random.nextInt(3) == 0);
+            }
+            try (CellularAutomata automata = constructor.create(dims[0], dims[1])) {
+                automata.initAutomata(states);
+                Assert.assertEquals(automataName + " returned wrong statistics after initialization on field "
+                                            + dims[0] + "x" + dims[1],
+                                    expectedStatistics(states, states, dims[0]), automata.getStatistics());
+                List<Boolean> previous = automata.getCurrentState();
+                for (int step = 0; step < STEPS; step++) {
+                    automata.updateAutomata();
+                    List<Boolean> current = automata.getCurrentState();
+                    Assert.assertEquals(automataName + " returned wrong statistics at step " + step + " on field "
+                                                + dims[0] + "x" + dims[1],
+                                        expectedStatistics(previous, current, dims[0]), automata.getStatistics());
+                    previous = current;
+                }
+            }
+        }
+    }
+
+    private static AutomataStatistics expectedStatistics(List<Boolean> previous, List<Boolean> current, int width) {
+        long population = 0;
+        long births = 0;
+        long deaths = 0;
+        int[] min = {Integer.MAX_VALUE, Integer.MAX_VALUE};
+        int[] max = {Integer.MIN_VALUE, Integer.MIN_VALUE};
+        for (int i = 0; i < current.size(); i++) {
+            if (current.get(i)) {
+                population++;
+                int[] coordinates = {i % width, i / width};
+                for (int d = 0; d < coordinates.length; d++) {
+                    min[d] = Math.min(min[d], coordinates[d]);
+                    max[d] = Math.max(max[d], coordinates[d]);
+                }
+            }
+            if (current.get(i) && !previous.get(i)) {
+                births++;
+            }
+            if (!current.get(i) && previous.get(i)) {
+                deaths++;
+            }
+        }
+        return new AutomataStatistics(population, births, deaths, min, max);
+    }
+
+    interface EngineConstructor {
+        CellularAutomata create(int width, int height);
+    }
+}
@@ -0,0 +1,157 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.Life3DRule;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class BitPacked3DRWAutomataTest {
+
+    private static final int[][] AUTOMATA_DIMS = {
+            {1, 1, 1}, {3, 2, 4}, {63, 5, 3}, {64, 4, 6}, {65, 7, 5}, {130, 3, 4}
+    };
+    private static final Life3DRule[] RULES = {
+            Life3DRule.BAYS_4555, Life3DRule.BAYS_5766, Life3DRule.parse("B1,3/S0-2"), Life3DRule.parse("B0/S26")
+    };
+    private static final int STEPS = 6;
+    private static final long SEED = 50L;
+
+    @Test
+    public void testSameStatesAsNaiveCount() {
+        Random random = new Random(SEED);
+        for (NeighborhoodType neighborhoodType : new NeighborhoodType[]{
+                NeighborhoodType.MOORE, NeighborhoodType.VON_NEUMANN}) {
+            for (Life3DRule rule : RULES) {
+                for (int[] dims : AUTOMATA_DIMS) {
+                    for (int threads = 1; threads <= 3; threads += 2) {
+                        boolean[] expected = randomVolume(random, dims);
+                        List<Boolean> initial = toList(expected);
+                        try (BitPacked3DRWAutomata automata = new BitPacked3DRWAutomata(
+                                dims[0], dims[1], dims[2], rule, neighborhoodType, threads)) {
+                            automata.initAutomata(initial);
+                            Assert.assertEquals("Initial states were stored wrong", initial,
+                                                automata.getCurrentState());
+                            for (int step = 0; step < STEPS; step++) {
+                                boolean[] previous = expected;
+                                expected = naiveStep(expected, dims, rule, neighborhoodType);
+                                automata.updateAutomata();
+                                String where = " for " + rule + " " + neighborhoodType + " on "
+                                        + Arrays.toString(dims) + " with " + threads + " threads at step " + step;
+                                Assert.assertEquals("States differ" + where, toList(expected),
+                                                    automata.getCurrentState());
+                                assertStatistics(previous, expected, dims, automata.getStatistics(), where);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSharedPoolAndStateAccess() {
+        int[] dims = {70, 9, 11};
+        boolean[] volume = randomVolume(new Random(SEED), dims);
+        try (WorkerPool pool = new WorkerPool(3);
+             BitPacked3DRWAutomata shared = new BitPacked3DRWAutomata(
+                     dims[0], dims[1], dims[2], Life3DRule.BAYS_4555, NeighborhoodType.MOORE, pool);
+             BitPacked3DRWAutomata single = new BitPacked3DRWAutomata(
+                     dims[0], dims[1], dims[2], Life3DRule.BAYS_4555, NeighborhoodType.MOORE)) {
+            shared.initAutomata(toList(volume));
+            single.initAutomata(toList(volume));
+            shared.updateAutomata(STEPS);
+            single.updateAutomata(STEPS);
+            Assert.assertEquals("Shared pool changed the result", single.getCurrentState(), shared.getCurrentState());
+            Assert.assertEquals("Wrong dimensions", Arrays.asList(dims[0], dims[1], dims[2]), shared.getDimensions());
+            boolean[] copy = new boolean[dims[0] * 2];
+            shared.copyStates(dims[0] * 5 + 3, dims[0] * 7 + 3, copy, 0);
+            for (int i = 0; i < copy.length; i++) {
+                Assert.assertEquals("Copied state differs at " + i, single.isCellAlive(dims[0] * 5 + 3 + i), copy[i]);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExtendedNeighborhoodIsRejected() {
+        new BitPacked3DRWAutomata(4, 4, 4, Life3DRule.BAYS_4555, NeighborhoodType.EXTENDED_VON_NEUMANN);
+    }
+
+    private static void assertStatistics(
+            boolean[] previous, boolean[] current, int[] dims, AutomataStatistics statistics, String where) {
+        long population = 0;
+        long births = 0;
+        long deaths = 0;
+        int[] min = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE};
+        int[] max = {-1, -1, -1};
+        for (int i = 0; i < current.length; i++) {
+            births += current[i] && !previous[i] ? 1 : 0;
+            deaths += previous[i] && !current[i] ? 1 : 0;
+            if (current[i]) {
+                population++;
+                int[] coordinates = {i % dims[0], i / dims[0] % dims[1], i / (dims[0] * dims[1])};
+                for (int d = 0; d < 3; d++) {
+                    min[d] = Math.min(min[d], coordinates[d]);
+                    max[d] = Math.max(max[d], coordinates[d]);
+                }
+            }
+        }
+        Assert.assertEquals("Wrong population" + where, population, statistics.getPopulation());
+        Assert.assertEquals("Wrong births" + where, births, statistics.getBirths());
+        Assert.assertEquals("Wrong deaths" + where, deaths, statistics.getDeaths());
+        for (int d = 0; d < 3 && population > 0; d++) {
+            Assert.assertEquals("Wrong min coordinate" + where, min[d], statistics.getMinCoordinate(d));
+            Assert.assertEquals("Wrong max coordinate" + where, max[d], statistics.getMaxCoordinate(d));
+        }
+    }
+
+    private static boolean[] naiveStep(boolean[] cells, int[] dims, Life3DRule rule, NeighborhoodType type) {
+        int width = dims[0];
+        int height = dims[1];
+        int depth = dims[2];
+        boolean[] next = new boolean[cells.length];
+        for (int z = 0; z < depth; z++) {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int count = 0;
+                    for (int dz = -1; dz <= 1; dz++) {
+                        for (int dy = -1; dy <= 1; dy++) {
+                            for (int dx = -1; dx <= 1; dx++) {
+                                int distance = Math.abs(dx) + Math.abs(dy) + Math.abs(dz);
+                                if (distance == 0 || (type == NeighborhoodType.VON_NEUMANN && distance > 1)) {
+                                    continue;
+                                }
+                                int nx = (x + dx + width) % width;
+                                int ny = (y + dy + height) % height;
+                                int nz = (z + dz + depth) % depth;
+                                count += cells[(nz * height + ny) * width + nx] ? 1 : 0;
+                            }
+                        }
+                    }
+                    int index = (z * height + y) * width + x;
+                    next[index] = rule.nextState(cells[index], count);
+                }
+            }
+        }
+        return next;
+    }
+
+    private static boolean[] randomVolume(Random random, int[] dims) {
+        boolean[] cells = new boolean[dims[0] * dims[1] * dims[2]];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = random.nextInt(4) == 0;
+        }
+        return cells;
+    }
+
+    private static List<Boolean> toList(boolean[] cells) {
+        List<Boolean> list = new ArrayList<>(cells.length);
+        for (boolean cell : cells) {
+            list.add(cell);
+        }
+        return list;
+    }
+}
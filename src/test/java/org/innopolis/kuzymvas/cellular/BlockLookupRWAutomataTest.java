@@ -0,0 +1,68 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class BlockLookupRWAutomataTest {
+
+    private static final int[][] AUTOMATA_DIMS = {
+            {1, 1}, {2, 2}, {3, 2}, {2, 3}, {8, 5}, {17, 9}, {40, 33}, {64, 64}
+    };
+    private static final int STEPS = 20;
+    private static final long SEED = 38L;
+
+    @Test
+    public void testTableMatchesRule() {
+        byte[] table = BlockLookupRWAutomata.buildTable(LifeRule.CONWAY);
+        Assert.assertEquals("Table should cover every 4x4 window", 1 << 16, table.length);
+        Random random = new Random(SEED);
+        for (int i = 0; i < 1000; i++) {
+            int window = random.nextInt(1 << 16);
+            List<Boolean> states = new ArrayList<>();
+            for (int y = 0; y < 4; y++) {
+                for (int x = 0; x < 4; x++) {
+                    states.add(((window >>> (4 * x + y)) & 1) == 1);
+                }
+            }
+            CellularAutomata reference = new SingleThreadRWAutomata(
+                    4, 4, new ConwayCellFactory(), NeighborhoodType.MOORE, BoundaryMode.DEAD);
+            reference.initAutomata(states);
+            reference.updateAutomata();
+            List<Boolean> next = reference.getCurrentState();
+            int expected = (next.get(5) ? 1 : 0) | (next.get(6) ? 2 : 0) | (next.get(9) ? 4 : 0)
+                    | (next.get(10) ? 8 : 0);
+            Assert.assertEquals("Wrong table entry for window " + window, expected, table[window]);
+        }
+    }
+
+    @Test
+    public void testSameStatesAsSingleThread() {
+        Random random = new Random(SEED);
+        for (BoundaryMode boundaryMode : BoundaryMode.values()) {
+            for (int[] dims : AUTOMATA_DIMS) {
+                List<Boolean> states = new ArrayList<>();
+                for (int i = 0; i < dims[0] * dims[1]; i++) {
+                    states.add(random.nextInt(3) == 0);
+                }
+                CellularAutomata reference = new SingleThreadRWAutomata(
+                        dims[0], dims[1], new ConwayCellFactory(), NeighborhoodType.MOORE, boundaryMode);
+                CellularAutomata tested = new BlockLookupRWAutomata(dims[0], dims[1], LifeRule.CONWAY, boundaryMode);
+                reference.initAutomata(states);
+                tested.initAutomata(states);
+                for (int step = 0; step < STEPS; step++) {
+                    Assert.assertEquals("Block lookup automata diverged at step " + step + " with "
+                                                + boundaryMode + " boundary on field " + dims[0] + "x" + dims[1],
+                                        reference.getCurrentState(), tested.getCurrentState());
+                    reference.updateAutomata();
+                    tested.updateAutomata();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BoundaryModeTest {
+
+    private static final int SIZE = 5;
+
+    @Test
+    public void testResolve() {
+        int[] coordinates = {-7, -2, -1, 0, 4, 5, 6, 12};
+        int[] dead = {-1, -1, -1, 0, 4, -1, -1, -1};
+        int[] reflective = {3, 1, 0, 0, 4, 4, 3, 2};
+        int[] wraparound = {3, 3, 4, 0, 4, 0, 1, 2};
+        for (int i = 0; i < coordinates.length; i++) {
+            Assert.assertEquals("Dead boundary resolved " + coordinates[i] + " wrong",
+                                dead[i], BoundaryMode.DEAD.resolve(coordinates[i], SIZE));
+            Assert.assertEquals("Reflective boundary resolved " + coordinates[i] + " wrong",
+                                reflective[i], BoundaryMode.REFLECTIVE.resolve(coordinates[i], SIZE));
+            Assert.assertEquals("Wraparound boundary resolved " + coordinates[i] + " wrong",
+                                wraparound[i], BoundaryMode.WRAPAROUND.resolve(coordinates[i], SIZE));
+        }
+    }
+
+    @Test
+    public void testBlinkerAtEdge() {
+        List<Boolean> states = new ArrayList<>();
+        for (int i = 0; i < SIZE * SIZE; i++) {
+            int x = i % SIZE;
+            int y = i / SIZE;
+            states.add(x == 0 && y >= 1 && y <= 3);
+        }
+        Assert.assertEquals("Blinker at dead edge evolved wrong",
+                            "(0,2)(1,2)", aliveCells(stepOnce(states, BoundaryMode.DEAD)));
+        Assert.assertEquals("Blinker at reflective edge evolved wrong",
+                            "(0,1)(1,2)(0,3)", aliveCells(stepOnce(states, BoundaryMode.REFLECTIVE)));
+        Assert.assertEquals("Blinker at wraparound edge evolved wrong",
+                            "(0,2)(1,2)(4,2)", aliveCells(stepOnce(states, BoundaryMode.WRAPAROUND)));
+    }
+
+    private static List<Boolean> stepOnce(List<Boolean> states, BoundaryMode boundaryMode) {
+        CellularAutomata automata = new SingleThreadRWAutomata(
+                SIZE, SIZE, new ConwayCellFactory(), NeighborhoodType.MOORE, boundaryMode);
+        automata.initAutomata(states);
+        automata.updateAutomata();
+        return automata.getCurrentState();
+    }
+
+    private static String aliveCells(List<Boolean> states) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < states.size(); i++) {
+            if (states.get(i)) {
+                builder.append('(').append(i % SIZE).append(',').append(i / SIZE).append(')');
+            }
+        }
+        return builder.toString();
+    }
+}
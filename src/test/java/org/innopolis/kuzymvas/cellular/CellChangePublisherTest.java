@@ -0,0 +1,243 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.innopolis.kuzymvas.cellular.cells.GenerationsRule;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+import org.innopolis.kuzymvas.cellular.cells.RangeRule;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class CellChangePublisherTest {
+
+    private static final int WIDTH = 23;
+    private static final int HEIGHT = 17;
+    private static final int STEPS = 10;
+    private static final long SEED = 42L;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Test
+    public void testDeltasMatchStates() {
+        ChangeFeedAutomata[] engines = {
+                new SingleThreadRWAutomata(WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE),
+                new MultiThreadRWAutomata(WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE, 3),
+                new ForkJoinRWAutomata(WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE,
+                                       BoundaryMode.WRAPAROUND, 16, 16),
+                new BlockLookupRWAutomata(WIDTH, HEIGHT, LifeRule.CONWAY),
+                new OffHeapRWAutomata(WIDTH, HEIGHT, LifeRule.CONWAY, NeighborhoodType.MOORE),
+                new MortonRWAutomata(WIDTH, HEIGHT, LifeRule.CONWAY, NeighborhoodType.MOORE),
+                new SleepingTileRWAutomata(WIDTH, HEIGHT, LifeRule.CONWAY, NeighborhoodType.MOORE,
+                                           BoundaryMode.WRAPAROUND, 3),
+                new GenerationsRWAutomata(WIDTH, HEIGHT, GenerationsRule.parse("345/2/4"), NeighborhoodType.MOORE),
+                new LargerThanLifeRWAutomata(WIDTH, HEIGHT, new RangeRule(3, 6, 4, 7, true),
+                                             NeighborhoodType.MOORE, 2)
+        };
+        for (ChangeFeedAutomata automata : engines) {
+            String name = automata.getClass().getSimpleName();
+            CellChangePublisher publisher = new CellChangePublisher(1);
+            RecordingSubscriber subscriber = new RecordingSubscriber();
+            publisher.subscribe(subscriber);
+            subscriber.subscription.request(Long.MAX_VALUE);
+            automata.setChangePublisher(publisher);
+            automata.initAutomata(RandomFields.randomStates(SEED, WIDTH * HEIGHT));
+            for (int step = 1; step <= STEPS; step++) {
+                List<Boolean> before = automata.getCurrentState();
+                automata.updateAutomata();
+                List<Boolean> after = automata.getCurrentState();
+                List<Integer> births = new ArrayList<>();
+                List<Integer> deaths = new ArrayList<>();
+                for (int i = 0; i < after.size(); i++) {
+                    if (after.get(i) && !before.get(i)) {
+                        births.add(i);
+                    } else if (before.get(i) && !after.get(i)) {
+                        deaths.add(i);
+                    }
+                }
+                CellDelta delta = subscriber.received.get(step - 1);
+                Assert.assertEquals(name + " published wrong generation", step, delta.getGeneration());
+                Assert.assertEquals(name + " published wrong births at step " + step,
+                                    births.toString(), Arrays.toString(delta.getBirths()));
+                Assert.assertEquals(name + " published wrong deaths at step " + step,
+                                    deaths.toString(), Arrays.toString(delta.getDeaths()));
+            }
+            publisher.close();
+            automata.close();
+            Assert.assertTrue(name + " subscriber wasn't completed", subscriber.completed);
+        }
+    }
+
+    @Test
+    public void testSlowSubscriberHoldsBackUpdates() throws InterruptedException {
+        ChangeFeedAutomata automata = new BlockLookupRWAutomata(WIDTH, HEIGHT, LifeRule.CONWAY);
+        CellChangePublisher publisher = new CellChangePublisher(2);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        automata.setChangePublisher(publisher);
+        automata.initAutomata(RandomFields.randomStates(SEED, WIDTH * HEIGHT));
+        Thread producer = new Thread(() -> {
+            for (int step = 0; step < STEPS; step++) {
+                automata.updateAutomata();
+            }
+        });
+        producer.setDaemon(true);
+        producer.start();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (producer.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals("Producer didn't wait for a subscriber without demand",
+                            Thread.State.WAITING, producer.getState());
+        Assert.assertTrue("Items were delivered without demand", subscriber.received.isEmpty());
+        subscriber.subscription.request(1);
+        Assert.assertEquals("Wrong number of items delivered on demand", 1, subscriber.received.size());
+        subscriber.subscription.request(Long.MAX_VALUE);
+        producer.join(TIMEOUT_MILLIS);
+        Assert.assertFalse("Producer wasn't released by demand", producer.isAlive());
+        Assert.assertEquals("Not all generations were delivered", STEPS, subscriber.received.size());
+        for (int i = 0; i < STEPS; i++) {
+            Assert.assertEquals("Generations were delivered out of order",
+                                i + 1, subscriber.received.get(i).getGeneration());
+        }
+    }
+
+    @Test
+    public void testCancelReleasesProducer() {
+        ChangeFeedAutomata automata = new SingleThreadRWAutomata(
+                WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE);
+        CellChangePublisher publisher = new CellChangePublisher(1);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        automata.setChangePublisher(publisher);
+        automata.initAutomata(RandomFields.randomStates(SEED, WIDTH * HEIGHT));
+        automata.updateAutomata();
+        subscriber.subscription.cancel();
+        Assert.assertEquals("Cancelled subscriber is still subscribed", 0, publisher.getSubscriberCount());
+        for (int step = 0; step < STEPS; step++) {
+            automata.updateAutomata();
+        }
+        Assert.assertTrue("Cancelled subscriber received items", subscriber.received.isEmpty());
+    }
+
+    @Test
+    public void testSubscribeRacingCloseIsCompleted() throws InterruptedException {
+        for (int attempt = 0; attempt < 1000; attempt++) {
+            CellChangePublisher publisher = new CellChangePublisher(1);
+            RecordingSubscriber subscriber = new RecordingSubscriber();
+            Thread subscribing = new Thread(() -> publisher.subscribe(subscriber));
+            subscribing.setDaemon(true);
+            subscribing.start();
+            publisher.close();
+            subscribing.join(TIMEOUT_MILLIS);
+            Assert.assertTrue("Subscriber racing close wasn't completed", subscriber.completed);
+            Assert.assertEquals("Closed publisher kept a subscriber", 0, publisher.getSubscriberCount());
+        }
+    }
+
+    @Test
+    public void testFailingSubscriberIsCancelledWithError() {
+        ChangeFeedAutomata automata = new SingleThreadRWAutomata(
+                WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE);
+        CellChangePublisher publisher = new CellChangePublisher(1);
+        FailingSubscriber failing = new FailingSubscriber();
+        RecordingSubscriber recording = new RecordingSubscriber();
+        publisher.subscribe(failing);
+        publisher.subscribe(recording);
+        failing.subscription.request(Long.MAX_VALUE);
+        recording.subscription.request(Long.MAX_VALUE);
+        automata.setChangePublisher(publisher);
+        automata.initAutomata(RandomFields.randomStates(SEED, WIDTH * HEIGHT));
+        for (int step = 0; step < STEPS; step++) {
+            automata.updateAutomata();
+        }
+        Assert.assertTrue("Failing subscriber didn't receive its exception",
+                          failing.error instanceof IllegalStateException);
+        Assert.assertEquals("Failing subscriber wasn't cancelled", 1, publisher.getSubscriberCount());
+        Assert.assertEquals("Failure of one subscriber affected another", STEPS, recording.received.size());
+    }
+
+    @Test
+    public void testInterruptedProducerSignalsError() throws InterruptedException {
+        ChangeFeedAutomata automata = new SingleThreadRWAutomata(
+                WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE);
+        CellChangePublisher publisher = new CellChangePublisher(1);
+        FailingSubscriber subscriber = new FailingSubscriber();
+        publisher.subscribe(subscriber);
+        automata.setChangePublisher(publisher);
+        automata.initAutomata(RandomFields.randomStates(SEED, WIDTH * HEIGHT));
+        AtomicBoolean interruptKept = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            for (int step = 0; step < STEPS; step++) {
+                automata.updateAutomata();
+            }
+            interruptKept.set(Thread.currentThread().isInterrupted());
+        });
+        producer.setDaemon(true);
+        producer.start();
+        while (producer.getState() != Thread.State.WAITING && producer.isAlive()) {
+            Thread.sleep(1);
+        }
+        producer.interrupt();
+        producer.join(TIMEOUT_MILLIS);
+        Assert.assertFalse("Interrupted producer is still waiting", producer.isAlive());
+        Assert.assertTrue("Interrupt wasn't reported to the subscriber",
+                          subscriber.error instanceof InterruptedException);
+        Assert.assertTrue("Interrupt flag of the producer was lost", interruptKept.get());
+        Assert.assertEquals("Interrupted subscriber wasn't cancelled", 0, publisher.getSubscriberCount());
+    }
+
+    @Test
+    public void testDeltaArraysAreCopies() {
+        CellDelta delta = new CellDelta(1, new int[]{1, 2}, new int[]{3});
+        delta.getBirths()[0] = 7;
+        delta.getDeaths()[0] = 7;
+        Assert.assertEquals("Births were changed through an accessor", "[1, 2]", Arrays.toString(delta.getBirths()));
+        Assert.assertEquals("Deaths were changed through an accessor", "[3]", Arrays.toString(delta.getDeaths()));
+        Assert.assertEquals("Wrong number of births", 2, delta.getBirthCount());
+        Assert.assertEquals("Wrong number of deaths", 1, delta.getDeathCount());
+    }
+
+    private static class FailingSubscriber extends RecordingSubscriber {
+        volatile Throwable error;
+
+        @Override
+        public void onNext(CellDelta item) {
+            throw new IllegalStateException("Subscriber failure");
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<CellDelta> {
+        final List<CellDelta> received = Collections.synchronizedList(new ArrayList<>());
+        Flow.Subscription subscription;
+        volatile boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(CellDelta item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throw new AssertionError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
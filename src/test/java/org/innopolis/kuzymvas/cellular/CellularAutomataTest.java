@@ -14,7 +14,10 @@ import org.mockito.stubbing.Answer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 @RunWith(Parameterized.class)
 public class CellularAutomataTest {
@@ -33,6 +36,7 @@ public class CellularAutomataTest {
 
     private final AutomataFactory.AutomataType type;
     private final String automataName;
+    private final BoundaryMode boundaryMode;
     private Cell mockCell;
     private CellFactory mockFactory;
 
@@ -40,19 +44,27 @@ public class CellularAutomataTest {
     private CellularAutomata automataVonNeumann;
     private CellularAutomata automataVonNeumannExtended;
 
-    public CellularAutomataTest(AutomataFactory.AutomataType type, String automataName) {
-        this.automataName = automataName;
+    public CellularAutomataTest(AutomataFactory.AutomataType type, String automataName, BoundaryMode boundaryMode) {
+        this.automataName = automataName + " with " + boundaryMode + " boundary";
         this.type = type;
+        this.boundaryMode = boundaryMode;
     }
 
     @Parameterized.Parameters
     public static Collection automataToTest() {
-        return Arrays.asList(new Object[][]{
+        Object[][] automatas = {
                 {AutomataFactory.AutomataType.SINGLE_RWA, "Singlethread automata"},
                 {AutomataFactory.AutomataType.MULTI_RWA, "Multithread automata"},
                 {AutomataFactory.AutomataType.FORK_RWA, "Fork-Join pool automata"}
 
-        });
+        };
+        List<Object[]> parameters = new ArrayList<>();
+        for (Object[] automata : automatas) {
+            for (BoundaryMode boundaryMode : BoundaryMode.values()) {
+                parameters.add(new Object[]{automata[0], automata[1], boundaryMode});
+            }
+        }
+        return parameters;
     }
 
     @Before
@@ -70,14 +82,14 @@ public class CellularAutomataTest {
         automatasMoore = new ArrayList<>();
         for (int[] dims : AUTOMATA_DIMS) {
             automatasMoore.add(AutomataFactory.createAutomata(
-                    type, dims[0], dims[1], mockFactory, NeighborhoodType.MOORE
+                    type, dims[0], dims[1], mockFactory, NeighborhoodType.MOORE, boundaryMode
             ));
         }
         automataVonNeumann = AutomataFactory.createAutomata(
-                type, SUFFICIENT_WIDTH, SUFFICIENT_HEIGHT, mockFactory, NeighborhoodType.VON_NEUMANN
+                type, SUFFICIENT_WIDTH, SUFFICIENT_HEIGHT, mockFactory, NeighborhoodType.VON_NEUMANN, boundaryMode
         );
         automataVonNeumannExtended = AutomataFactory.createAutomata(
-                type, SUFFICIENT_WIDTH, SUFFICIENT_HEIGHT, mockFactory, NeighborhoodType.EXTENDED_VON_NEUMANN
+                type, SUFFICIENT_WIDTH, SUFFICIENT_HEIGHT, mockFactory, NeighborhoodType.EXTENDED_VON_NEUMANN, boundaryMode
         );
     }
 
@@ -173,7 +185,7 @@ public class CellularAutomataTest {
         ArgumentCaptor<List<Cell>> captorMoore = ArgumentCaptor.forClass(List.class);
         Mockito.clearInvocations(mockCell);
         AutomataFactory.createAutomata(
-                type, SUFFICIENT_WIDTH, SUFFICIENT_HEIGHT, mockFactory, NeighborhoodType.MOORE
+                type, SUFFICIENT_WIDTH, SUFFICIENT_HEIGHT, mockFactory, NeighborhoodType.MOORE, boundaryMode
         );
         Mockito.verify(mockCell, Mockito.times(SUFFICIENT_WIDTH*SUFFICIENT_HEIGHT))
                 .setNeighborhood(captorMoore.capture());
@@ -181,11 +193,14 @@ public class CellularAutomataTest {
         for(List<Cell> capture: capturesMoore ) {
             Assert.assertEquals("Wrong neighborhood size provided for a Moore neighborhood", MOORE_AREA, capture.size());
         }
+        Set<List<Cell>> distinctMoore = Collections.newSetFromMap(new IdentityHashMap<>());
+        distinctMoore.addAll(capturesMoore);
+        Assert.assertEquals("Cells share a neighborhood list", capturesMoore.size(), distinctMoore.size());
 
         ArgumentCaptor<List<Cell>> captorVN = ArgumentCaptor.forClass(List.class);
         Mockito.clearInvocations(mockCell);
         AutomataFactory.createAutomata(
-                type, SUFFICIENT_WIDTH, SUFFICIENT_HEIGHT, mockFactory, NeighborhoodType.VON_NEUMANN
+                type, SUFFICIENT_WIDTH, SUFFICIENT_HEIGHT, mockFactory, NeighborhoodType.VON_NEUMANN, boundaryMode
         );
         Mockito.verify(mockCell, Mockito.times(SUFFICIENT_WIDTH*SUFFICIENT_HEIGHT))
                 .setNeighborhood(captorVN.capture());
@@ -197,7 +212,7 @@ public class CellularAutomataTest {
         ArgumentCaptor<List<Cell>> captorVNE = ArgumentCaptor.forClass(List.class);
         Mockito.clearInvocations(mockCell);
         AutomataFactory.createAutomata(
-                type, SUFFICIENT_WIDTH, SUFFICIENT_HEIGHT, mockFactory, NeighborhoodType.EXTENDED_VON_NEUMANN
+                type, SUFFICIENT_WIDTH, SUFFICIENT_HEIGHT, mockFactory, NeighborhoodType.EXTENDED_VON_NEUMANN, boundaryMode
         );
         Mockito.verify(mockCell, Mockito.times(SUFFICIENT_WIDTH*SUFFICIENT_HEIGHT))
                 .setNeighborhood(captorVNE.capture());
@@ -0,0 +1,43 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.CellFactory;
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.junit.Test;
+
+import java.util.List;
+
+public class ConstructionTimeTest {
+
+    private final static int RUNS = 5;
+    private final static long SEED = 27L;
+    private final static int[] SIZES = {200, 400, 800};
+
+    @Test
+    public void constructionTimeTest() {
+        CellFactory factory = new ConwayCellFactory();
+        for (AutomataFactory.AutomataType type : AutomataFactory.AutomataType.values()) {
+            for (int size : SIZES) {
+                long summaryConstruction = 0;
+                long summaryStep = 0;
+                List<Boolean> states = RandomFields.randomStates(SEED, size * size);
+                for (int i = 0; i < RUNS; i++) {
+                    long startTime = System.nanoTime();
+                    try (CellularAutomata automata = AutomataFactory.createAutomata(
+                            type, size, size, factory, NeighborhoodType.MOORE)) {
+                        summaryConstruction += System.nanoTime() - startTime;
+                        automata.initAutomata(states);
+                        startTime = System.nanoTime();
+                        automata.updateAutomata();
+                        summaryStep += System.nanoTime() - startTime;
+                    }
+                }
+                double avgConstruction = summaryConstruction / (1000000.0 * RUNS);
+                double avgStep = summaryStep / (1000000.0 * RUNS);
+                System.out.println("Average construction time for " + type + " automata on field of "
+                                           + size + "^2 = " + avgConstruction + " ms, one step = " + avgStep
+                                           + " ms, ratio = " + avgConstruction / avgStep);
+            }
+        }
+        System.out.println("=================================================");
+    }
+}
@@ -0,0 +1,101 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.innopolis.kuzymvas.cellular.cells.GenerationsRule;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+@RunWith(Parameterized.class)
+public class EngineEquivalenceTest {
+
+    private static final int[][] AUTOMATA_DIMS = {
+            {1, 1}, {3, 2}, {8, 5}, {17, 9}, {40, 33}, {70, 45}
+    };
+    private static final int STEPS = 12;
+    private static final long SEED = 27L;
+
+    private final EngineConstructor constructor;
+    private final String automataName;
+
+    public EngineEquivalenceTest(EngineConstructor constructor, String automataName) {
+        this.constructor = constructor;
+        this.automataName = automataName;
+    }
+
+    @Parameterized.Parameters
+    public static Collection automataToTest() {
+        File scratchDirectory = new File(System.getProperty("java.io.tmpdir"));
+        return Arrays.asList(new Object[][]{
+                {(EngineConstructor) (width, height, neighborhoodType, boundaryMode) -> new MultiThreadRWAutomata(
+                        width, height, new ConwayCellFactory(), neighborhoodType, boundaryMode, 2),
+                        "Tiled multithread automata"},
+                {(EngineConstructor) (width, height, neighborhoodType, boundaryMode) -> new OffHeapRWAutomata(
+                        width, height, LifeRule.CONWAY, neighborhoodType, boundaryMode), "Off-heap automata"},
+                {(EngineConstructor) (width, height, neighborhoodType, boundaryMode) -> new OffHeapRWAutomata(
+                        width, height, LifeRule.CONWAY, neighborhoodType, boundaryMode, scratchDirectory),
+                        "Memory-mapped off-heap automata"},
+                {(EngineConstructor) (width, height, neighborhoodType, boundaryMode) -> new MortonRWAutomata(
+                        width, height, LifeRule.CONWAY, neighborhoodType, boundaryMode), "Z-order automata"},
+                {(EngineConstructor) (width, height, neighborhoodType, boundaryMode) -> new MortonRWAutomata(
+                        width, height, LifeRule.CONWAY, neighborhoodType, boundaryMode,
+                        MortonRWAutomata.MemoryLayout.ROW_MAJOR), "Row-major layout of Z-order automata"},
+                {(EngineConstructor) (width, height, neighborhoodType, boundaryMode) -> new SleepingTileRWAutomata(
+                        width, height, LifeRule.CONWAY, neighborhoodType, boundaryMode, 1, 4),
+                        "Sleeping tile automata"},
+                {(EngineConstructor) (width, height, neighborhoodType, boundaryMode) -> new SleepingTileRWAutomata(
+                        width, height, LifeRule.CONWAY, neighborhoodType, boundaryMode, 2, 5),
+                        "Multithread sleeping tile automata"},
+                {(EngineConstructor) (width, height, neighborhoodType, boundaryMode) -> new GenerationsRWAutomata(
+                        width, height, GenerationsRule.parse("23/3/2"), neighborhoodType, boundaryMode),
+                        "Two-state generations automata"}
+        });
+    }
+
+    @Test
+    public void testSameStatesAsSingleThread() {
+        Random random = new Random(SEED);
+        for (BoundaryMode boundaryMode : BoundaryMode.values()) {
+            for (NeighborhoodType neighborhoodType : NeighborhoodType.values()) {
+                for (int[] dims : AUTOMATA_DIMS) {
+                    List<Boolean> states = new ArrayList<>();
+                    for (int i = 0; i < dims[0] * dims[1]; i++) {
+                        states.add(random.nextInt(3) == 0);
+                    }
+                    CellularAutomata reference = new SingleThreadRWAutomata(
+                            dims[0], dims[1], new ConwayCellFactory(), neighborhoodType, boundaryMode);
+                    try (CellularAutomata tested = constructor.create(
+                            dims[0], dims[1], neighborhoodType, boundaryMode)) {
+                        reference.initAutomata(states);
+                        tested.initAutomata(states);
+                        Assert.assertEquals(automataName + " returned wrong dimensions",
+                                            reference.getDimensions(), tested.getDimensions());
+                        for (int step = 0; step < STEPS; step++) {
+                            Assert.assertEquals(automataName + " diverged from single-thread automata at step " + step
+                                                        + " for " + neighborhoodType + " with " + boundaryMode
+                                                        + " boundary on field "
+                                                        + dims[0] + "x" + dims[1],
+                                                reference.getCurrentState(), tested.getCurrentState());
+                            reference.updateAutomata();
+                            tested.updateAutomata();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    interface EngineConstructor {
+        CellularAutomata create(
+                int width, int height, NeighborhoodType neighborhoodType, BoundaryMode boundaryMode);
+    }
+}
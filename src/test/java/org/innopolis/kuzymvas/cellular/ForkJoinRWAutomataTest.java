@@ -0,0 +1,33 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ForkJoinRWAutomataTest {
+
+    private static final int PARALLELISM = 8;
+
+    @Test
+    public void testSmallBoardKeepsGivenThreshold() {
+        Assert.assertEquals("Threshold was raised on a small board", ForkJoinRWAutomata.DEFAULT_UPDATE_THRESHOLD,
+                            ForkJoinRWAutomata.boundedThreshold(
+                                    ForkJoinRWAutomata.DEFAULT_UPDATE_THRESHOLD, 100 * 100, PARALLELISM));
+    }
+
+    @Test
+    public void testLargeBoardTreeIsBounded() {
+        int cells = 5000 * 5000;
+        int threshold = ForkJoinRWAutomata.boundedThreshold(
+                ForkJoinRWAutomata.DEFAULT_PREPARE_THRESHOLD, cells, PARALLELISM);
+        Assert.assertTrue("Task tree has too many leaves for threshold " + threshold,
+                          leaves(0, cells, threshold) <= 2L * PARALLELISM * ForkJoinRWAutomata.LEAVES_PER_THREAD);
+    }
+
+    private static long leaves(int fromIndex, int toIndex, int threshold) {
+        if (toIndex - fromIndex < threshold) {
+            return 1;
+        }
+        int middle = (fromIndex + toIndex) >>> 1;
+        return leaves(fromIndex, middle, threshold) + leaves(middle, toIndex, threshold);
+    }
+}
@@ -0,0 +1,108 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.innopolis.kuzymvas.cellular.cells.GenerationsRule;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class GenerationsRWAutomataTest {
+
+    private static final int[][] AUTOMATA_DIMS = {
+            {1, 1}, {3, 2}, {17, 9}, {33, 40}
+    };
+    private static final int STEPS = 10;
+
+    @Test
+    public void testParse() {
+        Assert.assertEquals("S/B/C notation parsed wrong", GenerationsRule.STAR_WARS, GenerationsRule.parse("345/2/4"));
+        Assert.assertEquals("Empty survival set parsed wrong", GenerationsRule.BRIANS_BRAIN,
+                            GenerationsRule.parse("/2/3"));
+        Assert.assertEquals("B/S/C notation parsed wrong", GenerationsRule.BRIANS_BRAIN,
+                            GenerationsRule.parse("B2/S/C3"));
+        try {
+            GenerationsRule.parse("345/2/17");
+            Assert.fail("Rule with 17 states was accepted");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testTwoStatesMatchConway() {
+        GenerationsRule conway = GenerationsRule.parse("23/3/2");
+        Random random = new Random(29L);
+        for (NeighborhoodType neighborhoodType : NeighborhoodType.values()) {
+            for (int[] dims : AUTOMATA_DIMS) {
+                List<Boolean> states = new ArrayList<>();
+                for (int i = 0; i < dims[0] * dims[1]; i++) {
+                    states.add(random.nextBoolean());
+                }
+                CellularAutomata reference = new SingleThreadRWAutomata(
+                        dims[0], dims[1], new ConwayCellFactory(), neighborhoodType);
+                CellularAutomata tested = new GenerationsRWAutomata(dims[0], dims[1], conway, neighborhoodType);
+                reference.initAutomata(states);
+                tested.initAutomata(states);
+                for (int step = 0; step < STEPS; step++) {
+                    reference.updateAutomata();
+                    tested.updateAutomata();
+                    Assert.assertEquals("Two-state automata diverged from Conway automata at step " + step,
+                                        reference.getCurrentState(), tested.getCurrentState());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMultiStateMatchesBruteForce() {
+        GenerationsRule[] rules = {
+                GenerationsRule.BRIANS_BRAIN, GenerationsRule.STAR_WARS, GenerationsRule.parse("2/13/9")
+        };
+        Random random = new Random(290L);
+        for (GenerationsRule rule : rules) {
+            for (NeighborhoodType neighborhoodType : NeighborhoodType.values()) {
+                for (int[] dims : AUTOMATA_DIMS) {
+                    int[] states = new int[dims[0] * dims[1]];
+                    GenerationsRWAutomata tested = new GenerationsRWAutomata(
+                            dims[0], dims[1], rule, neighborhoodType);
+                    for (int i = 0; i < states.length; i++) {
+                        states[i] = random.nextInt(rule.getStateCount());
+                        tested.setCellState(i, states[i]);
+                    }
+                    for (int step = 0; step < STEPS; step++) {
+                        states = bruteForceStep(states, dims[0], dims[1], rule, neighborhoodType);
+                        tested.updateAutomata();
+                        for (int i = 0; i < states.length; i++) {
+                            Assert.assertEquals("Rule " + rule + " with " + neighborhoodType + " on field "
+                                                        + dims[0] + "x" + dims[1] + " diverged at step " + step,
+                                                states[i], tested.getCellState(i));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] bruteForceStep(
+            int[] states, int width, int height,
+            GenerationsRule rule, NeighborhoodType neighborhoodType) {
+        int[][] deltas = neighborhoodType.getDeltas();
+        int[] result = new int[states.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int count = 0;
+                for (int i = 0; i < deltas[0].length; i++) {
+                    int neighbor = Math.floorMod(y + deltas[1][i], height) * width
+                            + Math.floorMod(x + deltas[0][i], width);
+                    if (states[neighbor] == 1) {
+                        count++;
+                    }
+                }
+                result[y * width + x] = rule.nextState(states[y * width + x], count);
+            }
+        }
+        return result;
+    }
+}
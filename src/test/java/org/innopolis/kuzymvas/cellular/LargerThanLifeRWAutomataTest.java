@@ -0,0 +1,104 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.innopolis.kuzymvas.cellular.cells.RangeRule;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class LargerThanLifeRWAutomataTest {
+
+    private static final int[][] AUTOMATA_DIMS = {
+            {1, 1}, {4, 3}, {13, 7}, {30, 25}
+    };
+    private static final int[] RADII = {1, 2, 3, 5};
+    private static final int STEPS = 6;
+    private static final NeighborhoodType[] SHAPES = {NeighborhoodType.MOORE, NeighborhoodType.VON_NEUMANN};
+
+    @Test
+    public void testRadiusOneMatchesConway() {
+        RangeRule conway = new RangeRule(3, 3, 2, 3, false);
+        Random random = new Random(28L);
+        for (NeighborhoodType shape : SHAPES) {
+            for (int[] dims : AUTOMATA_DIMS) {
+                List<Boolean> states = RandomFields.randomStates(random, dims[0] * dims[1]);
+                CellularAutomata reference = new SingleThreadRWAutomata(
+                        dims[0], dims[1], new ConwayCellFactory(), shape);
+                CellularAutomata tested = new LargerThanLifeRWAutomata(dims[0], dims[1], conway, shape, 1);
+                reference.initAutomata(states);
+                tested.initAutomata(states);
+                for (int step = 0; step < STEPS; step++) {
+                    reference.updateAutomata();
+                    tested.updateAutomata();
+                    Assert.assertEquals("Radius 1 " + shape + " automata diverged from Conway automata at step " + step,
+                                        reference.getCurrentState(), tested.getCurrentState());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLargeRadiusMatchesBruteForce() {
+        Random random = new Random(280L);
+        for (NeighborhoodType shape : SHAPES) {
+            for (int radius : RADII) {
+                int area = shape == NeighborhoodType.MOORE ? (2 * radius + 1) * (2 * radius + 1)
+                        : 2 * radius * (radius + 1) + 1;
+                RangeRule rule = new RangeRule(area / 4, area / 3, area / 5, area / 2, true);
+                for (int[] dims : AUTOMATA_DIMS) {
+                    List<Boolean> states = RandomFields.randomStates(random, dims[0] * dims[1]);
+                    CellularAutomata tested = new LargerThanLifeRWAutomata(dims[0], dims[1], rule, shape, radius);
+                    tested.initAutomata(states);
+                    for (int step = 0; step < STEPS; step++) {
+                        states = bruteForceStep(states, dims[0], dims[1], rule, shape, radius);
+                        tested.updateAutomata();
+                        Assert.assertEquals("Radius " + radius + " " + shape + " automata on field "
+                                                    + dims[0] + "x" + dims[1] + " diverged at step " + step,
+                                            states, tested.getCurrentState());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWrongNeighborhood() {
+        RangeRule rule = new RangeRule(3, 3, 2, 3, false);
+        try {
+            new LargerThanLifeRWAutomata(5, 5, rule, NeighborhoodType.EXTENDED_VON_NEUMANN, 2);
+            Assert.fail("Automata accepted extended Von Neumann neighborhood");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            new LargerThanLifeRWAutomata(5, 5, rule, NeighborhoodType.MOORE, 0);
+            Assert.fail("Automata accepted zero radius");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    private static List<Boolean> bruteForceStep(
+            List<Boolean> states, int width, int height,
+            RangeRule rule, NeighborhoodType shape, int radius) {
+        List<Boolean> result = new ArrayList<>();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int count = 0;
+                for (int dy = -radius; dy <= radius; dy++) {
+                    for (int dx = -radius; dx <= radius; dx++) {
+                        boolean inside = shape == NeighborhoodType.MOORE || Math.abs(dx) + Math.abs(dy) <= radius;
+                        boolean middle = dx == 0 && dy == 0;
+                        if (inside && (!middle || rule.isMiddleIncluded())
+                                && states.get(Math.floorMod(y + dy, height) * width + Math.floorMod(x + dx, width))) {
+                            count++;
+                        }
+                    }
+                }
+                result.add(rule.nextState(states.get(y * width + x), count));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,54 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class MortonLayoutBenchmarkTest {
+
+    private final static int[] WIDTHS = {64, 256, 1024, 4096};
+    private final static int CELLS = 1 << 20;
+    private final static int RUNS = 3;
+    private final static int STEPS = 5;
+
+    @Test
+    public void layoutComparisonTest() {
+        Random random = new Random(36L);
+        for (int width : WIDTHS) {
+            int height = CELLS / width;
+            List<Boolean> states = new ArrayList<>();
+            for (int i = 0; i < width * height; i++) {
+                states.add(random.nextInt(4) == 0);
+            }
+            CellularAutomata morton = new MortonRWAutomata(
+                    width, height, LifeRule.CONWAY, NeighborhoodType.MOORE, BoundaryMode.WRAPAROUND,
+                    MortonRWAutomata.MemoryLayout.MORTON);
+            CellularAutomata rowMajor = new MortonRWAutomata(
+                    width, height, LifeRule.CONWAY, NeighborhoodType.MOORE, BoundaryMode.WRAPAROUND,
+                    MortonRWAutomata.MemoryLayout.ROW_MAJOR);
+            double mortonTime = averageStepTime(morton, states);
+            double rowMajorTime = averageStepTime(rowMajor, states);
+            Assert.assertEquals("Layouts diverged on field " + width + "x" + height,
+                                rowMajor.getCurrentState(), morton.getCurrentState());
+            System.out.println("Average step time on field " + width + "x" + height + ": Z-order = " + mortonTime
+                                       + " ms, row-major = " + rowMajorTime + " ms");
+        }
+    }
+
+    private static double averageStepTime(CellularAutomata automata, List<Boolean> states) {
+        long summaryTime = 0;
+        for (int i = 0; i < RUNS; i++) {
+            automata.initAutomata(states);
+            long startTime = System.nanoTime();
+            for (int j = 0; j < STEPS; j++) {
+                automata.updateAutomata();
+            }
+            summaryTime += System.nanoTime() - startTime;
+        }
+        return summaryTime / (1_000_000.0 * RUNS * STEPS);
+    }
+}
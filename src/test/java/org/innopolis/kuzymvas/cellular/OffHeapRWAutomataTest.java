@@ -0,0 +1,52 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+
+public class OffHeapRWAutomataTest {
+
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 30;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCloseDeletesScratchFile() {
+        OffHeapRWAutomata automata = new OffHeapRWAutomata(
+                WIDTH, HEIGHT, LifeRule.CONWAY, NeighborhoodType.MOORE, folder.getRoot());
+        Assert.assertTrue("Scratch file wasn't created", automata.getScratchFile().isFile());
+        automata.initAutomata(Collections.nCopies(WIDTH * HEIGHT, true));
+        automata.updateAutomata();
+        automata.close();
+        Assert.assertFalse("Scratch file wasn't deleted on close", automata.getScratchFile().exists());
+        automata.close();
+    }
+
+    @Test
+    public void testGridReleaseFreesSegments() throws IOException {
+        OffHeapGrid direct = OffHeapGrid.allocateDirect(HEIGHT, WIDTH);
+        Assert.assertTrue("Direct grid wasn't freed explicitly", direct.release());
+        try (FileChannel channel = FileChannel.open(folder.newFile().toPath(),
+                                                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            OffHeapGrid mapped = OffHeapGrid.map(channel, 0, HEIGHT, WIDTH);
+            Assert.assertTrue("Mapped grid wasn't unmapped explicitly", mapped.release());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUpdateAfterCloseFails() {
+        OffHeapRWAutomata automata = new OffHeapRWAutomata(WIDTH, HEIGHT, LifeRule.CONWAY, NeighborhoodType.MOORE);
+        Assert.assertNull("Direct buffer automata has a scratch file", automata.getScratchFile());
+        automata.close();
+        automata.updateAutomata();
+    }
+}
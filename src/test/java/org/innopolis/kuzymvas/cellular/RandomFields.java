@@ -0,0 +1,35 @@
+package org.innopolis.kuzymvas.cellular;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class RandomFields {
+
+    /**
+     * Возвращает случайное поле, в котором жива примерно каждая третья клетка
+     *
+     * @param seed - зерно генератора, чтобы поле было одинаковым от запуска к запуску
+     * @param size - число клеток
+     * @return - состояния клеток
+     */
+    public static List<Boolean> randomStates(long seed, int size) {
+        return randomStates(new Random(seed), size);
+    }
+
+    /**
+     * Возвращает случайное поле, в котором жива примерно каждая третья клетка,
+     * беря значения из заданного генератора, чтобы из одного зерна получать несколько разных полей
+     *
+     * @param random - генератор
+     * @param size   - число клеток
+     * @return - состояния клеток
+     */
+    public static List<Boolean> randomStates(Random random, int size) {
+        List<Boolean> states = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            states.add(random.nextInt(3) == 0);
+        }
+        return states;
+    }
+}
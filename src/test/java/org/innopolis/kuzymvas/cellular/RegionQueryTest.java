@@ -0,0 +1,110 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.innopolis.kuzymvas.cellular.cells.GenerationsRule;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+import org.innopolis.kuzymvas.cellular.cells.RangeRule;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+@RunWith(Parameterized.class)
+public class RegionQueryTest {
+
+    private static final int WIDTH = 21;
+    private static final int HEIGHT = 13;
+    private static final int STEPS = 3;
+    private static final long SEED = 32L;
+
+    private final EngineConstructor constructor;
+    private final String automataName;
+
+    public RegionQueryTest(EngineConstructor constructor, String automataName) {
+        this.constructor = constructor;
+        this.automataName = automataName;
+    }
+
+    @Parameterized.Parameters
+    public static Collection automataToTest() {
+        return Arrays.asList(new Object[][]{
+                {(EngineConstructor) (width, height) -> new SingleThreadRWAutomata(
+                        width, height, new ConwayCellFactory(), NeighborhoodType.MOORE), "Singlethread automata"},
+                {(EngineConstructor) (width, height) -> new OffHeapRWAutomata(
+                        width, height, LifeRule.CONWAY, NeighborhoodType.MOORE), "Off-heap automata"},
+                {(EngineConstructor) (width, height) -> new MortonRWAutomata(
+                        width, height, LifeRule.CONWAY, NeighborhoodType.MOORE), "Z-order automata"},
+                {(EngineConstructor) (width, height) -> new BlockLookupRWAutomata(
+                        width, height, LifeRule.CONWAY), "Block lookup automata"},
+                {(EngineConstructor) (width, height) -> new GenerationsRWAutomata(
+                        width, height, GenerationsRule.BRIANS_BRAIN, NeighborhoodType.MOORE), "Generations automata"},
+                {(EngineConstructor) (width, height) -> new LargerThanLifeRWAutomata(
+                        width, height, new RangeRule(3, 3, 2, 3, false), NeighborhoodType.MOORE, 1),
+                        "Larger than Life automata"}
+        });
+    }
+
+    @Test
+    public void testQueriesMatchCurrentState() {
+        Random random = new Random(SEED);
+        List<Boolean> initialStates = new ArrayList<>();
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            initialStates.add(random.nextBoolean());
+        }
+        CellularAutomata automata = constructor.create(WIDTH, HEIGHT);
+        automata.initAutomata(initialStates);
+        for (int step = 0; step < STEPS; step++) {
+            List<Boolean> states = automata.getCurrentState();
+            for (int i = 0; i < states.size(); i++) {
+                Assert.assertEquals(automataName + " returned wrong state of cell " + i,
+                                    states.get(i), automata.isCellAlive(i));
+            }
+            boolean[] rows = automata.getStates(2 * WIDTH, 5 * WIDTH);
+            boolean[] span = automata.getStates(WIDTH - 3, 2 * WIDTH + 4);
+            boolean[] region = automata.getRegion(5, 3, 9, 7);
+            for (int i = 0; i < rows.length; i++) {
+                Assert.assertEquals(automataName + " returned wrong row range",
+                                    states.get(2 * WIDTH + i), rows[i]);
+            }
+            for (int i = 0; i < span.length; i++) {
+                Assert.assertEquals(automataName + " returned wrong range crossing rows",
+                                    states.get(WIDTH - 3 + i), span[i]);
+            }
+            for (int i = 0; i < region.length; i++) {
+                Assert.assertEquals(automataName + " returned wrong region",
+                                    states.get((3 + i / 9) * WIDTH + 5 + i % 9), region[i]);
+            }
+            automata.updateAutomata();
+        }
+    }
+
+    @Test
+    public void testOutOfBoundsQueries() {
+        CellularAutomata automata = constructor.create(WIDTH, HEIGHT);
+        try {
+            automata.isCellAlive(WIDTH * HEIGHT);
+            Assert.fail(automataName + " accepted out of bounds cell index");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            automata.getStates(-1, WIDTH);
+            Assert.fail(automataName + " accepted out of bounds index range");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            automata.getRegion(WIDTH - 2, 0, 3, 1);
+            Assert.fail(automataName + " accepted region outside of grid");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    interface EngineConstructor {
+        CellularAutomata create(int width, int height);
+    }
+}
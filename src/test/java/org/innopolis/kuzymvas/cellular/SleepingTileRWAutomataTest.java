@@ -0,0 +1,82 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class SleepingTileRWAutomataTest {
+
+    private static final int WIDTH = 60;
+    private static final int HEIGHT = 40;
+    private static final int TILE_SIZE = 8;
+    private static final int STEPS = 150;
+    // Глайдер задевает не больше четырех плиток 2x2, и каждая будит квадрат 3x3 вокруг себя
+    private static final int MAX_AWAKE_AROUND_GLIDER = 16;
+
+    @Test
+    public void testStillLifeFallsAsleep() {
+        List<Boolean> states = emptyField();
+        setBlock(states, 10, 10);
+        setBlock(states, 45, 30);
+        SleepingTileRWAutomata automata = new SleepingTileRWAutomata(
+                WIDTH, HEIGHT, LifeRule.CONWAY, NeighborhoodType.MOORE, BoundaryMode.WRAPAROUND, 1, TILE_SIZE);
+        automata.initAutomata(states);
+        automata.updateAutomata();
+        Assert.assertEquals("All tiles should be computed right after initialization",
+                            (WIDTH / TILE_SIZE + 1) * (HEIGHT / TILE_SIZE), automata.getAwakeTileCount());
+        automata.updateAutomata();
+        Assert.assertEquals("Tiles with still lifes didn't fall asleep", 0, automata.getAwakeTileCount());
+        Assert.assertEquals("Sleeping tiles lost their cells", states, automata.getCurrentState());
+        Assert.assertEquals("Sleeping tiles lost their statistics", 8, automata.getStatistics().getPopulation());
+    }
+
+    @Test
+    public void testGliderWakesTilesOnItsWay() {
+        for (BoundaryMode boundaryMode : BoundaryMode.values()) {
+            for (int threads = 1; threads <= 2; threads++) {
+                List<Boolean> states = emptyField();
+                setBlock(states, 30, 5);
+                setBlock(states, 5, 30);
+                int[][] glider = {{1, 0}, {2, 1}, {0, 2}, {1, 2}, {2, 2}};
+                for (int[] cell : glider) {
+                    states.set((cell[1] + 12) * WIDTH + cell[0] + 12, true);
+                }
+                SleepingTileRWAutomata automata = new SleepingTileRWAutomata(
+                        WIDTH, HEIGHT, LifeRule.CONWAY, NeighborhoodType.MOORE, boundaryMode, threads, TILE_SIZE);
+                CellularAutomata reference = new SingleThreadRWAutomata(
+                        WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE, boundaryMode);
+                automata.initAutomata(states);
+                reference.initAutomata(states);
+                int maxAwake = 0;
+                for (int step = 0; step < STEPS; step++) {
+                    automata.updateAutomata();
+                    reference.updateAutomata();
+                    if (step > 0) {
+                        maxAwake = Math.max(maxAwake, automata.getAwakeTileCount());
+                    }
+                    Assert.assertEquals("Sleeping tile automata diverged at step " + step + " with "
+                                                + boundaryMode + " boundary and " + threads + " threads",
+                                        reference.getCurrentState(), automata.getCurrentState());
+                }
+                Assert.assertTrue("Too many tiles stayed awake around a single glider: " + maxAwake,
+                                  maxAwake <= MAX_AWAKE_AROUND_GLIDER);
+            }
+        }
+    }
+
+    private static List<Boolean> emptyField() {
+        return new ArrayList<>(Collections.nCopies(WIDTH * HEIGHT, false));
+    }
+
+    private static void setBlock(List<Boolean> states, int x, int y) {
+        states.set(y * WIDTH + x, true);
+        states.set(y * WIDTH + x + 1, true);
+        states.set((y + 1) * WIDTH + x, true);
+        states.set((y + 1) * WIDTH + x + 1, true);
+    }
+}
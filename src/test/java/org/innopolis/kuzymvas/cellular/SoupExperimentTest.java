@@ -0,0 +1,86 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class SoupExperimentTest {
+
+    private static final int WIDTH = 24;
+    private static final int HEIGHT = 18;
+    private static final int SOUPS = 20;
+    private static final int GENERATIONS = 400;
+    private static final double[] DENSITIES = {0.25, 0.4};
+    private static final long SEED = 49L;
+
+    @Test
+    public void testResultsDoNotDependOnThreadCount() throws IOException {
+        List<LifeRule> rules = Arrays.asList(LifeRule.CONWAY, LifeRule.parse("B36/S23"));
+        String single = csv(new SoupExperiment(WIDTH, HEIGHT, rules, DENSITIES, SOUPS, GENERATIONS,
+                                               SoupExperiment.DEFAULT_MAX_PERIOD, SEED).run(1));
+        String parallel = csv(new SoupExperiment(WIDTH, HEIGHT, rules, DENSITIES, SOUPS, GENERATIONS,
+                                                 SoupExperiment.DEFAULT_MAX_PERIOD, SEED).run(3));
+        Assert.assertEquals("Results depend on thread count", single, parallel);
+        String[] lines = single.split("\n");
+        Assert.assertEquals("Wrong number of CSV rows", 1 + rules.size() * DENSITIES.length, lines.length);
+        Assert.assertTrue("Wrong CSV header", lines[0].startsWith("rule,density,soups,"));
+        Assert.assertTrue("Wrong first CSV row", lines[1].startsWith("B3/S23,0.25," + SOUPS + ","));
+        String reseeded = csv(new SoupExperiment(WIDTH, HEIGHT, rules, DENSITIES, SOUPS, GENERATIONS,
+                                                 SoupExperiment.DEFAULT_MAX_PERIOD, SEED + 1).run(1));
+        Assert.assertNotEquals("Seed doesn't change the soups", single, reseeded);
+    }
+
+    @Test
+    public void testStabilizedSoupsAreClassified() {
+        SoupExperiment experiment = new SoupExperiment(
+                WIDTH, HEIGHT, Collections.singletonList(LifeRule.CONWAY), DENSITIES, SOUPS, GENERATIONS,
+                SoupExperiment.DEFAULT_MAX_PERIOD, SEED);
+        BlockLookupRWAutomata automata = new BlockLookupRWAutomata(WIDTH, HEIGHT, LifeRule.CONWAY);
+        SoupExperiment.SoupResult empty = experiment.runSoup(automata, new SplittableRandom(SEED), 0);
+        Assert.assertEquals("Empty soup should be stable from the start", 0, empty.lifespan);
+        Assert.assertEquals("Empty soup should have period 1", 1, empty.period);
+        SoupExperiment.SoupResult full = experiment.runSoup(automata, new SplittableRandom(SEED), 1);
+        Assert.assertEquals("Full soup should die after one step", 1, full.lifespan);
+        Assert.assertEquals("Dead soup should have period 1", 1, full.period);
+        Assert.assertEquals("Full soup should die out", 0, full.finalPopulation);
+
+        // Каждая клетка меняет состояние на каждом шаге, так что любой суп с самого начала мигает с периодом 2
+        BlockLookupRWAutomata blinking = new BlockLookupRWAutomata(WIDTH, HEIGHT, LifeRule.parse("B012345678/S"));
+        SoupExperiment.SoupResult blink = experiment.runSoup(blinking, new SplittableRandom(SEED), 0.3);
+        Assert.assertEquals("Blinking soup should be periodic from the start", 0, blink.lifespan);
+        Assert.assertEquals("Blinking soup should have period 2", 2, blink.period);
+    }
+
+    @Test
+    public void testRandomInitMatchesStatesList() {
+        double density = 0.3;
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<Boolean> states = new ArrayList<>();
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            states.add(random.nextDouble() < density);
+        }
+        BlockLookupRWAutomata expected = new BlockLookupRWAutomata(WIDTH, HEIGHT, LifeRule.CONWAY);
+        expected.initAutomata(states);
+        BlockLookupRWAutomata generated = new BlockLookupRWAutomata(WIDTH, HEIGHT, LifeRule.CONWAY);
+        generated.initRandom(new SplittableRandom(SEED), density);
+        Assert.assertEquals("Generated soup differs from the same random stream", states, generated.getCurrentState());
+        Assert.assertEquals("Generated soup has wrong statistics", expected.getStatistics(), generated.getStatistics());
+        Assert.assertEquals("Equal boards have different hashes", expected.stateHash(), generated.stateHash());
+        expected.updateAutomata();
+        Assert.assertNotEquals("Different boards have equal hashes", expected.stateHash(), generated.stateHash());
+    }
+
+    private static String csv(List<SoupExperiment.Summary> summaries) throws IOException {
+        StringWriter out = new StringWriter();
+        SoupExperiment.writeCsv(summaries, out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,121 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+import org.innopolis.kuzymvas.renderers.EndStepRenderer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+public class StreamingRWAutomataTest {
+
+    private static final int[][] AUTOMATA_DIMS = {{1, 1}, {3, 2}, {9, 4}, {17, 13}, {40, 33}};
+    private static final int[] DEPTHS = {1, 3, 8};
+    private static final int[] STEP_BATCHES = {1, 2, 5, 11};
+    private static final int STEPS = 30;
+    private static final long SEED = 44L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameStatesAsSingleThread() throws IOException {
+        Random random = new Random(SEED);
+        for (BoundaryMode boundaryMode : BoundaryMode.values()) {
+            for (int[] dims : AUTOMATA_DIMS) {
+                for (int depth : DEPTHS) {
+                    List<Boolean> states = RandomFields.randomStates(random, dims[0] * dims[1]);
+                    CellularAutomata reference = new SingleThreadRWAutomata(
+                            dims[0], dims[1], new ConwayCellFactory(), NeighborhoodType.MOORE, boundaryMode);
+                    try (StreamingRWAutomata tested = new StreamingRWAutomata(
+                            dims[0], dims[1], LifeRule.CONWAY, boundaryMode, folder.getRoot(), depth)) {
+                        reference.initAutomata(states);
+                        tested.initAutomata(states);
+                        String name = boundaryMode + " boundary, depth " + depth + " on field "
+                                + dims[0] + "x" + dims[1];
+                        int step = 0;
+                        for (int batch : STEP_BATCHES) {
+                            reference.updateAutomata(batch);
+                            tested.updateAutomata(batch);
+                            step += batch;
+                            Assert.assertEquals("Streaming automata diverged at step " + step + " with " + name,
+                                                reference.getCurrentState(), tested.getCurrentState());
+                            Assert.assertEquals("Wrong statistics at step " + step + " with " + name,
+                                                reference.getStatistics(), tested.getStatistics());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOpensTextAndPackedBoards() throws IOException {
+        int width = 37;
+        int height = 21;
+        List<Boolean> states = RandomFields.randomStates(SEED, width * height);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < states.size(); i++) {
+            text.append(states.get(i) ? 'O' : '_');
+            if (i % width == width - 1) {
+                text.append('\n');
+            }
+        }
+        File board = folder.newFile("board.txt");
+        Files.write(board.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+        File packed = folder.newFile("board.pkb");
+        CellularAutomata reference = new SingleThreadRWAutomata(
+                width, height, new ConwayCellFactory(), NeighborhoodType.MOORE);
+        reference.initAutomata(states);
+        try (StreamingRWAutomata automata = StreamingRWAutomata.open(
+                board, LifeRule.CONWAY, BoundaryMode.WRAPAROUND, folder.getRoot(), 4)) {
+            Assert.assertEquals("Text board was read wrong", states, automata.getCurrentState());
+            Assert.assertEquals("Wrong statistics of the loaded board",
+                                reference.getStatistics(), automata.getStatistics());
+            automata.updateAutomata(STEPS);
+            automata.savePacked(packed);
+        }
+        reference.updateAutomata(STEPS);
+        try (StreamingRWAutomata automata = StreamingRWAutomata.open(
+                packed, LifeRule.CONWAY, BoundaryMode.WRAPAROUND, folder.getRoot(), 4)) {
+            Assert.assertEquals("Packed board was read wrong", reference.getCurrentState(), automata.getCurrentState());
+            Assert.assertTrue("Wrong single cell state", automata.isCellAlive(5) == reference.isCellAlive(5));
+        }
+        String[] leftovers = folder.getRoot().list((dir, name) -> name.startsWith("lifegame"));
+        Assert.assertNotNull(leftovers);
+        Assert.assertEquals("Board files weren't removed on close", 0, leftovers.length);
+    }
+
+    @Test
+    public void testRendersLikeInMemoryAutomata() throws IOException {
+        int width = 23;
+        int height = 19;
+        List<Boolean> states = RandomFields.randomStates(SEED, width * height);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new EndStepRenderer(new SingleThreadRWAutomata(width, height, new ConwayCellFactory(), NeighborhoodType.MOORE))
+                .render(expected, STEPS, states);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        try (StreamingRWAutomata automata = new StreamingRWAutomata(
+                width, height, LifeRule.CONWAY, folder.getRoot())) {
+            automata.initAutomata(states);
+            new EndStepRenderer(automata).renderFromCurrentState(actual, STEPS);
+        }
+        Assert.assertEquals("Streamed rendering differs", expected.toString(), actual.toString());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsRaggedBoard() throws IOException {
+        File board = folder.newFile("ragged.txt");
+        Files.write(board.toPath(), "O_O\nO_\n".getBytes(StandardCharsets.UTF_8));
+        StreamingRWAutomata.open(board, LifeRule.CONWAY, BoundaryMode.WRAPAROUND, folder.getRoot(), 2).close();
+    }
+}
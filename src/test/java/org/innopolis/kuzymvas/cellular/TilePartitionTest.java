@@ -0,0 +1,46 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TilePartitionTest {
+
+    private static final int[][] FIELD_DIMS = {
+            {0, 0}, {1, 1}, {32, 32}, {33, 31}, {100, 7}, {5, 70}
+    };
+    private static final int[][] TILE_DIMS = {
+            {1, 1}, {4, 4}, {32, 32}, {7, 3}
+    };
+
+    @Test
+    public void testTilesCoverFieldOnce() {
+        for (int[] field : FIELD_DIMS) {
+            for (int[] tileDims : TILE_DIMS) {
+                TilePartition tiles = new TilePartition(field[0], field[1], tileDims[0], tileDims[1]);
+                int[] covered = new int[field[0] * field[1]];
+                for (int tile = 0; tile < tiles.getTileCount(); tile++) {
+                    Assert.assertTrue("Empty tile in partition", tiles.getLeft(tile) < tiles.getRight(tile)
+                            && tiles.getTop(tile) < tiles.getBottom(tile));
+                    for (int y = tiles.getTop(tile); y < tiles.getBottom(tile); y++) {
+                        for (int x = tiles.getLeft(tile); x < tiles.getRight(tile); x++) {
+                            covered[y * field[0] + x]++;
+                        }
+                    }
+                }
+                for (int count : covered) {
+                    Assert.assertEquals("Cell covered wrong number of times for field " + field[0] + "x" + field[1]
+                                                + " and tile " + tileDims[0] + "x" + tileDims[1], 1, count);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidTile() {
+        try {
+            new TilePartition(10, 10, 0, 4);
+            Assert.fail("Partition accepted zero tile width");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.innopolis.kuzymvas.cellular;
 
 import org.innopolis.kuzymvas.cellular.cells.CellFactory;
 import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
 import org.junit.Test;
 
 import java.util.ArrayList;
@@ -70,12 +71,40 @@ public class TimeComparisonTest {
             }
             double avgTimeFork = summaryTimeFork/(1000.0*RUNS);
 
+            CellularAutomata offHeap = new OffHeapRWAutomata(size, size, LifeRule.CONWAY, NeighborhoodType.MOORE);
+            long summaryTimeOffHeap = 0;
+            for (int i = 0; i < RUNS; i++) {
+                offHeap.initAutomata(states);
+                long startTime = System.currentTimeMillis();
+                for (int j = 0; j < STEPS; j++) {
+                    offHeap.updateAutomata();
+                }
+                summaryTimeOffHeap += System.currentTimeMillis() - startTime;
+            }
+            double avgTimeOffHeap = summaryTimeOffHeap/(1000.0*RUNS);
+
+            CellularAutomata blockLookup = new BlockLookupRWAutomata(size, size, LifeRule.CONWAY);
+            long summaryTimeBlockLookup = 0;
+            for (int i = 0; i < RUNS; i++) {
+                blockLookup.initAutomata(states);
+                long startTime = System.currentTimeMillis();
+                for (int j = 0; j < STEPS; j++) {
+                    blockLookup.updateAutomata();
+                }
+                summaryTimeBlockLookup += System.currentTimeMillis() - startTime;
+            }
+            double avgTimeBlockLookup = summaryTimeBlockLookup/(1000.0*RUNS);
+
             System.out.println("Average time for single-thread automata for " + RUNS + " runs of " + STEPS + " steps  on field of "
                                        + size + "^2 =" + avgTimeSingle);
             System.out.println("Average time for multi-thread automata for " + RUNS + " runs of " + STEPS + " steps  on field of "
                                        + size + "^2 =" + avgTimeMulti);
             System.out.println("Average time for fork-join pool based automata for " + RUNS + " runs of " + STEPS + " steps  on field of "
                                        + size + "^2 =" + avgTimeFork);
+            System.out.println("Average time for off-heap automata for " + RUNS + " runs of " + STEPS + " steps  on field of "
+                                       + size + "^2 =" + avgTimeOffHeap);
+            System.out.println("Average time for block lookup automata for " + RUNS + " runs of " + STEPS + " steps  on field of "
+                                       + size + "^2 =" + avgTimeBlockLookup);
             System.out.println("=================================================");
 
         }
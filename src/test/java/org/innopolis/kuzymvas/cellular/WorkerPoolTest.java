@@ -0,0 +1,151 @@
+package org.innopolis.kuzymvas.cellular;
+
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class WorkerPoolTest {
+
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 29;
+    private static final int STEPS = 20;
+    private static final int AUTOMATAS = 12;
+    private static final int CALLERS = 4;
+    private static final int POOL_PARALLELISM = 3;
+    private static final long THREADS_GONE_TIMEOUT_MILLIS = 10000;
+    private static final long SEED = 47L;
+
+    @Test
+    public void testSharedPoolMatchesSingleThread() throws Exception {
+        List<Boolean> states = RandomFields.randomStates(SEED, WIDTH * HEIGHT);
+        CellularAutomata reference = new SingleThreadRWAutomata(
+                WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE);
+        reference.initAutomata(states);
+        reference.updateAutomata(STEPS);
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        try (WorkerPool pool = new WorkerPool(POOL_PARALLELISM)) {
+            List<CellularAutomata> automatas = new ArrayList<>();
+            for (int i = 0; i < AUTOMATAS; i++) {
+                automatas.add(i % 2 == 0
+                                      ? new MultiThreadRWAutomata(WIDTH, HEIGHT, new ConwayCellFactory(),
+                                                                  NeighborhoodType.MOORE, BoundaryMode.WRAPAROUND,
+                                                                  pool)
+                                      : new SleepingTileRWAutomata(WIDTH, HEIGHT, LifeRule.CONWAY,
+                                                                   NeighborhoodType.MOORE, BoundaryMode.WRAPAROUND,
+                                                                   pool));
+            }
+            List<Future<?>> runs = new ArrayList<>();
+            for (CellularAutomata automata : automatas) {
+                runs.add(callers.submit(() -> {
+                    automata.initAutomata(states);
+                    automata.updateAutomata(STEPS);
+                }));
+            }
+            for (Future<?> run : runs) {
+                run.get();
+            }
+            for (CellularAutomata automata : automatas) {
+                Assert.assertEquals("Automata on a shared pool diverged", reference.getCurrentState(),
+                                    automata.getCurrentState());
+                Assert.assertEquals("Automata on a shared pool counted wrong statistics",
+                                    reference.getStatistics(), automata.getStatistics());
+                automata.close();
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testClosedAutomatasReleaseThreads() throws InterruptedException {
+        List<CellularAutomata> automatas = new ArrayList<>();
+        for (int i = 0; i < AUTOMATAS; i++) {
+            automatas.add(new MultiThreadRWAutomata(WIDTH, HEIGHT, new ConwayCellFactory(),
+                                                    NeighborhoodType.MOORE, POOL_PARALLELISM));
+            automatas.add(new SleepingTileRWAutomata(WIDTH, HEIGHT, LifeRule.CONWAY, NeighborhoodType.MOORE,
+                                                     BoundaryMode.WRAPAROUND, POOL_PARALLELISM));
+        }
+        for (CellularAutomata automata : automatas) {
+            automata.initAutomata(RandomFields.randomStates(SEED, WIDTH * HEIGHT));
+            automata.updateAutomata();
+            automata.close();
+        }
+        assertWorkersFinish("Closed automatas left their threads running");
+    }
+
+    @Test
+    public void testIdleAutomatasCostNoThreads() throws InterruptedException {
+        CellularAutomata automata = new MultiThreadRWAutomata(
+                WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE, POOL_PARALLELISM);
+        automata.initAutomata(RandomFields.randomStates(SEED, WIDTH * HEIGHT));
+        automata.updateAutomata();
+        assertWorkersFinish("Idle automata kept its threads");
+        automata.updateAutomata();
+        automata.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUpdateAfterCloseFails() {
+        CellularAutomata automata = new MultiThreadRWAutomata(
+                WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE, POOL_PARALLELISM);
+        automata.initAutomata(RandomFields.randomStates(SEED, WIDTH * HEIGHT));
+        automata.close();
+        automata.updateAutomata();
+    }
+
+    @Test
+    public void testInjectedExecutorOutlivesPool() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(POOL_PARALLELISM);
+        try {
+            try (WorkerPool pool = new WorkerPool(executor, POOL_PARALLELISM);
+                 CellularAutomata automata = new MultiThreadRWAutomata(
+                         WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE,
+                         BoundaryMode.WRAPAROUND, pool)) {
+                automata.initAutomata(RandomFields.randomStates(SEED, WIDTH * HEIGHT));
+                automata.updateAutomata(STEPS);
+            }
+            Assert.assertFalse("Pool closed an executor it doesn't own", executor.isShutdown());
+            Assert.assertEquals("Injected executor stopped working", 1, (int) executor.submit(() -> 1).get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTaskFailureReachesCaller() {
+        try (WorkerPool pool = new WorkerPool(POOL_PARALLELISM)) {
+            pool.invoke(() -> {
+                throw new IllegalArgumentException("Task failure");
+            });
+            Assert.fail("Task failure was lost");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Wrong failure was rethrown", "Task failure", e.getMessage());
+        }
+    }
+
+    private static void assertWorkersFinish(String message) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(THREADS_GONE_TIMEOUT_MILLIS);
+        while (countWorkers() > 0) {
+            Assert.assertTrue(message, System.nanoTime() < deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    private static int countWorkers() {
+        int workers = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith("automata-worker-")) {
+                workers++;
+            }
+        }
+        return workers;
+    }
+}
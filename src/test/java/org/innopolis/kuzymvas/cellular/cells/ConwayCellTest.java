@@ -158,4 +158,16 @@ public class ConwayCellTest {
                                deadCell.isAlive());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAdoptedNeighborhood() {
+        ConwayCell deadCell = new ConwayCell(false);
+        deadCell.adoptNeighborhood(new Cell[]{aliveMock, aliveMock, aliveMock, deadMock});
+        deadCell.calculateNextState();
+        deadCell.updateState();
+        Mockito.verify(aliveMock, Mockito.times(3)).isAlive();
+        Mockito.verify(deadMock, Mockito.times(1)).isAlive();
+        Assert.assertTrue("Dead cell didn't become alive with an adopted neighborhood of three alive cells",
+                          deadCell.isAlive());
+    }
+}
@@ -0,0 +1,33 @@
+package org.innopolis.kuzymvas.cellular.cells;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Life3DRuleTest {
+
+    @Test
+    public void testBays4555() {
+        for (int neighbors = 0; neighbors <= Life3DRule.MAX_NEIGHBORS; neighbors++) {
+            Assert.assertEquals("4555 rule gave wrong state for alive cell with " + neighbors + " neighbors",
+                                neighbors == 4 || neighbors == 5, Life3DRule.BAYS_4555.nextState(true, neighbors));
+            Assert.assertEquals("4555 rule gave wrong state for dead cell with " + neighbors + " neighbors",
+                                neighbors == 5, Life3DRule.BAYS_4555.nextState(false, neighbors));
+        }
+    }
+
+    @Test
+    public void testParse() {
+        Assert.assertEquals("B/S notation parsed wrong", Life3DRule.BAYS_4555, Life3DRule.parse("B5/S4,5"));
+        Assert.assertEquals("Ranges parsed wrong", Life3DRule.BAYS_5766, Life3DRule.parse("s5-7/b6"));
+        Assert.assertEquals("Rule printed in wrong notation", "B6/S5,6,7", Life3DRule.BAYS_5766.toString());
+        Assert.assertEquals("Large counts parsed wrong", 1 << 26, Life3DRule.parse("B26/S").getBirthMask());
+        String[] malformed = {"B27/S4", "5443", "B5/S4,x", "B5", "45555"};
+        for (String notation : malformed) {
+            try {
+                Life3DRule.parse(notation);
+                Assert.fail("Malformed rule '" + notation + "' was accepted");
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.innopolis.kuzymvas.cellular.cells;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LifeRuleTest {
+
+    @Test
+    public void testConway() {
+        for (int neighbors = 0; neighbors <= 8; neighbors++) {
+            Assert.assertEquals("Conway rule gave wrong state for alive cell with " + neighbors + " neighbors",
+                                neighbors == 2 || neighbors == 3, LifeRule.CONWAY.nextState(true, neighbors));
+            Assert.assertEquals("Conway rule gave wrong state for dead cell with " + neighbors + " neighbors",
+                                neighbors == 3, LifeRule.CONWAY.nextState(false, neighbors));
+        }
+    }
+
+    @Test
+    public void testParse() {
+        Assert.assertEquals("B/S notation parsed wrong", LifeRule.CONWAY, LifeRule.parse("B3/S23"));
+        Assert.assertEquals("S/B notation parsed wrong", LifeRule.CONWAY, LifeRule.parse("23/3"));
+        Assert.assertEquals("Rule printed in wrong notation", "B36/S23", LifeRule.parse("b36/s23").toString());
+        try {
+            LifeRule.parse("B9/S23");
+            Assert.fail("Rule with 9 neighbors was accepted");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.innopolis.kuzymvas.renderers;
+
+import org.innopolis.kuzymvas.cellular.CellularAutomata;
+import org.innopolis.kuzymvas.cellular.NeighborhoodType;
+import org.innopolis.kuzymvas.cellular.RandomFields;
+import org.innopolis.kuzymvas.cellular.SingleThreadRWAutomata;
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class HistoryWriterTest {
+
+    private final static int WIDTH = 37;
+    private final static int HEIGHT = 29;
+    private final static int STEPS = 300;
+    private final static int KEYFRAMES = 16;
+    private final static long SEED = 41L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSeekAnyGeneration() throws IOException {
+        File file = folder.newFile("run.history");
+        List<Boolean> initialState = RandomFields.randomStates(SEED, WIDTH * HEIGHT);
+        CellularAutomata automata = createAutomata();
+        try (SnapshotPipeline recorder = new SnapshotPipeline(
+                automata, 4, BackpressurePolicy.BLOCK, new HistoryWriter(file, KEYFRAMES))) {
+            new EndStepRenderer(automata).render(new ByteArrayOutputStream(), STEPS, initialState,
+                                                 Collections.singletonList(recorder));
+        }
+        List<String> expected = new ArrayList<>();
+        CellularAutomata reference = createAutomata();
+        reference.initAutomata(initialState);
+        for (int generation = 0; generation <= STEPS; generation++) {
+            expected.add(Arrays.toString(reference.getStates(0, WIDTH * HEIGHT)));
+            reference.updateAutomata();
+        }
+        try (HistoryReader reader = new HistoryReader(file)) {
+            Assert.assertEquals("Wrong width in history header", WIDTH, reader.getWidth());
+            Assert.assertEquals("Wrong height in history header", HEIGHT, reader.getHeight());
+            Assert.assertEquals("Wrong keyframe interval", KEYFRAMES, reader.getKeyframeInterval());
+            Assert.assertEquals("Wrong first generation", 0, reader.getFirstGeneration());
+            Assert.assertEquals("Wrong last generation", STEPS, reader.getLastGeneration());
+            Random random = new Random(SEED);
+            for (int i = 0; i <= STEPS; i++) {
+                int generation = i % 2 == 0 ? STEPS - i : random.nextInt(STEPS + 1);
+                Assert.assertEquals("Generation " + generation + " was restored incorrectly",
+                                    expected.get(generation), Arrays.toString(reader.seek(generation)));
+            }
+            try {
+                reader.seek(STEPS + 1);
+                Assert.fail("Generation after the end of history was restored");
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+
+    @Test
+    public void testSkippedGenerations() throws IOException {
+        File file = folder.newFile("sparse.history");
+        CellularAutomata automata = createAutomata();
+        try (SnapshotPipeline pipeline = new SnapshotPipeline(
+                automata, 2, BackpressurePolicy.BLOCK, new HistoryWriter(file, 3), 2, 1)) {
+            new EndStepRenderer(automata).render(new ByteArrayOutputStream(), 20,
+                                                 RandomFields.randomStates(SEED, WIDTH * HEIGHT),
+                                                 Collections.singletonList(pipeline));
+        }
+        try (HistoryReader reader = new HistoryReader(file)) {
+            Assert.assertEquals("Wrong first generation", 2, reader.getFirstGeneration());
+            reader.seek(14);
+            try {
+                reader.seek(15);
+                Assert.fail("Generation that wasn't written was restored");
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+
+    @Test
+    public void testRejectsDamagedHistory() throws IOException {
+        File file = folder.newFile("complete.history");
+        try (HistoryWriter writer = new HistoryWriter(file, KEYFRAMES)) {
+            writer.write(0, 2, 2, new boolean[]{true, false, false, true});
+            writer.write(1, 2, 2, new boolean[]{false, false, false, true});
+        }
+        File truncated = folder.newFile("truncated.history");
+        Files.write(truncated.toPath(), Arrays.copyOf(Files.readAllBytes(file.toPath()), (int) file.length() - 1));
+        for (File damaged : new File[]{truncated, folder.newFile("empty")}) {
+            try (HistoryReader reader = new HistoryReader(damaged)) {
+                Assert.fail(damaged.getName() + " was read as history");
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static CellularAutomata createAutomata() {
+        return new SingleThreadRWAutomata(WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE);
+    }
+}
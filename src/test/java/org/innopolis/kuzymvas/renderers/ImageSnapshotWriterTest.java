@@ -0,0 +1,187 @@
+package org.innopolis.kuzymvas.renderers;
+
+import org.innopolis.kuzymvas.cellular.CellularAutomata;
+import org.innopolis.kuzymvas.cellular.NeighborhoodType;
+import org.innopolis.kuzymvas.cellular.SingleThreadRWAutomata;
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+public class ImageSnapshotWriterTest {
+
+    private final static int WIDTH = 1203;
+    private final static int HEIGHT = 977;
+    private final static int THREADS = 3;
+    private final static int[] SCALES = {1, 2, 7};
+    private final static int STRIP_BYTES = 4096;
+    private final static long SEED = 46L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPbmMatchesField() throws IOException {
+        boolean[] states = randomField();
+        for (int scale : SCALES) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (PbmSnapshotWriter writer = new PbmSnapshotWriter("unused", scale, THREADS)) {
+                writer.setStripBytes(STRIP_BYTES);
+                writer.writeImage(out, WIDTH, HEIGHT, source(states));
+            }
+            int imageWidth = (WIDTH + scale - 1) / scale;
+            int imageHeight = (HEIGHT + scale - 1) / scale;
+            String header = "P4\n" + imageWidth + " " + imageHeight + "\n";
+            byte[] image = out.toByteArray();
+            Assert.assertEquals("Wrong PBM header", header,
+                                new String(image, 0, header.length(), StandardCharsets.US_ASCII));
+            int rowBytes = (imageWidth + 7) / 8;
+            Assert.assertEquals("Wrong PBM size", header.length() + rowBytes * imageHeight, image.length);
+            for (int y = 0; y < imageHeight; y++) {
+                for (int x = 0; x < imageWidth; x++) {
+                    boolean black = (image[header.length() + y * rowBytes + x / 8] & (0x80 >>> (x % 8))) != 0;
+                    Assert.assertEquals("Wrong PBM point (" + x + ", " + y + ") at scale " + scale,
+                                        expectedPoint(states, scale, x, y), black);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPngMatchesField() throws IOException, DataFormatException {
+        boolean[] states = randomField();
+        for (int scale : SCALES) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (PngSnapshotWriter writer = new PngSnapshotWriter("unused", scale, THREADS)) {
+                writer.setStripBytes(STRIP_BYTES);
+                writer.writeImage(out, WIDTH, HEIGHT, source(states));
+            }
+            byte[] png = out.toByteArray();
+            assertZlibStreamIsValid(png);
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+            int imageWidth = (WIDTH + scale - 1) / scale;
+            int imageHeight = (HEIGHT + scale - 1) / scale;
+            Assert.assertEquals("Wrong PNG width", imageWidth, image.getWidth());
+            Assert.assertEquals("Wrong PNG height", imageHeight, image.getHeight());
+            for (int y = 0; y < imageHeight; y++) {
+                for (int x = 0; x < imageWidth; x++) {
+                    boolean black = (image.getRGB(x, y) & 0xFFFFFF) == 0;
+                    Assert.assertEquals("Wrong PNG point (" + x + ", " + y + ") at scale " + scale,
+                                        expectedPoint(states, scale, x, y), black);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAdlerCombine() {
+        byte[] data = new byte[100000];
+        new Random(SEED).nextBytes(data);
+        int split = 37123;
+        Adler32 whole = new Adler32();
+        whole.update(data, 0, data.length);
+        Adler32 first = new Adler32();
+        first.update(data, 0, split);
+        Adler32 second = new Adler32();
+        second.update(data, split, data.length - split);
+        Assert.assertEquals("Combined checksum is wrong", whole.getValue(),
+                            PngSnapshotWriter.combineAdler(first.getValue(), second.getValue(), data.length - split));
+    }
+
+    @Test
+    public void testRendererWritesImageSnapshots() throws IOException {
+        CellularAutomata automata = new SingleThreadRWAutomata(
+                40, 30, new ConwayCellFactory(), NeighborhoodType.MOORE);
+        String prefix = new File(folder.getRoot(), "board").getPath();
+        List<Boolean> initial = new ArrayList<>();
+        for (boolean state : randomField()) {
+            if (initial.size() == 40 * 30) {
+                break;
+            }
+            initial.add(state);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PngSnapshotWriter image = new PngSnapshotWriter(prefix, 1, THREADS);
+             SnapshotPipeline emitter = new SnapshotPipeline(
+                     automata, 2, BackpressurePolicy.BLOCK, new PbmSnapshotWriter(prefix, 1, THREADS), 5, 1)) {
+            new EndStepRenderer(automata, image).render(out, 10, initial, Collections.singletonList(emitter));
+        }
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        boolean[] states = automata.getStates(0, 40 * 30);
+        for (int i = 0; i < states.length; i++) {
+            Assert.assertEquals("Rendered image differs at cell " + i, states[i],
+                                (result.getRGB(i % 40, i / 40) & 0xFFFFFF) == 0);
+        }
+        Assert.assertTrue("Snapshot 5 wasn't written", Files.exists(new File(prefix + ".5.pbm").toPath()));
+        Assert.assertTrue("Snapshot 10 wasn't written", Files.exists(new File(prefix + ".10.pbm").toPath()));
+    }
+
+    /**
+     * Собирает данные всех фрагментов IDAT и распаковывает их с проверкой Adler-32
+     */
+    private static void assertZlibStreamIsValid(byte[] png) throws IOException, DataFormatException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(png, 8, png.length - 8));
+        ByteArrayOutputStream idat = new ByteArrayOutputStream();
+        while (in.available() > 0) {
+            int length = in.readInt();
+            byte[] type = new byte[4];
+            in.readFully(type);
+            byte[] data = new byte[length];
+            in.readFully(data);
+            in.readInt();
+            if (new String(type, StandardCharsets.US_ASCII).equals("IDAT")) {
+                idat.write(data);
+            }
+        }
+        Inflater inflater = new Inflater();
+        inflater.setInput(idat.toByteArray());
+        byte[] buffer = new byte[1 << 16];
+        while (!inflater.finished()) {
+            Assert.assertTrue("Compressed stream ended early", inflater.inflate(buffer) > 0 || inflater.finished());
+        }
+        Assert.assertEquals("Data after the end of compressed stream", 0, inflater.getRemaining());
+        inflater.end();
+    }
+
+    private static boolean expectedPoint(boolean[] states, int scale, int x, int y) {
+        for (int cy = y * scale; cy < Math.min((y + 1) * scale, HEIGHT); cy++) {
+            for (int cx = x * scale; cx < Math.min((x + 1) * scale, WIDTH); cx++) {
+                if (states[cy * WIDTH + cx]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static ImageSnapshotWriter.CellSource source(boolean[] states) {
+        return (from, to, target, offset) -> System.arraycopy(states, from, target, offset, to - from);
+    }
+
+    private static boolean[] randomField() {
+        Random random = new Random(SEED);
+        boolean[] states = new boolean[WIDTH * HEIGHT];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = random.nextInt(50) == 0;
+        }
+        return states;
+    }
+}
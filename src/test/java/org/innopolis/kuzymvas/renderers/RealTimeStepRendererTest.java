@@ -0,0 +1,49 @@
+package org.innopolis.kuzymvas.renderers;
+
+import org.innopolis.kuzymvas.cellular.CellularAutomata;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+public class RealTimeStepRendererTest {
+
+    private final static List<Integer> DIMS_2D = Arrays.asList(100, 60);
+    private final static int VIEWPORT_WIDTH = 20;
+    private final static int VIEWPORT_HEIGHT = 8;
+    private final static int STEPS = 3;
+
+    @Test
+    public void testRendersOnlyViewport() {
+        CellularAutomata mockAutomata = Mockito.mock(CellularAutomata.class);
+        Mockito.when(mockAutomata.getDimensions()).thenReturn(DIMS_2D);
+        Mockito.when(mockAutomata.getRegion(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt()))
+                .thenReturn(new boolean[VIEWPORT_WIDTH * VIEWPORT_HEIGHT]);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new RealTimeStepRenderer(mockAutomata, out, null, 0, STEPS, VIEWPORT_WIDTH, VIEWPORT_HEIGHT).run();
+        Mockito.verify(mockAutomata, Mockito.never()).getCurrentState();
+        Mockito.verify(mockAutomata, Mockito.times(STEPS + 1)).getRegion(0, 0, VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
+        Mockito.verify(mockAutomata, Mockito.times(STEPS + 1)).updateAutomata();
+    }
+
+    @Test
+    public void testPanning() {
+        CellularAutomata mockAutomata = Mockito.mock(CellularAutomata.class);
+        Mockito.when(mockAutomata.getDimensions()).thenReturn(DIMS_2D);
+        Mockito.when(mockAutomata.getRegion(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt()))
+                .thenReturn(new boolean[VIEWPORT_WIDTH * VIEWPORT_HEIGHT]);
+        ByteArrayInputStream in = new ByteArrayInputStream("ddsaw\nwwwwssssssssssssssssssssssssssssss\n"
+                                                                   .getBytes(StandardCharsets.US_ASCII));
+        RealTimeStepRenderer renderer = new RealTimeStepRenderer(
+                mockAutomata, new ByteArrayOutputStream(), in, 0, 0, VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
+        renderer.run();
+        Assert.assertEquals("Viewport was panned horizontally wrong", VIEWPORT_WIDTH / 4, renderer.getLeft());
+        Assert.assertEquals("Viewport wasn't clamped to the bottom edge",
+                            DIMS_2D.get(1) - VIEWPORT_HEIGHT, renderer.getTop());
+    }
+}
@@ -0,0 +1,128 @@
+package org.innopolis.kuzymvas.renderers;
+
+import org.innopolis.kuzymvas.cellular.BoundaryMode;
+import org.innopolis.kuzymvas.cellular.CellularAutomata;
+import org.innopolis.kuzymvas.cellular.NeighborhoodType;
+import org.innopolis.kuzymvas.cellular.RandomFields;
+import org.innopolis.kuzymvas.cellular.SingleThreadRWAutomata;
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.innopolis.kuzymvas.cellular.cells.LifeRule;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ResultCacheTest {
+
+    private final static int WIDTH = 29;
+    private final static int HEIGHT = 23;
+    private final static int STEPS = 40;
+    private final static int CHECKPOINT_PERIOD = 8;
+    private final static long SEED = 45L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testKeyDependsOnEveryInput() {
+        List<Boolean> states = RandomFields.randomStates(SEED, WIDTH * HEIGHT);
+        String key = ResultCache.key(WIDTH, HEIGHT, states, LifeRule.CONWAY, NeighborhoodType.MOORE,
+                                     BoundaryMode.WRAPAROUND);
+        Assert.assertEquals("Key isn't stable", key, ResultCache.key(
+                WIDTH, HEIGHT, RandomFields.randomStates(SEED, WIDTH * HEIGHT), LifeRule.CONWAY, NeighborhoodType.MOORE,
+                BoundaryMode.WRAPAROUND));
+        List<Boolean> changed = new ArrayList<>(states);
+        changed.set(7, !changed.get(7));
+        String[] others = {
+                ResultCache.key(WIDTH, HEIGHT, changed, LifeRule.CONWAY, NeighborhoodType.MOORE,
+                                BoundaryMode.WRAPAROUND),
+                ResultCache.key(HEIGHT, WIDTH, states, LifeRule.CONWAY, NeighborhoodType.MOORE,
+                                BoundaryMode.WRAPAROUND),
+                ResultCache.key(WIDTH, HEIGHT, states, LifeRule.parse("B36/S23"), NeighborhoodType.MOORE,
+                                BoundaryMode.WRAPAROUND),
+                ResultCache.key(WIDTH, HEIGHT, states, LifeRule.CONWAY, NeighborhoodType.VON_NEUMANN,
+                                BoundaryMode.WRAPAROUND),
+                ResultCache.key(WIDTH, HEIGHT, states, LifeRule.CONWAY, NeighborhoodType.MOORE,
+                                BoundaryMode.DEAD)
+        };
+        for (String other : others) {
+            Assert.assertNotEquals("Different jobs share a key", key, other);
+        }
+    }
+
+    @Test
+    public void testResumesFromFurthestCheckpoint() throws IOException {
+        ResultCache cache = new ResultCache(folder.getRoot(), Long.MAX_VALUE);
+        List<Boolean> states = RandomFields.randomStates(SEED, WIDTH * HEIGHT);
+        String key = ResultCache.key(WIDTH, HEIGHT, states, LifeRule.CONWAY, NeighborhoodType.MOORE,
+                                     BoundaryMode.WRAPAROUND);
+        Assert.assertNull("Empty cache returned a result", cache.find(key, STEPS));
+        CellularAutomata automata = createAutomata();
+        try (SnapshotPipeline checkpointer = new SnapshotPipeline(
+                automata, 2, BackpressurePolicy.BLOCK, cache.checkpointWriter(key, 0), CHECKPOINT_PERIOD, 1)) {
+            new EndStepRenderer(automata).render(new ByteArrayOutputStream(), STEPS / 2, states,
+                                                 Collections.singletonList(checkpointer));
+        }
+        ResultCache.Checkpoint checkpoint = cache.find(key, STEPS);
+        Assert.assertNotNull("Checkpoints weren't saved", checkpoint);
+        Assert.assertEquals("Not the furthest checkpoint was found",
+                            STEPS / 2 - (STEPS / 2) % CHECKPOINT_PERIOD, checkpoint.getGeneration());
+        Assert.assertEquals("Too far checkpoint was found", CHECKPOINT_PERIOD, cache.find(key, 15).getGeneration());
+
+        CellularAutomata resumed = createAutomata();
+        resumed.initAutomata(checkpoint.getStates());
+        resumed.updateAutomata(STEPS - (int) checkpoint.getGeneration());
+        CellularAutomata direct = createAutomata();
+        direct.initAutomata(states);
+        direct.updateAutomata(STEPS);
+        Assert.assertEquals("Resumed computation differs", direct.getCurrentState(), resumed.getCurrentState());
+
+        cache.store(key, STEPS, WIDTH, HEIGHT, direct.getStates(0, WIDTH * HEIGHT));
+        ResultCache.Checkpoint result = new ResultCache(folder.getRoot(), Long.MAX_VALUE).find(key, STEPS);
+        Assert.assertEquals("Stored result wasn't found after reopening", STEPS, result.getGeneration());
+        Assert.assertEquals("Stored result differs", direct.getCurrentState(), result.getStates());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws IOException {
+        File directory = folder.newFolder("cache");
+        boolean[] states = new boolean[WIDTH * HEIGHT];
+        new ResultCache(directory, Long.MAX_VALUE).store("probe", 0, WIDTH, HEIGHT, states);
+        long entrySize = new ResultCache(directory, Long.MAX_VALUE).getSize();
+        Files.delete(new File(directory, "probe-0.board").toPath());
+
+        ResultCache cache = new ResultCache(directory, 2 * entrySize);
+        cache.store("first", 0, WIDTH, HEIGHT, states);
+        cache.store("second", 0, WIDTH, HEIGHT, states);
+        Assert.assertTrue(new File(directory, "first-0.board").setLastModified(1000));
+        Assert.assertTrue(new File(directory, "second-0.board").setLastModified(2000));
+        Assert.assertNotNull("Entry is missing", cache.find("first", 0));
+        cache.store("third", 0, WIDTH, HEIGHT, states);
+        Assert.assertTrue("Cache exceeded its size", cache.getSize() <= 2 * entrySize);
+        Assert.assertNull("Least recently used entry wasn't evicted", cache.find("second", 0));
+        Assert.assertNotNull("Recently used entry was evicted", cache.find("first", 0));
+        Assert.assertNotNull("New entry was evicted", cache.find("third", 0));
+    }
+
+    @Test
+    public void testSkipsDamagedEntries() throws IOException {
+        ResultCache cache = new ResultCache(folder.getRoot(), Long.MAX_VALUE);
+        cache.store("job", 4, WIDTH, HEIGHT, new boolean[WIDTH * HEIGHT]);
+        cache.store("job", 8, WIDTH, HEIGHT, new boolean[WIDTH * HEIGHT]);
+        Files.write(new File(folder.getRoot(), "job-8.board").toPath(), new byte[]{1, 2, 3});
+        Assert.assertEquals("Damaged entry wasn't skipped", 4, cache.find("job", 10).getGeneration());
+        Assert.assertFalse("Damaged entry wasn't removed", new File(folder.getRoot(), "job-8.board").exists());
+    }
+
+    private static CellularAutomata createAutomata() {
+        return new SingleThreadRWAutomata(WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE);
+    }
+}
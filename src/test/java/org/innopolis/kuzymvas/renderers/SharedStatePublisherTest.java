@@ -0,0 +1,102 @@
+package org.innopolis.kuzymvas.renderers;
+
+import org.innopolis.kuzymvas.cellular.CellularAutomata;
+import org.innopolis.kuzymvas.cellular.NeighborhoodType;
+import org.innopolis.kuzymvas.cellular.RandomFields;
+import org.innopolis.kuzymvas.cellular.SingleThreadRWAutomata;
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SharedStatePublisherTest {
+
+    private final static int WIDTH = 45;
+    private final static int HEIGHT = 31;
+    private final static int GENERATIONS = 3000;
+    private final static int STEPS = 40;
+    private final static long SEED = 43L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadersSeeConsistentGenerations() throws Exception {
+        File file = folder.newFile("live.state");
+        AtomicBoolean finished = new AtomicBoolean();
+        try (SharedStatePublisher publisher = new SharedStatePublisher(file, WIDTH, HEIGHT);
+             SharedStateReader reader = new SharedStateReader(file)) {
+            Assert.assertEquals("Nothing should be published yet", -1, reader.snapshot(new boolean[WIDTH * HEIGHT]));
+            Thread writer = new Thread(() -> {
+                boolean[] states = new boolean[WIDTH * HEIGHT];
+                for (int generation = 0; generation < GENERATIONS; generation++) {
+                    for (int i = 0; i < states.length; i++) {
+                        states[i] = (i + generation) % 3 == 0;
+                    }
+                    publisher.write(generation, WIDTH, HEIGHT, states);
+                }
+                finished.set(true);
+            });
+            writer.start();
+            boolean[] snapshot = new boolean[WIDTH * HEIGHT];
+            long lastGeneration = -1;
+            while (!finished.get() || lastGeneration < GENERATIONS - 1) {
+                long generation = reader.snapshot(snapshot);
+                Assert.assertTrue("Generations went backwards", generation >= lastGeneration);
+                if (generation >= 0) {
+                    for (int i = 0; i < snapshot.length; i++) {
+                        Assert.assertEquals("Snapshot of generation " + generation + " is torn at cell " + i,
+                                            (i + generation) % 3 == 0, snapshot[i]);
+                    }
+                }
+                lastGeneration = generation;
+            }
+            writer.join();
+            long sequence = reader.beginRead();
+            boolean alive = reader.isAlive(2);
+            Assert.assertTrue("Zero-copy read wasn't validated", reader.validate(sequence));
+            Assert.assertEquals("Zero-copy read returned wrong state", (2 + GENERATIONS - 1) % 3 == 0, alive);
+        }
+    }
+
+    @Test
+    public void testPublishesEveryNthGeneration() throws IOException {
+        File file = folder.newFile("run.state");
+        CellularAutomata automata = createAutomata();
+        try (SnapshotPipeline sharer = new SnapshotPipeline(
+                automata, 2, BackpressurePolicy.DROP_OLDEST, new SharedStatePublisher(file, WIDTH, HEIGHT), 8, 0)) {
+            new EndStepRenderer(automata).render(new ByteArrayOutputStream(), STEPS,
+                                                 RandomFields.randomStates(SEED, WIDTH * HEIGHT),
+                                                 Collections.singletonList(sharer));
+        }
+        try (SharedStateReader reader = new SharedStateReader(file)) {
+            Assert.assertEquals("Wrong width in shared state", WIDTH, reader.getWidth());
+            Assert.assertEquals("Wrong height in shared state", HEIGHT, reader.getHeight());
+            boolean[] snapshot = new boolean[WIDTH * HEIGHT];
+            Assert.assertEquals("Last published generation is wrong", STEPS, reader.snapshot(snapshot));
+            Assert.assertEquals("Published state differs from automata",
+                                Arrays.toString(automata.getStates(0, WIDTH * HEIGHT)), Arrays.toString(snapshot));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        File file = folder.newFile("history");
+        try (HistoryWriter writer = new HistoryWriter(file, 4)) {
+            writer.write(0, WIDTH, HEIGHT, new boolean[WIDTH * HEIGHT]);
+        }
+        new SharedStateReader(file).close();
+    }
+
+    private static CellularAutomata createAutomata() {
+        return new SingleThreadRWAutomata(WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE);
+    }
+}
@@ -0,0 +1,129 @@
+package org.innopolis.kuzymvas.renderers;
+
+import org.innopolis.kuzymvas.cellular.CellularAutomata;
+import org.innopolis.kuzymvas.cellular.NeighborhoodType;
+import org.innopolis.kuzymvas.cellular.SingleThreadRWAutomata;
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class SnapshotPipelineTest {
+
+    private final static int SIZE = 6;
+    private final static int STEPS = 12;
+
+    @Test
+    public void testWritesEveryNthGeneration() throws IOException {
+        CellularAutomata automata = createAutomata();
+        CellularAutomata reference = createAutomata();
+        List<String> snapshots = Collections.synchronizedList(new ArrayList<>());
+        List<Long> generations = Collections.synchronizedList(new ArrayList<>());
+        try (SnapshotPipeline pipeline = new SnapshotPipeline(
+                automata, 2, BackpressurePolicy.BLOCK, (generation, width, height, states) -> {
+                    generations.add(generation);
+                    snapshots.add(Arrays.toString(states));
+                }, 3, 1)) {
+            new EndStepRenderer(automata).render(new ByteArrayOutputStream(), STEPS, glider(),
+                                                 Collections.singletonList(pipeline));
+        }
+        Assert.assertEquals("Wrong generations were written", Arrays.asList(3L, 6L, 9L, 12L), generations);
+        reference.initAutomata(glider());
+        for (int step = 1; step <= STEPS; step++) {
+            reference.updateAutomata();
+            if (step % 3 == 0) {
+                Assert.assertEquals("Snapshot of generation " + step + " differs from automata state",
+                                    Arrays.toString(reference.getStates(0, SIZE * SIZE)),
+                                    snapshots.get(step / 3 - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testDropNewestWhenWriterIsBusy() throws IOException, InterruptedException {
+        CellularAutomata automata = createAutomata();
+        automata.initAutomata(glider());
+        CountDownLatch writerStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> generations = Collections.synchronizedList(new ArrayList<>());
+        try (SnapshotPipeline pipeline = new SnapshotPipeline(
+                automata, 2, BackpressurePolicy.DROP_NEWEST, blockingWriter(writerStarted, release, generations))) {
+            Assert.assertTrue(pipeline.submit(1, automata));
+            writerStarted.await();
+            Assert.assertTrue(pipeline.submit(2, automata));
+            Assert.assertFalse("Pipeline accepted snapshot with no free buffers", pipeline.submit(3, automata));
+            release.countDown();
+            Assert.assertEquals(1, pipeline.getDropped());
+        }
+        Assert.assertEquals(Arrays.asList(1L, 2L), generations);
+    }
+
+    @Test
+    public void testDropOldestWhenWriterIsBusy() throws IOException, InterruptedException {
+        CellularAutomata automata = createAutomata();
+        automata.initAutomata(glider());
+        CountDownLatch writerStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> generations = Collections.synchronizedList(new ArrayList<>());
+        try (SnapshotPipeline pipeline = new SnapshotPipeline(
+                automata, 2, BackpressurePolicy.DROP_OLDEST, blockingWriter(writerStarted, release, generations))) {
+            Assert.assertTrue(pipeline.submit(1, automata));
+            writerStarted.await();
+            Assert.assertTrue(pipeline.submit(2, automata));
+            Assert.assertTrue(pipeline.submit(3, automata));
+            release.countDown();
+            Assert.assertEquals(1, pipeline.getDropped());
+        }
+        Assert.assertEquals(Arrays.asList(1L, 3L), generations);
+    }
+
+    @Test
+    public void testWriterFailureIsReported() {
+        CellularAutomata automata = createAutomata();
+        automata.initAutomata(glider());
+        try (SnapshotPipeline pipeline = new SnapshotPipeline(
+                automata, 1, BackpressurePolicy.BLOCK, (generation, width, height, states) -> {
+                    throw new IOException("disk is full");
+                })) {
+            pipeline.submit(1, automata);
+        } catch (IOException e) {
+            Assert.assertEquals("disk is full", e.getMessage());
+            return;
+        }
+        Assert.fail("Pipeline didn't report writer failure");
+    }
+
+    private static SnapshotWriter blockingWriter(
+            CountDownLatch writerStarted, CountDownLatch release, List<Long> generations) {
+        return (generation, width, height, states) -> {
+            writerStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            generations.add(generation);
+        };
+    }
+
+    private static CellularAutomata createAutomata() {
+        return new SingleThreadRWAutomata(SIZE, SIZE, new ConwayCellFactory(), NeighborhoodType.MOORE);
+    }
+
+    private static List<Boolean> glider() {
+        List<Boolean> states = new ArrayList<>(Collections.nCopies(SIZE * SIZE, false));
+        states.set(1, true);
+        states.set(SIZE + 2, true);
+        states.set(2 * SIZE, true);
+        states.set(2 * SIZE + 1, true);
+        states.set(2 * SIZE + 2, true);
+        return states;
+    }
+}
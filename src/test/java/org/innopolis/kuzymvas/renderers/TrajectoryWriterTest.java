@@ -0,0 +1,84 @@
+package org.innopolis.kuzymvas.renderers;
+
+import org.innopolis.kuzymvas.cellular.CellularAutomata;
+import org.innopolis.kuzymvas.cellular.NeighborhoodType;
+import org.innopolis.kuzymvas.cellular.SingleThreadRWAutomata;
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TrajectoryWriterTest {
+
+    private final static int WIDTH = 64;
+    private final static int HEIGHT = 48;
+    private final static int STEPS = 100;
+    // Запись разреженного поля должна занимать меньше процента от текстовых снимков всех поколений
+    private final static double MAX_SIZE_RATIO = 0.01;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecordsEveryGeneration() throws IOException {
+        File file = folder.newFile("run.trajectory");
+        CellularAutomata automata = createAutomata();
+        try (SnapshotPipeline recorder = new SnapshotPipeline(
+                automata, 4, BackpressurePolicy.BLOCK, new TrajectoryWriter(file))) {
+            new EndStepRenderer(automata).render(new ByteArrayOutputStream(), STEPS, sparseField(),
+                                                 Collections.singletonList(recorder));
+        }
+        CellularAutomata reference = createAutomata();
+        reference.initAutomata(sparseField());
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            Assert.assertEquals("Wrong width in trajectory header", WIDTH, reader.getWidth());
+            Assert.assertEquals("Wrong height in trajectory header", HEIGHT, reader.getHeight());
+            for (int generation = 0; generation <= STEPS; generation++) {
+                Assert.assertTrue("Trajectory ended before generation " + generation, reader.next());
+                Assert.assertEquals("Wrong generation number", generation, reader.getGeneration());
+                Assert.assertEquals("Generation " + generation + " was restored incorrectly",
+                                    Arrays.toString(reference.getStates(0, WIDTH * HEIGHT)),
+                                    Arrays.toString(reader.getStates()));
+                reference.updateAutomata();
+            }
+            Assert.assertFalse("Trajectory has extra generations", reader.next());
+        }
+        long textSize = (long) (WIDTH + 1) * HEIGHT * (STEPS + 1);
+        Assert.assertTrue("Trajectory of a sparse run is too large: " + file.length() + " bytes",
+                          file.length() < textSize * MAX_SIZE_RATIO);
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws IOException {
+        File snapshot = folder.newFile("snapshot");
+        new TextSnapshotWriter(snapshot.getPath()).write(0, 2, 1, new boolean[]{true, false});
+        for (File file : new File[]{new File(snapshot.getPath() + ".0"), folder.newFile("empty")}) {
+            try (TrajectoryReader reader = new TrajectoryReader(file)) {
+                Assert.fail(file.getName() + " was read as trajectory");
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static CellularAutomata createAutomata() {
+        return new SingleThreadRWAutomata(WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE);
+    }
+
+    private static List<Boolean> sparseField() {
+        List<Boolean> states = new ArrayList<>(Collections.nCopies(WIDTH * HEIGHT, false));
+        int[][] cells = {{1, 0}, {2, 1}, {0, 2}, {1, 2}, {2, 2}, {40, 30}, {41, 30}, {42, 30}};
+        for (int[] cell : cells) {
+            states.set((cell[1] + 5) * WIDTH + cell[0] + 5, true);
+        }
+        return states;
+    }
+}
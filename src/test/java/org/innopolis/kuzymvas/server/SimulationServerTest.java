@@ -0,0 +1,150 @@
+package org.innopolis.kuzymvas.server;
+
+import org.innopolis.kuzymvas.cellular.BoundaryMode;
+import org.innopolis.kuzymvas.cellular.CellularAutomata;
+import org.innopolis.kuzymvas.cellular.NeighborhoodType;
+import org.innopolis.kuzymvas.cellular.RandomFields;
+import org.innopolis.kuzymvas.cellular.SingleThreadRWAutomata;
+import org.innopolis.kuzymvas.cellular.cells.ConwayCellFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SimulationServerTest {
+
+    private static final int WIDTH = 12;
+    private static final int HEIGHT = 9;
+    private static final int STEPS = 7;
+    private static final int CLIENTS = 40;
+    private static final long SEED = 39L;
+
+    private SimulationServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new SimulationServer(0, 2);
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void testFinalState() throws IOException {
+        List<Boolean> states = RandomFields.randomStates(SEED, WIDTH * HEIGHT);
+        Assert.assertEquals("Server returned wrong final state", expectedBoard(states, STEPS, BoundaryMode.WRAPAROUND),
+                            post("steps=" + STEPS, board(states), 200));
+        Assert.assertEquals("Server ignored boundary mode", expectedBoard(states, STEPS, BoundaryMode.DEAD),
+                            post("steps=" + STEPS + "&boundary=dead&rule=B3/S23", board(states), 200));
+    }
+
+    @Test
+    public void testStreamedGenerations() throws IOException {
+        List<Boolean> states = RandomFields.randomStates(SEED, WIDTH * HEIGHT);
+        StringBuilder expected = new StringBuilder();
+        for (int generation : new int[]{0, 3, 6, STEPS}) {
+            expected.append("generation ").append(generation).append('\n')
+                    .append(expectedBoard(states, generation, BoundaryMode.WRAPAROUND)).append('\n');
+        }
+        Assert.assertEquals("Server streamed wrong generations", expected.toString(),
+                            post("steps=" + STEPS + "&every=3", board(states), 200));
+    }
+
+    @Test
+    public void testConcurrentSmallJobsShareEngines() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            Random random = new Random(SEED);
+            List<Future<String>> responses = new ArrayList<>();
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                List<Boolean> states = RandomFields.randomStates(random, WIDTH * HEIGHT);
+                expected.add(expectedBoard(states, STEPS, BoundaryMode.WRAPAROUND));
+                responses.add(clients.submit(() -> post("steps=" + STEPS, board(states), 200)));
+            }
+            for (int i = 0; i < CLIENTS; i++) {
+                Assert.assertEquals("Server returned wrong state for client " + i,
+                                    expected.get(i), responses.get(i).get());
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        JobScheduler scheduler = server.getScheduler();
+        Assert.assertTrue("Engines weren't reused between jobs: " + scheduler.getEngines().getCreated(),
+                          scheduler.getEngines().getCreated() < CLIENTS);
+        Assert.assertTrue("Small jobs weren't batched: " + scheduler.getBatches(),
+                          scheduler.getBatches() <= CLIENTS);
+    }
+
+    @Test
+    public void testMalformedRequests() throws IOException {
+        String board = board(RandomFields.randomStates(SEED, WIDTH * HEIGHT));
+        post("every=2", board, 400);
+        post("steps=-1", board, 400);
+        post("steps=2&rule=B9/S23", board, 400);
+        post("steps=2&boundary=spherical", board, 400);
+        post("steps=2", "OO_\nO\n", 400);
+        post("steps=2", "", 400);
+        HttpURLConnection connection = (HttpURLConnection) url("steps=2").openConnection();
+        Assert.assertEquals("GET shouldn't be accepted", 405, connection.getResponseCode());
+    }
+
+    private String post(String query, String body, int expectedCode) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url(query).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals("Wrong response code for query " + query, expectedCode, connection.getResponseCode());
+        try (InputStream in = expectedCode == 200 ? connection.getInputStream() : connection.getErrorStream()) {
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            for (int read = in.read(chunk); read >= 0; read = in.read(chunk)) {
+                response.write(chunk, 0, read);
+            }
+            return new String(response.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private URL url(String query) throws IOException {
+        return new URL("http://localhost:" + server.getPort() + "/simulate?" + query);
+    }
+
+    private static String expectedBoard(List<Boolean> states, int steps, BoundaryMode boundaryMode) {
+        CellularAutomata reference = new SingleThreadRWAutomata(
+                WIDTH, HEIGHT, new ConwayCellFactory(), NeighborhoodType.MOORE, boundaryMode);
+        reference.initAutomata(states);
+        for (int step = 0; step < steps; step++) {
+            reference.updateAutomata();
+        }
+        return board(reference.getCurrentState());
+    }
+
+    private static String board(List<Boolean> states) {
+        StringBuilder board = new StringBuilder();
+        for (int i = 0; i < states.size(); i++) {
+            board.append(states.get(i) ? 'O' : '_');
+            if (i % WIDTH == WIDTH - 1) {
+                board.append('\n');
+            }
+        }
+        return board.toString();
+    }
+}